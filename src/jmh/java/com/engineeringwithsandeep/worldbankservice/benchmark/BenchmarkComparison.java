@@ -0,0 +1,57 @@
+package com.engineeringwithsandeep.worldbankservice.benchmark;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Compares two JMH JSON result files (-rf json), e.g. the target/jmh-result.json of two commits.
+ * Usage: BenchmarkComparison baseline.json current.json
+ * Prints every benchmark and parameter combination found in both, with the relative change of its score.
+ */
+public class BenchmarkComparison {
+
+    private static final String PACKAGE = "com.engineeringwithsandeep.worldbankservice.";
+
+    public static void main(String[] args) throws IOException {
+        if (args.length != 2) {
+            System.out.println("Usage: BenchmarkComparison baseline.json current.json");
+            return;
+        }
+        Map<String, JsonNode> baseline = read(Path.of(args[0]));
+        Map<String, JsonNode> current = read(Path.of(args[1]));
+
+        System.out.printf("%-100s %14s %14s %9s%n", "benchmark", "baseline", "current", "change");
+        for (Map.Entry<String, JsonNode> entry : current.entrySet()) {
+            JsonNode before = baseline.get(entry.getKey());
+            if (before == null) {
+                continue;
+            }
+            double oldScore = before.path("primaryMetric").path("score").asDouble();
+            double newScore = entry.getValue().path("primaryMetric").path("score").asDouble();
+            String unit = entry.getValue().path("primaryMetric").path("scoreUnit").asText();
+            System.out.printf("%-100s %14.3f %14.3f %+8.1f%%  %s%n", entry.getKey(), oldScore, newScore,
+                    oldScore == 0 ? 0.0 : (newScore - oldScore) / oldScore * 100, unit);
+        }
+    }
+
+    // benchmark name plus its parameters -> result
+    private static Map<String, JsonNode> read(Path file) throws IOException {
+        Map<String, JsonNode> results = new LinkedHashMap<>();
+        for (JsonNode result : new ObjectMapper().readTree(file.toFile())) {
+            StringBuilder key = new StringBuilder(result.path("benchmark").asText().replace(PACKAGE, ""));
+            Iterator<Map.Entry<String, JsonNode>> params = result.path("params").fields();
+            while (params.hasNext()) {
+                Map.Entry<String, JsonNode> param = params.next();
+                key.append(' ').append(param.getKey()).append('=').append(param.getValue().asText());
+            }
+            results.put(key.toString(), result);
+        }
+        return results;
+    }
+}
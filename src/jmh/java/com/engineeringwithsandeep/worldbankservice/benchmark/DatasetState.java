@@ -0,0 +1,95 @@
+package com.engineeringwithsandeep.worldbankservice.benchmark;
+
+import com.engineeringwithsandeep.worldbankservice.dataset.WdiCsvGenerator;
+import com.engineeringwithsandeep.worldbankservice.store.WdiCsvLoader;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+
+/**
+ * Synthetic WDI-shaped csv shared by all benchmarks, generated once per fork.
+ * Scale it from the command line, e.g. -p countries=2660 -p indicators=500 -p years=128 -p missing=0.5.
+ * Lookups cycle through a fixed pseudo-random set of existing (country, indicator, year) keys.
+ */
+@State(Scope.Benchmark)
+public class DatasetState {
+
+    public static final int KEYS = 1024;  // power of two, see Cursor
+
+    @Param("266")
+    public int countries;
+
+    @Param("50")
+    public int indicators;
+
+    @Param("64")
+    public int years;
+
+    @Param("0.25")
+    public double missing;
+
+    public Path csv;
+    private String[] countryCodes;
+    private String[] indicatorCodes;
+    private int[] keyYears;
+    private String[] keyYearTexts;
+
+    @Setup(Level.Trial)
+    public void generate() throws IOException {
+        WdiCsvGenerator.Shape shape = new WdiCsvGenerator.Shape(countries, indicators, 1960, years, missing, 42);
+        csv = WdiCsvGenerator.temp(shape);
+        countryCodes = new String[KEYS];
+        indicatorCodes = new String[KEYS];
+        keyYears = new int[KEYS];
+        keyYearTexts = new String[KEYS];
+        Random random = new Random(7);
+        for (int k = 0; k < KEYS; k++) {
+            countryCodes[k] = WdiCsvGenerator.countryCode(random.nextInt(countries));
+            indicatorCodes[k] = WdiCsvGenerator.indicatorCode(random.nextInt(indicators));
+            keyYears[k] = shape.firstYear() + random.nextInt(years);
+            keyYearTexts[k] = String.valueOf(keyYears[k]);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void delete() throws IOException {
+        Files.deleteIfExists(WdiCsvLoader.snapshotPath(csv));
+        Files.deleteIfExists(csv);
+    }
+
+    public String countryCode(int key) {
+        return countryCodes[key];
+    }
+
+    public String indicatorCode(int key) {
+        return indicatorCodes[key];
+    }
+
+    public int year(int key) {
+        return keyYears[key];
+    }
+
+    public String yearText(int key) {
+        return keyYearTexts[key];
+    }
+
+    /**
+     * Per thread position in the key set, so the JIT can not constant fold the lookups
+     */
+    @State(Scope.Thread)
+    public static class Cursor {
+        private int next;
+
+        public int next() {
+            return next++ & (KEYS - 1);
+        }
+    }
+}
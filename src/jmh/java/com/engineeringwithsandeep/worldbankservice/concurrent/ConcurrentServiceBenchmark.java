@@ -0,0 +1,62 @@
+package com.engineeringwithsandeep.worldbankservice.concurrent;
+
+import com.engineeringwithsandeep.worldbankservice.benchmark.DatasetState;
+import com.engineeringwithsandeep.worldbankservice.store.SeriesTable;
+import com.engineeringwithsandeep.worldbankservice.store.WdiCsvLoader;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.util.OptionalDouble;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Per request latency of the concurrent REST service (the async load is already complete), without the HTTP layer
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@State(Scope.Benchmark)
+public class ConcurrentServiceBenchmark {
+
+    private WorldBankConcurrentServiceImpl service;
+    private CountryData[] rows;
+
+    @Setup(Level.Trial)
+    public void load(DatasetState dataset) throws IOException {
+        WDIConcurrentDao.database.publish(SeriesTable.of(WdiCsvLoader.load(dataset.csv.toString()), CountryData::new));
+        service = new WorldBankConcurrentServiceImpl(new WDIConcurrentDao(Runnable::run));
+        rows = new CountryData[DatasetState.KEYS];
+        for (int k = 0; k < rows.length; k++) {
+            rows[k] = WDIConcurrentDao.database.current().get(dataset.countryCode(k), dataset.indicatorCode(k));
+        }
+    }
+
+    @Benchmark
+    public String getCountryInfo(DatasetState dataset, DatasetState.Cursor cursor) {
+        int k = cursor.next();
+        return service.getCountryInfo(null, dataset.countryCode(k), dataset.indicatorCode(k), dataset.year(k)).join();  // already loaded, completes inline
+    }
+
+    @Benchmark
+    public String getCountryReport(DatasetState dataset, DatasetState.Cursor cursor) {
+        int k = cursor.next();
+        return service.getCountryReport(null, dataset.countryCode(k), dataset.indicatorCode(k)).join();
+    }
+
+    @Benchmark
+    public OptionalDouble calculateMean(DatasetState.Cursor cursor) {
+        return WorldBankConcurrentServiceImpl.calculateMean(rows[cursor.next()]);
+    }
+}
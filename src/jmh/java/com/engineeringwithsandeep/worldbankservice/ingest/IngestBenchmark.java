@@ -0,0 +1,38 @@
+package com.engineeringwithsandeep.worldbankservice.ingest;
+
+import com.engineeringwithsandeep.worldbankservice.benchmark.DatasetState;
+import com.engineeringwithsandeep.worldbankservice.socket.util.CsvReader;
+import com.engineeringwithsandeep.worldbankservice.store.ColumnarStore;
+import com.engineeringwithsandeep.worldbankservice.store.WdiCsvLoader;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Time to turn the csv into a ColumnarStore: a full parse, and CsvReader.readCsv which reads the snapshot
+ * written by its first call.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class IngestBenchmark {
+
+    @Benchmark
+    public ColumnarStore parseCsv(DatasetState dataset) throws IOException {
+        return WdiCsvLoader.read(dataset.csv.toString());
+    }
+
+    @Benchmark
+    public ColumnarStore readCsv(DatasetState dataset) {
+        return CsvReader.readCsv(dataset.csv.toString());
+    }
+}
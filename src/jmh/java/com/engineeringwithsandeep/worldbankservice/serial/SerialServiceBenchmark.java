@@ -0,0 +1,85 @@
+package com.engineeringwithsandeep.worldbankservice.serial;
+
+import com.engineeringwithsandeep.worldbankservice.benchmark.DatasetState;
+import com.engineeringwithsandeep.worldbankservice.cache.EvictionPolicy;
+import com.engineeringwithsandeep.worldbankservice.store.SeriesTable;
+import com.engineeringwithsandeep.worldbankservice.store.WdiCsvLoader;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.http.ResponseEntity;
+
+import java.io.IOException;
+import java.util.OptionalDouble;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Per request latency of the serial REST service, without the HTTP layer
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@State(Scope.Benchmark)
+public class SerialServiceBenchmark {
+
+    private WorldBankServiceImpl service;
+    private WorldBankServer cachedServer;    // controller with the default response cache, all keys fit
+    private WorldBankServer uncachedServer;  // controller with the cache disabled
+    private String[] years;
+    private CountryData[] rows;
+
+    @Setup(Level.Trial)
+    public void load(DatasetState dataset) throws IOException {
+        WDIDao.database.publish(SeriesTable.of(WdiCsvLoader.load(dataset.csv.toString()), CountryData::new));
+        service = new WorldBankServiceImpl(new WDIDao());
+        cachedServer = new WorldBankServer(service, 10_000, EvictionPolicy.TINY_LFU);
+        uncachedServer = new WorldBankServer(service, 0, EvictionPolicy.TINY_LFU);
+        years = new String[DatasetState.KEYS];
+        for (int k = 0; k < years.length; k++) {
+            years[k] = String.valueOf(dataset.year(k));
+        }
+        rows = new CountryData[DatasetState.KEYS];
+        for (int k = 0; k < rows.length; k++) {
+            rows[k] = WDIDao.database.current().get(dataset.countryCode(k), dataset.indicatorCode(k));
+        }
+    }
+
+    @Benchmark
+    public String getCountryInfo(DatasetState dataset, DatasetState.Cursor cursor) {
+        int k = cursor.next();
+        return service.getCountryInfo(null, dataset.countryCode(k), dataset.indicatorCode(k), dataset.year(k));
+    }
+
+    @Benchmark
+    public String getCountryReport(DatasetState dataset, DatasetState.Cursor cursor) {
+        int k = cursor.next();
+        return service.getCountryReport(null, dataset.countryCode(k), dataset.indicatorCode(k));
+    }
+
+    @Benchmark
+    public ResponseEntity<String> controllerCountryInfo(DatasetState dataset, DatasetState.Cursor cursor) {
+        int k = cursor.next();
+        return uncachedServer.getCountryInfo(dataset.countryCode(k), dataset.indicatorCode(k), years[k], null);
+    }
+
+    @Benchmark
+    public ResponseEntity<String> cachedControllerCountryInfo(DatasetState dataset, DatasetState.Cursor cursor) {
+        int k = cursor.next();
+        return cachedServer.getCountryInfo(dataset.countryCode(k), dataset.indicatorCode(k), years[k], null);
+    }
+
+    @Benchmark
+    public OptionalDouble calculateMean(DatasetState.Cursor cursor) {
+        return WorldBankServiceImpl.calculateMean(rows[cursor.next()]);
+    }
+}
@@ -0,0 +1,135 @@
+package com.engineeringwithsandeep.worldbankservice.socket.server;
+
+import com.engineeringwithsandeep.worldbankservice.benchmark.DatasetState;
+import com.engineeringwithsandeep.worldbankservice.socket.client.Client;
+import com.engineeringwithsandeep.worldbankservice.socket.command.CommandParser;
+import com.engineeringwithsandeep.worldbankservice.socket.dao.WDIDao;
+import com.engineeringwithsandeep.worldbankservice.socket.service.WorldBankServiceImpl;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.io.PrintWriter;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * End to end round trip of one query over loopback, per server mode and wire protocol.
+ * Client and server share the fork, run with -t to add concurrent clients.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class ServerRoundTripBenchmark {
+
+    @State(Scope.Benchmark)
+    public static class ServerState {
+
+        @Param({"nio", "blocking"})
+        public String mode;
+
+        @Param({"text", "binary"})
+        public String protocol;
+
+        int port;
+        private NioServer nioServer;
+
+        @Setup(Level.Trial)
+        public void start(DatasetState dataset) throws Exception {
+            // the blocking server logs every command; silence stdout so the fork output stays readable,
+            // formatting the log lines is still paid for
+            System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+            try (ServerSocket probe = new ServerSocket(0)) {
+                port = probe.getLocalPort();
+            }
+            if ("nio".equals(mode)) {
+                WDIDao wdiDao = new WDIDao(dataset.csv.toString());
+                wdiDao.load();
+                nioServer = new NioServer(port, new CommandParser(new WorldBankServiceImpl(wdiDao)), 2);
+                nioServer.start();
+                return;
+            }
+            System.setProperty("worldbank.data.file", dataset.csv.toString());
+            System.setProperty("worldbank.socket.port", String.valueOf(port));
+            System.setProperty("worldbank.socket.mode", mode);
+            Thread server = new Thread(() -> Server.main(new String[0]), "server-main");
+            server.setDaemon(true);
+            server.start();
+            for (int attempt = 0; attempt < 600; attempt++) {
+                try (Socket ignored = new Socket("127.0.0.1", port)) {
+                    return;
+                } catch (IOException e) {
+                    Thread.sleep(100);  // still loading
+                }
+            }
+            throw new IllegalStateException("Server did not start on port " + port);
+        }
+
+        @TearDown(Level.Trial)
+        public void stop() {
+            if (nioServer != null) {
+                nioServer.stop();
+            } else {
+                Server.stopServer();
+            }
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class Connection {
+        private Socket socket;
+        private PrintWriter out;
+        private BufferedReader in;
+        private Client.BinaryCodec codec;
+
+        @Setup(Level.Trial)
+        public void open(ServerState server) throws IOException {
+            if ("binary".equals(server.protocol)) {
+                codec = new Client.BinaryCodec(new Socket("127.0.0.1", server.port));
+                return;
+            }
+            socket = new Socket("127.0.0.1", server.port);
+            socket.setTcpNoDelay(true);
+            out = new PrintWriter(socket.getOutputStream(), true, StandardCharsets.UTF_8);
+            in = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+        }
+
+        @TearDown(Level.Trial)
+        public void close() throws IOException {
+            if (codec != null) {
+                codec.close();
+            } else {
+                socket.close();
+            }
+        }
+    }
+
+    @Benchmark
+    public Object query(DatasetState dataset, DatasetState.Cursor cursor, Connection connection) throws IOException {
+        int k = cursor.next();
+        if (connection.codec != null) {
+            return connection.codec.query(dataset.countryCode(k), dataset.indicatorCode(k), dataset.year(k));
+        }
+        connection.out.println("q;" + dataset.countryCode(k) + ";" + dataset.indicatorCode(k) + ";" + dataset.yearText(k));
+        return connection.in.readLine();
+    }
+}
@@ -0,0 +1,68 @@
+package com.engineeringwithsandeep.worldbankservice.socket.service;
+
+import com.engineeringwithsandeep.worldbankservice.benchmark.DatasetState;
+import com.engineeringwithsandeep.worldbankservice.socket.dao.CountryData;
+import com.engineeringwithsandeep.worldbankservice.socket.dao.WDIDao;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.OptionalDouble;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Per request latency of the socket service, without the network and the command parsing
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@State(Scope.Benchmark)
+public class SocketServiceBenchmark {
+
+    private WorldBankServiceImpl service;
+    private CountryData[] rows;
+
+    @Setup(Level.Trial)
+    public void load(DatasetState dataset) {
+        WDIDao wdiDao = new WDIDao(dataset.csv.toString());
+        wdiDao.load();
+        service = new WorldBankServiceImpl(wdiDao);
+        rows = new CountryData[DatasetState.KEYS];
+        for (int k = 0; k < rows.length; k++) {
+            rows[k] = wdiDao.getDatabase().get(dataset.countryCode(k), dataset.indicatorCode(k));
+        }
+    }
+
+    @Benchmark
+    public String getCountryInfo(DatasetState dataset, DatasetState.Cursor cursor) {
+        int k = cursor.next();
+        return service.getCountryInfo(dataset.countryCode(k), dataset.indicatorCode(k), dataset.yearText(k));
+    }
+
+    @Benchmark
+    public String getCountryReport(DatasetState dataset, DatasetState.Cursor cursor) {
+        int k = cursor.next();
+        return service.getCountryReport(dataset.countryCode(k), dataset.indicatorCode(k));
+    }
+
+    @Benchmark
+    public Double getCountryValue(DatasetState dataset, DatasetState.Cursor cursor) {
+        int k = cursor.next();
+        return service.getCountryValue(dataset.countryCode(k), dataset.indicatorCode(k), dataset.year(k));
+    }
+
+    @Benchmark
+    public OptionalDouble calculateMean(DatasetState.Cursor cursor) {
+        return WorldBankServiceImpl.calculateMean(rows[cursor.next()]);
+    }
+}
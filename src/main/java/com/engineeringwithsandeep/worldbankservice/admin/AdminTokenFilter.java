@@ -0,0 +1,69 @@
+package com.engineeringwithsandeep.worldbankservice.admin;
+
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.util.regex.Pattern;
+
+/**
+ * Guards the endpoints that change what a node serves, POST /wdi[/async]/reload and /evict. A caller has to send
+ * the configured -Dworldbank.admin.token in the X-Worldbank-Admin-Token header; without a configured token the
+ * endpoints are disabled. Read endpoints are not affected.
+ */
+@Slf4j
+@Component
+public class AdminTokenFilter extends OncePerRequestFilter {
+
+    public static final String TOKEN_HEADER = "X-Worldbank-Admin-Token";
+
+    private static final Pattern ADMIN_PATH = Pattern.compile("/wdi(/async)?/(reload|evict)/?");
+
+    private final byte[] token;  // null when admin endpoints are disabled
+
+    public AdminTokenFilter(@Value("${worldbank.admin.token:}") String token) {
+        this.token = token.isBlank() ? null : token.getBytes(StandardCharsets.UTF_8);
+        if (this.token == null) {
+            log.info("No worldbank.admin.token configured, reload and evict are disabled");
+        }
+    }
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        String path = request.getRequestURI().substring(request.getContextPath().length());
+        return !ADMIN_PATH.matcher(path).matches();
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        if (token == null) {
+            deny(response, HttpStatus.FORBIDDEN, "Admin endpoints are disabled, set worldbank.admin.token");
+            return;
+        }
+        String sent = request.getHeader(TOKEN_HEADER);
+        // constant time, so the response time does not tell how much of a guess was right
+        if (sent == null || !MessageDigest.isEqual(token, sent.getBytes(StandardCharsets.UTF_8))) {
+            deny(response, HttpStatus.UNAUTHORIZED, "Missing or wrong " + TOKEN_HEADER);
+            return;
+        }
+        chain.doFilter(request, response);
+    }
+
+    private static void deny(HttpServletResponse response, HttpStatus status, String message) throws IOException {
+        response.setStatus(status.value());
+        response.setContentType(MediaType.TEXT_PLAIN_VALUE);
+        response.setCharacterEncoding(StandardCharsets.UTF_8.name());
+        response.getWriter().write(message);
+    }
+}
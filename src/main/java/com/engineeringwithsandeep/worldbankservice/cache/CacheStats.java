@@ -0,0 +1,8 @@
+package com.engineeringwithsandeep.worldbankservice.cache;
+
+/**
+ * Counters of a ResponseCache since it was created. Invalidation on a dataset change does not reset them.
+ */
+public record CacheStats(long hits, long misses, double hitRatio, long evictions, long size, long capacity,
+                         EvictionPolicy policy, long datasetVersion) {
+}
@@ -0,0 +1,14 @@
+package com.engineeringwithsandeep.worldbankservice.cache;
+
+/**
+ * Which entry a full ResponseCache segment gives up for a new one
+ */
+public enum EvictionPolicy {
+    // least recently used
+    LRU,
+    // least frequently used, ties broken by recency; old popularity never decays
+    LFU,
+    // small LRU admission window in front of a segmented LRU main area, a new entry only displaces a main entry
+    // when a decaying frequency sketch says it is accessed more often
+    TINY_LFU
+}
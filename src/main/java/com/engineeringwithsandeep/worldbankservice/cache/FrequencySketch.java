@@ -0,0 +1,67 @@
+package com.engineeringwithsandeep.worldbankservice.cache;
+
+/**
+ * Count-min sketch with four 4-bit counters per key, used by TinyLfuPolicy to estimate how often a key was
+ * requested recently. Every row of the sketch owns four of the sixteen nibbles in a long. After ten times the
+ * table width increments all counters are halved, so old popularity fades out.
+ */
+final class FrequencySketch {
+
+    private static final long[] SEEDS = {0xc3a5c85c97cb3127L, 0xb492b66fbe98f273L, 0x9ae16a3b2f90404fL, 0xcbf29ce484222325L};
+    private static final long HALF_MASK = 0x7777777777777777L;
+
+    private final long[] table;
+    private final int mask;
+    private final int sampleSize;
+    private int additions;
+
+    FrequencySketch(int capacity) {
+        int width = Integer.highestOneBit(Math.max(capacity, 16) - 1) << 1;
+        table = new long[width];
+        mask = width - 1;
+        sampleSize = 10 * width;
+    }
+
+    int frequency(Object key) {
+        int hash = spread(key.hashCode());
+        int frequency = 15;
+        for (int row = 0; row < SEEDS.length; row++) {
+            frequency = Math.min(frequency, (int) ((table[index(hash, row)] >>> shift(hash, row)) & 0xf));
+        }
+        return frequency;
+    }
+
+    void increment(Object key) {
+        int hash = spread(key.hashCode());
+        boolean added = false;
+        for (int row = 0; row < SEEDS.length; row++) {
+            int index = index(hash, row);
+            int shift = shift(hash, row);
+            if (((table[index] >>> shift) & 0xf) < 15) {
+                table[index] += 1L << shift;
+                added = true;
+            }
+        }
+        if (added && ++additions == sampleSize) {
+            for (int i = 0; i < table.length; i++) {
+                table[i] = (table[i] >>> 1) & HALF_MASK;
+            }
+            additions >>>= 1;
+        }
+    }
+
+    private int index(int hash, int row) {
+        long h = (hash + SEEDS[row]) * SEEDS[row];
+        return (int) (h + (h >>> 32)) & mask;
+    }
+
+    // Bit offset of the row's counter: row i uses nibbles 4i..4i+3, two hash bits pick one of them
+    private static int shift(int hash, int row) {
+        return ((row << 2) + ((hash >>> (row << 3)) & 3)) << 2;
+    }
+
+    private static int spread(int hash) {
+        hash = (hash ^ (hash >>> 16)) * 0x45d9f3b;
+        return hash ^ (hash >>> 16);
+    }
+}
@@ -0,0 +1,82 @@
+package com.engineeringwithsandeep.worldbankservice.cache;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.Map;
+
+/**
+ * Least frequently used in constant time: keys are grouped in buckets per access count, the least recently
+ * used key of the lowest bucket is the victim.
+ */
+final class LfuPolicy<K> implements Policy<K> {
+
+    private final int capacity;
+    private final Map<K, Integer> counts = new HashMap<>();
+    private final Map<Integer, LinkedHashSet<K>> buckets = new HashMap<>();
+    private int minCount;
+
+    LfuPolicy(int capacity) {
+        this.capacity = capacity;
+    }
+
+    @Override
+    public void recordAccess(K key) {
+        Integer count = counts.get(key);
+        if (count == null) {
+            return;
+        }
+        LinkedHashSet<K> bucket = buckets.get(count);
+        bucket.remove(key);
+        if (bucket.isEmpty()) {
+            buckets.remove(count);
+            if (minCount == count) {
+                minCount = count + 1;
+            }
+        }
+        counts.put(key, count + 1);
+        buckets.computeIfAbsent(count + 1, c -> new LinkedHashSet<>()).add(key);
+    }
+
+    @Override
+    public K add(K key) {
+        K victim = null;
+        if (counts.size() >= capacity) {
+            LinkedHashSet<K> lowest = buckets.get(minCount);
+            Iterator<K> eldest = lowest.iterator();
+            victim = eldest.next();
+            eldest.remove();
+            if (lowest.isEmpty()) {
+                buckets.remove(minCount);
+            }
+            counts.remove(victim);
+        }
+        counts.put(key, 1);
+        buckets.computeIfAbsent(1, c -> new LinkedHashSet<>()).add(key);
+        minCount = 1;
+        return victim;
+    }
+
+    @Override
+    public void remove(K key) {
+        Integer count = counts.remove(key);
+        if (count == null) {
+            return;
+        }
+        LinkedHashSet<K> bucket = buckets.get(count);
+        bucket.remove(key);
+        if (bucket.isEmpty()) {
+            buckets.remove(count);
+            if (minCount == count) {
+                minCount = buckets.keySet().stream().mapToInt(Integer::intValue).min().orElse(0);
+            }
+        }
+    }
+
+    @Override
+    public void clear() {
+        counts.clear();
+        buckets.clear();
+        minCount = 0;
+    }
+}
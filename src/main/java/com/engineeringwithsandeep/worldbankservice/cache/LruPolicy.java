@@ -0,0 +1,44 @@
+package com.engineeringwithsandeep.worldbankservice.cache;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+
+/**
+ * Least recently used, an access-ordered LinkedHashMap of the cached keys
+ */
+final class LruPolicy<K> implements Policy<K> {
+
+    private final int capacity;
+    private final LinkedHashMap<K, Boolean> order = new LinkedHashMap<>(16, 0.75f, true);
+
+    LruPolicy(int capacity) {
+        this.capacity = capacity;
+    }
+
+    @Override
+    public void recordAccess(K key) {
+        order.get(key);
+    }
+
+    @Override
+    public K add(K key) {
+        order.put(key, Boolean.TRUE);
+        if (order.size() <= capacity) {
+            return null;
+        }
+        Iterator<K> eldest = order.keySet().iterator();
+        K victim = eldest.next();
+        eldest.remove();
+        return victim;
+    }
+
+    @Override
+    public void remove(K key) {
+        order.remove(key);
+    }
+
+    @Override
+    public void clear() {
+        order.clear();
+    }
+}
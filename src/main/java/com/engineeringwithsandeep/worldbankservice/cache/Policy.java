@@ -0,0 +1,27 @@
+package com.engineeringwithsandeep.worldbankservice.cache;
+
+/**
+ * Eviction bookkeeping of one cache segment. Only called with the segment lock held.
+ */
+interface Policy<K> {
+
+    void recordAccess(K key);
+
+    /**
+     * Starts tracking a key that is not cached yet.
+     * @return the key to drop to stay within capacity, which may be the new key itself, or null
+     */
+    K add(K key);
+
+    void remove(K key);
+
+    void clear();
+
+    static <K> Policy<K> create(EvictionPolicy policy, int capacity) {
+        return switch (policy) {
+            case LRU -> new LruPolicy<>(capacity);
+            case LFU -> new LfuPolicy<>(capacity);
+            case TINY_LFU -> new TinyLfuPolicy<>(capacity);
+        };
+    }
+}
@@ -0,0 +1,193 @@
+package com.engineeringwithsandeep.worldbankservice.cache;
+
+import java.util.HashMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Function;
+
+/**
+ * Size-bounded concurrent cache of rendered responses.
+ * Keys are spread over independently locked segments, each with its own HashMap and eviction policy, so readers of
+ * different keys rarely contend. Entries belong to one dataset version: the first request carrying a newer version
+ * empties the cache, and a response computed for an older version is never stored.
+ * Values are computed outside of any lock; two concurrent misses on the same key may both compute it.
+ * @param <K> key type, e.g. ResponseKey
+ * @param <V> cached value, e.g. the response body
+ */
+public final class ResponseCache<K, V> {
+
+    public static final int DEFAULT_SEGMENTS = 16;
+    private static final int MIN_SEGMENT_CAPACITY = 16;
+
+    private static final class Segment<K, V> {
+        private final ReentrantLock lock = new ReentrantLock();
+        private final HashMap<K, V> values = new HashMap<>();
+        private final Policy<K> policy;
+
+        private Segment(Policy<K> policy) {
+            this.policy = policy;
+        }
+    }
+
+    private final int capacity;
+    private final EvictionPolicy policy;
+    private final Segment<K, V>[] segments;
+    private final int mask;
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+    private volatile long version;
+
+    public ResponseCache(int capacity, EvictionPolicy policy) {
+        this(capacity, policy, DEFAULT_SEGMENTS);
+    }
+
+    // A capacity of 0 disables caching, every get computes its value
+    @SuppressWarnings("unchecked")
+    public ResponseCache(int capacity, EvictionPolicy policy, int segments) {
+        this.capacity = Math.max(capacity, 0);
+        this.policy = policy;
+        // small caches get fewer segments, so one hot segment does not evict while the others are empty
+        int count = Integer.highestOneBit(Math.max(1, Math.min(segments, this.capacity / MIN_SEGMENT_CAPACITY)));
+        this.segments = new Segment[count];
+        this.mask = count - 1;
+        int segmentCapacity = (this.capacity + count - 1) / count;
+        for (int i = 0; i < count; i++) {
+            this.segments[i] = new Segment<>(Policy.create(policy, segmentCapacity));
+        }
+    }
+
+    /**
+     * Returns the cached value for the key, or computes, caches and returns it.
+     * @param datasetVersion version of the dataset the caller reads, read before computing the value
+     * @param loader computes the value on a miss; a null value is returned but not cached
+     */
+    public V get(K key, long datasetVersion, Function<? super K, ? extends V> loader) {
+        if (capacity == 0) {
+            misses.increment();
+            return loader.apply(key);
+        }
+        advance(datasetVersion);
+        Segment<K, V> segment = segmentFor(key);
+        V cached = lookup(segment, key);
+        if (cached != null) {
+            return cached;
+        }
+        V value = loader.apply(key);
+        if (value != null) {
+            put(segment, key, value, datasetVersion);
+        }
+        return value;
+    }
+
+    /**
+     * Non-blocking get: a hit is returned as a completed future, a miss chains the put onto the loader's future.
+     * @param loader starts computing the value on a miss; a null result is passed on but not cached
+     */
+    public CompletableFuture<V> getAsync(K key, long datasetVersion,
+                                         Function<? super K, ? extends CompletableFuture<? extends V>> loader) {
+        if (capacity == 0) {
+            misses.increment();
+            return loader.apply(key).thenApply(Function.identity());
+        }
+        advance(datasetVersion);
+        Segment<K, V> segment = segmentFor(key);
+        V cached = lookup(segment, key);
+        if (cached != null) {
+            return CompletableFuture.completedFuture(cached);
+        }
+        return loader.apply(key).thenApply(value -> {
+            if (value != null) {
+                put(segment, key, value, datasetVersion);
+            }
+            return value;
+        });
+    }
+
+    // Counts a hit or a miss, null on a miss
+    private V lookup(Segment<K, V> segment, K key) {
+        segment.lock.lock();
+        try {
+            V value = segment.values.get(key);
+            if (value != null) {
+                segment.policy.recordAccess(key);
+                hits.increment();
+                return value;
+            }
+        } finally {
+            segment.lock.unlock();
+        }
+        misses.increment();
+        return null;
+    }
+
+    private void put(Segment<K, V> segment, K key, V value, long datasetVersion) {
+        segment.lock.lock();
+        try {
+            // checked under the segment lock, so an invalidation running meanwhile either sees this entry or wins
+            if (datasetVersion != version || segment.values.containsKey(key)) {
+                return;
+            }
+            segment.values.put(key, value);
+            K victim = segment.policy.add(key);
+            if (victim != null) {
+                segment.values.remove(victim);
+                evictions.increment();
+            }
+        } finally {
+            segment.lock.unlock();
+        }
+    }
+
+    // Moves the cache to a newer dataset version, dropping everything cached for the old one
+    private void advance(long datasetVersion) {
+        if (datasetVersion <= version) {
+            return;
+        }
+        synchronized (this) {
+            if (datasetVersion > version) {
+                version = datasetVersion;
+                invalidateAll();
+            }
+        }
+    }
+
+    public void invalidateAll() {
+        for (Segment<K, V> segment : segments) {
+            segment.lock.lock();
+            try {
+                segment.values.clear();
+                segment.policy.clear();
+            } finally {
+                segment.lock.unlock();
+            }
+        }
+    }
+
+    public long size() {
+        long size = 0;
+        for (Segment<K, V> segment : segments) {
+            segment.lock.lock();
+            try {
+                size += segment.values.size();
+            } finally {
+                segment.lock.unlock();
+            }
+        }
+        return size;
+    }
+
+    public CacheStats stats() {
+        long hitCount = hits.sum();
+        long missCount = misses.sum();
+        long requests = hitCount + missCount;
+        return new CacheStats(hitCount, missCount, requests == 0 ? 0.0 : (double) hitCount / requests,
+                evictions.sum(), size(), capacity, policy, version);
+    }
+
+    private Segment<K, V> segmentFor(K key) {
+        int hash = key.hashCode();
+        return segments[(hash ^ (hash >>> 16)) & mask];
+    }
+}
@@ -0,0 +1,25 @@
+package com.engineeringwithsandeep.worldbankservice.cache;
+
+import java.util.Locale;
+
+/**
+ * Cache key of a REST response, built from the normalized path variables: codes trimmed and upper-cased
+ * (WDI codes are upper case), the year as a number. The report endpoints use year 0.
+ */
+public record ResponseKey(Kind kind, String countryCode, String indicatorCode, int year) {
+
+    public enum Kind { INFO, REPORT }
+
+    public static ResponseKey info(String countryCode, String indicatorCode, String year) {
+        return new ResponseKey(Kind.INFO, normalize(countryCode), normalize(indicatorCode), Integer.parseInt(year.strip()));
+    }
+
+    public static ResponseKey report(String countryCode, String indicatorCode) {
+        return new ResponseKey(Kind.REPORT, normalize(countryCode), normalize(indicatorCode), 0);
+    }
+
+    // The form every endpoint looks codes up in, cached or not
+    public static String normalize(String code) {
+        return code.strip().toUpperCase(Locale.ROOT);
+    }
+}
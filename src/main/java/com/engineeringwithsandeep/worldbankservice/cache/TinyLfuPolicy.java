@@ -0,0 +1,94 @@
+package com.engineeringwithsandeep.worldbankservice.cache;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+
+/**
+ * W-TinyLFU: new keys enter a small LRU window (1% of the capacity). A key leaving the window is only admitted to
+ * the main area if the frequency sketch rates it above the main area's victim, so a burst of one-off requests can
+ * not flush the popular keys. The main area is a segmented LRU: keys hit again move from probation (20%) to
+ * protected (80%), protected overflow is demoted back to probation.
+ */
+final class TinyLfuPolicy<K> implements Policy<K> {
+
+    private final int windowCapacity;
+    private final int mainCapacity;
+    private final int protectedCapacity;
+    private final LinkedHashMap<K, Boolean> window = new LinkedHashMap<>();
+    private final LinkedHashMap<K, Boolean> probation = new LinkedHashMap<>();
+    private final LinkedHashMap<K, Boolean> protectedKeys = new LinkedHashMap<>();
+    private final FrequencySketch sketch;
+
+    TinyLfuPolicy(int capacity) {
+        windowCapacity = Math.max(1, capacity / 100);
+        mainCapacity = Math.max(0, capacity - windowCapacity);
+        protectedCapacity = mainCapacity * 4 / 5;
+        sketch = new FrequencySketch(capacity);
+    }
+
+    @Override
+    public void recordAccess(K key) {
+        sketch.increment(key);
+        if (window.containsKey(key)) {
+            moveToEnd(window, key);
+        } else if (probation.remove(key) != null) {
+            protectedKeys.put(key, Boolean.TRUE);
+            if (protectedKeys.size() > protectedCapacity) {
+                probation.put(removeEldest(protectedKeys), Boolean.TRUE);
+            }
+        } else if (protectedKeys.containsKey(key)) {
+            moveToEnd(protectedKeys, key);
+        }
+    }
+
+    @Override
+    public K add(K key) {
+        sketch.increment(key);
+        window.put(key, Boolean.TRUE);
+        if (window.size() <= windowCapacity) {
+            return null;
+        }
+        K candidate = removeEldest(window);
+        if (probation.size() + protectedKeys.size() < mainCapacity) {
+            probation.put(candidate, Boolean.TRUE);
+            return null;
+        }
+        LinkedHashMap<K, Boolean> victims = probation.isEmpty() ? protectedKeys : probation;
+        if (victims.isEmpty()) {
+            return candidate;
+        }
+        K victim = victims.keySet().iterator().next();
+        if (sketch.frequency(candidate) <= sketch.frequency(victim)) {
+            return candidate;
+        }
+        victims.remove(victim);
+        probation.put(candidate, Boolean.TRUE);
+        return victim;
+    }
+
+    @Override
+    public void remove(K key) {
+        if (window.remove(key) == null && probation.remove(key) == null) {
+            protectedKeys.remove(key);
+        }
+    }
+
+    @Override
+    public void clear() {
+        window.clear();
+        probation.clear();
+        protectedKeys.clear();
+    }
+
+    private static <K> void moveToEnd(LinkedHashMap<K, Boolean> keys, K key) {
+        keys.remove(key);
+        keys.put(key, Boolean.TRUE);
+    }
+
+    private static <K> K removeEldest(LinkedHashMap<K, Boolean> keys) {
+        Iterator<K> eldest = keys.keySet().iterator();
+        K key = eldest.next();
+        eldest.remove();
+        return key;
+    }
+}
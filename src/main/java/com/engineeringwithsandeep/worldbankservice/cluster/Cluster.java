@@ -0,0 +1,160 @@
+package com.engineeringwithsandeep.worldbankservice.cluster;
+
+import com.engineeringwithsandeep.worldbankservice.store.Shard;
+import lombok.extern.slf4j.Slf4j;
+
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+/**
+ * Nodes of a partitioned deployment and which of them owns a series. Series are spread over the nodes by a
+ * HashRing on their country code (the default) or their indicator code; each node loads only its own Shard and
+ * routes requests for other series to their owner. The layout is static configuration that every node is started
+ * with, there is no coordination service:
+ * <pre>
+ * -Dworldbank.cluster.nodes=n1,n2,n3                       node names, the ring is built from them
+ * -Dworldbank.cluster.node.n1.http=http://10.0.0.1:8080    REST address of a node
+ * -Dworldbank.cluster.node.n1.socket=10.0.0.1:9090         socket server of a node, needed to route text commands
+ * -Dworldbank.cluster.self=n1                              which of the nodes this process is
+ * -Dworldbank.cluster.shard-key=country                    country or indicator
+ * -Dworldbank.cluster.virtual-nodes=128                    ring points per node
+ * </pre>
+ * Without worldbank.cluster.nodes the process is a single standalone node that owns every series.
+ */
+@Slf4j
+public final class Cluster {
+
+    // Marks a request one node sent another: answer it from the local shard, never route it again
+    public static final String LOCAL_HEADER = "X-Worldbank-Shard";
+
+    private static final int DEFAULT_VIRTUAL_NODES = 128;
+
+    public enum ShardKey {
+        COUNTRY, INDICATOR;
+
+        // "country" or "indicator", any case
+        public static ShardKey parse(String key) {
+            return valueOf(key.trim().toUpperCase(Locale.ROOT));
+        }
+    }
+
+    // http or socket is null when the node does not serve that protocol
+    public record Node(String name, URI http, InetSocketAddress socket) {
+    }
+
+    private static final class Current {
+        private static final Cluster CLUSTER = fromProperties();
+    }
+
+    private final List<Node> nodes;
+    private final Map<String, Node> byName;
+    private final Node self;
+    private final ShardKey shardKey;
+    private final HashRing ring;
+    private final Shard shard;
+
+    public Cluster(List<Node> nodes, String self, ShardKey shardKey, int virtualNodes) {
+        this.nodes = List.copyOf(nodes);
+        this.byName = this.nodes.stream().collect(Collectors.toMap(Node::name, node -> node, (a, b) -> {
+            throw new IllegalArgumentException("Duplicate node " + a.name());
+        }));
+        this.self = this.nodes.stream().filter(node -> node.name().equals(self)).findFirst()
+                .orElseThrow(() -> new IllegalArgumentException("Node " + self + " is not one of the cluster nodes"));
+        this.shardKey = shardKey;
+        List<String> names = this.nodes.stream().map(Node::name).toList();
+        this.ring = new HashRing(names, virtualNodes);
+        if (this.nodes.size() == 1) {
+            this.shard = Shard.ALL;
+        } else {
+            // the layout is part of the id, so a changed ring never reads the snapshot of the old one
+            long layout = HashRing.hash(String.join(",", names) + "/" + virtualNodes + "/" + shardKey);
+            this.shard = new Shard(self + "-" + Long.toHexString(layout >>> 32),
+                    (countryCode, indicatorCode) -> owner(countryCode, indicatorCode) == this.self);
+        }
+    }
+
+    // The cluster of this process, read once from the system properties
+    public static Cluster current() {
+        return Current.CLUSTER;
+    }
+
+    // One node owning every series, what a process without cluster properties is
+    public static Cluster standalone() {
+        return new Cluster(List.of(new Node("local", null, null)), "local", ShardKey.COUNTRY, 1);
+    }
+
+    public static Cluster fromProperties() {
+        String names = System.getProperty("worldbank.cluster.nodes", "");
+        if (names.isBlank()) {
+            return standalone();
+        }
+        List<Node> nodes = new ArrayList<>();
+        for (String name : names.split(",")) {
+            name = name.strip();
+            if (name.isEmpty()) {
+                continue;
+            }
+            String http = System.getProperty("worldbank.cluster.node." + name + ".http");
+            String socket = System.getProperty("worldbank.cluster.node." + name + ".socket");
+            nodes.add(new Node(name, http == null ? null : URI.create(http), socket == null ? null : address(socket)));
+        }
+        String self = System.getProperty("worldbank.cluster.self");
+        if (self == null) {
+            throw new IllegalStateException("-Dworldbank.cluster.self must name one of " + names);
+        }
+        Cluster cluster = new Cluster(nodes, self.strip(),
+                ShardKey.parse(System.getProperty("worldbank.cluster.shard-key", "country")),
+                Integer.getInteger("worldbank.cluster.virtual-nodes", DEFAULT_VIRTUAL_NODES));
+        log.info("Node {} of {}, series sharded by {}", self, cluster.ring.nodes(),
+                cluster.shardKey.name().toLowerCase(Locale.ROOT));
+        return cluster;
+    }
+
+    // host:port
+    private static InetSocketAddress address(String hostPort) {
+        int colon = hostPort.lastIndexOf(':');
+        return InetSocketAddress.createUnresolved(hostPort.substring(0, colon).strip(),
+                Integer.parseInt(hostPort.substring(colon + 1).strip()));
+    }
+
+    // More than one node, i.e. some series live elsewhere
+    public boolean partitioned() {
+        return nodes.size() > 1;
+    }
+
+    public List<Node> nodes() {
+        return nodes;
+    }
+
+    public Node self() {
+        return self;
+    }
+
+    public ShardKey shardKey() {
+        return shardKey;
+    }
+
+    // The series this node keeps, Shard.ALL for a standalone node
+    public Shard shard() {
+        return shard;
+    }
+
+    // Node holding the series; codes in their stored, upper case form
+    public Node owner(String countryCode, String indicatorCode) {
+        return ownerOf(shardKey == ShardKey.COUNTRY ? countryCode : indicatorCode);
+    }
+
+    // Node owning a shard key, e.g. every series of an indicator when the cluster is sharded by indicator
+    public Node ownerOf(String key) {
+        return byName.get(ring.owner(key));
+    }
+
+    public boolean isSelf(Node node) {
+        return node == self;
+    }
+}
@@ -0,0 +1,76 @@
+package com.engineeringwithsandeep.worldbankservice.cluster;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.IntStream;
+
+/**
+ * Consistent hash ring over node names. Every node is placed on a 64-bit ring at virtualNodes points, and a key
+ * belongs to the node of the first point at or after the key's hash, wrapping around. Adding or removing a node
+ * only moves the keys of its own arcs, about 1/nodes of them; more virtual nodes even out the arcs.
+ * Points are kept as a sorted long[] with a parallel owner array, so a lookup is one binary search.
+ */
+public final class HashRing {
+
+    private static final long FNV_OFFSET = 0xcbf29ce484222325L;
+    private static final long FNV_PRIME = 0x100000001b3L;
+
+    private final List<String> nodes;
+    private final long[] points;
+    private final String[] owners;
+
+    public HashRing(List<String> nodes, int virtualNodes) {
+        if (nodes.isEmpty() || virtualNodes < 1) {
+            throw new IllegalArgumentException("A ring needs at least one node and one virtual node per node");
+        }
+        this.nodes = List.copyOf(nodes);
+        int size = nodes.size() * virtualNodes;
+        long[] hashes = new long[size];
+        for (int n = 0; n < nodes.size(); n++) {
+            for (int v = 0; v < virtualNodes; v++) {
+                hashes[n * virtualNodes + v] = hash(nodes.get(n) + "#" + v);
+            }
+        }
+        // sorted by point, ties broken by node name so every process builds the same ring
+        Integer[] order = IntStream.range(0, size).boxed().toArray(Integer[]::new);
+        Arrays.sort(order, Comparator.<Integer>comparingLong(i -> hashes[i])
+                .thenComparing(i -> nodes.get(i / virtualNodes)));
+        this.points = new long[size];
+        this.owners = new String[size];
+        for (int i = 0; i < size; i++) {
+            points[i] = hashes[order[i]];
+            owners[i] = nodes.get(order[i] / virtualNodes);
+        }
+    }
+
+    public List<String> nodes() {
+        return nodes;
+    }
+
+    public String owner(String key) {
+        int index = Arrays.binarySearch(points, hash(key));
+        if (index < 0) {
+            index = -index - 1;
+        }
+        return owners[index == points.length ? 0 : index];
+    }
+
+    /**
+     * 64-bit FNV-1a of the UTF-8 bytes, finished with the murmur3 mix so that codes differing in one character
+     * land far apart on the ring.
+     */
+    static long hash(String key) {
+        long hash = FNV_OFFSET;
+        for (byte b : key.getBytes(StandardCharsets.UTF_8)) {
+            hash = (hash ^ (b & 0xff)) * FNV_PRIME;
+        }
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        hash *= 0xc4ceb9fe1a85ec53L;
+        hash ^= hash >>> 33;
+        return hash;
+    }
+}
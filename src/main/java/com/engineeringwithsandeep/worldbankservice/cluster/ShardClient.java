@@ -0,0 +1,139 @@
+package com.engineeringwithsandeep.worldbankservice.cluster;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Sends requests to other nodes of the cluster: REST calls over one shared HttpClient, text commands over pooled
+ * socket connections. Every call completes asynchronously, so a node waiting on another never holds a request
+ * thread or an event loop. Calls are marked local (Cluster.LOCAL_HEADER, a leading '@' on a text command), so the
+ * receiving node answers from its own shard instead of routing the request again.
+ * -Dworldbank.cluster.timeout-ms (5000) bounds every call.
+ */
+@Slf4j
+public final class ShardClient implements Closeable {
+
+    private static final Duration TIMEOUT = Duration.ofMillis(Long.getLong("worldbank.cluster.timeout-ms", 5000));
+
+    private final HttpClient http = HttpClient.newBuilder().connectTimeout(TIMEOUT).build();
+    // socket exchanges block, a virtual thread each keeps them off the caller's thread
+    private final ExecutorService socketExecutor = Executors.newVirtualThreadPerTaskExecutor();
+    private final Map<InetSocketAddress, Queue<Connection>> idle = new ConcurrentHashMap<>();
+
+    // A GET of pathAndQuery (e.g. /wdi/rank/SP.POP.TOTL/2020?n=5) on the node, answered from its shard
+    public CompletableFuture<HttpResponse<String>> get(Cluster.Node node, String pathAndQuery) {
+        if (node.http() == null) {
+            return CompletableFuture.failedFuture(
+                    new IOException("No -Dworldbank.cluster.node." + node.name() + ".http configured"));
+        }
+        HttpRequest request = HttpRequest.newBuilder(node.http().resolve(pathAndQuery))
+                .timeout(TIMEOUT)
+                .header(Cluster.LOCAL_HEADER, node.name())
+                .GET()
+                .build();
+        return http.sendAsync(request, HttpResponse.BodyHandlers.ofString(StandardCharsets.UTF_8));
+    }
+
+    // One text command line on the node's socket server, its one line reply
+    public CompletableFuture<String> send(Cluster.Node node, String line) {
+        if (node.socket() == null) {
+            return CompletableFuture.failedFuture(
+                    new IOException("No -Dworldbank.cluster.node." + node.name() + ".socket configured"));
+        }
+        return CompletableFuture.supplyAsync(() -> {
+            try {
+                return exchange(node.socket(), "@" + line);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }, socketExecutor);
+    }
+
+    // A pooled connection may have been closed by the peer meanwhile, so a failed exchange is tried once more fresh
+    private String exchange(InetSocketAddress address, String line) throws IOException {
+        Queue<Connection> pool = idle.computeIfAbsent(address, key -> new ConcurrentLinkedQueue<>());
+        Connection pooled = pool.poll();
+        if (pooled != null) {
+            try {
+                String reply = pooled.exchange(line);
+                pool.add(pooled);
+                return reply;
+            } catch (SocketTimeoutException e) {
+                pooled.close();  // the node is slow rather than gone, a second try would only double the wait
+                throw e;
+            } catch (IOException e) {
+                pooled.close();
+            }
+        }
+        Connection connection = new Connection(address);
+        try {
+            String reply = connection.exchange(line);
+            pool.add(connection);
+            return reply;
+        } catch (IOException e) {
+            connection.close();
+            throw e;
+        }
+    }
+
+    @Override
+    public void close() {
+        socketExecutor.shutdownNow();
+        idle.values().forEach(pool -> pool.forEach(Connection::close));
+        idle.clear();
+    }
+
+    private static final class Connection {
+        private final Socket socket;
+        private final OutputStream out;
+        private final BufferedReader in;
+
+        Connection(InetSocketAddress address) throws IOException {
+            socket = new Socket();
+            socket.connect(new InetSocketAddress(address.getHostString(), address.getPort()), (int) TIMEOUT.toMillis());
+            socket.setSoTimeout((int) TIMEOUT.toMillis());
+            socket.setTcpNoDelay(true);
+            out = socket.getOutputStream();
+            in = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+        }
+
+        String exchange(String line) throws IOException {
+            out.write((line + "\n").getBytes(StandardCharsets.UTF_8));
+            out.flush();
+            String reply = in.readLine();
+            if (reply == null) {
+                throw new IOException("Connection closed by " + socket.getRemoteSocketAddress());
+            }
+            return reply;
+        }
+
+        void close() {
+            try {
+                socket.close();
+            } catch (IOException e) {
+                log.debug("Error closing shard connection: {}", e.getMessage());
+            }
+        }
+    }
+}
@@ -0,0 +1,116 @@
+package com.engineeringwithsandeep.worldbankservice.cluster;
+
+import com.engineeringwithsandeep.worldbankservice.store.AggregationEngine;
+import com.engineeringwithsandeep.worldbankservice.store.Ranking;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Gather side of the scatter-gather queries of a cluster sharded by country: every shard answers over its own
+ * countries and the partial answers are merged here into the answer a single node would give.
+ * A shard's top n holds every country of the global top n it owns, so merging the shards' top n is exact.
+ * Aggregates by country merge by concatenation; aggregates by year merge count, sum, min and max, and the mean
+ * follows from them. Weighted means and percentiles of a year need every country's values and do not merge, so they
+ * are left out of every year group, also of a year only one shard had values for.
+ */
+public final class ShardMerge {
+
+    private ShardMerge() {
+    }
+
+    // The best n of the shards' rankings, ties broken by country code; null when no shard knows the indicator
+    public static Ranking rankings(List<Ranking> shards, int n, Ranking.Order order) {
+        if (shards.isEmpty()) {
+            return null;
+        }
+        Comparator<Ranking.Entry> byValue = Comparator.comparingDouble(Ranking.Entry::value);
+        Comparator<Ranking.Entry> rankOrder = (order == Ranking.Order.TOP ? byValue.reversed() : byValue)
+                .thenComparing(Ranking.Entry::countryCode);
+        List<Ranking.Entry> merged = shards.stream()
+                .flatMap(ranking -> ranking.entries().stream())
+                .sorted(rankOrder)
+                .limit(n)
+                .toList();
+        List<Ranking.Entry> entries = new ArrayList<>(merged.size());
+        for (Ranking.Entry entry : merged) {
+            entries.add(new Ranking.Entry(entries.size() + 1, entry.countryCode(), entry.countryName(), entry.value()));
+        }
+        Ranking first = shards.get(0);
+        return new Ranking(first.indicatorCode(), first.year(), order, List.copyOf(entries));
+    }
+
+    /**
+     * Text protocol form of rankings: the shards' "code,value;code,value" replies merged into one.
+     * "error" when every shard answered it (unknown indicator), any other non-ranking reply is passed on.
+     */
+    public static String rankingText(List<String> replies, int n, Ranking.Order order) {
+        List<Ranking.Entry> entries = new ArrayList<>();
+        int unknown = 0;
+        for (String reply : replies) {
+            if ("error".equals(reply)) {
+                unknown++;
+                continue;
+            }
+            if (reply.startsWith("Error") || reply.startsWith("Wrong")) {
+                return reply;
+            }
+            for (String pair : reply.isEmpty() ? new String[0] : reply.split(";")) {
+                int comma = pair.lastIndexOf(',');
+                entries.add(new Ranking.Entry(0, pair.substring(0, comma), null,
+                        Double.parseDouble(pair.substring(comma + 1))));
+            }
+        }
+        if (unknown == replies.size()) {
+            return "error";
+        }
+        return rankings(List.of(new Ranking(null, 0, order, entries)), n, order).toText();
+    }
+
+    // The shards' reports of one indicator as one, null when no shard knows the indicator
+    public static AggregationEngine.Report reports(List<AggregationEngine.Report> shards) {
+        if (shards.isEmpty()) {
+            return null;
+        }
+        AggregationEngine.Report first = shards.get(0);
+        if (first.groupBy() == AggregationEngine.GroupBy.COUNTRY) {
+            return new AggregationEngine.Report(first.indicatorCode(), first.groupBy(), first.weightIndicatorCode(),
+                    first.percentiles(), byCountry(shards));
+        }
+        return new AggregationEngine.Report(first.indicatorCode(), first.groupBy(), null, new double[0], byYear(shards));
+    }
+
+    // Every country is on exactly one shard, so its group is taken as is
+    private static List<AggregationEngine.Group> byCountry(List<AggregationEngine.Report> shards) {
+        return shards.stream()
+                .flatMap(report -> report.groups().stream())
+                .sorted(Comparator.comparing(AggregationEngine.Group::key))
+                .toList();
+    }
+
+    private static List<AggregationEngine.Group> byYear(List<AggregationEngine.Report> shards) {
+        Map<Integer, AggregationEngine.Group> years = new TreeMap<>();
+        for (AggregationEngine.Report report : shards) {
+            for (AggregationEngine.Group group : report.groups()) {
+                years.merge(Integer.parseInt(group.key()), countsOnly(group), ShardMerge::merge);
+            }
+        }
+        return List.copyOf(years.values());
+    }
+
+    // A shard's year group without the weighted mean and percentiles, which only hold for that shard's countries
+    private static AggregationEngine.Group countsOnly(AggregationEngine.Group group) {
+        return new AggregationEngine.Group(group.key(), group.count(), group.sum(), group.mean(), group.min(),
+                group.max(), null, new double[0]);
+    }
+
+    private static AggregationEngine.Group merge(AggregationEngine.Group a, AggregationEngine.Group b) {
+        long count = a.count() + b.count();
+        double sum = a.sum() + b.sum();
+        return new AggregationEngine.Group(a.key(), count, sum, sum / count, Math.min(a.min(), b.min()),
+                Math.max(a.max(), b.max()), null, new double[0]);
+    }
+}
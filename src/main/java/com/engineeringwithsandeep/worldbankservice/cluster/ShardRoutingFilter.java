@@ -0,0 +1,309 @@
+package com.engineeringwithsandeep.worldbankservice.cluster;
+
+import com.engineeringwithsandeep.worldbankservice.cache.ResponseKey;
+import com.engineeringwithsandeep.worldbankservice.store.AggregationEngine;
+import com.engineeringwithsandeep.worldbankservice.store.Ranking;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.servlet.AsyncContext;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+import java.net.URLDecoder;
+import java.net.URLEncoder;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.function.Function;
+
+/**
+ * REST side of a partitioned deployment (see Cluster), in front of the /wdi and /wdi/async controllers.
+ * A series request (info, report, range) for a series another node owns is forwarded to that node. A ranking or an
+ * aggregate over a cluster sharded by country is scattered to every node owning one of the countries, each answers
+ * from its own shard, and the answers are merged by ShardMerge; sharded by indicator, it goes to the indicator's
+ * owner. Requests for local series, other endpoints and requests from other nodes pass through untouched.
+ * Remote calls run on servlet async, so no request thread waits on another node.
+ */
+@Slf4j
+@Component
+public class ShardRoutingFilter extends OncePerRequestFilter {
+
+    private final Cluster cluster;
+    private final ShardClient client = new ShardClient();
+    private final ObjectMapper json;
+
+    public ShardRoutingFilter(ObjectMapper json) {
+        this.cluster = Cluster.current();
+        this.json = json;
+    }
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        return !cluster.partitioned() || request.getHeader(Cluster.LOCAL_HEADER) != null
+                || !"GET".equals(request.getMethod());
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        String[] path = path(request);
+        int at = path.length > 1 && "async".equals(path[1]) ? 2 : 1;  // after /wdi or /wdi/async
+        if (path.length <= at || !"wdi".equals(path[0])) {
+            chain.doFilter(request, response);
+            return;
+        }
+        String operation = path[at];
+        String[] args = Arrays.copyOfRange(path, at + 1, path.length);
+        switch (operation) {
+            case "info", "report", "range" -> {
+                if (args.length < 2) {
+                    chain.doFilter(request, response);
+                    return;
+                }
+                route(cluster.owner(ResponseKey.normalize(args[0]), ResponseKey.normalize(args[1])),
+                        request, response, chain);
+            }
+            case "rank" -> {
+                if (args.length < 1) {
+                    chain.doFilter(request, response);
+                } else if (cluster.shardKey() == Cluster.ShardKey.INDICATOR) {
+                    route(cluster.ownerOf(ResponseKey.normalize(args[0])), request, response, chain);
+                } else {
+                    int n = intParameter(request, "n", 20);
+                    Ranking.Order order = order(request);
+                    scatter(request, cluster.nodes(), Ranking.class, rankings -> ShardMerge.rankings(rankings, n, order));
+                }
+            }
+            case "aggregate" -> {
+                if (args.length < 1) {
+                    chain.doFilter(request, response);
+                } else {
+                    aggregate(ResponseKey.normalize(args[0]), request, response, chain);
+                }
+            }
+            default -> chain.doFilter(request, response);
+        }
+    }
+
+    private void route(Cluster.Node owner, HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        if (cluster.isSelf(owner)) {
+            chain.doFilter(request, response);
+            return;
+        }
+        AsyncContext async = request.startAsync();
+        client.get(owner, pathAndQuery(request)).whenComplete((reply, error) -> {
+            if (error != null) {
+                unavailable(async, owner, error);
+            } else {
+                write(async, reply.statusCode(), reply.headers().firstValue("Content-Type").orElse(null), reply.body());
+            }
+        });
+    }
+
+    private void aggregate(String indicator, HttpServletRequest request, HttpServletResponse response,
+                           FilterChain chain) throws ServletException, IOException {
+        String weight = request.getParameter("weight");
+        if (cluster.shardKey() == Cluster.ShardKey.INDICATOR) {
+            Cluster.Node owner = cluster.ownerOf(indicator);
+            if (weight != null && owner != cluster.ownerOf(ResponseKey.normalize(weight))) {
+                badRequest(response, "Weight indicator " + weight + " is not on the node of " + indicator);
+                return;
+            }
+            route(owner, request, response, chain);
+            return;
+        }
+        String groupBy = request.getParameter("groupBy");
+        boolean byYear = groupBy == null || "year".equalsIgnoreCase(groupBy.strip());
+        if (byYear && (weight != null || request.getParameter("percentiles") != null)) {
+            badRequest(response, "Weighted means and percentiles by year need every country's values, "
+                    + "which a cluster sharded by country does not have in one place; group by country instead");
+            return;
+        }
+        // with a country selection each node only gets, and is only asked for, the countries it owns
+        List<String> countries = countries(request);
+        if (countries == null) {
+            scatter(request, cluster.nodes(), AggregationEngine.Report.class, ShardMerge::reports);
+            return;
+        }
+        Map<Cluster.Node, List<String>> byOwner = new LinkedHashMap<>();
+        for (String country : countries) {
+            byOwner.computeIfAbsent(cluster.ownerOf(country), node -> new ArrayList<>()).add(country);
+        }
+        scatter(request, List.copyOf(byOwner.keySet()), node -> pathAndQuery(request, "countries",
+                String.join(",", byOwner.get(node))), AggregationEngine.Report.class, ShardMerge::reports);
+    }
+
+    private <T> void scatter(HttpServletRequest request, List<Cluster.Node> nodes, Class<T> type,
+                             Function<List<T>, T> merge) {
+        String pathAndQuery = pathAndQuery(request);
+        scatter(request, nodes, node -> pathAndQuery, type, merge);
+    }
+
+    /**
+     * Sends the request to every node and merges the 200 answers. Any other answer but 404 (an indicator a shard
+     * does not have) is passed on as it is, and a node that does not answer fails the whole request with 502.
+     */
+    private <T> void scatter(HttpServletRequest request, List<Cluster.Node> nodes,
+                             Function<Cluster.Node, String> pathAndQuery, Class<T> type, Function<List<T>, T> merge) {
+        String uri = request.getRequestURI();
+        AsyncContext async = request.startAsync();
+        List<CompletableFuture<HttpResponse<String>>> replies = new ArrayList<>(nodes.size());
+        for (Cluster.Node node : nodes) {
+            replies.add(client.get(node, pathAndQuery.apply(node)).exceptionally(error -> {
+                throw new CompletionException(new ShardUnavailableException(node, error));
+            }));
+        }
+        CompletableFuture.allOf(replies.toArray(CompletableFuture[]::new)).whenComplete((ignored, error) -> {
+            if (error != null) {
+                ShardUnavailableException unavailable = (ShardUnavailableException) unwrap(error);
+                unavailable(async, unavailable.node, unavailable.getCause());
+                return;
+            }
+            try {
+                List<T> answers = new ArrayList<>(nodes.size());
+                for (CompletableFuture<HttpResponse<String>> future : replies) {
+                    HttpResponse<String> reply = future.join();
+                    if (reply.statusCode() == HttpStatus.OK.value()) {
+                        answers.add(json.readValue(reply.body(), type));
+                    } else if (reply.statusCode() != HttpStatus.NOT_FOUND.value()) {
+                        write(async, reply.statusCode(), reply.headers().firstValue("Content-Type").orElse(null),
+                                reply.body());
+                        return;
+                    }
+                }
+                T merged = merge.apply(answers);
+                if (merged == null) {
+                    write(async, HttpStatus.NOT_FOUND.value(), null, "");
+                } else {
+                    write(async, HttpStatus.OK.value(), MediaType.APPLICATION_JSON_VALUE, json.writeValueAsString(merged));
+                }
+            } catch (IOException | RuntimeException e) {
+                log.warn("Could not merge the shards' answers to {}: {}", uri, e.toString());
+                write(async, HttpStatus.BAD_GATEWAY.value(), MediaType.TEXT_PLAIN_VALUE,
+                        "Could not merge the shards' answers: " + e.getMessage());
+            }
+        });
+    }
+
+    private static final class ShardUnavailableException extends RuntimeException {
+        private final transient Cluster.Node node;
+
+        ShardUnavailableException(Cluster.Node node, Throwable cause) {
+            super(unwrap(cause));
+            this.node = node;
+        }
+    }
+
+    private static Throwable unwrap(Throwable error) {
+        while (error instanceof CompletionException && error.getCause() != null) {
+            error = error.getCause();
+        }
+        return error;
+    }
+
+    private void unavailable(AsyncContext async, Cluster.Node node, Throwable error) {
+        Throwable cause = unwrap(error);
+        log.warn("Node {} did not answer: {}", node.name(), cause.toString());
+        write(async, HttpStatus.BAD_GATEWAY.value(), MediaType.TEXT_PLAIN_VALUE,
+                "Node " + node.name() + " is unavailable: " + cause.getMessage());
+    }
+
+    private static void write(AsyncContext async, int status, String contentType, String body) {
+        try {
+            HttpServletResponse response = (HttpServletResponse) async.getResponse();
+            response.setStatus(status);
+            if (contentType != null) {
+                response.setContentType(contentType);
+            }
+            byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+            response.setContentLength(bytes.length);
+            response.getOutputStream().write(bytes);
+        } catch (IOException e) {
+            log.debug("Client went away before the routed answer: {}", e.getMessage());
+        } finally {
+            async.complete();
+        }
+    }
+
+    private static void badRequest(HttpServletResponse response, String message) throws IOException {
+        response.setStatus(HttpStatus.BAD_REQUEST.value());
+        response.setContentType(MediaType.TEXT_PLAIN_VALUE);
+        response.getWriter().write(message);
+    }
+
+    // An invalid value falls back to the default, the shards answer it with their 400 before anything is merged
+    private static int intParameter(HttpServletRequest request, String name, int defaultValue) {
+        try {
+            String value = request.getParameter(name);
+            return value == null ? defaultValue : Integer.parseInt(value.strip());
+        } catch (NumberFormatException e) {
+            return defaultValue;
+        }
+    }
+
+    private static Ranking.Order order(HttpServletRequest request) {
+        try {
+            String order = request.getParameter("order");
+            return order == null ? Ranking.Order.TOP : Ranking.Order.parse(order);
+        } catch (IllegalArgumentException e) {
+            return Ranking.Order.TOP;
+        }
+    }
+
+    // Decoded path segments after the context path, e.g. [wdi, info, IND, SP.POP.TOTL, 2020]
+    private static String[] path(HttpServletRequest request) {
+        String path = request.getRequestURI().substring(request.getContextPath().length());
+        String[] segments = (path.startsWith("/") ? path.substring(1) : path).split("/");
+        for (int i = 0; i < segments.length; i++) {
+            segments[i] = URLDecoder.decode(segments[i], StandardCharsets.UTF_8);
+        }
+        return segments;
+    }
+
+    private static String pathAndQuery(HttpServletRequest request) {
+        String query = request.getQueryString();
+        return request.getRequestURI() + (query == null ? "" : "?" + query);
+    }
+
+    // The request's path and parameters with one parameter replaced
+    private static String pathAndQuery(HttpServletRequest request, String name, String value) {
+        StringBuilder query = new StringBuilder();
+        for (Map.Entry<String, String[]> parameter : request.getParameterMap().entrySet()) {
+            String[] values = parameter.getKey().equals(name) ? new String[]{value} : parameter.getValue();
+            for (String v : values) {
+                query.append(query.isEmpty() ? '?' : '&')
+                        .append(URLEncoder.encode(parameter.getKey(), StandardCharsets.UTF_8)).append('=')
+                        .append(URLEncoder.encode(v, StandardCharsets.UTF_8));
+            }
+        }
+        return request.getRequestURI() + query;
+    }
+
+    // countries=IND,CHN or countries=IND&countries=CHN, normalized; null when every country is selected
+    private static List<String> countries(HttpServletRequest request) {
+        String[] values = request.getParameterValues("countries");
+        if (values == null) {
+            return null;
+        }
+        List<String> countries = Arrays.stream(values)
+                .flatMap(value -> Arrays.stream(value.split(",")))
+                .filter(code -> !code.isBlank())
+                .map(ResponseKey::normalize)
+                .toList();
+        return countries.isEmpty() ? null : countries;
+    }
+}
@@ -1,103 +1,379 @@
 package com.engineeringwithsandeep.worldbankservice.concurrent;
 
-import com.opencsv.CSVReader;
-import com.opencsv.exceptions.CsvValidationException;
+import com.engineeringwithsandeep.worldbankservice.cache.CacheStats;
+import com.engineeringwithsandeep.worldbankservice.cache.EvictionPolicy;
+import com.engineeringwithsandeep.worldbankservice.cache.ResponseCache;
+import com.engineeringwithsandeep.worldbankservice.cache.ResponseKey;
+import com.engineeringwithsandeep.worldbankservice.cluster.Cluster;
+import com.engineeringwithsandeep.worldbankservice.metrics.WorldBankMetrics;
+import com.engineeringwithsandeep.worldbankservice.store.AggregationEngine;
+import com.engineeringwithsandeep.worldbankservice.store.ColumnarStore;
+import com.engineeringwithsandeep.worldbankservice.store.DatasetHolder;
+import com.engineeringwithsandeep.worldbankservice.store.DatasetRegistry;
+import com.engineeringwithsandeep.worldbankservice.store.Ranking;
+import com.engineeringwithsandeep.worldbankservice.store.SeriesExporter;
+import com.engineeringwithsandeep.worldbankservice.store.SeriesStats;
+import com.engineeringwithsandeep.worldbankservice.store.SeriesTable;
+import com.engineeringwithsandeep.worldbankservice.store.YearRange;
+import io.micrometer.core.instrument.Timer;
 import lombok.AllArgsConstructor;
-import lombok.Data;
-import lombok.NoArgsConstructor;
+import lombok.Getter;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.core.task.SimpleAsyncTaskExecutor;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
-import org.springframework.scheduling.annotation.Async;
-import org.springframework.scheduling.annotation.AsyncResult;
 import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
 import org.springframework.stereotype.Component;
 import org.springframework.stereotype.Service;
+import org.springframework.web.bind.annotation.ExceptionHandler;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
-import java.io.FileReader;
+import java.io.BufferedWriter;
 import java.io.IOException;
-import java.util.HashMap;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
 import java.util.OptionalDouble;
 import java.util.concurrent.*;
-
-import static com.engineeringwithsandeep.worldbankservice.concurrent.WDIConcurrentDao.database;
-
+import java.util.function.Function;
 
 @RestController
 @RequestMapping("/wdi/async")
-@AllArgsConstructor
 public class WorldBankConcurrentServer {
 
     private final WorldBankConcurrentServiceImpl worldBankService;
+    private static final int MAX_RANKING = 1000;  // more than the countries and aggregates in a WDI release
+    private static final int EXPORT_BUFFER = 64 * 1024;  // chars buffered before a chunk goes out
 
-    @GetMapping("/info/{countryCode}/{indicatorCode}/{year}")
-    public ResponseEntity<String> getCountryInfo(@PathVariable String countryCode,
-                                                 @PathVariable String indicatorCode,
-                                                 @PathVariable String year) {
+    // Rendered responses of the popular series, one cache per dataset since each follows its own dataset version
+    private final Map<String, ResponseCache<ResponseKey, String>> caches = new ConcurrentHashMap<>();
+    private final int cacheCapacity;
+    private final EvictionPolicy cachePolicy;
 
+    public WorldBankConcurrentServer(WorldBankConcurrentServiceImpl worldBankService,
+                                     @Value("${worldbank.cache.capacity:10000}") int cacheCapacity,
+                                     @Value("${worldbank.cache.policy:TINY_LFU}") EvictionPolicy cachePolicy) {
+        this.worldBankService = worldBankService;
+        this.cacheCapacity = cacheCapacity;
+        this.cachePolicy = cachePolicy;
+    }
 
-        String response = worldBankService.getCountryInfo(countryCode, indicatorCode, Integer.parseInt(year));
-        return ResponseEntity.ok(response);
+    // The handlers return futures: the Tomcat thread is released at once and the response is written when they complete.
+    // Every endpoint takes ?dataset=name, the default dataset (wdi) when it is left out
+    @GetMapping("/info/{countryCode}/{indicatorCode}/{year}")
+    public CompletableFuture<ResponseEntity<String>> getCountryInfo(@PathVariable String countryCode,
+                                                                    @PathVariable String indicatorCode,
+                                                                    @PathVariable String year,
+                                                                    @RequestParam(required = false) String dataset) {
+        return cache(dataset).getAsync(ResponseKey.info(countryCode, indicatorCode, year),
+                        worldBankService.datasetVersion(dataset),
+                        key -> worldBankService.getCountryInfo(dataset, key.countryCode(), key.indicatorCode(), key.year()))
+                .thenApply(WorldBankConcurrentServer::okOrNotFound);
     }
 
     @GetMapping("/report/{countryCode}/{indicatorCode}/")
-    public ResponseEntity<String> getCountryReport(@PathVariable String countryCode,
-                                                   @PathVariable String indicatorCode) {
-        String response = worldBankService.getCountryReport(countryCode, indicatorCode);
-        return ResponseEntity.ok(response);
+    public CompletableFuture<ResponseEntity<String>> getCountryReport(@PathVariable String countryCode,
+                                                                      @PathVariable String indicatorCode,
+                                                                      @RequestParam(required = false) String dataset) {
+        return cache(dataset).getAsync(ResponseKey.report(countryCode, indicatorCode),
+                        worldBankService.datasetVersion(dataset),
+                        key -> worldBankService.getCountryReport(dataset, key.countryCode(), key.indicatorCode()))
+                .thenApply(WorldBankConcurrentServer::okOrNotFound);
+    }
+
+    // Only found series reach the cache; a failed lookup completes the future exceptionally and is answered with 500
+    private static ResponseEntity<String> okOrNotFound(String response) {
+        return response == null ? ResponseEntity.notFound().build() : ResponseEntity.ok(response);
+    }
+
+    // Resolves the name first, so an unknown dataset never gets a cache
+    private ResponseCache<ResponseKey, String> cache(String dataset) {
+        return caches.computeIfAbsent(worldBankService.datasetName(dataset),
+                name -> new ResponseCache<>(cacheCapacity, cachePolicy));
+    }
+
+    // One request for a whole chart: the years from..to of one series as a single JSON array
+    @GetMapping("/range/{countryCode}/{indicatorCode}/{from}/{to}")
+    public CompletableFuture<ResponseEntity<String>> getCountryRange(@PathVariable String countryCode,
+                                                                     @PathVariable String indicatorCode,
+                                                                     @PathVariable int from,
+                                                                     @PathVariable int to,
+                                                                     @RequestParam(required = false) String dataset) {
+        if (from > to) {
+            return CompletableFuture.completedFuture(ResponseEntity.badRequest().body("from must not be after to"));
+        }
+        return worldBankService.getCountryRange(dataset, ResponseKey.normalize(countryCode), ResponseKey.normalize(indicatorCode),
+                from, to).thenApply(response -> response == null
+                ? ResponseEntity.notFound().build()
+                : ResponseEntity.ok().contentType(MediaType.APPLICATION_JSON).body(response));
+    }
+
+    // Top or bottom n countries of an indicator in one year, e.g. /rank/NY.GDP.PCAP.CD/2022?n=20&order=top
+    @GetMapping("/rank/{indicatorCode}/{year}")
+    public CompletableFuture<ResponseEntity<?>> getRanking(@PathVariable String indicatorCode,
+                                                           @PathVariable int year,
+                                                           @RequestParam(defaultValue = "20") int n,
+                                                           @RequestParam(defaultValue = "top") String order,
+                                                           @RequestParam(required = false) String dataset) {
+        if (n < 1 || n > MAX_RANKING) {
+            return CompletableFuture.completedFuture(
+                    ResponseEntity.badRequest().body("n must be between 1 and " + MAX_RANKING));
+        }
+        Ranking.Order rankingOrder;
+        try {
+            rankingOrder = Ranking.Order.parse(order);
+        } catch (IllegalArgumentException e) {
+            return CompletableFuture.completedFuture(ResponseEntity.badRequest().body("order must be top or bottom"));
+        }
+        return worldBankService.getRanking(dataset, ResponseKey.normalize(indicatorCode), year, n, rankingOrder)
+                .thenApply(ranking -> ranking == null ? ResponseEntity.notFound().build() : ResponseEntity.ok(ranking));
+    }
+
+    /**
+     * Aggregates of an indicator grouped by year or by country, e.g.
+     * /aggregate/NY.GDP.PCAP.CD?groupBy=year&countries=IND,CHN&weight=SP.POP.TOTL&percentiles=50,90
+     */
+    @GetMapping("/aggregate/{indicatorCode}")
+    public CompletableFuture<ResponseEntity<?>> getAggregate(@PathVariable String indicatorCode,
+                                                             @RequestParam(defaultValue = "year") String groupBy,
+                                                             @RequestParam(required = false) List<String> countries,
+                                                             @RequestParam(defaultValue = "" + Integer.MIN_VALUE) int from,
+                                                             @RequestParam(defaultValue = "" + Integer.MAX_VALUE) int to,
+                                                             @RequestParam(required = false) String weight,
+                                                             @RequestParam(required = false) double[] percentiles,
+                                                             @RequestParam(required = false) String dataset) {
+        AggregationEngine.GroupBy grouping;
+        try {
+            grouping = AggregationEngine.GroupBy.parse(groupBy);
+        } catch (IllegalArgumentException e) {
+            return CompletableFuture.completedFuture(ResponseEntity.badRequest().body(e.getMessage()));
+        }
+        return worldBankService.getAggregate(dataset, ResponseKey.normalize(indicatorCode), grouping,
+                        countries == null ? null : countries.stream().map(ResponseKey::normalize).toList(),
+                        from, to, weight == null ? null : ResponseKey.normalize(weight), percentiles)
+                .handle((report, failure) -> {
+                    if (failure != null) {
+                        return badRequestOrRethrow(failure);
+                    }
+                    return report == null ? ResponseEntity.notFound().build() : ResponseEntity.ok(report);
+                });
+    }
+
+    /**
+     * Streams the selected series as NDJSON (default) or CSV while walking the store, e.g.
+     * /export?format=csv&indicators=NY.GDP.PCAP.CD,SP.POP.TOTL&from=2000. The response is chunked and a slow client
+     * blocks the writer, so the export never piles up in memory. The whole export reads one dataset version.
+     */
+    @GetMapping("/export")
+    public CompletableFuture<ResponseEntity<StreamingResponseBody>> export(
+            @RequestParam(defaultValue = "ndjson") String format,
+            @RequestParam(required = false) List<String> countries,
+            @RequestParam(required = false) List<String> indicators,
+            @RequestParam(defaultValue = "" + Integer.MIN_VALUE) int from,
+            @RequestParam(defaultValue = "" + Integer.MAX_VALUE) int to,
+            @RequestParam(required = false) String dataset) {
+        List<String> countryCodes = countries == null ? null : countries.stream().map(ResponseKey::normalize).toList();
+        List<String> indicatorCodes = indicators == null ? null : indicators.stream().map(ResponseKey::normalize).toList();
+        SeriesExporter.Format exportFormat;
+        try {
+            exportFormat = SeriesExporter.Format.parse(format);
+        } catch (IllegalArgumentException e) {
+            return CompletableFuture.completedFuture(plainBadRequest(e.getMessage()));
+        }
+        return worldBankService.checkExport(dataset, countryCodes, indicatorCodes).handle((checked, failure) -> {
+            if (failure != null) {
+                if (cause(failure) instanceof IllegalArgumentException e) {
+                    return plainBadRequest(e.getMessage());
+                }
+                throw new CompletionException(cause(failure));
+            }
+            StreamingResponseBody body = out -> {
+                Writer writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8), EXPORT_BUFFER);
+                worldBankService.export(dataset, countryCodes, indicatorCodes, from, to, exportFormat, writer);
+            };
+            return ResponseEntity.ok()
+                    .contentType(exportFormat == SeriesExporter.Format.CSV ? new MediaType("text", "csv") : MediaType.APPLICATION_NDJSON)
+                    .body(body);
+        });
+    }
+
+    private static ResponseEntity<StreamingResponseBody> plainBadRequest(String message) {
+        byte[] bytes = message.getBytes(StandardCharsets.UTF_8);
+        return ResponseEntity.badRequest().contentType(MediaType.TEXT_PLAIN).body(out -> out.write(bytes));
+    }
+
+    // Bad codes reach the handlers as IllegalArgumentException, anything else stays a server error
+    private static ResponseEntity<?> badRequestOrRethrow(Throwable failure) {
+        if (cause(failure) instanceof IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(e.getMessage());
+        }
+        throw new CompletionException(cause(failure));
+    }
+
+    static Throwable cause(Throwable failure) {
+        return failure instanceof CompletionException && failure.getCause() != null ? failure.getCause() : failure;
+    }
+
+    @GetMapping("/cache")
+    public ResponseEntity<CacheStats> getCacheStats(@RequestParam(required = false) String dataset) {
+        return ResponseEntity.ok(cache(dataset).stats());
+    }
+
+    // State of the dataset load: EMPTY, LOADING, LOADED or FAILED with the error, and how many attempts it took
+    @GetMapping("/status")
+    public ResponseEntity<DatasetHolder.LoadStatus> getStatus(@RequestParam(required = false) String dataset) {
+        return ResponseEntity.ok(worldBankService.loadStatus(dataset));
+    }
+
+    // Every configured dataset with its load status, heap use and heap budget
+    @GetMapping("/datasets")
+    public ResponseEntity<List<DatasetRegistry.Summary>> getDatasets() {
+        return ResponseEntity.ok(worldBankService.datasets());
+    }
+
+    @ExceptionHandler(DatasetRegistry.UnknownDatasetException.class)
+    public ResponseEntity<String> unknownDataset(DatasetRegistry.UnknownDatasetException e) {
+        return ResponseEntity.status(HttpStatus.NOT_FOUND).body(e.getMessage());
+    }
+
+    // The data could not be loaded; the failure stands for the retry interval, after which the next request tries again
+    @ExceptionHandler(DatasetHolder.LoadFailedException.class)
+    public ResponseEntity<String> datasetUnavailable(DatasetHolder.LoadFailedException e) {
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).body(e.getMessage());
+    }
+
+    // Reads the dataset's configured file again and swaps it in, requests keep being served meanwhile.
+    // Needs the admin token, see AdminTokenFilter
+    @PostMapping("/reload")
+    public ResponseEntity<String> reload(@RequestParam(required = false) String dataset) {
+        try {
+            long version = worldBankService.reload(dataset);
+            return ResponseEntity.ok("dataset version " + version);
+        } catch (IOException e) {
+            return ResponseEntity.internalServerError().body("Reload failed, keeping the current dataset: " + e.getMessage());
+        }
+    }
+
+    // Frees the dataset's memory, the next request for it loads it again. Needs the admin token
+    @PostMapping("/evict")
+    public ResponseEntity<String> evict(@RequestParam(required = false) String dataset) {
+        try {
+            return ResponseEntity.ok("dataset version " + worldBankService.evict(dataset));
+        } catch (IOException e) {
+            return ResponseEntity.internalServerError().body("Evict failed: " + e.getMessage());
+        }
     }
 }
 /**
- * This is Datas access object class which holds a single records information for WDI
+ * This is Datas access object class which holds a single records information for WDI.
+ * It is a view over one (country, indicator) row of the columnar store - the yearly values stay in the store.
  * @author : EngineeringWithSandeep
  */
-@Data
+@Getter
 @AllArgsConstructor
 class CountryData {
-    private String countryName;
-    private String countryCode;
-    private String indicatorName;
-    private String indicatorCode;
-    private HashMap<Integer, Double> yearData = new HashMap<>(); // HasMap to maintain <Year, Data>
-
-    public CountryData(String countryName, String countryCode, String indicatorName, String indicatorCode) {
-        this.countryName = countryName;
-        this.countryCode = countryCode;
-        this.indicatorName = indicatorName;
-        this.indicatorCode = indicatorCode;
+    private final ColumnarStore store;
+    private final int countryId;
+    private final int indicatorId;
+
+    public String getCountryName() {
+        return store.countryName(countryId);
+    }
+
+    public String getCountryCode() {
+        return store.countryCode(countryId);
+    }
+
+    public String getIndicatorName() {
+        return store.indicatorName(indicatorId);
+    }
+
+    public String getIndicatorCode() {
+        return store.indicatorCode(indicatorId);
+    }
+
+    // Value for the given year, null if the year is out of range or has no value
+    public Double getYearValue(int year) {
+        int offset = store.yearOffset(year);
+        if (offset < 0 || !store.isPresent(countryId, indicatorId, offset)) {
+            return null;
+        }
+        return store.value(countryId, indicatorId, offset);
+    }
+
+    // Years fromYear..toYear clamped to the stored range, read straight from the store block without boxing
+    public YearRange getYearRange(int fromYear, int toYear) {
+        return YearRange.of(store, countryId, indicatorId, fromYear, toYear);
+    }
+
+    // Precomputed aggregates of the series, built once per indicator on first use
+    public SeriesStats getStats() {
+        return store.stats(countryId, indicatorId);
     }
 }
 
 /**
- * This class holds in-memory database for WDI csv data
+ * This class holds in-memory database for WDI csv data, indexed by indicator and country id.
+ * Every configured dataset (-Dworldbank.datasets) has its own versions; a null dataset name is the default one.
+ * On a node of a partitioned deployment (Cluster) the datasets only hold the series of the node's shard.
+ * The tables are immutable and published as versions through a DatasetHolder, so readers need no concurrent map
+ * and a reload never disturbs a request that is already running.
  * @author : EngineeringWithSandeep
  */
-@Data
-@NoArgsConstructor
 @Component
 class WDIConcurrentDao {
-    public static ConcurrentHashMap<String, CountryData> database = new ConcurrentHashMap<>(); // Store CSV data in memory
-
-    // Load data from CSV only once
-    @Async
-    public Future<ConcurrentHashMap<String, CountryData>> loadAsync() {
-        if (database.isEmpty()) {
-            System.out.println("Loading data from CSV...");
-            CsvReader.readCsv("src/main/resources/WDICSV.csv");
-        }
-        return new AsyncResult<>(database);
+    static final DatasetRegistry<CountryData> datasets = new DatasetRegistry<>("async", CountryData::new,
+            Cluster.current().shard());
+    static final DatasetHolder<CountryData> database = datasets.defaultDataset().holder(); // the default dataset
+
+    private final Executor loader;  // runs the one-time loads, requests never wait on them
+
+    public WDIConcurrentDao(@Qualifier("taskExecutor") Executor loader) {
+        this.loader = loader;
     }
 
-    public static void save(CountryData countryData) {
-        if (database == null) {
-            database = new ConcurrentHashMap<>();
-        }
-        // inorder to main unique key's for each country code - a key with combination of countryCode and indicatorCode is used
-        database.put(countryData.getCountryCode() + "_" + countryData.getIndicatorCode(), countryData);
+    // Load data from CSV only once; callers arriving during the load share its future instead of parking a thread
+    public CompletableFuture<SeriesTable<CountryData>> load(String dataset) {
+        return datasets.dataset(dataset).loadAsync(loader);
+    }
+
+    /**
+     * Runs the reader against a leased version once the data is loaded. Once loaded it runs on the calling thread,
+     * during a cold start on the loader thread right after the load. Throws at once for an unknown dataset.
+     */
+    public <T> CompletableFuture<T> read(String dataset, Function<SeriesTable<CountryData>, T> reader) {
+        return datasets.dataset(dataset).acquireAsync(loader).thenApply(lease -> {
+            try (lease) {
+                return reader.apply(lease.table());
+            }
+        });
+    }
+
+    // A loaded version, for callers that already waited for the load; loads again if it was evicted meanwhile
+    public DatasetHolder<CountryData>.Lease acquire(String dataset) {
+        return datasets.dataset(dataset).acquire();
+    }
+
+    // Re-ingests only the changed rows of the dataset's configured file off to the side,
+    // the current version keeps serving until the swap
+    public long reload(String dataset) throws IOException {
+        return datasets.dataset(dataset).reload();
+    }
+
+    public long evict(String dataset) throws IOException {
+        return datasets.dataset(dataset).evict();
     }
 }
 
@@ -106,8 +382,24 @@ class WDIConcurrentDao {
  * @author : EngineeringWithSandeep
  */
 interface WorldBankConcurrentService {
-    String getCountryInfo(String countryCode, String indicatorCode, Integer year);
-    String getCountryReport(String countryCode, String indicatorCode);
+    CompletableFuture<String> getCountryInfo(String dataset, String countryCode, String indicatorCode, Integer year);
+    CompletableFuture<String> getCountryReport(String dataset, String countryCode, String indicatorCode);
+    CompletableFuture<String> getCountryRange(String dataset, String countryCode, String indicatorCode,
+                                              int fromYear, int toYear);
+    CompletableFuture<Ranking> getRanking(String dataset, String indicatorCode, int year, int n, Ranking.Order order);
+    CompletableFuture<AggregationEngine.Report> getAggregate(String dataset, String indicatorCode,
+                                                             AggregationEngine.GroupBy groupBy,
+                                                             List<String> countryCodes, int fromYear, int toYear,
+                                                             String weightIndicatorCode, double[] percentiles);
+    CompletableFuture<Void> checkExport(String dataset, List<String> countryCodes, List<String> indicatorCodes);
+    long export(String dataset, List<String> countryCodes, List<String> indicatorCodes, int fromYear, int toYear,
+                SeriesExporter.Format format, Writer out) throws IOException;
+    long reload(String dataset) throws IOException;
+    long evict(String dataset) throws IOException;
+    String datasetName(String dataset);
+    long datasetVersion(String dataset);
+    DatasetHolder.LoadStatus loadStatus(String dataset);
+    List<DatasetRegistry.Summary> datasets();
 }
 
 /**
@@ -118,112 +410,169 @@ interface WorldBankConcurrentService {
 @AllArgsConstructor
 class WorldBankConcurrentServiceImpl implements WorldBankConcurrentService {
 
+    private static final Timer INFO_LATENCY = WorldBankMetrics.lookupTimer("async", "info");
+    private static final Timer REPORT_LATENCY = WorldBankMetrics.lookupTimer("async", "report");
+
     private final WDIConcurrentDao wdiDao;
 
+    // Timed until the future completes, so a request that waited for the first load records that wait too.
+    // Null for an unknown series
     @Override
-    public String getCountryInfo(String countryCode, String indicatorCode, Integer year) {
-        try {
-            // Wait for the async load to finish if it's not already loaded
-            Future<ConcurrentHashMap<String, CountryData>> futureDatabase = getDatabase();
-            ConcurrentHashMap<String, CountryData> database = futureDatabase.get();  // Blocking call until it's done
-
-            CountryData countryData = database.get(countryCode + "_" + indicatorCode);
+    public CompletableFuture<String> getCountryInfo(String dataset, String countryCode, String indicatorCode, Integer year) {
+        long start = System.nanoTime();
+        return wdiDao.read(dataset, table -> {
+            CountryData countryData = table.get(countryCode, indicatorCode);
+            if (countryData == null) {
+                return null;
+            }
             String countryName = countryData.getCountryName();
             String indicatorName = countryData.getIndicatorName();
-            Double data = countryData.getYearData().get(year);
+            Double data = countryData.getYearValue(year);
             return String.format("Country: %s had %s of %s in year %s", countryName, indicatorName, data, year);
-        } catch (Exception e) {
-            return "Error fetching data: " + e.getMessage();
-        }
+        }).whenComplete((response, failure) -> INFO_LATENCY.record(System.nanoTime() - start, TimeUnit.NANOSECONDS));
     }
 
+    // Null for an unknown series
     @Override
-    public String getCountryReport(String countryCode, String indicatorCode) {
-        try {
-            Future<ConcurrentHashMap<String, CountryData>> futureDatabase = getDatabase();
-            ConcurrentHashMap<String, CountryData> database = futureDatabase.get();
-
-            CountryData countryData = database.get(countryCode + "_" + indicatorCode);
+    public CompletableFuture<String> getCountryReport(String dataset, String countryCode, String indicatorCode) {
+        long start = System.nanoTime();
+        return wdiDao.read(dataset, table -> {
+            CountryData countryData = table.get(countryCode, indicatorCode);
+            if (countryData == null) {
+                return null;
+            }
             String countryName = countryData.getCountryName();
             String indicatorName = countryData.getIndicatorName();
-            OptionalDouble optionalDouble = calculateMean(countryName, indicatorCode);
+            OptionalDouble optionalDouble = calculateMean(countryData);
             return String.format("Country: %s has %s with an average of %s from 1960 to 2024",
                     countryName, indicatorName, optionalDouble.isPresent() ? optionalDouble.getAsDouble() : 0);
-        } catch (Exception e) {
-            return "Error fetching report: " + e.getMessage();
-        }
+        }).whenComplete((response, failure) -> REPORT_LATENCY.record(System.nanoTime() - start, TimeUnit.NANOSECONDS));
     }
 
-    // Helper method
-    private Future<ConcurrentHashMap<String, CountryData>> getDatabase() {
-        return wdiDao.loadAsync();
+    // JSON slice of the series, null for an unknown series
+    @Override
+    public CompletableFuture<String> getCountryRange(String dataset, String countryCode, String indicatorCode,
+                                                     int fromYear, int toYear) {
+        return wdiDao.read(dataset, table -> {
+            CountryData countryData = table.get(countryCode, indicatorCode);
+            if (countryData == null) {
+                return null;
+            }
+            return countryData.getYearRange(fromYear, toYear)
+                    .toJson(countryData.getCountryCode(), countryData.getIndicatorCode());
+        });
+    }
+
+    // Top or bottom n countries by a column scan of the indicator, null for an unknown indicator
+    @Override
+    public CompletableFuture<Ranking> getRanking(String dataset, String indicatorCode, int year, int n,
+                                                 Ranking.Order order) {
+        return wdiDao.read(dataset, table -> {
+            ColumnarStore store = table.store();
+            int indicator = store == null ? -1 : store.indicatorId(indicatorCode);
+            return indicator < 0 ? null : Ranking.of(store, indicator, year, n, order);
+        });
     }
 
-    // Method to calculate mean value of a given indicator for a specific country
-    public static OptionalDouble calculateMean(String countryName, String indicatorCode) {
-        for (CountryData data : database.values()) {
-            if (data.getCountryName().equalsIgnoreCase(countryName) &&
-                    data.getIndicatorCode().equalsIgnoreCase(indicatorCode)) {
+    // Fork-join aggregation of one indicator, null for an unknown indicator
+    @Override
+    public CompletableFuture<AggregationEngine.Report> getAggregate(String dataset, String indicatorCode,
+                                                                    AggregationEngine.GroupBy groupBy,
+                                                                    List<String> countryCodes, int fromYear, int toYear,
+                                                                    String weightIndicatorCode, double[] percentiles) {
+        return wdiDao.read(dataset, table -> AggregationEngine.common().report(table.store(), indicatorCode, groupBy,
+                countryCodes, fromYear, toYear, weightIndicatorCode, percentiles));
+    }
 
-                // Extract all the valid year values
-                return data.getYearData().values().stream()
-                        .mapToDouble(Double::doubleValue)
-                        .average();  // Calculate the mean
+    // Resolves the export's codes against the served version, so a bad request is refused before streaming starts
+    @Override
+    public CompletableFuture<Void> checkExport(String dataset, List<String> countryCodes, List<String> indicatorCodes) {
+        return wdiDao.read(dataset, table -> {
+            ColumnarStore store = table.store();
+            if (store != null) {
+                SeriesExporter.Selection.of(store, countryCodes, indicatorCodes, 0, 0);
             }
-        }
-        return OptionalDouble.empty(); // Return empty if country or indicator not found
+            return null;
+        });
     }
-}
 
-/**
- * This is utility class for reading CSV file
- * @author : EngineeringWithSandeep
- */
-class CsvReader {
-
-    public static void readCsv(String filePath) {
-        try (CSVReader reader = new CSVReader(new FileReader(filePath))) {
-            String[] header = reader.readNext();  // Read header (years)
-
-            String[] line;
-            while ((line = reader.readNext()) != null) {
-                String countryName = line[0];
-                String countryCode = line[1];
-                String indicatorName = line[2];
-                String indicatorCode = line[3];
-
-                CountryData countryData = new CountryData(countryName, countryCode, indicatorName, indicatorCode);
-
-                for (int i = 4; i < line.length; i++) {
-                    double value;
-                    int year = Integer.parseInt(header[i]);
-                    if (line[i].isEmpty()) {
-                        value = 0.0;
-                    } else {
-                        value = Double.parseDouble(line[i]);
-                    }
-                    countryData.getYearData().put(year, value);
-                }
-                // Here you can pass the `countryData` object to the DAO for storing
-                WDIConcurrentDao.save(countryData);
+    // Writes the selected series of one leased version, returns the number of rows; call after checkExport
+    @Override
+    public long export(String dataset, List<String> countryCodes, List<String> indicatorCodes, int fromYear, int toYear,
+                       SeriesExporter.Format format, Writer out) throws IOException {
+        try (DatasetHolder<CountryData>.Lease lease = wdiDao.acquire(dataset)) {
+            ColumnarStore store = lease.table().store();
+            if (store == null) {
+                return 0;
             }
-        } catch (IOException | CsvValidationException e) {
-            System.out.println(e.getMessage());
+            SeriesExporter.Selection selection = SeriesExporter.Selection.of(store, countryCodes, indicatorCodes,
+                    fromYear, toYear);
+            return SeriesExporter.write(store, selection, format, out);
         }
     }
+
+    @Override
+    public long reload(String dataset) throws IOException {
+        return wdiDao.reload(dataset);
+    }
+
+    @Override
+    public long evict(String dataset) throws IOException {
+        return wdiDao.evict(dataset);
+    }
+
+    // The configured name a request's dataset parameter stands for; throws for an unknown dataset
+    @Override
+    public String datasetName(String dataset) {
+        return WDIConcurrentDao.datasets.dataset(dataset).name();
+    }
+
+    // Version of the data currently served, 0 until the first load has finished
+    @Override
+    public long datasetVersion(String dataset) {
+        return WDIConcurrentDao.datasets.dataset(dataset).holder().version();
+    }
+
+    // Never triggers a load, a status probe must not start the ingestion it is watching
+    @Override
+    public DatasetHolder.LoadStatus loadStatus(String dataset) {
+        return WDIConcurrentDao.datasets.dataset(dataset).holder().loadStatus();
+    }
+
+    @Override
+    public List<DatasetRegistry.Summary> datasets() {
+        return WDIConcurrentDao.datasets.summaries();
+    }
+
+    // Mean value of a given indicator for a specific country, looked up in the store's aggregate index
+    public static OptionalDouble calculateMean(CountryData countryData) {
+        return countryData.getStats().meanValue();
+    }
 }
 
+/**
+ * Executor of the one-time data load and of @Async tasks. With spring.threads.virtual.enabled=true (which also moves
+ * Tomcat request handling onto virtual threads) every task gets its own virtual thread, otherwise a bounded platform
+ * thread pool is used. Requests never wait on it: a cold-start burst shares the single load task.
+ * The pool's queue is exported as worldbank.async.queue.depth; virtual threads never queue.
+ */
 @Configuration
 class AsyncConfig {
 
     @Bean(name = "taskExecutor")
-    public Executor taskExecutor() {
+    public Executor taskExecutor(@Value("${spring.threads.virtual.enabled:false}") boolean virtualThreads) {
+        if (virtualThreads) {
+            SimpleAsyncTaskExecutor executor = new SimpleAsyncTaskExecutor("Async-");
+            executor.setVirtualThreads(true);
+            return executor;
+        }
         ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
         executor.setCorePoolSize(5);
         executor.setMaxPoolSize(10);
         executor.setQueueCapacity(500);
         executor.setThreadNamePrefix("Async-");
         executor.initialize();
+        WorldBankMetrics.asyncQueueDepth(() -> executor.getThreadPoolExecutor().getQueue().size());
         return executor;
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,7 @@
+package com.engineeringwithsandeep.worldbankservice.ingest;
+
+/**
+ * Year columns of a WDI csv header and the byte offset where the first data row starts
+ */
+public record CsvHeader(int firstYear, int yearCount, long dataOffset) {
+}
@@ -0,0 +1,437 @@
+package com.engineeringwithsandeep.worldbankservice.ingest;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Parallel ingestion engine for WDI csv files.
+ * The file is memory-mapped in line-aligned chunks which are parsed on a fork-join pool. Year values are parsed
+ * straight from the mapped bytes, only the four text columns of a row become Strings.
+ * Quoted fields (with "" escapes) are supported, line breaks inside quoted fields are not.
+ */
+public final class CsvIngestor {
+
+    public static final int DEFAULT_CHUNK_BYTES = 8 << 20;
+
+    private final ForkJoinPool pool;
+    private final int chunkBytes;
+
+    public CsvIngestor() {
+        this(ForkJoinPool.commonPool(), DEFAULT_CHUNK_BYTES);
+    }
+
+    public CsvIngestor(ForkJoinPool pool, int chunkBytes) {
+        this.pool = pool;
+        this.chunkBytes = chunkBytes;
+    }
+
+    public static CsvHeader readHeader(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            return readHeader(channel);
+        }
+    }
+
+    /**
+     * Parses every data row of the file into the sink.
+     * @return number of rows handed to the sink
+     */
+    public long ingest(Path file, RowSink sink) throws IOException {
+        return ingest(file, null, sink);
+    }
+
+    /**
+     * Like {@link #ingest(Path, RowSink)}, but only rows accepted by the filter have their values parsed and are
+     * handed to the sink. A null filter accepts every row.
+     * @return number of rows seen, whether or not they were filtered out
+     */
+    public long ingest(Path file, RowFilter filter, RowSink sink) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            CsvHeader header = readHeader(channel);
+            long[] bounds = chunkBoundaries(channel, header.dataOffset(), channel.size());
+            if (bounds.length < 2) {
+                return 0;
+            }
+            try {
+                return pool.invoke(new ChunkTask(channel, bounds, 0, bounds.length - 1, header, filter, sink));
+            } catch (UncheckedIOException e) {
+                throw e.getCause();
+            }
+        }
+    }
+
+    private static CsvHeader readHeader(FileChannel channel) throws IOException {
+        long end = nextLineStart(channel, 0, channel.size());
+        ByteBuffer buffer = ByteBuffer.allocate((int) end);
+        channel.read(buffer, 0);
+        String line = new String(buffer.array(), StandardCharsets.UTF_8).strip();
+        if (line.startsWith("\uFEFF")) {
+            line = line.substring(1);
+        }
+        String[] columns = line.split(",");
+        if (columns.length < 5) {
+            throw new IOException("Missing year columns in csv header");
+        }
+        int firstYear = parseYear(columns[4]);
+        for (int i = 5; i < columns.length; i++) {
+            if (parseYear(columns[i]) != firstYear + i - 4) {
+                throw new IOException("Year columns must be contiguous, found " + columns[i] + " at column " + i);
+            }
+        }
+        return new CsvHeader(firstYear, columns.length - 4, end);
+    }
+
+    private static int parseYear(String column) throws IOException {
+        try {
+            return Integer.parseInt(column.replace("\"", "").trim());
+        } catch (NumberFormatException e) {
+            throw new IOException("Invalid year column in csv header: " + column, e);
+        }
+    }
+
+    // Splits [start, size) into chunks of roughly chunkBytes, every boundary is the first byte of a line
+    private long[] chunkBoundaries(FileChannel channel, long start, long size) throws IOException {
+        List<Long> bounds = new ArrayList<>();
+        if (start >= size) {
+            return new long[0];
+        }
+        bounds.add(start);
+        long position = start;
+        while (size - position > chunkBytes) {
+            long next = nextLineStart(channel, position + chunkBytes, size);
+            if (next >= size) {
+                break;
+            }
+            bounds.add(next);
+            position = next;
+        }
+        bounds.add(size);
+        return bounds.stream().mapToLong(Long::longValue).toArray();
+    }
+
+    private static long nextLineStart(FileChannel channel, long from, long size) throws IOException {
+        ByteBuffer window = ByteBuffer.allocate(4096);
+        long position = from;
+        while (position < size) {
+            window.clear();
+            int read = channel.read(window, position);
+            if (read <= 0) {
+                break;
+            }
+            for (int i = 0; i < read; i++) {
+                if (window.get(i) == '\n') {
+                    return position + i + 1;
+                }
+            }
+            position += read;
+        }
+        return size;
+    }
+
+    private static final class ChunkTask extends RecursiveTask<Long> {
+        private final FileChannel channel;
+        private final long[] bounds;
+        private final int from;
+        private final int to;
+        private final CsvHeader header;
+        private final RowFilter filter;
+        private final RowSink sink;
+
+        ChunkTask(FileChannel channel, long[] bounds, int from, int to, CsvHeader header, RowFilter filter, RowSink sink) {
+            this.channel = channel;
+            this.bounds = bounds;
+            this.from = from;
+            this.to = to;
+            this.header = header;
+            this.filter = filter;
+            this.sink = sink;
+        }
+
+        @Override
+        protected Long compute() {
+            if (to - from == 1) {
+                try {
+                    long start = bounds[from];
+                    MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, start, bounds[to] - start);
+                    return new ChunkParser(buffer, start, header, filter, sink).parse();
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }
+            int mid = (from + to) >>> 1;
+            ChunkTask left = new ChunkTask(channel, bounds, from, mid, header, filter, sink);
+            ChunkTask right = new ChunkTask(channel, bounds, mid, to, header, filter, sink);
+            left.fork();
+            long rows = right.compute();
+            return rows + left.join();
+        }
+    }
+
+    /**
+     * Parses the rows of one mapped chunk. Not thread safe, one instance per chunk.
+     */
+    static final class ChunkParser {
+
+        private static final double[] POWERS_OF_TEN = new double[23];
+        private static final int MAX_EXACT_DIGITS = 15;
+        private static final long FNV_OFFSET = 0xcbf29ce484222325L;
+        private static final long FNV_PRIME = 0x100000001b3L;
+
+        static {
+            POWERS_OF_TEN[0] = 1.0;
+            for (int i = 1; i < POWERS_OF_TEN.length; i++) {
+                POWERS_OF_TEN[i] = POWERS_OF_TEN[i - 1] * 10.0;
+            }
+        }
+
+        private final ByteBuffer buffer;
+        private final long fileOffset;
+        private final int limit;
+        private final RowFilter filter;
+        private final RowSink sink;
+        private final double[] yearValues;
+        private byte[] scratch = new byte[128];
+        private int position;
+
+        ChunkParser(ByteBuffer buffer, long fileOffset, CsvHeader header, RowSink sink) {
+            this(buffer, fileOffset, header, null, sink);
+        }
+
+        ChunkParser(ByteBuffer buffer, long fileOffset, CsvHeader header, RowFilter filter, RowSink sink) {
+            this.buffer = buffer;
+            this.fileOffset = fileOffset;
+            this.limit = buffer.limit();
+            this.filter = filter;
+            this.sink = sink;
+            this.yearValues = new double[header.yearCount()];
+        }
+
+        long parse() {
+            long rows = 0;
+            while (position < limit) {
+                if (parseLine()) {
+                    rows++;
+                }
+            }
+            return rows;
+        }
+
+        // Returns false for blank or truncated lines, which are skipped
+        private boolean parseLine() {
+            byte first = buffer.get(position);
+            if (first == '\n' || first == '\r') {
+                nextField();
+                return false;
+            }
+            int lineStart = position;
+            String countryName = readText();
+            if (!nextField()) {
+                return false;
+            }
+            String countryCode = readText();
+            if (!nextField()) {
+                return false;
+            }
+            String indicatorName = readText();
+            if (!nextField()) {
+                return false;
+            }
+            String indicatorCode = readText();
+            if (filter != null) {
+                int valuesStart = position;
+                if (!filter.accept(countryCode, indicatorCode, hashLine(lineStart))) {
+                    nextField();  // hashLine stopped at the line break
+                    return true;
+                }
+                position = valuesStart;
+            }
+
+            Arrays.fill(yearValues, Double.NaN);
+            int column = 0;
+            while (nextField()) {
+                double value = readNumber();
+                if (column < yearValues.length) {
+                    yearValues[column] = value;
+                }
+                column++;
+            }
+            sink.accept(countryName, countryCode, indicatorName, indicatorCode, yearValues);
+            return true;
+        }
+
+        // 64-bit FNV-1a over the raw bytes of the line, without its line break, which is where position is left
+        private long hashLine(int lineStart) {
+            long hash = FNV_OFFSET;
+            int end = lineStart;
+            byte b;
+            while (end < limit && (b = buffer.get(end)) != '\n' && b != '\r') {
+                hash = (hash ^ (b & 0xff)) * FNV_PRIME;
+                end++;
+            }
+            position = end;
+            return hash;
+        }
+
+        // Consumes the delimiter after a field, true if another field of the same line follows
+        private boolean nextField() {
+            if (position >= limit) {
+                return false;
+            }
+            byte b = buffer.get(position++);
+            if (b == ',') {
+                return true;
+            }
+            if (b == '\r' && position < limit && buffer.get(position) == '\n') {
+                position++;
+            }
+            return false;
+        }
+
+        private static boolean isDelimiter(byte b) {
+            return b == ',' || b == '\n' || b == '\r';
+        }
+
+        private String readText() {
+            int length = 0;
+            if (position < limit && buffer.get(position) == '"') {
+                position++;
+                while (position < limit) {
+                    byte b = buffer.get(position++);
+                    if (b == '"') {
+                        if (position < limit && buffer.get(position) == '"') {
+                            position++;  // escaped quote
+                        } else {
+                            break;
+                        }
+                    }
+                    length = append(length, b);
+                }
+                while (position < limit && !isDelimiter(buffer.get(position))) {
+                    position++;
+                }
+            } else {
+                byte b;
+                while (position < limit && !isDelimiter(b = buffer.get(position))) {
+                    length = append(length, b);
+                    position++;
+                }
+            }
+            return new String(scratch, 0, length, StandardCharsets.UTF_8);
+        }
+
+        private int append(int length, byte b) {
+            if (length == scratch.length) {
+                scratch = Arrays.copyOf(scratch, length * 2);
+            }
+            scratch[length] = b;
+            return length + 1;
+        }
+
+        /**
+         * Parses a decimal straight from the buffer. Values with at most 15 significant digits and a decimal
+         * exponent within +-22 are exact with one multiplication or division; anything else falls back to
+         * Double.parseDouble. An empty field is NaN.
+         */
+        private double readNumber() {
+            int start = position;
+            boolean quoted = position < limit && buffer.get(position) == '"';
+            if (quoted) {
+                position++;
+            }
+            boolean negative = false;
+            if (position < limit && (buffer.get(position) == '-' || buffer.get(position) == '+')) {
+                negative = buffer.get(position) == '-';
+                position++;
+            }
+            long mantissa = 0;
+            int digits = 0;
+            int exponent = 0;
+            boolean seenDigit = false;
+            boolean exact = true;
+            byte b;
+            while (position < limit && (b = buffer.get(position)) >= '0' && b <= '9') {
+                seenDigit = true;
+                if (digits < MAX_EXACT_DIGITS) {
+                    if (mantissa != 0 || b != '0') {
+                        mantissa = mantissa * 10 + (b - '0');
+                        digits++;
+                    }
+                } else {
+                    exact = false;
+                }
+                position++;
+            }
+            if (position < limit && buffer.get(position) == '.') {
+                position++;
+                while (position < limit && (b = buffer.get(position)) >= '0' && b <= '9') {
+                    seenDigit = true;
+                    if (digits < MAX_EXACT_DIGITS) {
+                        if (mantissa != 0 || b != '0') {
+                            digits++;
+                        }
+                        mantissa = mantissa * 10 + (b - '0');
+                        exponent--;
+                    } else if (b != '0') {
+                        exact = false;
+                    }
+                    position++;
+                }
+            }
+            if (seenDigit && position < limit && (buffer.get(position) == 'e' || buffer.get(position) == 'E')) {
+                position++;
+                boolean negativeExponent = false;
+                if (position < limit && (buffer.get(position) == '-' || buffer.get(position) == '+')) {
+                    negativeExponent = buffer.get(position) == '-';
+                    position++;
+                }
+                int value = 0;
+                while (position < limit && (b = buffer.get(position)) >= '0' && b <= '9') {
+                    value = Math.min(value * 10 + (b - '0'), 10_000);
+                    position++;
+                }
+                exponent += negativeExponent ? -value : value;
+            }
+            if (quoted && position < limit && buffer.get(position) == '"') {
+                position++;
+            }
+            if (position < limit && !isDelimiter(buffer.get(position))) {
+                exact = false;
+                while (position < limit && !isDelimiter(buffer.get(position))) {
+                    position++;
+                }
+            }
+            if (!seenDigit && exact) {
+                if (position == start || (quoted && position == start + 2)) {
+                    return Double.NaN;  // empty cell
+                }
+                exact = false;
+            }
+            if (!exact || exponent < -22 || exponent > 22) {
+                return parseSlow(start, position);
+            }
+            double value = exponent >= 0 ? mantissa * POWERS_OF_TEN[exponent] : mantissa / POWERS_OF_TEN[-exponent];
+            return negative ? -value : value;
+        }
+
+        private double parseSlow(int from, int to) {
+            byte[] text = new byte[to - from];
+            buffer.get(from, text);
+            String value = new String(text, StandardCharsets.US_ASCII).replace("\"", "").trim();
+            try {
+                return value.isEmpty() ? Double.NaN : Double.parseDouble(value);
+            } catch (NumberFormatException e) {
+                throw new UncheckedIOException(new IOException("Invalid number '" + value + "' at byte " + (fileOffset + from), e));
+            }
+        }
+    }
+}
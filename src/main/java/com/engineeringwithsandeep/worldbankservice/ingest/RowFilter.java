@@ -0,0 +1,15 @@
+package com.engineeringwithsandeep.worldbankservice.ingest;
+
+/**
+ * Decides per csv row whether its year values get parsed. Called concurrently from the ingestion workers,
+ * before any number of the row is read, so a rejected row costs one pass over its bytes.
+ */
+@FunctionalInterface
+public interface RowFilter {
+
+    /**
+     * @param lineHash 64-bit FNV-1a hash of the raw row bytes, line break excluded
+     * @return true to parse the row and hand it to the sink
+     */
+    boolean accept(String countryCode, String indicatorCode, long lineHash);
+}
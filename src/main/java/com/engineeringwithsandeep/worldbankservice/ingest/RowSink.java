@@ -0,0 +1,14 @@
+package com.engineeringwithsandeep.worldbankservice.ingest;
+
+/**
+ * Receives the parsed rows of a WDI csv. Called concurrently from the ingestion workers,
+ * so implementations must be thread safe. The yearValues array is reused by the caller after the call returns.
+ */
+@FunctionalInterface
+public interface RowSink {
+
+    /**
+     * @param yearValues value of year {@code firstYear + k} at index k, NaN for a missing value
+     */
+    void accept(String countryName, String countryCode, String indicatorName, String indicatorCode, double[] yearValues);
+}
@@ -0,0 +1,134 @@
+package com.engineeringwithsandeep.worldbankservice.metrics;
+
+import com.sun.net.httpserver.HttpServer;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.Metrics;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.binder.jvm.JvmGcMetrics;
+import io.micrometer.core.instrument.binder.jvm.JvmMemoryMetrics;
+import io.micrometer.core.instrument.binder.jvm.JvmThreadMetrics;
+import io.micrometer.prometheus.PrometheusConfig;
+import io.micrometer.prometheus.PrometheusMeterRegistry;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * Meters shared by the REST, async and socket layers. Everything is registered on Metrics.globalRegistry: Spring Boot
+ * adds its Prometheus registry there (served at /actuator/prometheus), the standalone socket server adds its own with
+ * servePrometheus. Meters are looked up once and kept by their callers, so recording on the request path is a
+ * plain add or timer update without a registry lookup.
+ */
+public final class WorldBankMetrics {
+
+    public static final String LOOKUP = "worldbank.lookup";
+    public static final String SOCKET_COMMANDS = "worldbank.socket.commands";
+    public static final String SOCKET_CONNECTIONS = "worldbank.socket.connections";
+    public static final String ASYNC_QUEUE = "worldbank.async.queue.depth";
+    public static final String INGEST = "worldbank.ingest";
+    public static final String INGEST_ROWS = "worldbank.ingest.rows";
+    public static final String INGEST_RATE = "worldbank.ingest.rows.per.second";
+    public static final String DATASET_HEAP = "worldbank.dataset.heap";
+    public static final String DATASET_MAPPED = "worldbank.dataset.mapped";
+
+    private static final AtomicLong lastIngestRate = new AtomicLong();
+
+    static {
+        Gauge.builder(INGEST_RATE, lastIngestRate, AtomicLong::get)
+                .description("Rows per second of the last full csv parse")
+                .register(Metrics.globalRegistry);
+    }
+
+    private WorldBankMetrics() {
+    }
+
+    /**
+     * Latency of one lookup operation (info, report) of one implementation (serial, async, socket), published as a
+     * Prometheus histogram from 1 microsecond to 10 seconds.
+     */
+    public static Timer lookupTimer(String implementation, String operation) {
+        return Timer.builder(LOOKUP)
+                .tag("implementation", implementation)
+                .tag("operation", operation)
+                .publishPercentileHistogram()
+                .minimumExpectedValue(Duration.ofNanos(1_000))
+                .maximumExpectedValue(Duration.ofSeconds(10))
+                .register(Metrics.globalRegistry);
+    }
+
+    // Commands executed by the socket server, per command type and protocol (text, binary)
+    public static Counter socketCommands(String command, String protocol) {
+        return Counter.builder(SOCKET_COMMANDS)
+                .tag("command", command)
+                .tag("protocol", protocol)
+                .register(Metrics.globalRegistry);
+    }
+
+    // Open client connections of a socket server mode; remove the gauge when that server stops
+    public static Gauge socketConnections(String mode, Supplier<Number> connections) {
+        return Gauge.builder(SOCKET_CONNECTIONS, connections)
+                .tag("mode", mode)
+                .register(Metrics.globalRegistry);
+    }
+
+    // Tasks waiting for a thread of the executor behind /wdi/async and @Async
+    public static Gauge asyncQueueDepth(Supplier<Number> depth) {
+        return Gauge.builder(ASYNC_QUEUE, depth).register(Metrics.globalRegistry);
+    }
+
+    // Estimated heap held by one dataset an implementation serves, see HeapFootprint.datasetBytes
+    public static Gauge datasetHeap(String implementation, String dataset, Supplier<Number> bytes) {
+        return Gauge.builder(DATASET_HEAP, bytes)
+                .tag("implementation", implementation)
+                .tag("dataset", dataset)
+                .baseUnit("bytes")
+                .register(Metrics.globalRegistry);
+    }
+
+    // Value bytes one dataset of an implementation serves from a mapped snapshot (-Dworldbank.data.backend=mapped)
+    public static Gauge datasetMapped(String implementation, String dataset, Supplier<Number> bytes) {
+        return Gauge.builder(DATASET_MAPPED, bytes)
+                .tag("implementation", implementation)
+                .tag("dataset", dataset)
+                .baseUnit("bytes")
+                .register(Metrics.globalRegistry);
+    }
+
+    // One full csv parse: its duration, the rows it read and the resulting rows per second
+    public static void recordIngest(long rows, long nanos) {
+        Timer.builder(INGEST).register(Metrics.globalRegistry).record(nanos, TimeUnit.NANOSECONDS);
+        Counter.builder(INGEST_ROWS).register(Metrics.globalRegistry).increment(rows);
+        lastIngestRate.set(nanos == 0 ? 0 : rows * 1_000_000_000L / nanos);
+    }
+
+    /**
+     * Adds a Prometheus registry with the JVM meters to the global registry and serves its scrape at
+     * http://host:port/metrics, for processes without Spring Boot such as the socket server.
+     */
+    public static HttpServer servePrometheus(int port) throws IOException {
+        PrometheusMeterRegistry registry = new PrometheusMeterRegistry(PrometheusConfig.DEFAULT);
+        new JvmMemoryMetrics().bindTo(registry);
+        new JvmGcMetrics().bindTo(registry);
+        new JvmThreadMetrics().bindTo(registry);
+        Metrics.addRegistry(registry);
+
+        HttpServer server = HttpServer.create(new InetSocketAddress(port), 0);
+        server.createContext("/metrics", exchange -> {
+            byte[] body = registry.scrape().getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().set("Content-Type", "text/plain; version=0.0.4; charset=utf-8");
+            exchange.sendResponseHeaders(200, body.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        });
+        server.start();
+        return server;
+    }
+}
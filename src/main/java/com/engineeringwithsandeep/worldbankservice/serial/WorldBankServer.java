@@ -1,25 +1,50 @@
 package com.engineeringwithsandeep.worldbankservice.serial;
 
-import com.opencsv.CSVReader;
-import com.opencsv.exceptions.CsvValidationException;
-
-import java.io.FileReader;
-import java.io.IOException;
+import com.engineeringwithsandeep.worldbankservice.cache.CacheStats;
+import com.engineeringwithsandeep.worldbankservice.cache.EvictionPolicy;
+import com.engineeringwithsandeep.worldbankservice.cache.ResponseCache;
+import com.engineeringwithsandeep.worldbankservice.cache.ResponseKey;
+import com.engineeringwithsandeep.worldbankservice.cluster.Cluster;
+import com.engineeringwithsandeep.worldbankservice.metrics.WorldBankMetrics;
+import com.engineeringwithsandeep.worldbankservice.store.AggregationEngine;
+import com.engineeringwithsandeep.worldbankservice.store.ColumnarStore;
+import com.engineeringwithsandeep.worldbankservice.store.DatasetHolder;
+import com.engineeringwithsandeep.worldbankservice.store.DatasetRegistry;
+import com.engineeringwithsandeep.worldbankservice.store.Ranking;
+import com.engineeringwithsandeep.worldbankservice.store.SeriesExporter;
+import com.engineeringwithsandeep.worldbankservice.store.SeriesStats;
+import com.engineeringwithsandeep.worldbankservice.store.SeriesTable;
+import com.engineeringwithsandeep.worldbankservice.store.YearRange;
+import io.micrometer.core.instrument.Timer;
 import lombok.AllArgsConstructor;
 import lombok.Data;
+import lombok.Getter;
 import lombok.NoArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.stereotype.Component;
 import org.springframework.stereotype.Service;
+import org.springframework.web.bind.annotation.ExceptionHandler;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
-import java.util.HashMap;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
 import java.util.OptionalDouble;
-
-import static com.engineeringwithsandeep.worldbankservice.serial.WDIDao.database;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
 
 /**
  * This is server level, controller call which makes HTTP call's
@@ -27,73 +52,296 @@ import static com.engineeringwithsandeep.worldbankservice.serial.WDIDao.database
  */
 @RestController
 @RequestMapping("/wdi")
-@AllArgsConstructor
 public class WorldBankServer {
 
     private final WorldBankServiceImpl worldBankService;
+    private static final int MAX_RANKING = 1000;  // more than the countries and aggregates in a WDI release
+    private static final int EXPORT_BUFFER = 64 * 1024;  // chars buffered before a chunk goes out
+
+    // Rendered responses of the popular series, one cache per dataset since each follows its own dataset version
+    private final Map<String, ResponseCache<ResponseKey, String>> caches = new ConcurrentHashMap<>();
+    private final int cacheCapacity;
+    private final EvictionPolicy cachePolicy;
+
+    public WorldBankServer(WorldBankServiceImpl worldBankService,
+                           @Value("${worldbank.cache.capacity:10000}") int cacheCapacity,
+                           @Value("${worldbank.cache.policy:TINY_LFU}") EvictionPolicy cachePolicy) {
+        this.worldBankService = worldBankService;
+        this.cacheCapacity = cacheCapacity;
+        this.cachePolicy = cachePolicy;
+    }
 
+    // Every endpoint takes ?dataset=name, the default dataset (wdi) when it is left out
     @GetMapping("/info/{countryCode}/{indicatorCode}/{year}")
     public ResponseEntity<String> getCountryInfo(@PathVariable String countryCode,
                                                  @PathVariable String indicatorCode,
-                                                 @PathVariable String year) {
-        String response = worldBankService.getCountryInfo(countryCode, indicatorCode, Integer.parseInt(year));
-        return ResponseEntity.ok(response);
+                                                 @PathVariable String year,
+                                                 @RequestParam(required = false) String dataset) {
+        String response = cache(dataset).get(ResponseKey.info(countryCode, indicatorCode, year),
+                worldBankService.datasetVersion(dataset),
+                key -> worldBankService.getCountryInfo(dataset, key.countryCode(), key.indicatorCode(), key.year()));
+        return okOrNotFound(response);
     }
 
     @GetMapping("/report/{countryCode}/{indicatorCode}/")
     public ResponseEntity<String> getCountryReport(@PathVariable String countryCode,
-                                                 @PathVariable String indicatorCode) {
-        String response = worldBankService.getCountryReport(countryCode, indicatorCode);
-        return ResponseEntity.ok(response);
+                                                 @PathVariable String indicatorCode,
+                                                 @RequestParam(required = false) String dataset) {
+        String response = cache(dataset).get(ResponseKey.report(countryCode, indicatorCode),
+                worldBankService.datasetVersion(dataset),
+                key -> worldBankService.getCountryReport(dataset, key.countryCode(), key.indicatorCode()));
+        return okOrNotFound(response);
+    }
+
+    // Only found series reach the cache, an unknown one is looked up again on every request
+    private static ResponseEntity<String> okOrNotFound(String response) {
+        return response == null ? ResponseEntity.notFound().build() : ResponseEntity.ok(response);
+    }
+
+    // Resolves the name first, so an unknown dataset never gets a cache
+    private ResponseCache<ResponseKey, String> cache(String dataset) {
+        return caches.computeIfAbsent(worldBankService.datasetName(dataset),
+                name -> new ResponseCache<>(cacheCapacity, cachePolicy));
+    }
+
+    // One request for a whole chart: the years from..to of one series as a single JSON array
+    @GetMapping("/range/{countryCode}/{indicatorCode}/{from}/{to}")
+    public ResponseEntity<String> getCountryRange(@PathVariable String countryCode,
+                                                  @PathVariable String indicatorCode,
+                                                  @PathVariable int from,
+                                                  @PathVariable int to,
+                                                  @RequestParam(required = false) String dataset) {
+        if (from > to) {
+            return ResponseEntity.badRequest().body("from must not be after to");
+        }
+        String response = worldBankService.getCountryRange(dataset, ResponseKey.normalize(countryCode),
+                ResponseKey.normalize(indicatorCode), from, to);
+        if (response == null) {
+            return ResponseEntity.notFound().build();
+        }
+        return ResponseEntity.ok().contentType(MediaType.APPLICATION_JSON).body(response);
+    }
+
+    // Top or bottom n countries of an indicator in one year, e.g. /rank/NY.GDP.PCAP.CD/2022?n=20&order=top
+    @GetMapping("/rank/{indicatorCode}/{year}")
+    public ResponseEntity<?> getRanking(@PathVariable String indicatorCode,
+                                        @PathVariable int year,
+                                        @RequestParam(defaultValue = "20") int n,
+                                        @RequestParam(defaultValue = "top") String order,
+                                        @RequestParam(required = false) String dataset) {
+        if (n < 1 || n > MAX_RANKING) {
+            return ResponseEntity.badRequest().body("n must be between 1 and " + MAX_RANKING);
+        }
+        Ranking.Order rankingOrder;
+        try {
+            rankingOrder = Ranking.Order.parse(order);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body("order must be top or bottom");
+        }
+        Ranking ranking = worldBankService.getRanking(dataset, ResponseKey.normalize(indicatorCode), year, n, rankingOrder);
+        if (ranking == null) {
+            return ResponseEntity.notFound().build();
+        }
+        return ResponseEntity.ok(ranking);
+    }
+
+    /**
+     * Aggregates of an indicator grouped by year or by country, e.g.
+     * /aggregate/NY.GDP.PCAP.CD?groupBy=year&countries=IND,CHN&weight=SP.POP.TOTL&percentiles=50,90
+     */
+    @GetMapping("/aggregate/{indicatorCode}")
+    public ResponseEntity<?> getAggregate(@PathVariable String indicatorCode,
+                                          @RequestParam(defaultValue = "year") String groupBy,
+                                          @RequestParam(required = false) List<String> countries,
+                                          @RequestParam(defaultValue = "" + Integer.MIN_VALUE) int from,
+                                          @RequestParam(defaultValue = "" + Integer.MAX_VALUE) int to,
+                                          @RequestParam(required = false) String weight,
+                                          @RequestParam(required = false) double[] percentiles,
+                                          @RequestParam(required = false) String dataset) {
+        try {
+            AggregationEngine.Report report = worldBankService.getAggregate(dataset, ResponseKey.normalize(indicatorCode),
+                    AggregationEngine.GroupBy.parse(groupBy),
+                    countries == null ? null : countries.stream().map(ResponseKey::normalize).toList(),
+                    from, to, weight == null ? null : ResponseKey.normalize(weight), percentiles);
+            if (report == null) {
+                return ResponseEntity.notFound().build();
+            }
+            return ResponseEntity.ok(report);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(e.getMessage());
+        }
+    }
+
+    /**
+     * Streams the selected series as NDJSON (default) or CSV while walking the store, e.g.
+     * /export?format=csv&indicators=NY.GDP.PCAP.CD,SP.POP.TOTL&from=2000. The response is chunked and a slow client
+     * blocks the writer, so the export never piles up in memory. The whole export reads one dataset version.
+     */
+    @GetMapping("/export")
+    public ResponseEntity<StreamingResponseBody> export(@RequestParam(defaultValue = "ndjson") String format,
+                                                        @RequestParam(required = false) List<String> countries,
+                                                        @RequestParam(required = false) List<String> indicators,
+                                                        @RequestParam(defaultValue = "" + Integer.MIN_VALUE) int from,
+                                                        @RequestParam(defaultValue = "" + Integer.MAX_VALUE) int to,
+                                                        @RequestParam(required = false) String dataset) {
+        List<String> countryCodes = countries == null ? null : countries.stream().map(ResponseKey::normalize).toList();
+        List<String> indicatorCodes = indicators == null ? null : indicators.stream().map(ResponseKey::normalize).toList();
+        SeriesExporter.Format exportFormat;
+        try {
+            exportFormat = SeriesExporter.Format.parse(format);
+            worldBankService.checkExport(dataset, countryCodes, indicatorCodes);
+        } catch (IllegalArgumentException e) {
+            byte[] message = e.getMessage().getBytes(StandardCharsets.UTF_8);
+            return ResponseEntity.badRequest().contentType(MediaType.TEXT_PLAIN).body(out -> out.write(message));
+        }
+        StreamingResponseBody body = out -> {
+            Writer writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8), EXPORT_BUFFER);
+            worldBankService.export(dataset, countryCodes, indicatorCodes, from, to, exportFormat, writer);
+        };
+        return ResponseEntity.ok()
+                .contentType(exportFormat == SeriesExporter.Format.CSV ? new MediaType("text", "csv") : MediaType.APPLICATION_NDJSON)
+                .body(body);
+    }
+
+    @GetMapping("/cache")
+    public ResponseEntity<CacheStats> getCacheStats(@RequestParam(required = false) String dataset) {
+        return ResponseEntity.ok(cache(dataset).stats());
+    }
+
+    // State of the dataset load: EMPTY, LOADING, LOADED or FAILED with the error, and how many attempts it took
+    @GetMapping("/status")
+    public ResponseEntity<DatasetHolder.LoadStatus> getStatus(@RequestParam(required = false) String dataset) {
+        return ResponseEntity.ok(worldBankService.loadStatus(dataset));
+    }
+
+    // Every configured dataset with its load status, heap use and heap budget
+    @GetMapping("/datasets")
+    public ResponseEntity<List<DatasetRegistry.Summary>> getDatasets() {
+        return ResponseEntity.ok(worldBankService.datasets());
+    }
+
+    @ExceptionHandler(DatasetRegistry.UnknownDatasetException.class)
+    public ResponseEntity<String> unknownDataset(DatasetRegistry.UnknownDatasetException e) {
+        return ResponseEntity.status(HttpStatus.NOT_FOUND).body(e.getMessage());
+    }
+
+    // The data could not be loaded; the failure stands for the retry interval, after which the next request tries again
+    @ExceptionHandler(DatasetHolder.LoadFailedException.class)
+    public ResponseEntity<String> datasetUnavailable(DatasetHolder.LoadFailedException e) {
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).body(e.getMessage());
+    }
+
+    // Reads the dataset's configured file again and swaps it in, requests keep being served meanwhile.
+    // Needs the admin token, see AdminTokenFilter
+    @PostMapping("/reload")
+    public ResponseEntity<String> reload(@RequestParam(required = false) String dataset) {
+        try {
+            long version = worldBankService.reload(dataset);
+            return ResponseEntity.ok("dataset version " + version);
+        } catch (IOException e) {
+            return ResponseEntity.internalServerError().body("Reload failed, keeping the current dataset: " + e.getMessage());
+        }
+    }
+
+    // Frees the dataset's memory, the next request for it loads it again. Needs the admin token
+    @PostMapping("/evict")
+    public ResponseEntity<String> evict(@RequestParam(required = false) String dataset) {
+        try {
+            return ResponseEntity.ok("dataset version " + worldBankService.evict(dataset));
+        } catch (IOException e) {
+            return ResponseEntity.internalServerError().body("Evict failed: " + e.getMessage());
+        }
     }
 }
 
 /**
- * This is Datas access object class which holds a single records information for WDI
+ * This is Datas access object class which holds a single records information for WDI.
+ * It is a view over one (country, indicator) row of the columnar store - the yearly values stay in the store.
  * @author : EngineeringWithSandeep
  */
-@Data
+@Getter
 @AllArgsConstructor
 class CountryData {
-    private String countryName;
-    private String countryCode;
-    private String indicatorName;
-    private String indicatorCode;
-    private HashMap<Integer, Double> yearData = new HashMap<>(); // HasMap to maintain <Year, Data>
-
-    public CountryData(String countryName, String countryCode, String indicatorName, String indicatorCode) {
-        this.countryName = countryName;
-        this.countryCode = countryCode;
-        this.indicatorName = indicatorName;
-        this.indicatorCode = indicatorCode;
+    private final ColumnarStore store;
+    private final int countryId;
+    private final int indicatorId;
+
+    public String getCountryName() {
+        return store.countryName(countryId);
+    }
+
+    public String getCountryCode() {
+        return store.countryCode(countryId);
+    }
+
+    public String getIndicatorName() {
+        return store.indicatorName(indicatorId);
+    }
+
+    public String getIndicatorCode() {
+        return store.indicatorCode(indicatorId);
+    }
+
+    // Value for the given year, null if the year is out of range or has no value
+    public Double getYearValue(int year) {
+        int offset = store.yearOffset(year);
+        if (offset < 0 || !store.isPresent(countryId, indicatorId, offset)) {
+            return null;
+        }
+        return store.value(countryId, indicatorId, offset);
+    }
+
+    // Years fromYear..toYear clamped to the stored range, read straight from the store block without boxing
+    public YearRange getYearRange(int fromYear, int toYear) {
+        return YearRange.of(store, countryId, indicatorId, fromYear, toYear);
+    }
+
+    // Precomputed aggregates of the series, built once per indicator on first use
+    public SeriesStats getStats() {
+        return store.stats(countryId, indicatorId);
     }
 }
 
 /**
- * This class holds in-memory database for WDI csv data
+ * This class holds in-memory database for WDI csv data, indexed by indicator and country id.
+ * Every configured dataset (-Dworldbank.datasets) has its own versions; a null dataset name is the default one.
+ * On a node of a partitioned deployment (Cluster) the datasets only hold the series of the node's shard.
+ * Every load or reload publishes a new version through the holder; requests lease the version they started on.
  * @author : EngineeringWithSandeep
  */
 @Data
 @NoArgsConstructor
 @Component
 class WDIDao {
-    public static HashMap<String, CountryData> database = new HashMap<>(); // Store CSV data in memory
+    static final DatasetRegistry<CountryData> datasets = new DatasetRegistry<>("serial", CountryData::new,
+            Cluster.current().shard());
+    static final DatasetHolder<CountryData> database = datasets.defaultDataset().holder(); // the default dataset
 
     // Load data from CSV only once
-    public HashMap<String, CountryData> load() {
-        if (database.isEmpty()) {
-            System.out.println("Loading data from CSV...");
-            CsvReader.readCsv("src/main/resources/WDICSV.csv");
-        }
-        return database;
+    public SeriesTable<CountryData> load(String dataset) {
+        return datasets.dataset(dataset).load();
+    }
+
+    // Consistent view for one request, close it when the request is done
+    public DatasetHolder<CountryData>.Lease acquire(String dataset) {
+        return datasets.dataset(dataset).acquire();
+    }
+
+    // Re-ingests only the changed rows of the dataset's configured file off to the side,
+    // the current version keeps serving until the swap
+    public long reload(String dataset) throws IOException {
+        return datasets.dataset(dataset).reload();
     }
 
-    public static void save(CountryData countryData) {
-        if (database == null) {
-            database = new HashMap<>();
+    public long evict(String dataset) throws IOException {
+        return datasets.dataset(dataset).evict();
+    }
+
+    // Version the next request will read, loading the data first if needed
+    public long version(String dataset) {
+        try (DatasetHolder<CountryData>.Lease lease = acquire(dataset)) {
+            return lease.version();
         }
-        // inorder to main unique key's for each country code - a key with combination of countryCode and indicatorCode is used
-        database.put(countryData.getCountryCode() + "_" + countryData.getIndicatorCode(), countryData);
     }
 }
 
@@ -102,8 +350,22 @@ class WDIDao {
  * @author : EngineeringWithSandeep
  */
 interface WorldBankService {
-    String getCountryInfo(String countryCode, String indicatorCode, Integer year);
-    String getCountryReport(String countryCode, String indicatorCode);
+    String getCountryInfo(String dataset, String countryCode, String indicatorCode, Integer year);
+    String getCountryReport(String dataset, String countryCode, String indicatorCode);
+    String getCountryRange(String dataset, String countryCode, String indicatorCode, int fromYear, int toYear);
+    Ranking getRanking(String dataset, String indicatorCode, int year, int n, Ranking.Order order);
+    AggregationEngine.Report getAggregate(String dataset, String indicatorCode, AggregationEngine.GroupBy groupBy,
+                                          List<String> countryCodes, int fromYear, int toYear,
+                                          String weightIndicatorCode, double[] percentiles);
+    void checkExport(String dataset, List<String> countryCodes, List<String> indicatorCodes);
+    long export(String dataset, List<String> countryCodes, List<String> indicatorCodes, int fromYear, int toYear,
+                SeriesExporter.Format format, Writer out) throws IOException;
+    long reload(String dataset) throws IOException;
+    long evict(String dataset) throws IOException;
+    String datasetName(String dataset);
+    long datasetVersion(String dataset);
+    DatasetHolder.LoadStatus loadStatus(String dataset);
+    List<DatasetRegistry.Summary> datasets();
 }
 
 /**
@@ -114,82 +376,143 @@ interface WorldBankService {
 @AllArgsConstructor
 class WorldBankServiceImpl implements WorldBankService {
 
+    private static final Timer INFO_LATENCY = WorldBankMetrics.lookupTimer("serial", "info");
+    private static final Timer REPORT_LATENCY = WorldBankMetrics.lookupTimer("serial", "report");
+
     private final WDIDao wdiDao;
 
+    // Null for an unknown series
     @Override
-    public String getCountryInfo(String countryCode, String indicatorCode, Integer year) {
-        CountryData countryData = getDataHashMap().get(countryCode + "_" + indicatorCode);
-        String countryName = countryData.getCountryName();
-        String indicatorName = countryData.getIndicatorName();
-        Double data = countryData.getYearData().get(year);
-        return String.format("country: %s has %s had %s in year %s", countryName, indicatorName, data, year);
+    public String getCountryInfo(String dataset, String countryCode, String indicatorCode, Integer year) {
+        long start = System.nanoTime();
+        try (DatasetHolder<CountryData>.Lease lease = wdiDao.acquire(dataset)) {
+            CountryData countryData = lease.table().get(countryCode, indicatorCode);
+            if (countryData == null) {
+                return null;
+            }
+            String countryName = countryData.getCountryName();
+            String indicatorName = countryData.getIndicatorName();
+            Double data = countryData.getYearValue(year);
+            return String.format("country: %s has %s had %s in year %s", countryName, indicatorName, data, year);
+        } finally {
+            INFO_LATENCY.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
     }
 
+    // Null for an unknown series
     @Override
-    public String getCountryReport(String countryCode, String indicatorCode) {
-        CountryData countryData = getDataHashMap().get(countryCode + "_" + indicatorCode);
-        String countryName = countryData.getCountryName();
-        String indicatorName = countryData.getIndicatorName();
-        OptionalDouble optionalDouble = calculateMean(countryName, indicatorCode);
-        return String.format("country: %s has %s with mean average of %s percentage over the year 1960-2024", countryName, indicatorName,
-                optionalDouble.isPresent() ? optionalDouble.getAsDouble() : 0);
-    }
-
-    // Helper method
-    private HashMap<String, CountryData> getDataHashMap() {
-        return wdiDao.load();
-    }
-
-    // Method to calculate mean value of a given indicator for a specific country
-    public static OptionalDouble calculateMean(String countryName, String indicatorCode) {
-        for (CountryData data : database.values()) {
-            if (data.getCountryName().equalsIgnoreCase(countryName) &&
-                    data.getIndicatorCode().equalsIgnoreCase(indicatorCode)) {
-
-                // Extract all the valid year values
-                return data.getYearData().values().stream()
-                        .mapToDouble(Double::doubleValue)
-                        .average();  // Calculate the mean
+    public String getCountryReport(String dataset, String countryCode, String indicatorCode) {
+        long start = System.nanoTime();
+        try (DatasetHolder<CountryData>.Lease lease = wdiDao.acquire(dataset)) {
+            CountryData countryData = lease.table().get(countryCode, indicatorCode);
+            if (countryData == null) {
+                return null;
             }
+            String countryName = countryData.getCountryName();
+            String indicatorName = countryData.getIndicatorName();
+            OptionalDouble optionalDouble = calculateMean(countryData);
+            return String.format("country: %s has %s with mean average of %s percentage over the year 1960-2024", countryName, indicatorName,
+                    optionalDouble.isPresent() ? optionalDouble.getAsDouble() : 0);
+        } finally {
+            REPORT_LATENCY.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
         }
-        return OptionalDouble.empty(); // Return empty if country or indicator not found
     }
-}
 
-/**
- * This is utility class for reading CSV file
- * @author : EngineeringWithSandeep
- */
-class CsvReader {
-
-    public static void readCsv(String filePath) {
-        try (CSVReader reader = new CSVReader(new FileReader(filePath))) {
-            String[] header = reader.readNext();  // Read header (years)
-
-            String[] line;
-            while ((line = reader.readNext()) != null) {
-                String countryName = line[0];
-                String countryCode = line[1];
-                String indicatorName = line[2];
-                String indicatorCode = line[3];
-
-                CountryData countryData = new CountryData(countryName, countryCode, indicatorName, indicatorCode);
-
-                for (int i = 4; i < line.length; i++) {
-                    double value;
-                    int year = Integer.parseInt(header[i]);
-                    if (line[i].isEmpty()) {
-                        value = 0.0;
-                    } else {
-                        value = Double.parseDouble(line[i]);
-                    }
-                    countryData.getYearData().put(year, value);
-                }
-                // Here you can pass the `countryData` object to the DAO for storing
-                WDIDao.save(countryData);
+    // JSON slice of the series, null for an unknown series
+    @Override
+    public String getCountryRange(String dataset, String countryCode, String indicatorCode, int fromYear, int toYear) {
+        try (DatasetHolder<CountryData>.Lease lease = wdiDao.acquire(dataset)) {
+            CountryData countryData = lease.table().get(countryCode, indicatorCode);
+            if (countryData == null) {
+                return null;
             }
-        } catch (IOException | CsvValidationException e) {
-            System.out.println(e.getMessage());
+            return countryData.getYearRange(fromYear, toYear)
+                    .toJson(countryData.getCountryCode(), countryData.getIndicatorCode());
+        }
+    }
+
+    // Top or bottom n countries by a column scan of the indicator, null for an unknown indicator
+    @Override
+    public Ranking getRanking(String dataset, String indicatorCode, int year, int n, Ranking.Order order) {
+        try (DatasetHolder<CountryData>.Lease lease = wdiDao.acquire(dataset)) {
+            ColumnarStore store = lease.table().store();
+            int indicator = store == null ? -1 : store.indicatorId(indicatorCode);
+            return indicator < 0 ? null : Ranking.of(store, indicator, year, n, order);
         }
     }
-}
\ No newline at end of file
+
+    // Fork-join aggregation of one indicator, null for an unknown indicator
+    @Override
+    public AggregationEngine.Report getAggregate(String dataset, String indicatorCode, AggregationEngine.GroupBy groupBy,
+                                                 List<String> countryCodes, int fromYear, int toYear,
+                                                 String weightIndicatorCode, double[] percentiles) {
+        try (DatasetHolder<CountryData>.Lease lease = wdiDao.acquire(dataset)) {
+            return AggregationEngine.common().report(lease.table().store(), indicatorCode, groupBy, countryCodes,
+                    fromYear, toYear, weightIndicatorCode, percentiles);
+        }
+    }
+
+    // Resolves the export's codes against the served version, so a bad request is refused before streaming starts
+    @Override
+    public void checkExport(String dataset, List<String> countryCodes, List<String> indicatorCodes) {
+        try (DatasetHolder<CountryData>.Lease lease = wdiDao.acquire(dataset)) {
+            ColumnarStore store = lease.table().store();
+            if (store != null) {
+                SeriesExporter.Selection.of(store, countryCodes, indicatorCodes, 0, 0);
+            }
+        }
+    }
+
+    // Writes the selected series of one leased version, returns the number of rows
+    @Override
+    public long export(String dataset, List<String> countryCodes, List<String> indicatorCodes, int fromYear, int toYear,
+                       SeriesExporter.Format format, Writer out) throws IOException {
+        try (DatasetHolder<CountryData>.Lease lease = wdiDao.acquire(dataset)) {
+            ColumnarStore store = lease.table().store();
+            if (store == null) {
+                return 0;
+            }
+            SeriesExporter.Selection selection = SeriesExporter.Selection.of(store, countryCodes, indicatorCodes,
+                    fromYear, toYear);
+            return SeriesExporter.write(store, selection, format, out);
+        }
+    }
+
+    @Override
+    public long reload(String dataset) throws IOException {
+        return wdiDao.reload(dataset);
+    }
+
+    @Override
+    public long evict(String dataset) throws IOException {
+        return wdiDao.evict(dataset);
+    }
+
+    // The configured name a request's dataset parameter stands for; throws for an unknown dataset
+    @Override
+    public String datasetName(String dataset) {
+        return WDIDao.datasets.dataset(dataset).name();
+    }
+
+    // Version the next request will read, loading the data first if needed
+    @Override
+    public long datasetVersion(String dataset) {
+        return wdiDao.version(dataset);
+    }
+
+    // Never triggers a load, a status probe must not start the ingestion it is watching
+    @Override
+    public DatasetHolder.LoadStatus loadStatus(String dataset) {
+        return WDIDao.datasets.dataset(dataset).holder().loadStatus();
+    }
+
+    @Override
+    public List<DatasetRegistry.Summary> datasets() {
+        return WDIDao.datasets.summaries();
+    }
+
+    // Mean value of a given indicator for a specific country, looked up in the store's aggregate index
+    public static OptionalDouble calculateMean(CountryData countryData) {
+        return countryData.getStats().meanValue();
+    }
+}
@@ -1,16 +1,32 @@
 package com.engineeringwithsandeep.worldbankservice.socket.client;
 
 // Client.java
+import com.engineeringwithsandeep.worldbankservice.socket.command.BinaryProtocol;
+import com.engineeringwithsandeep.worldbankservice.store.SeriesStats;
+import com.engineeringwithsandeep.worldbankservice.store.YearRange;
+
 import java.io.*;
 import java.net.*;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
 import java.util.Scanner;
 
+/**
+ * Interactive client. Runs the text protocol, or with the argument "binary" sends the same commands
+ * (q, r, b, g, e, z) encoded by BinaryCodec.
+ */
 public class Client {
 
     private static final String SERVER_ADDRESS = "127.0.0.1";
     private static final int SERVER_PORT = 8080;
 
     public static void main(String[] args) {
+        if (args.length > 0 && "binary".equals(args[0])) {
+            runBinary();
+            return;
+        }
         try (Socket socket = new Socket(SERVER_ADDRESS, SERVER_PORT)) {
             System.out.println("Connected to the server");
 
@@ -45,5 +61,298 @@ public class Client {
             System.out.println("I/O error: " + e.getMessage());
         }
     }
-}
 
+    private static void runBinary() {
+        try (BinaryCodec codec = new BinaryCodec(new Socket(SERVER_ADDRESS, SERVER_PORT))) {
+            System.out.println("Connected to the server (binary)");
+            Scanner scanner = new Scanner(System.in);
+            String command;
+
+            System.out.println("Enter a command (type 'e' to quit):");
+
+            do {
+                System.out.print(">> ");
+                command = scanner.nextLine();
+                String[] commandData = command.split(";");
+                try {
+                    String response = switch (commandData[0]) {
+                        case "q" -> String.valueOf(codec.query(commandData[1], commandData[2], Integer.parseInt(commandData[3])));
+                        case "r" -> String.valueOf(codec.report(commandData[1], commandData[2]));
+                        case "b" -> {
+                            String[] countries = new String[commandData.length - 1];
+                            String[] indicators = new String[countries.length];
+                            int[] years = new int[countries.length];
+                            for (int i = 0; i < countries.length; i++) {
+                                String[] tuple = commandData[i + 1].split(",");
+                                countries[i] = tuple[0];
+                                indicators[i] = tuple[1];
+                                years[i] = Integer.parseInt(tuple[2]);
+                            }
+                            yield Arrays.toString(codec.batch(countries, indicators, years));
+                        }
+                        case "g" -> {
+                            YearRange range = codec.range(commandData[1], commandData[2],
+                                    Integer.parseInt(commandData[3]), Integer.parseInt(commandData[4]));
+                            yield range.fromYear() + ";" + range.toYear() + ";" + range.appendValues(new StringBuilder());
+                        }
+                        case "z" -> {
+                            codec.stopServer();
+                            yield "Server Stopped";
+                        }
+                        case "e" -> {
+                            codec.disconnect();
+                            yield "Goodbye! ";
+                        }
+                        default -> "Unknown command: " + commandData[0];
+                    };
+                    System.out.println("Server response: " + response);
+                } catch (RuntimeException e) {
+                    System.out.println("Error: " + e.getMessage());
+                }
+            } while (!command.equalsIgnoreCase("e") && !command.equalsIgnoreCase("z"));
+
+        } catch (UnknownHostException e) {
+            System.out.println("Server not found: " + e.getMessage());
+        } catch (IOException e) {
+            System.out.println("I/O error: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Client side of the binary protocol, see BinaryProtocol for the frame layout.
+     * Codes are resolved to ids once and cached until the server reports them stale after a full reload, then the
+     * request is resolved and sent once more; missing values come back as NaN, unknown series as
+     * IllegalArgumentException. Not thread safe, use one codec per thread.
+     */
+    public static class BinaryCodec implements Closeable {
+
+        private final Socket socket;
+        private final DataInputStream in;
+        private final DataOutputStream out;
+        private final Map<String, Integer> countryIds = new HashMap<>();
+        private final Map<String, Integer> indicatorIds = new HashMap<>();
+        private int idEpoch;  // epoch of every cached id
+
+        public BinaryCodec(Socket socket) throws IOException {
+            this.socket = socket;
+            socket.setTcpNoDelay(true);
+            this.in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+            this.out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+            out.write(BinaryProtocol.HANDSHAKE);
+            out.flush();
+            byte[] handshake = new byte[BinaryProtocol.HANDSHAKE.length];
+            in.readFully(handshake);
+            if (!Arrays.equals(handshake, BinaryProtocol.HANDSHAKE)) {
+                throw new IOException("Server does not speak the binary protocol");
+            }
+        }
+
+        // -1 when the server does not know the code
+        public int countryId(String countryCode) throws IOException {
+            return resolve(countryIds, BinaryProtocol.KIND_COUNTRY, countryCode);
+        }
+
+        public int indicatorId(String indicatorCode) throws IOException {
+            return resolve(indicatorIds, BinaryProtocol.KIND_INDICATOR, indicatorCode);
+        }
+
+        private int resolve(Map<String, Integer> cache, byte kind, String code) throws IOException {
+            Integer cached = cache.get(code);
+            if (cached != null) {
+                return cached;
+            }
+            byte[] bytes = code.getBytes(StandardCharsets.UTF_8);
+            out.writeInt(2 + bytes.length);
+            out.writeByte(BinaryProtocol.RESOLVE);
+            out.writeByte(kind);
+            out.write(bytes);
+            out.flush();
+            readReply(BinaryProtocol.RESOLVE);
+            in.readByte();
+            int id = in.readInt();
+            int epoch = in.readInt();
+            if (epoch != idEpoch && !(countryIds.isEmpty() && indicatorIds.isEmpty())) {
+                // ids resolved earlier, maybe even within the current request, belong to the old layout
+                throw new StaleIdsException();
+            }
+            idEpoch = epoch;
+            cache.put(code, id);
+            return id;
+        }
+
+        public double query(String countryCode, String indicatorCode, int year) throws IOException {
+            return withCurrentIds(() -> queryOnce(countryCode, indicatorCode, year));
+        }
+
+        private double queryOnce(String countryCode, String indicatorCode, int year) throws IOException {
+            int country = countryId(countryCode);
+            int indicator = indicatorId(indicatorCode);
+            out.writeInt(1 + BinaryProtocol.EPOCH_BYTES + BinaryProtocol.QUERY_TUPLE_BYTES);
+            out.writeByte(BinaryProtocol.QUERY);
+            out.writeInt(idEpoch);
+            writeTuple(country, indicator, year);
+            out.flush();
+            readReply(BinaryProtocol.QUERY);
+            return readValue(countryCode, indicatorCode);
+        }
+
+        public SeriesStats report(String countryCode, String indicatorCode) throws IOException {
+            return withCurrentIds(() -> reportOnce(countryCode, indicatorCode));
+        }
+
+        private SeriesStats reportOnce(String countryCode, String indicatorCode) throws IOException {
+            int country = countryId(countryCode);
+            int indicator = indicatorId(indicatorCode);
+            out.writeInt(1 + BinaryProtocol.REPORT_REQUEST_BYTES);
+            out.writeByte(BinaryProtocol.REPORT);
+            out.writeInt(idEpoch);
+            out.writeInt(country);
+            out.writeInt(indicator);
+            out.flush();
+            readReply(BinaryProtocol.REPORT);
+            if (readStatus() != BinaryProtocol.STATUS_OK) {
+                throw new IllegalArgumentException("Unknown series " + countryCode + ";" + indicatorCode);
+            }
+            return new SeriesStats(in.readInt(), in.readDouble(), in.readDouble(), in.readDouble(), in.readDouble(),
+                    in.readShort(), in.readShort());
+        }
+
+        // One value per tuple in request order, NaN for missing values and unknown series
+        public double[] batch(String[] countryCodes, String[] indicatorCodes, int[] years) throws IOException {
+            return withCurrentIds(() -> batchOnce(countryCodes, indicatorCodes, years));
+        }
+
+        private double[] batchOnce(String[] countryCodes, String[] indicatorCodes, int[] years) throws IOException {
+            int[] countries = new int[countryCodes.length];
+            int[] indicators = new int[countryCodes.length];
+            for (int i = 0; i < countryCodes.length; i++) {
+                countries[i] = countryId(countryCodes[i]);
+                indicators[i] = indicatorId(indicatorCodes[i]);
+            }
+            out.writeInt(1 + BinaryProtocol.EPOCH_BYTES + Integer.BYTES + countries.length * BinaryProtocol.QUERY_TUPLE_BYTES);
+            out.writeByte(BinaryProtocol.BATCH);
+            out.writeInt(idEpoch);
+            out.writeInt(countries.length);
+            for (int i = 0; i < countries.length; i++) {
+                writeTuple(countries[i], indicators[i], years[i]);
+            }
+            out.flush();
+            readReply(BinaryProtocol.BATCH);
+            if (readStatus() != BinaryProtocol.STATUS_OK) {
+                throw new IllegalArgumentException("Malformed batch");
+            }
+            double[] values = new double[in.readInt()];
+            for (int i = 0; i < values.length; i++) {
+                in.readByte();
+                values[i] = in.readDouble();  // NaN unless the status is OK
+            }
+            return values;
+        }
+
+        // Years from..to of one series clamped to the stored range, NaN for missing years
+        public YearRange range(String countryCode, String indicatorCode, int fromYear, int toYear) throws IOException {
+            return withCurrentIds(() -> rangeOnce(countryCode, indicatorCode, fromYear, toYear));
+        }
+
+        private YearRange rangeOnce(String countryCode, String indicatorCode, int fromYear, int toYear) throws IOException {
+            int country = countryId(countryCode);
+            int indicator = indicatorId(indicatorCode);
+            out.writeInt(1 + BinaryProtocol.RANGE_REQUEST_BYTES);
+            out.writeByte(BinaryProtocol.RANGE);
+            out.writeInt(idEpoch);
+            out.writeInt(country);
+            out.writeInt(indicator);
+            out.writeShort(fromYear);
+            out.writeShort(toYear);
+            out.flush();
+            readReply(BinaryProtocol.RANGE);
+            if (readStatus() != BinaryProtocol.STATUS_OK) {
+                throw new IllegalArgumentException("Unknown series " + countryCode + ";" + indicatorCode);
+            }
+            int from = in.readShort();
+            double[] values = new double[in.readInt()];
+            for (int i = 0; i < values.length; i++) {
+                values[i] = in.readDouble();
+            }
+            return new YearRange(from, values);
+        }
+
+        public void disconnect() throws IOException {
+            sendEmpty(BinaryProtocol.DISCONNECT);
+        }
+
+        public void stopServer() throws IOException {
+            sendEmpty(BinaryProtocol.STOP);
+        }
+
+        private void sendEmpty(byte opcode) throws IOException {
+            out.writeInt(1);
+            out.writeByte(opcode);
+            out.flush();
+            readReply(opcode);
+            readStatus();
+        }
+
+        // A reload between resolving and sending only costs one more round of RESOLVE frames
+        private <T> T withCurrentIds(IdRequest<T> request) throws IOException {
+            try {
+                return request.send();
+            } catch (StaleIdsException e) {
+                countryIds.clear();
+                indicatorIds.clear();
+                return request.send();
+            }
+        }
+
+        private void writeTuple(int country, int indicator, int year) throws IOException {
+            out.writeInt(country);
+            out.writeInt(indicator);
+            out.writeShort(year);
+        }
+
+        private void readReply(byte opcode) throws IOException {
+            in.readInt();  // length, replies are decoded field by field
+            int reply = in.readUnsignedByte();
+            if (reply != ((opcode | BinaryProtocol.REPLY) & 0xFF)) {
+                throw new IOException("Unexpected reply 0x" + Integer.toHexString(reply));
+            }
+        }
+
+        private byte readStatus() throws IOException {
+            byte status = in.readByte();
+            if (status == BinaryProtocol.STATUS_BAD_REQUEST || status == BinaryProtocol.STATUS_UNKNOWN_OPCODE) {
+                throw new IllegalStateException("Server rejected the request with status " + status);
+            }
+            if (status == BinaryProtocol.STATUS_STALE_IDS) {
+                throw new StaleIdsException();
+            }
+            return status;
+        }
+
+        private double readValue(String countryCode, String indicatorCode) throws IOException {
+            byte status = readStatus();
+            double value = in.readDouble();
+            if (status == BinaryProtocol.STATUS_UNKNOWN_SERIES) {
+                throw new IllegalArgumentException("Unknown series " + countryCode + ";" + indicatorCode);
+            }
+            return value;
+        }
+
+        @Override
+        public void close() throws IOException {
+            socket.close();
+        }
+
+        private interface IdRequest<T> {
+            T send() throws IOException;
+        }
+    }
+
+    // Reaches the caller only when the ids went stale again while the codec was retrying the request
+    public static class StaleIdsException extends IllegalStateException {
+
+        StaleIdsException() {
+            super("The dataset was reloaded with different ids, retry the request");
+        }
+    }
+}
@@ -0,0 +1,90 @@
+package com.engineeringwithsandeep.worldbankservice.socket.command;
+
+import com.engineeringwithsandeep.worldbankservice.socket.dao.CountryData;
+import com.engineeringwithsandeep.worldbankservice.socket.service.WorldBankServiceImpl;
+import com.engineeringwithsandeep.worldbankservice.store.ColumnarStore;
+import com.engineeringwithsandeep.worldbankservice.store.DatasetHolder;
+import com.engineeringwithsandeep.worldbankservice.store.SeriesTable;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Answers many lookups in one round trip.
+ * Request:  b;countryCode,indicatorCode,year;countryCode,indicatorCode,year;...
+ * Response: one value per tuple in request order, separated by ';' - "null" for a missing value,
+ * "error" for an unknown series or a malformed tuple.
+ * The binary form carries a count and fixed size tuples, see BinaryProtocol.
+ */
+public class BatchCommand extends Command {
+
+    private final WorldBankServiceImpl service;
+
+    public BatchCommand(String[] command, WorldBankServiceImpl service) {
+        super(command);
+        this.service = service;
+    }
+
+    @Override
+    public String execute() {
+        if (command.length < 2) {
+            return "Wrong number of arguments";
+        }
+        StringBuilder response = new StringBuilder(command.length * 12);
+        try (DatasetHolder<CountryData>.Lease lease = service.acquire()) {  // one dataset version for the whole batch
+            appendValues(lease.table(), response);
+        }
+        return response.toString();
+    }
+
+    private void appendValues(SeriesTable<CountryData> database, StringBuilder response) {
+        for (int i = 1; i < command.length; i++) {
+            if (i > 1) {
+                response.append(';');
+            }
+            String[] tuple = command[i].split(",");
+            try {
+                if (tuple.length != 3) {
+                    response.append("error");
+                    continue;
+                }
+                response.append(WorldBankServiceImpl.getCountryValue(database, tuple[0], tuple[1], Integer.parseInt(tuple[2])));
+            } catch (RuntimeException e) {
+                response.append("error");
+            }
+        }
+    }
+
+    @Override
+    public void execute(ByteBuffer request, int offset, int length, ByteBuffer response) {
+        int count = count(request, offset, length);
+        if (count < 0) {
+            response.put(BinaryProtocol.STATUS_BAD_REQUEST);
+            return;
+        }
+        ColumnarStore store = service.getStore();  // one store for the whole batch, even if it is reloaded meanwhile
+        if (QueryCommand.isStale(store, request, offset)) {
+            response.put(BinaryProtocol.STATUS_STALE_IDS);
+            return;
+        }
+        response.put(BinaryProtocol.STATUS_OK).putInt(count);
+        for (int i = 0, tuple = offset + BinaryProtocol.EPOCH_BYTES + Integer.BYTES; i < count; i++, tuple += BinaryProtocol.QUERY_TUPLE_BYTES) {
+            QueryCommand.putValue(store, request, tuple, response);
+        }
+    }
+
+    @Override
+    public int replyBytes(ByteBuffer request, int offset, int length) {
+        int count = count(request, offset, length);
+        return count < 0 ? 1 : 1 + Integer.BYTES + count * BinaryProtocol.VALUE_BYTES;
+    }
+
+    // Tuple count of a binary batch, -1 when it does not match the payload length
+    private static int count(ByteBuffer request, int offset, int length) {
+        int header = BinaryProtocol.EPOCH_BYTES + Integer.BYTES;
+        if (length < header) {
+            return -1;
+        }
+        int count = request.getInt(offset + BinaryProtocol.EPOCH_BYTES);
+        return count >= 0 && (long) count * BinaryProtocol.QUERY_TUPLE_BYTES == length - header ? count : -1;
+    }
+}
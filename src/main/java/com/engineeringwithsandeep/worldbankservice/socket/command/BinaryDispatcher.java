@@ -0,0 +1,56 @@
+package com.engineeringwithsandeep.worldbankservice.socket.command;
+
+import com.engineeringwithsandeep.worldbankservice.metrics.WorldBankMetrics;
+import io.micrometer.core.instrument.Counter;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Decodes frames of the binary protocol and runs them through the Command subclasses.
+ * Commands are stateless, so one instance per opcode is created up front and shared by every connection -
+ * dispatching a frame reads the opcode from the caller's buffer and allocates nothing. The counter of each
+ * command type is resolved up front as well.
+ */
+public class BinaryDispatcher {
+
+    private static final int HEADER_BYTES = Integer.BYTES + 1;
+
+    private final Command[] commands = new Command[128];
+    private final Counter[] counters = new Counter[128];
+
+    public BinaryDispatcher(CommandParser parser) {
+        for (int opcode = 0; opcode < commands.length; opcode++) {
+            commands[opcode] = parser.parse((byte) opcode);
+            counters[opcode] = WorldBankMetrics.socketCommands(CommandParser.metricName(commands[opcode].getClass()), "binary");
+        }
+    }
+
+    public Command command(byte opcode) {
+        return commands[opcode & 0x7F];
+    }
+
+    // Bytes the reply to the frame at [offset, offset + length) may take, including its length prefix
+    public int replyCapacity(ByteBuffer in, int offset, int length) {
+        return HEADER_BYTES + command(in.get(offset)).replyBytes(in, offset + 1, length - 1);
+    }
+
+    /**
+     * Executes the frame at [offset, offset + length) of in - opcode and payload, without the length prefix -
+     * and appends the reply frame to out, which must have replyCapacity bytes left.
+     * @return the command that ran, so the caller can handle stop and disconnect
+     */
+    public Command dispatch(ByteBuffer in, int offset, int length, ByteBuffer out) {
+        byte opcode = in.get(offset);
+        Command command = command(opcode);
+        counters[opcode & 0x7F].increment();
+        int start = out.position();
+        out.putInt(0).put((byte) (opcode | BinaryProtocol.REPLY));
+        try {
+            command.execute(in, offset + 1, length - 1, out);
+        } catch (RuntimeException e) {
+            out.position(start + HEADER_BYTES).put(BinaryProtocol.STATUS_BAD_REQUEST);  // same as "Error;Bad Command"
+        }
+        out.putInt(start, out.position() - start - Integer.BYTES);
+        return command;
+    }
+}
@@ -0,0 +1,66 @@
+package com.engineeringwithsandeep.worldbankservice.socket.command;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Length-prefixed binary framing, negotiated when a client opens the connection with {@link #HANDSHAKE}
+ * instead of a text command (text commands never start with a zero byte). The server echoes the handshake.
+ * <pre>
+ * frame     int length (of everything after it), byte opcode, payload      - all big endian
+ * reply     int length, byte (opcode | 0x80), byte status, payload
+ *
+ * RESOLVE   byte kind (0 country, 1 indicator), UTF-8 code                 -> int id, int epoch
+ * QUERY     int epoch, int country, int indicator, short year            -> double value
+ * REPORT    int epoch, int country, int indicator                        -> int count, double mean, min, max, stddev,
+ *                                                                           short firstYear, short lastYear
+ * BATCH     int epoch, int n, n * (int country, int indicator, short year) -> int n, n * (byte status, double value)
+ * RANGE     int epoch, int country, int indicator, short from, short to  -> short from, int n, n * double (NaN if missing)
+ * DISCONNECT, STOP                                                       -> no payload
+ * </pre>
+ * Country and indicator ids are the dense store ordinals returned by RESOLVE, clients cache them per connection.
+ * A full reload may hand out different ids, so RESOLVE also returns the id epoch of the store (ColumnarStore.idEpoch)
+ * and every frame carrying ids starts with the epoch they were resolved under. A frame whose epoch no longer matches
+ * is answered with {@link #STATUS_STALE_IDS} and no payload; the client drops its cached ids and resolves again.
+ */
+public final class BinaryProtocol {
+
+    public static final byte[] HANDSHAKE = {0, 'W', 'B', 2};
+    public static final int MAX_FRAME_BYTES = 1024 * 1024;
+
+    public static final byte RESOLVE = 0x01;
+    public static final byte QUERY = 0x02;
+    public static final byte REPORT = 0x03;
+    public static final byte BATCH = 0x04;
+    public static final byte RANGE = 0x05;
+    public static final byte DISCONNECT = 0x0E;
+    public static final byte STOP = 0x0F;
+    public static final int REPLY = 0x80;
+
+    public static final byte KIND_COUNTRY = 0;
+    public static final byte KIND_INDICATOR = 1;
+
+    public static final byte STATUS_OK = 0;
+    public static final byte STATUS_MISSING = 1;
+    public static final byte STATUS_UNKNOWN_SERIES = 2;
+    public static final byte STATUS_BAD_REQUEST = 3;
+    public static final byte STATUS_UNKNOWN_OPCODE = 4;
+    public static final byte STATUS_STALE_IDS = 5;
+
+    public static final int EPOCH_BYTES = Integer.BYTES;
+    public static final int QUERY_TUPLE_BYTES = Integer.BYTES * 2 + Short.BYTES;
+    public static final int VALUE_BYTES = 1 + Double.BYTES;
+    public static final int REPORT_REQUEST_BYTES = EPOCH_BYTES + Integer.BYTES * 2;
+    public static final int RANGE_REQUEST_BYTES = EPOCH_BYTES + Integer.BYTES * 2 + Short.BYTES * 2;
+
+    private BinaryProtocol() {
+    }
+
+    public static boolean isHandshake(ByteBuffer buffer, int offset) {
+        for (int i = 0; i < HANDSHAKE.length; i++) {
+            if (buffer.get(offset + i) != HANDSHAKE[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
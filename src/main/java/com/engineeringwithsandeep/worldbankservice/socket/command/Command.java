@@ -1,5 +1,7 @@
 package com.engineeringwithsandeep.worldbankservice.socket.command;
 
+import java.nio.ByteBuffer;
+
 public abstract class Command {
 
     protected final String[] command;
@@ -9,4 +11,17 @@ public abstract class Command {
     }
 
     public abstract String execute();
+
+    /**
+     * Binary protocol: reads the request payload at [offset, offset + length) with absolute gets and writes
+     * the reply status and payload to response. Runs once per frame, so implementations must not allocate.
+     */
+    public void execute(ByteBuffer request, int offset, int length, ByteBuffer response) {
+        response.put(BinaryProtocol.STATUS_UNKNOWN_OPCODE);
+    }
+
+    // Upper bound of the reply written by execute(ByteBuffer, ...), the caller sizes the response buffer with it
+    public int replyBytes(ByteBuffer request, int offset, int length) {
+        return 64;
+    }
 }
@@ -0,0 +1,147 @@
+package com.engineeringwithsandeep.worldbankservice.socket.command;
+
+import com.engineeringwithsandeep.worldbankservice.cluster.Cluster;
+import com.engineeringwithsandeep.worldbankservice.cluster.ShardClient;
+import com.engineeringwithsandeep.worldbankservice.metrics.WorldBankMetrics;
+import com.engineeringwithsandeep.worldbankservice.socket.service.WorldBankServiceImpl;
+import com.engineeringwithsandeep.worldbankservice.store.DatasetHolder;
+import com.engineeringwithsandeep.worldbankservice.store.DatasetRegistry;
+import com.engineeringwithsandeep.worldbankservice.store.Ranking;
+import io.micrometer.core.instrument.Counter;
+
+import java.util.Locale;
+
+/**
+ * Maps one line of the text protocol, or one opcode of the binary protocol, onto its Command,
+ * shared by the blocking and the non-blocking server. Every parsed line counts towards worldbank.socket.commands.
+ * A text command may name its dataset as a prefix, {@code ids:q;IND;DT.DOD.DECT.CD;2020}; without one it runs
+ * against the default dataset. Binary frames always address the default dataset.
+ * On a node of a partitioned Cluster q, r and g for another node's series are forwarded to it, and k and b are
+ * scattered over the nodes and their replies merged. A line starting with '@' is one node asking another and is
+ * always answered from the local shard. Binary frames and i are never routed, their ids are local to a node.
+ */
+public class CommandParser {
+
+    // One counter per command type, resolved once per class, so counting a line is a ClassValue read and an add
+    private static final ClassValue<Counter> TEXT_COMMANDS = new ClassValue<>() {
+        @Override
+        protected Counter computeValue(Class<?> type) {
+            return WorldBankMetrics.socketCommands(metricName(type), "text");
+        }
+    };
+
+    private final WorldBankServiceImpl service;
+    private final Cluster cluster;
+    private final ShardClient client;  // null on a standalone node
+
+    public CommandParser(WorldBankServiceImpl service) {
+        this(service, Cluster.current());
+    }
+
+    public CommandParser(WorldBankServiceImpl service, Cluster cluster) {
+        this.service = service;
+        this.cluster = cluster;
+        this.client = cluster.partitioned() ? new ShardClient() : null;
+    }
+
+    public Command parse(String line) {
+        return parse(line.split(";"));
+    }
+
+    public Command parse(String[] commandData) {
+        String[] line = commandData;
+        boolean local = client == null || commandData[0].startsWith("@");
+        if (commandData[0].startsWith("@")) {
+            commandData = commandData.clone();
+            commandData[0] = commandData[0].substring(1);
+        }
+        WorldBankServiceImpl target = service;
+        int colon = commandData[0].indexOf(':');
+        if (colon >= 0) {
+            String dataset = commandData[0].substring(0, colon);
+            commandData = commandData.clone();
+            commandData[0] = commandData[0].substring(colon + 1);
+            try {
+                target = service.forDataset(dataset);
+            } catch (DatasetRegistry.UnknownDatasetException | DatasetHolder.LoadFailedException e) {
+                TEXT_COMMANDS.get(ErrorCommand.class).increment();
+                return new ErrorCommand(commandData, "Error;" + e.getMessage());
+            }
+        }
+        Command command = local ? null : route(line, commandData, target);
+        if (command != null) {
+            TEXT_COMMANDS.get(command.getClass()).increment();
+            return command;
+        }
+        command = switch (commandData[0]) {
+            case "q" -> new QueryCommand(commandData, target);
+            case "r" -> new ReportCommand(commandData, target);
+            case "b" -> new BatchCommand(commandData, target);
+            case "g" -> new RangeCommand(commandData, target);
+            case "k" -> new RankCommand(commandData, target);
+            case "i" -> new ResolveCommand(commandData, target);
+            case "z" -> new StopCommand(commandData);  // Stops the entire server
+            case "e" -> new DisconnectCommand(commandData);  // Stops the current client
+            default -> new ErrorCommand(commandData);  // Handles any unknown commands
+        };
+        TEXT_COMMANDS.get(command.getClass()).increment();
+        return command;
+    }
+
+    // The command answered by other nodes, null when this node answers it alone
+    private Command route(String[] line, String[] commandData, WorldBankServiceImpl target) {
+        switch (commandData[0]) {
+            case "q", "r", "g" -> {
+                if (commandData.length >= 3) {
+                    Cluster.Node owner = cluster.owner(commandData[1], commandData[2]);
+                    return cluster.isSelf(owner) ? null : new ForwardCommand(line, client, owner);
+                }
+            }
+            case "k" -> {
+                if (commandData.length < 2) {
+                    return null;
+                }
+                if (cluster.shardKey() == Cluster.ShardKey.INDICATOR) {
+                    Cluster.Node owner = cluster.ownerOf(commandData[1]);
+                    return cluster.isSelf(owner) ? null : new ForwardCommand(line, client, owner);
+                }
+                if (commandData.length == 4 || commandData.length == 5) {
+                    try {
+                        int n = Integer.parseInt(commandData[3]);
+                        Ranking.Order order = commandData.length == 5
+                                ? Ranking.Order.parse(commandData[4])
+                                : Ranking.Order.TOP;
+                        return ScatterCommand.rank(line, commandData, target, cluster, client, n, order);
+                    } catch (IllegalArgumentException e) {
+                        return null;  // the local RankCommand answers the malformed line
+                    }
+                }
+            }
+            case "b" -> {
+                return ScatterCommand.batch(line, commandData, target, cluster, client);
+            }
+            default -> {
+            }
+        }
+        return null;
+    }
+
+    public Command parse(byte opcode) {
+        String[] commandData = {"0x" + Integer.toHexString(opcode)};
+        return switch (opcode) {
+            case BinaryProtocol.QUERY -> new QueryCommand(commandData, service);
+            case BinaryProtocol.REPORT -> new ReportCommand(commandData, service);
+            case BinaryProtocol.BATCH -> new BatchCommand(commandData, service);
+            case BinaryProtocol.RANGE -> new RangeCommand(commandData, service);
+            case BinaryProtocol.RESOLVE -> new ResolveCommand(commandData, service);
+            case BinaryProtocol.STOP -> new StopCommand(commandData);
+            case BinaryProtocol.DISCONNECT -> new DisconnectCommand(commandData);
+            default -> new ErrorCommand(commandData);
+        };
+    }
+
+    // Tag value of a command type: QueryCommand -> query
+    static String metricName(Class<?> type) {
+        return type.getSimpleName().replace("Command", "").toLowerCase(Locale.ROOT);
+    }
+}
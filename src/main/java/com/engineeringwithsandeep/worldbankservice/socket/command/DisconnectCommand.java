@@ -1,5 +1,7 @@
 package com.engineeringwithsandeep.worldbankservice.socket.command;
 
+import java.nio.ByteBuffer;
+
 public class DisconnectCommand extends Command {
 
     public DisconnectCommand(String[] command) {
@@ -10,4 +12,9 @@ public class DisconnectCommand extends Command {
     public String execute() {
         return "Goodbye! ";
     }
+
+    @Override
+    public void execute(ByteBuffer request, int offset, int length, ByteBuffer response) {
+        response.put(BinaryProtocol.STATUS_OK);
+    }
 }
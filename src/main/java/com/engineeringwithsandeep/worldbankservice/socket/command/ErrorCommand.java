@@ -2,12 +2,20 @@ package com.engineeringwithsandeep.worldbankservice.socket.command;
 
 public class ErrorCommand extends Command {
 
+    private final String message;
+
     public ErrorCommand(String[] command) {
+        this(command, "Unknown command: " + command[0]);
+    }
+
+    // Answers with the given message, e.g. for a command addressed to an unknown dataset
+    public ErrorCommand(String[] command, String message) {
         super(command);
+        this.message = message;
     }
 
     @Override
     public String execute() {
-        return "Unknown command: " + command[0];
+        return message;
     }
 }
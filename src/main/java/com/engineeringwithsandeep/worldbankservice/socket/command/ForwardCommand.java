@@ -0,0 +1,28 @@
+package com.engineeringwithsandeep.worldbankservice.socket.command;
+
+import com.engineeringwithsandeep.worldbankservice.cluster.Cluster;
+import com.engineeringwithsandeep.worldbankservice.cluster.ShardClient;
+
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * A q, r or g command for a series another node owns: the line is sent on to the owner as it was received and
+ * the owner's reply is the reply.
+ */
+public class ForwardCommand extends RemoteCommand {
+
+    private final ShardClient client;
+    private final Cluster.Node owner;
+
+    public ForwardCommand(String[] command, ShardClient client, Cluster.Node owner) {
+        super(command);
+        this.client = client;
+        this.owner = owner;
+    }
+
+    @Override
+    public CompletableFuture<String> executeAsync() {
+        return client.send(owner, String.join(";", command))
+                .exceptionally(error -> unavailable(owner, error));
+    }
+}
@@ -1,6 +1,9 @@
 package com.engineeringwithsandeep.worldbankservice.socket.command;
 
 import com.engineeringwithsandeep.worldbankservice.socket.service.WorldBankServiceImpl;
+import com.engineeringwithsandeep.worldbankservice.store.ColumnarStore;
+
+import java.nio.ByteBuffer;
 
 public class QueryCommand extends Command {
 
@@ -25,4 +28,48 @@ public class QueryCommand extends Command {
             return "Wrong number of arguments";
         }
     }
+
+    @Override
+    public void execute(ByteBuffer request, int offset, int length, ByteBuffer response) {
+        if (length != BinaryProtocol.EPOCH_BYTES + BinaryProtocol.QUERY_TUPLE_BYTES) {
+            response.put(BinaryProtocol.STATUS_BAD_REQUEST);
+            return;
+        }
+        ColumnarStore store = service.getStore();
+        if (isStale(store, request, offset)) {
+            response.put(BinaryProtocol.STATUS_STALE_IDS);
+            return;
+        }
+        putValue(store, request, offset + BinaryProtocol.EPOCH_BYTES, response);
+    }
+
+    // Writes status and value of the (country, indicator, year) tuple at offset, always VALUE_BYTES long
+    static void putValue(ColumnarStore store, ByteBuffer request, int offset, ByteBuffer response) {
+        int country = request.getInt(offset);
+        int indicator = request.getInt(offset + Integer.BYTES);
+        int year = request.getShort(offset + 2 * Integer.BYTES);
+        if (!hasSeries(store, country, indicator)) {
+            response.put(BinaryProtocol.STATUS_UNKNOWN_SERIES).putDouble(Double.NaN);
+            return;
+        }
+        int yearOffset = store.yearOffset(year);
+        if (yearOffset < 0 || !store.isPresent(country, indicator, yearOffset)) {
+            response.put(BinaryProtocol.STATUS_MISSING).putDouble(Double.NaN);
+            return;
+        }
+        response.put(BinaryProtocol.STATUS_OK).putDouble(store.value(country, indicator, yearOffset));
+    }
+
+    // Ids resolved under another epoch may name other series in this store, the frame is refused rather than answered
+    static boolean isStale(ColumnarStore store, ByteBuffer request, int offset) {
+        return store != null && request.getInt(offset) != store.idEpoch();
+    }
+
+    // Ids come straight from the wire, so they are range checked before touching the store
+    static boolean hasSeries(ColumnarStore store, int country, int indicator) {
+        return store != null
+                && country >= 0 && country < store.countryCount()
+                && indicator >= 0 && indicator < store.indicatorCount()
+                && store.hasSeries(country, indicator);
+    }
 }
@@ -0,0 +1,86 @@
+package com.engineeringwithsandeep.worldbankservice.socket.command;
+
+import com.engineeringwithsandeep.worldbankservice.socket.service.WorldBankServiceImpl;
+import com.engineeringwithsandeep.worldbankservice.store.ColumnarStore;
+import com.engineeringwithsandeep.worldbankservice.store.YearRange;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Contiguous year slice of one series in a single reply, the years clamped to the stored range.
+ * Request:  g;countryCode;indicatorCode;fromYear;toYear
+ * Response: fromYear;toYear;value,value,null,... (null for a missing year, "error" for an unknown series)
+ */
+public class RangeCommand extends Command {
+
+    private final WorldBankServiceImpl service;
+
+    public RangeCommand(String[] command, WorldBankServiceImpl service) {
+        super(command);
+        this.service = service;
+    }
+
+    @Override
+    public String execute() {
+        if (command.length != 5) {
+            return "Wrong number of arguments";
+        }
+        try {
+            int from = Integer.parseInt(command[3]);
+            int to = Integer.parseInt(command[4]);
+            if (from > to) {
+                return "Error;Bad Command";
+            }
+            YearRange range = service.getCountryRange(command[1], command[2], from, to);
+            StringBuilder response = new StringBuilder(16 + range.values().length * 12)
+                    .append(range.fromYear()).append(';').append(range.toYear()).append(';');
+            return range.appendValues(response).toString();
+        } catch (NumberFormatException e) {
+            return "Error;Bad Command";
+        } catch (IllegalArgumentException e) {
+            return "error";
+        }
+    }
+
+    @Override
+    public void execute(ByteBuffer request, int offset, int length, ByteBuffer response) {
+        if (length != BinaryProtocol.RANGE_REQUEST_BYTES) {
+            response.put(BinaryProtocol.STATUS_BAD_REQUEST);
+            return;
+        }
+        ColumnarStore store = service.getStore();
+        if (QueryCommand.isStale(store, request, offset)) {
+            response.put(BinaryProtocol.STATUS_STALE_IDS);
+            return;
+        }
+        int ids = offset + BinaryProtocol.EPOCH_BYTES;
+        int country = request.getInt(ids);
+        int indicator = request.getInt(ids + Integer.BYTES);
+        int fromYear = request.getShort(ids + 2 * Integer.BYTES);
+        int toYear = request.getShort(ids + 2 * Integer.BYTES + Short.BYTES);
+        if (!QueryCommand.hasSeries(store, country, indicator)) {
+            response.put(BinaryProtocol.STATUS_UNKNOWN_SERIES);
+            return;
+        }
+        int from = Math.max(fromYear, store.firstYear());
+        int to = Math.min(toYear, store.lastYear());
+        int count = Math.max(to - from + 1, 0);
+        response.put(BinaryProtocol.STATUS_OK).putShort((short) (count == 0 ? fromYear : from)).putInt(count);
+        // written straight from the block, no intermediate array
+        for (int offsetInSeries = from - store.firstYear(), k = 0; k < count; k++, offsetInSeries++) {
+            response.putDouble(store.isPresent(country, indicator, offsetInSeries)
+                    ? store.value(country, indicator, offsetInSeries) : Double.NaN);
+        }
+    }
+
+    // Bounded by the requested years, the stored range can only make the reply shorter
+    @Override
+    public int replyBytes(ByteBuffer request, int offset, int length) {
+        if (length != BinaryProtocol.RANGE_REQUEST_BYTES) {
+            return 1;
+        }
+        int fromYear = request.getShort(offset + BinaryProtocol.EPOCH_BYTES + 2 * Integer.BYTES);
+        int toYear = request.getShort(offset + BinaryProtocol.EPOCH_BYTES + 2 * Integer.BYTES + Short.BYTES);
+        return 1 + Short.BYTES + Integer.BYTES + Math.max(toYear - fromYear + 1, 0) * Double.BYTES;
+    }
+}
@@ -0,0 +1,47 @@
+package com.engineeringwithsandeep.worldbankservice.socket.command;
+
+import com.engineeringwithsandeep.worldbankservice.socket.service.WorldBankServiceImpl;
+import com.engineeringwithsandeep.worldbankservice.store.Ranking;
+
+/**
+ * Top or bottom n countries of one indicator in one year, text protocol only.
+ * Request:  k;indicatorCode;year;n[;top|bottom] (top when the order is left out)
+ * Response: countryCode,value;countryCode,value;... in rank order, empty when nobody has a value that year,
+ *           "error" for an unknown indicator
+ */
+public class RankCommand extends Command {
+
+    private static final int MAX_N = 1000;
+
+    private final WorldBankServiceImpl service;
+
+    public RankCommand(String[] command, WorldBankServiceImpl service) {
+        super(command);
+        this.service = service;
+    }
+
+    @Override
+    public String execute() {
+        if (command.length != 4 && command.length != 5) {
+            return "Wrong number of arguments";
+        }
+        Ranking.Order order;
+        int year;
+        int n;
+        try {
+            year = Integer.parseInt(command[2]);
+            n = Integer.parseInt(command[3]);
+            order = command.length == 5 ? Ranking.Order.parse(command[4]) : Ranking.Order.TOP;
+        } catch (IllegalArgumentException e) {  // also covers NumberFormatException
+            return "Error;Bad Command";
+        }
+        if (n < 1 || n > MAX_N) {
+            return "Error;Bad Command";
+        }
+        try {
+            return service.getRanking(command[1], year, n, order).toText();
+        } catch (IllegalArgumentException e) {
+            return "error";
+        }
+    }
+}
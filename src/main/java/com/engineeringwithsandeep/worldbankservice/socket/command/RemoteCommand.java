@@ -0,0 +1,30 @@
+package com.engineeringwithsandeep.worldbankservice.socket.command;
+
+import com.engineeringwithsandeep.worldbankservice.cluster.Cluster;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+/**
+ * A text command answered, at least in part, by other nodes of the cluster. The NioServer takes the reply from
+ * executeAsync and keeps serving its other connections meanwhile; the thread-per-client servers block in execute.
+ * The future never completes exceptionally, a node that does not answer becomes an error reply.
+ */
+public abstract class RemoteCommand extends Command {
+
+    protected RemoteCommand(String[] command) {
+        super(command);
+    }
+
+    public abstract CompletableFuture<String> executeAsync();
+
+    @Override
+    public String execute() {
+        return executeAsync().join();
+    }
+
+    static String unavailable(Cluster.Node node, Throwable error) {
+        Throwable cause = error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+        return "Error;Node " + node.name() + " is unavailable: " + cause.getMessage();
+    }
+}
@@ -1,6 +1,10 @@
 package com.engineeringwithsandeep.worldbankservice.socket.command;
 
 import com.engineeringwithsandeep.worldbankservice.socket.service.WorldBankServiceImpl;
+import com.engineeringwithsandeep.worldbankservice.store.ColumnarStore;
+import com.engineeringwithsandeep.worldbankservice.store.SeriesStats;
+
+import java.nio.ByteBuffer;
 
 public class ReportCommand extends Command {
 
@@ -15,4 +19,29 @@ public class ReportCommand extends Command {
     public String execute() {
         return service.getCountryReport(command[1], command[2]);
     }
+
+    @Override
+    public void execute(ByteBuffer request, int offset, int length, ByteBuffer response) {
+        if (length != BinaryProtocol.REPORT_REQUEST_BYTES) {
+            response.put(BinaryProtocol.STATUS_BAD_REQUEST);
+            return;
+        }
+        ColumnarStore store = service.getStore();
+        if (QueryCommand.isStale(store, request, offset)) {
+            response.put(BinaryProtocol.STATUS_STALE_IDS);
+            return;
+        }
+        int country = request.getInt(offset + BinaryProtocol.EPOCH_BYTES);
+        int indicator = request.getInt(offset + BinaryProtocol.EPOCH_BYTES + Integer.BYTES);
+        if (!QueryCommand.hasSeries(store, country, indicator)) {
+            response.put(BinaryProtocol.STATUS_UNKNOWN_SERIES);
+            return;
+        }
+        SeriesStats stats = store.stats(country, indicator);
+        response.put(BinaryProtocol.STATUS_OK)
+                .putInt(stats.count())
+                .putDouble(stats.mean()).putDouble(stats.min()).putDouble(stats.max())
+                .putDouble(stats.standardDeviation())
+                .putShort((short) stats.firstYear()).putShort((short) stats.lastYear());
+    }
 }
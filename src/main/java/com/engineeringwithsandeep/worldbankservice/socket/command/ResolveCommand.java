@@ -0,0 +1,57 @@
+package com.engineeringwithsandeep.worldbankservice.socket.command;
+
+import com.engineeringwithsandeep.worldbankservice.socket.service.WorldBankServiceImpl;
+import com.engineeringwithsandeep.worldbankservice.store.ColumnarStore;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Resolves a country or indicator code to the id used by the binary protocol, -1 when the code is unknown.
+ * Request:  i;c;countryCode or i;i;indicatorCode
+ * Clients resolve each code once per connection, so this is the only binary command that builds a String.
+ */
+public class ResolveCommand extends Command {
+
+    private final WorldBankServiceImpl service;
+
+    public ResolveCommand(String[] command, WorldBankServiceImpl service) {
+        super(command);
+        this.service = service;
+    }
+
+    @Override
+    public String execute() {
+        if (command.length != 3 || !("c".equals(command[1]) || "i".equals(command[1]))) {
+            return "Wrong number of arguments";
+        }
+        return String.valueOf(resolve(service.getStore(),
+                "c".equals(command[1]) ? BinaryProtocol.KIND_COUNTRY : BinaryProtocol.KIND_INDICATOR, command[2]));
+    }
+
+    @Override
+    public void execute(ByteBuffer request, int offset, int length, ByteBuffer response) {
+        if (length < 1) {
+            response.put(BinaryProtocol.STATUS_BAD_REQUEST);
+            return;
+        }
+        byte kind = request.get(offset);
+        byte[] bytes = new byte[length - 1];
+        request.get(offset + 1, bytes);
+        ColumnarStore store = service.getStore();  // id and epoch from the same store
+        int id = resolve(store, kind, new String(bytes, StandardCharsets.UTF_8));
+        response.put(id < 0 ? BinaryProtocol.STATUS_UNKNOWN_SERIES : BinaryProtocol.STATUS_OK)
+                .putInt(id).putInt(store == null ? 0 : store.idEpoch());
+    }
+
+    private static int resolve(ColumnarStore store, byte kind, String code) {
+        if (store == null) {
+            return -1;
+        }
+        return switch (kind) {
+            case BinaryProtocol.KIND_COUNTRY -> store.countryId(code);
+            case BinaryProtocol.KIND_INDICATOR -> store.indicatorId(code);
+            default -> -1;
+        };
+    }
+}
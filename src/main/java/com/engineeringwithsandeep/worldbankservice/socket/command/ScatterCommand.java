@@ -0,0 +1,126 @@
+package com.engineeringwithsandeep.worldbankservice.socket.command;
+
+import com.engineeringwithsandeep.worldbankservice.cluster.Cluster;
+import com.engineeringwithsandeep.worldbankservice.cluster.ShardClient;
+import com.engineeringwithsandeep.worldbankservice.cluster.ShardMerge;
+import com.engineeringwithsandeep.worldbankservice.socket.service.WorldBankServiceImpl;
+import com.engineeringwithsandeep.worldbankservice.store.Ranking;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Function;
+
+/**
+ * A k or b command spanning the shards of a cluster. For k every node ranks its own countries and the best n of
+ * their answers are kept; for b every tuple goes to the node owning its series and the values are put back in
+ * request order. The other nodes are asked at once, the local part runs in place meanwhile.
+ */
+public class ScatterCommand extends RemoteCommand {
+
+    private final ShardClient client;
+    private final Command local;  // this node's part, null when it has none
+    private final Map<Cluster.Node, String> remote;  // the line each other node is sent
+    private final Function<List<String>, String> gather;  // the local reply first, then the remote ones in map order
+
+    private ScatterCommand(String[] command, ShardClient client, Command local, Map<Cluster.Node, String> remote,
+                           Function<List<String>, String> gather) {
+        super(command);
+        this.client = client;
+        this.local = local;
+        this.remote = remote;
+        this.gather = gather;
+    }
+
+    // k over a cluster sharded by country: the same line on every node
+    static ScatterCommand rank(String[] line, String[] command, WorldBankServiceImpl service, Cluster cluster,
+                               ShardClient client, int n, Ranking.Order order) {
+        Map<Cluster.Node, String> remote = new LinkedHashMap<>();
+        for (Cluster.Node node : cluster.nodes()) {
+            if (!cluster.isSelf(node)) {
+                remote.put(node, String.join(";", line));
+            }
+        }
+        return new ScatterCommand(command, client, new RankCommand(command, service), remote,
+                replies -> ShardMerge.rankingText(replies, n, order));
+    }
+
+    // b with tuples on other nodes; null when this node owns every tuple. Malformed tuples stay local and fail there.
+    static ScatterCommand batch(String[] line, String[] command, WorldBankServiceImpl service, Cluster cluster,
+                                ShardClient client) {
+        Map<Cluster.Node, List<Integer>> byOwner = new LinkedHashMap<>();
+        byOwner.put(cluster.self(), new ArrayList<>());
+        for (int i = 1; i < command.length; i++) {
+            String[] tuple = command[i].split(",");
+            Cluster.Node owner = tuple.length == 3 ? cluster.owner(tuple[0], tuple[1]) : cluster.self();
+            byOwner.computeIfAbsent(owner, node -> new ArrayList<>()).add(i);
+        }
+        if (byOwner.size() == 1) {
+            return null;
+        }
+        List<Integer> own = byOwner.remove(cluster.self());
+        List<List<Integer>> positions = new ArrayList<>();
+        Command local = null;
+        if (!own.isEmpty()) {
+            local = new BatchCommand(batchLine(command[0], command, own), service);
+            positions.add(own);
+        }
+        Map<Cluster.Node, String> remote = new LinkedHashMap<>();
+        byOwner.forEach((node, tuples) -> {
+            remote.put(node, String.join(";", batchLine(line[0], command, tuples)));
+            positions.add(tuples);
+        });
+        int count = command.length - 1;
+        return new ScatterCommand(command, client, local, remote, replies -> {
+            String[] values = new String[count];
+            for (int part = 0; part < replies.size(); part++) {
+                String[] partValues = replies.get(part).split(";", -1);
+                List<Integer> tuples = positions.get(part);
+                for (int k = 0; k < tuples.size(); k++) {
+                    // a reply that is not one value per tuple is a failure of the whole part
+                    values[tuples.get(k) - 1] = partValues.length == tuples.size() ? partValues[k] : "error";
+                }
+            }
+            return String.join(";", values);
+        });
+    }
+
+    private static String[] batchLine(String head, String[] command, List<Integer> tuples) {
+        String[] line = new String[tuples.size() + 1];
+        line[0] = head;
+        for (int k = 0; k < tuples.size(); k++) {
+            line[k + 1] = command[tuples.get(k)];
+        }
+        return line;
+    }
+
+    @Override
+    public CompletableFuture<String> executeAsync() {
+        List<Cluster.Node> nodes = List.copyOf(remote.keySet());
+        List<CompletableFuture<String>> replies = new ArrayList<>(nodes.size());
+        for (Cluster.Node node : nodes) {
+            replies.add(client.send(node, remote.get(node)));
+        }
+        String localReply = local == null ? null : local.execute();
+        return CompletableFuture.allOf(replies.toArray(CompletableFuture[]::new)).handle((ignored, error) -> {
+            List<String> answers = new ArrayList<>(replies.size() + 1);
+            if (localReply != null) {
+                answers.add(localReply);
+            }
+            for (int i = 0; i < replies.size(); i++) {
+                CompletableFuture<String> reply = replies.get(i);
+                if (reply.isCompletedExceptionally()) {
+                    return unavailable(nodes.get(i), reply.exceptionNow());
+                }
+                answers.add(reply.join());
+            }
+            try {
+                return gather.apply(answers);
+            } catch (RuntimeException e) {
+                return "Error;Bad Command";  // a reply of another node that does not parse
+            }
+        });
+    }
+}
@@ -1,5 +1,7 @@
 package com.engineeringwithsandeep.worldbankservice.socket.command;
 
+import java.nio.ByteBuffer;
+
 public class StopCommand extends Command {
 
     public StopCommand(String[] command) {
@@ -10,4 +12,9 @@ public class StopCommand extends Command {
     public String execute() {
         return "Server Stopped";
     }
+
+    @Override
+    public void execute(ByteBuffer request, int offset, int length, ByteBuffer response) {
+        response.put(BinaryProtocol.STATUS_OK);
+    }
 }
@@ -1,27 +1,55 @@
 package com.engineeringwithsandeep.worldbankservice.socket.dao;
 
+import com.engineeringwithsandeep.worldbankservice.store.ColumnarStore;
+import com.engineeringwithsandeep.worldbankservice.store.SeriesStats;
+import com.engineeringwithsandeep.worldbankservice.store.YearRange;
 import lombok.AllArgsConstructor;
-import lombok.Data;
-
-import java.util.HashMap;
+import lombok.Getter;
 
 /**
- * This is Datas access object class which holds a single records information for WDI
+ * This is Datas access object class which holds a single records information for WDI.
+ * It is a view over one (country, indicator) row of the columnar store - the yearly values stay in the store.
  * @author : EngineeringWithSandeep
  */
-@Data
+@Getter
 @AllArgsConstructor
 public class CountryData {
-    private String countryName;
-    private String countryCode;
-    private String indicatorName;
-    private String indicatorCode;
-    private HashMap<Integer, Double> yearData = new HashMap<>(); // HasMap to maintain <Year, Data>
-
-    public CountryData(String countryName, String countryCode, String indicatorName, String indicatorCode) {
-        this.countryName = countryName;
-        this.countryCode = countryCode;
-        this.indicatorName = indicatorName;
-        this.indicatorCode = indicatorCode;
+    private final ColumnarStore store;
+    private final int countryId;
+    private final int indicatorId;
+
+    public String getCountryName() {
+        return store.countryName(countryId);
+    }
+
+    public String getCountryCode() {
+        return store.countryCode(countryId);
+    }
+
+    public String getIndicatorName() {
+        return store.indicatorName(indicatorId);
+    }
+
+    public String getIndicatorCode() {
+        return store.indicatorCode(indicatorId);
+    }
+
+    // Value for the given year, null if the year is out of range or has no value
+    public Double getYearValue(int year) {
+        int offset = store.yearOffset(year);
+        if (offset < 0 || !store.isPresent(countryId, indicatorId, offset)) {
+            return null;
+        }
+        return store.value(countryId, indicatorId, offset);
+    }
+
+    // Years fromYear..toYear clamped to the stored range, read straight from the store block without boxing
+    public YearRange getYearRange(int fromYear, int toYear) {
+        return YearRange.of(store, countryId, indicatorId, fromYear, toYear);
+    }
+
+    // Precomputed aggregates of the series, built once per indicator on first use
+    public SeriesStats getStats() {
+        return store.stats(countryId, indicatorId);
     }
 }
@@ -1,36 +1,103 @@
 package com.engineeringwithsandeep.worldbankservice.socket.dao;
 
-import com.engineeringwithsandeep.worldbankservice.socket.util.CsvReader;
-import lombok.Data;
-import lombok.NoArgsConstructor;
+import com.engineeringwithsandeep.worldbankservice.cluster.Cluster;
+import com.engineeringwithsandeep.worldbankservice.store.ColumnarStore;
+import com.engineeringwithsandeep.worldbankservice.store.DatasetHolder;
+import com.engineeringwithsandeep.worldbankservice.store.DatasetRegistry;
+import com.engineeringwithsandeep.worldbankservice.store.SeriesTable;
+import com.engineeringwithsandeep.worldbankservice.store.Shard;
 import org.springframework.stereotype.Component;
 
-import java.util.HashMap;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.List;
 
-@Data
-@NoArgsConstructor
-@Component
+/**
+ * This class holds in-memory database for WDI csv data.
+ * The database is loaded when the server boots and published as an immutable SeriesTable through a DatasetHolder,
+ * so every client thread sees fully loaded data without locking and nothing mutates it on the read path.
+ * A reload publishes a new version; commands already running keep the version they started with.
+ * One DAO serves one dataset of the registry (-Dworldbank.datasets), forDataset gives the DAO of another one.
+ * On a node of a partitioned deployment (Cluster) the datasets only hold the series of the node's shard.
+ */
+@Component("socketWDIDao")
 public class WDIDao {
-    public static HashMap<String, CountryData> database = new HashMap<>(); // Store CSV data in memory
+    private static final DatasetRegistry<CountryData> datasets = new DatasetRegistry<>("socket", CountryData::new,
+            Cluster.current().shard());
 
-    // Load data from CSV only once
-    public HashMap<String, CountryData> load() {
-        if (database.isEmpty()) {
-            System.out.println("Loading data from CSV...");
-            CsvReader.readCsv("src/main/resources/WDICSV.csv");
-        }
-        return database;
+    private final DatasetRegistry<CountryData> registry;
+    private final DatasetRegistry<CountryData>.Dataset dataset;
+    private final DatasetHolder<CountryData> database;
+    private final Path filePath;
+
+    // The default dataset, read from its configured file
+    public WDIDao() {
+        this(datasets, datasets.defaultDataset(), datasets.defaultDataset().file());
+    }
+
+    // The default dataset, read from filePath instead
+    public WDIDao(String filePath) {
+        this(datasets, datasets.defaultDataset(), Path.of(filePath));
+    }
+
+    // Only the shard's series of filePath, in a registry of its own; e.g. several nodes of a cluster in one process
+    public WDIDao(String filePath, Shard shard) {
+        this(new DatasetRegistry<>("socket", CountryData::new,
+                List.of(new DatasetRegistry.Config(DatasetRegistry.WDI, Path.of(filePath), Long.MAX_VALUE)), shard));
+    }
+
+    private WDIDao(DatasetRegistry<CountryData> registry) {
+        this(registry, registry.defaultDataset(), registry.defaultDataset().file());
+    }
+
+    private WDIDao(DatasetRegistry<CountryData> registry, DatasetRegistry<CountryData>.Dataset dataset, Path filePath) {
+        this.registry = registry;
+        this.dataset = dataset;
+        this.database = dataset.holder();
+        this.filePath = filePath;
+    }
+
+    // The DAO of another configured dataset; throws DatasetRegistry.UnknownDatasetException for an unknown name
+    public WDIDao forDataset(String name) {
+        DatasetRegistry<CountryData>.Dataset other = registry.dataset(name);
+        return other == dataset ? this : new WDIDao(registry, other, other.file());
+    }
+
+    public String getDatasetName() {
+        return dataset.name();
+    }
+
+    // Every configured dataset, the default first
+    public List<String> getDatasetNames() {
+        return registry.datasets().stream().map(DatasetRegistry.Dataset::name).toList();
+    }
+
+    // Load data from CSV only once, called at server boot; throws DatasetHolder.LoadFailedException if it can not
+    public SeriesTable<CountryData> load() {
+        return dataset.load(filePath);
+    }
+
+    // Re-ingests only the changed rows off to the side and swaps them in, the current version keeps serving until then
+    public long reload() throws IOException {
+        return dataset.reload(filePath);
+    }
+
+    // Read path, never loads or mutates
+    public SeriesTable<CountryData> getDatabase() {
+        return database.current();
+    }
+
+    // Consistent view across several lookups, close it when the command is done
+    public DatasetHolder<CountryData>.Lease acquire() {
+        return database.acquire();
     }
 
-    public static void save(CountryData countryData) {
-        if (database == null) {
-            database = new HashMap<>();
-        }
-        // inorder to main unique key's for each country code - a key with combination of countryCode and indicatorCode is used
-        database.put(countryData.getCountryCode() + "_" + countryData.getIndicatorCode(), countryData);
+    public long getVersion() {
+        return database.version();
     }
 
-    public void clear() {
-        database.clear();
+    // The store behind the database, null until the server has loaded the data
+    public ColumnarStore getStore() {
+        return database.current().store();
     }
 }
@@ -0,0 +1,456 @@
+package com.engineeringwithsandeep.worldbankservice.socket.server;
+
+import com.engineeringwithsandeep.worldbankservice.metrics.WorldBankMetrics;
+import com.engineeringwithsandeep.worldbankservice.socket.command.BinaryDispatcher;
+import com.engineeringwithsandeep.worldbankservice.socket.command.BinaryProtocol;
+import com.engineeringwithsandeep.worldbankservice.socket.command.Command;
+import com.engineeringwithsandeep.worldbankservice.socket.command.CommandParser;
+import com.engineeringwithsandeep.worldbankservice.socket.command.DisconnectCommand;
+import com.engineeringwithsandeep.worldbankservice.socket.command.RemoteCommand;
+import com.engineeringwithsandeep.worldbankservice.socket.command.StopCommand;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.Metrics;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Non-blocking socket server for the text and the binary protocol, picked per connection by its first bytes.
+ * One acceptor thread hands new connections round-robin to a small pool of event loops, each owning a Selector.
+ * A connection only holds a small read buffer while idle, so tens of thousands of idle clients cost no threads.
+ * A command answered by other nodes of a cluster (RemoteCommand) does not hold its event loop: its reply is written
+ * once it arrives, replies to the connection's later commands wait behind it so they stay in order.
+ * A client that sends faster than it reads its replies is paused: once its unwritten replies pass a high-water mark
+ * the connection stops reading and running commands, and picks up the buffered ones when the replies have drained.
+ */
+@Slf4j
+public class NioServer {
+
+    private static final int INITIAL_READ_BUFFER = 256;
+    private static final int MAX_LINE_BYTES = 1024 * 1024;  // room for large batch commands
+    private static final int MAX_PENDING_REPLY_BYTES = 256 * 1024;  // high-water mark of the write buffer
+    private static final int MAX_DEFERRED_REPLIES = 1024;  // replies of other nodes awaited per connection
+
+    private final int port;
+    private final CommandParser parser;
+    private final BinaryDispatcher binary;
+    private final EventLoop[] eventLoops;
+    private final AtomicInteger activeConnections = new AtomicInteger();
+    private final CountDownLatch stopped = new CountDownLatch(1);
+    private volatile boolean running;
+    private ServerSocketChannel serverChannel;
+    private Gauge connectionsGauge;
+
+    public NioServer(int port, CommandParser parser, int eventLoopThreads) {
+        this.port = port;
+        this.parser = parser;
+        this.binary = new BinaryDispatcher(parser);
+        this.eventLoops = new EventLoop[eventLoopThreads];
+    }
+
+    public void start() throws IOException {
+        serverChannel = ServerSocketChannel.open();
+        serverChannel.bind(new InetSocketAddress(port), 1024);
+        running = true;
+        for (int i = 0; i < eventLoops.length; i++) {
+            eventLoops[i] = new EventLoop();
+            Thread thread = new Thread(eventLoops[i], "nio-event-loop-" + i);
+            thread.setDaemon(true);
+            thread.start();
+        }
+        Thread acceptor = new Thread(this::acceptLoop, "nio-acceptor");
+        acceptor.setDaemon(true);
+        acceptor.start();
+        connectionsGauge = WorldBankMetrics.socketConnections("nio", activeConnections::get);
+        log.info("Server is listening on port {} with {} event loops", port, eventLoops.length);
+    }
+
+    public void awaitStop() throws InterruptedException {
+        stopped.await();
+    }
+
+    public int getActiveConnections() {
+        return activeConnections.get();
+    }
+
+    public void stop() {
+        if (!running) {
+            return;
+        }
+        running = false;
+        try {
+            serverChannel.close();
+        } catch (IOException e) {
+            log.warn("Error while closing server socket: {}", e.getMessage());
+        }
+        Metrics.globalRegistry.remove(connectionsGauge);
+        for (EventLoop eventLoop : eventLoops) {
+            if (eventLoop != null) {
+                eventLoop.selector.wakeup();
+            }
+        }
+        stopped.countDown();
+    }
+
+    private void acceptLoop() {
+        int next = 0;
+        while (running) {
+            try {
+                SocketChannel channel = serverChannel.accept();  // blocking accept on the dedicated acceptor thread
+                channel.configureBlocking(false);
+                channel.socket().setTcpNoDelay(true);
+                activeConnections.incrementAndGet();
+                eventLoops[next].register(channel);
+                next = (next + 1) % eventLoops.length;
+            } catch (ClosedChannelException e) {
+                break;  // server socket closed by stop()
+            } catch (IOException e) {
+                if (running) {
+                    log.warn("Socket error: {}", e.getMessage());
+                }
+            }
+        }
+    }
+
+    private static final int UNDECIDED = 0;
+    private static final int TEXT = 1;
+    private static final int BINARY = 2;
+
+    /**
+     * Per connection state: the bytes of a partially received line or frame and the replies not yet written
+     */
+    private static final class Connection {
+        private ByteBuffer in = ByteBuffer.allocate(INITIAL_READ_BUFFER);
+        private ByteBuffer out;  // only allocated while replies are pending, kept by binary connections
+        private int protocol = UNDECIDED;
+        private boolean closeAfterFlush;
+        private boolean paused;  // backlogged, not reading until the replies have drained
+        private ArrayDeque<CompletableFuture<String>> deferred;  // replies of other nodes still awaited, in order
+    }
+
+    private final class EventLoop implements Runnable {
+        private final Selector selector;
+        private final Queue<SocketChannel> pending = new ConcurrentLinkedQueue<>();
+        private final Queue<SelectionKey> completed = new ConcurrentLinkedQueue<>();  // a deferred reply arrived
+
+        EventLoop() throws IOException {
+            this.selector = Selector.open();
+        }
+
+        void register(SocketChannel channel) {
+            pending.add(channel);
+            selector.wakeup();
+        }
+
+        @Override
+        public void run() {
+            try {
+                while (running) {
+                    selector.select();
+                    SocketChannel channel;
+                    while ((channel = pending.poll()) != null) {
+                        channel.register(selector, SelectionKey.OP_READ, new Connection());
+                    }
+                    SelectionKey ready;
+                    while ((ready = completed.poll()) != null) {
+                        try {
+                            if (ready.isValid() && takeDeferred((Connection) ready.attachment())) {
+                                write(ready);
+                            }
+                        } catch (IOException e) {
+                            close(ready);
+                        }
+                    }
+                    Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+                    while (keys.hasNext()) {
+                        SelectionKey key = keys.next();
+                        keys.remove();
+                        try {
+                            if (key.isValid() && key.isReadable()) {
+                                read(key);
+                            }
+                            if (key.isValid() && key.isWritable()) {
+                                write(key);
+                            }
+                        } catch (IOException e) {
+                            close(key);
+                        }
+                    }
+                }
+            } catch (IOException e) {
+                log.error("Event loop error: {}", e.getMessage(), e);
+            } finally {
+                for (SelectionKey key : selector.keys()) {
+                    close(key);
+                }
+                try {
+                    selector.close();
+                } catch (IOException ignored) {
+                    // shutting down
+                }
+            }
+        }
+
+        private void read(SelectionKey key) throws IOException {
+            SocketChannel channel = (SocketChannel) key.channel();
+            Connection connection = (Connection) key.attachment();
+            if (connection.paused) {
+                return;  // readiness selected before the connection was paused
+            }
+            if (!connection.in.hasRemaining()) {
+                if (connection.in.capacity() >= MAX_LINE_BYTES) {
+                    close(key);  // no line break or frame end within the limit, not a client of this protocol
+                    return;
+                }
+                connection.in = grow(connection.in, connection.in.capacity() * 2);
+            }
+            int read = channel.read(connection.in);
+            if (read < 0) {
+                close(key);
+                return;
+            }
+            if (connection.protocol == UNDECIDED && !negotiate(connection)) {
+                if (connection.closeAfterFlush) {
+                    close(key);
+                }
+                return;
+            }
+            process(key, connection);
+        }
+
+        // Runs the complete commands of the read buffer until the connection is backlogged, then writes the replies
+        private void process(SelectionKey key, Connection connection) throws IOException {
+            if (connection.protocol == BINARY) {
+                processFrames(connection);
+            } else {
+                processLines(key, connection);
+                takeDeferred(connection);  // replies of other nodes that were already there
+            }
+            flush(key);
+        }
+
+        // Flushes, and once a paused connection has drained runs the commands it buffered meanwhile
+        private void write(SelectionKey key) throws IOException {
+            Connection connection = (Connection) key.attachment();
+            boolean paused = connection.paused;
+            flush(key);
+            if (paused && key.isValid() && !connection.paused) {
+                process(key, connection);
+            }
+        }
+
+        // A binary client opens with the handshake, anything else is a text client.
+        // Returns false while the handshake is incomplete or when it is not a valid one.
+        private boolean negotiate(Connection connection) {
+            ByteBuffer in = connection.in;
+            if (in.position() == 0) {
+                return false;
+            }
+            if (in.get(0) != BinaryProtocol.HANDSHAKE[0]) {
+                connection.protocol = TEXT;
+                return true;
+            }
+            if (in.position() < BinaryProtocol.HANDSHAKE.length) {
+                return false;
+            }
+            if (!BinaryProtocol.isHandshake(in, 0)) {
+                connection.closeAfterFlush = true;
+                return false;
+            }
+            connection.protocol = BINARY;
+            in.flip().position(BinaryProtocol.HANDSHAKE.length);
+            in.compact();
+            reserve(connection, BinaryProtocol.HANDSHAKE.length).put(BinaryProtocol.HANDSHAKE);
+            return true;
+        }
+
+        // Executes every complete frame in the read buffer, in order, writing the replies straight into the
+        // write buffer - no String, array or Command is created per frame
+        private void processFrames(Connection connection) {
+            ByteBuffer in = connection.in;
+            int frameStart = 0;
+            while (!connection.closeAfterFlush && !backlogged(connection) && in.position() - frameStart >= Integer.BYTES) {
+                int length = in.getInt(frameStart);
+                if (length < 1 || length > BinaryProtocol.MAX_FRAME_BYTES - Integer.BYTES) {
+                    connection.closeAfterFlush = true;  // not a frame of this protocol
+                    break;
+                }
+                if (in.position() - frameStart - Integer.BYTES < length) {
+                    break;  // rest of the frame not received yet
+                }
+                int offset = frameStart + Integer.BYTES;
+                ByteBuffer out = reserve(connection, binary.replyCapacity(in, offset, length));
+                Command command = binary.dispatch(in, offset, length, out);
+                frameStart = offset + length;
+                if (command instanceof StopCommand) {
+                    connection.closeAfterFlush = true;
+                    stop();
+                } else if (command instanceof DisconnectCommand) {
+                    connection.closeAfterFlush = true;
+                }
+            }
+            in.flip().position(frameStart);
+            in.compact();
+        }
+
+        // Executes every complete line in the read buffer, in order, and queues the replies - pipelined
+        // commands that arrive in one read are answered with a single write
+        private void processLines(SelectionKey key, Connection connection) {
+            ByteBuffer in = connection.in;
+            int lineStart = 0;
+            for (int i = 0; i < in.position(); i++) {
+                if (in.get(i) != '\n') {
+                    continue;
+                }
+                if (!connection.closeAfterFlush && backlogged(connection)) {
+                    break;  // the rest waits in the read buffer until the replies have drained
+                }
+                int lineEnd = i > lineStart && in.get(i - 1) == '\r' ? i - 1 : i;
+                String line = new String(in.array(), lineStart, lineEnd - lineStart, StandardCharsets.UTF_8);
+                lineStart = i + 1;
+                if (connection.closeAfterFlush) {
+                    continue;  // ignore anything pipelined after a disconnect
+                }
+                Command command = parser.parse(line);
+                if (command instanceof RemoteCommand remote) {
+                    defer(key, connection, remote.executeAsync());
+                    continue;
+                }
+                String response;
+                try {
+                    response = command.execute();
+                } catch (RuntimeException e) {
+                    response = "Error;Bad Command";  // a failing command must not take the event loop down
+                }
+                if (connection.deferred != null) {
+                    defer(key, connection, CompletableFuture.completedFuture(response));
+                } else {
+                    queue(connection, response);
+                }
+                if (command instanceof StopCommand) {
+                    connection.closeAfterFlush = true;
+                    stop();
+                } else if (command instanceof DisconnectCommand) {
+                    connection.closeAfterFlush = true;
+                }
+            }
+            in.flip().position(lineStart);
+            in.compact();
+        }
+
+        // Too many replies not yet written or awaited, running more commands would only buffer more
+        private boolean backlogged(Connection connection) {
+            return pendingBytes(connection) >= MAX_PENDING_REPLY_BYTES
+                    || (connection.deferred != null && connection.deferred.size() >= MAX_DEFERRED_REPLIES);
+        }
+
+        private static int pendingBytes(Connection connection) {
+            return connection.out == null ? 0 : connection.out.position();
+        }
+
+        private void defer(SelectionKey key, Connection connection, CompletableFuture<String> reply) {
+            if (connection.deferred == null) {
+                connection.deferred = new ArrayDeque<>();
+            }
+            connection.deferred.add(reply);
+            if (!reply.isDone()) {
+                reply.whenComplete((response, error) -> {
+                    completed.add(key);
+                    selector.wakeup();
+                });
+            }
+        }
+
+        // Queues the deferred replies that arrived, up to the first still awaited; true when any was queued
+        private boolean takeDeferred(Connection connection) {
+            if (connection == null || connection.deferred == null) {
+                return false;
+            }
+            boolean taken = false;
+            while (!connection.deferred.isEmpty() && connection.deferred.peek().isDone()) {
+                queue(connection, connection.deferred.poll().join());
+                taken = true;
+            }
+            if (connection.deferred.isEmpty()) {
+                connection.deferred = null;
+            }
+            return taken;
+        }
+
+        private void queue(Connection connection, String response) {
+            byte[] bytes = (response + "\n").getBytes(StandardCharsets.UTF_8);
+            reserve(connection, bytes.length).put(bytes);
+        }
+
+        // The write buffer, with room for at least the given number of bytes
+        private ByteBuffer reserve(Connection connection, int bytes) {
+            if (connection.out == null) {
+                connection.out = ByteBuffer.allocate(Math.max(bytes, 1024));
+            } else if (connection.out.remaining() < bytes) {
+                connection.out = grow(connection.out, Math.max(connection.out.capacity() * 2, connection.out.position() + bytes));
+            }
+            return connection.out;
+        }
+
+        private void flush(SelectionKey key) throws IOException {
+            Connection connection = (Connection) key.attachment();
+            if (connection.out != null) {
+                connection.out.flip();
+                ((SocketChannel) key.channel()).write(connection.out);
+                if (connection.out.hasRemaining()) {
+                    connection.out.compact();
+                } else if (connection.protocol == BINARY) {
+                    connection.out.clear();  // reused for the next frames
+                } else {
+                    connection.out = null;  // drained, idle text connections keep no write buffer
+                }
+            }
+            // paused at the high-water mark, resumed only once everything queued has been written
+            if (backlogged(connection)) {
+                connection.paused = true;
+            } else if (pendingBytes(connection) == 0) {
+                connection.paused = false;
+            }
+            int pending = pendingBytes(connection) > 0 ? SelectionKey.OP_WRITE : 0;
+            key.interestOps(connection.paused ? pending : SelectionKey.OP_READ | pending);
+            if (pending == 0 && connection.closeAfterFlush && connection.deferred == null) {
+                close(key);
+            }
+        }
+
+        private void close(SelectionKey key) {
+            key.cancel();
+            try {
+                key.channel().close();
+            } catch (IOException ignored) {
+                // already closed by the peer
+            }
+            if (key.attachment() != null) {
+                key.attach(null);
+                activeConnections.decrementAndGet();
+            }
+        }
+    }
+
+    private static ByteBuffer grow(ByteBuffer buffer, int capacity) {
+        ByteBuffer grown = ByteBuffer.allocate(capacity);
+        buffer.flip();
+        grown.put(buffer);
+        return grown;
+    }
+}
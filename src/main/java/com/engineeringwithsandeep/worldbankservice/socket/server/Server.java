@@ -1,60 +1,152 @@
 package com.engineeringwithsandeep.worldbankservice.socket.server;
 
+import com.engineeringwithsandeep.worldbankservice.metrics.WorldBankMetrics;
 import com.engineeringwithsandeep.worldbankservice.socket.command.*;
 import com.engineeringwithsandeep.worldbankservice.socket.dao.WDIDao;
 import com.engineeringwithsandeep.worldbankservice.socket.service.WorldBankServiceImpl;
+import com.engineeringwithsandeep.worldbankservice.store.DatasetHolder;
+import com.sun.net.httpserver.HttpServer;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.Metrics;
+import lombok.extern.slf4j.Slf4j;
 
 import java.io.*;
 import java.net.*;
-import java.util.HashMap;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
+/**
+ * Socket server for the text and the binary protocol (see BinaryProtocol). The mode is picked with -Dworldbank.socket.mode:
+ * "blocking" (default) runs one platform thread per client, "virtual" one virtual thread per client
+ * and "nio" runs the selector based NioServer. Metrics are served for Prometheus on -Dworldbank.socket.metrics-port.
+ */
+@Slf4j
 public class Server {
 
-    private static final int PORT = 8080;
+    private static final int PORT = Integer.getInteger("worldbank.socket.port", 8080);
+    private static final String MODE = System.getProperty("worldbank.socket.mode", "blocking");
+    private static final int METRICS_PORT = Integer.getInteger("worldbank.socket.metrics-port", 9404);
     private static int clientCount = 0;
     private static volatile boolean stopServer = false;
-    private static final HashMap<Integer, Thread> clientThreadMap = new HashMap<>();
+    private static final Map<Integer, Thread> clientThreadMap = new ConcurrentHashMap<>();
     private static ServerSocket serverSocket;
 
     public static void main(String[] args) {
 
-        System.out.println("Initialization complete");
+        // Load the dataset once at boot, every client thread shares the same read-only service
+        WDIDao wdiDao = new WDIDao();
+        try {
+            wdiDao.load();
+        } catch (DatasetHolder.LoadFailedException e) {
+            log.error("{}, not starting", e.getMessage());  // every command would fail against no data
+            return;
+        }
+        WorldBankServiceImpl service = new WorldBankServiceImpl(wdiDao);
+        // the other configured datasets load at boot too; one that fails stays unavailable, the server still starts
+        for (String dataset : service.getDatasetNames()) {
+            try {
+                service.forDataset(dataset);
+            } catch (DatasetHolder.LoadFailedException e) {
+                log.warn("Dataset {} is unavailable: {}", dataset, e.getMessage());
+            }
+        }
+        CommandParser parser = new CommandParser(service);
+        BinaryDispatcher binary = new BinaryDispatcher(parser);
+        log.info("Initialization complete");
+
+        HttpServer metrics = serveMetrics();
+        try {
+            if ("nio".equals(MODE)) {
+                runNio(parser);
+            } else {
+                runBlocking(parser, binary);
+            }
+        } finally {
+            if (metrics != null) {
+                metrics.stop(0);
+            }
+        }
+    }
+
+    // Prometheus scrape endpoint next to the socket port, -Dworldbank.socket.metrics-port=-1 turns it off
+    private static HttpServer serveMetrics() {
+        if (METRICS_PORT < 0) {
+            return null;
+        }
+        try {
+            HttpServer metrics = WorldBankMetrics.servePrometheus(METRICS_PORT);
+            log.info("Metrics are served at http://localhost:{}/metrics", METRICS_PORT);
+            return metrics;
+        } catch (IOException e) {
+            log.warn("Could not serve metrics on port {}: {}", METRICS_PORT, e.getMessage());
+            return null;
+        }
+    }
+
+    private static void runBlocking(CommandParser parser, BinaryDispatcher binary) {
+        stopServer = false;
+        Gauge connections = WorldBankMetrics.socketConnections(MODE, clientThreadMap::size);
 
         try {
             serverSocket = new ServerSocket(PORT);  // Assign the server socket here
-            System.out.println("Server is listening on port " + PORT);
+            log.info("Server is listening on port {}", PORT);
 
             while (!stopServer) {  // Continue until stopServer is true
                 try {
                     Socket socket = serverSocket.accept();  // Accept new client connections
-                    System.out.println("New connection from " + socket.getRemoteSocketAddress());
+                    log.debug("New connection from {}", socket.getRemoteSocketAddress());
 
                     clientCount++;
-                    ServerThread serverThread = new ServerThread(socket, clientCount);
+                    ServerThread serverThread = new ServerThread(socket, clientCount, parser, binary);
+                    Thread clientThread = "virtual".equals(MODE)
+                            ? Thread.ofVirtual().name("client-" + clientCount).unstarted(serverThread)
+                            : new Thread(serverThread, "client-" + clientCount);
 
-                    clientThreadMap.put(clientCount, serverThread);
-                    serverThread.start();  // Start the client handler thread
+                    clientThreadMap.put(clientCount, clientThread);
+                    clientThread.start();  // Start the client handler thread
 
                 } catch (SocketException e) {
                     // When server socket is closed, this will be triggered
                     if (stopServer) {
-                        System.out.println("Server is stopping...");
+                        log.info("Server is stopping...");
                     } else {
-                        System.out.println("Socket error: " + e.getMessage());
+                        log.warn("Socket error: {}", e.getMessage());
                     }
                 }
             }
 
-            System.out.println("Server Stopped");
+            log.info("Server Stopped");
 
         } catch (IOException e) {
-            System.out.println("Server error: " + e.getMessage());
-            e.printStackTrace();
+            log.error("Server error: {}", e.getMessage(), e);
         } finally {
             stopAllClients();  // Cleanly stop all client threads when server stops
+            Metrics.globalRegistry.remove(connections);
         }
     }
 
+    private static void runNio(CommandParser parser) {
+        int eventLoops = Integer.getInteger("worldbank.socket.event-loops", Runtime.getRuntime().availableProcessors());
+        NioServer nioServer = new NioServer(PORT, parser, eventLoops);
+        try {
+            nioServer.start();
+            nioServer.awaitStop();
+            log.info("Server Stopped");
+        } catch (IOException e) {
+            log.error("Server error: {}", e.getMessage(), e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            nioServer.stop();
+        }
+    }
+
+    static void clientFinished(int clientId) {
+        clientThreadMap.remove(clientId);
+    }
+
     public static void stopServer() {
         stopServer = true;
         try {
@@ -62,101 +154,149 @@ public class Server {
                 serverSocket.close();  // Closing the server socket to stop accepting clients
             }
         } catch (IOException e) {
-            System.out.println("Error while closing server socket: " + e.getMessage());
+            log.warn("Error while closing server socket: {}", e.getMessage());
         }
     }
 
     public static void stopAllClients() {
         for (Thread clientThread : clientThreadMap.values()) {
-            System.out.println("Interrupting client thread: " + clientThread.getName());
+            log.debug("Interrupting client thread: {}", clientThread.getName());
             clientThread.interrupt();  // Interrupt each thread
         }
-        System.out.println("All client threads stopped.");
+        log.info("All client threads stopped.");
     }
 }
 
-class ServerThread extends Thread {
+@Slf4j
+class ServerThread implements Runnable {
     private final Socket socket;
     private final int clientId;
+    private final CommandParser parser;
+    private final BinaryDispatcher binary;
 
-    public ServerThread(Socket socket, int clientId) {
+    public ServerThread(Socket socket, int clientId, CommandParser parser, BinaryDispatcher binary) {
         this.socket = socket;
         this.clientId = clientId;
+        this.parser = parser;
+        this.binary = binary;
     }
 
+    @Override
     public void run() {
-        WorldBankServiceImpl service = new WorldBankServiceImpl(new WDIDao());
+        try {
+            // peek at the first byte: a binary client opens with the handshake, a text client with a command
+            InputStream input = new BufferedInputStream(socket.getInputStream());
+            input.mark(1);
+            int first = input.read();
+            input.reset();
+            if (first == BinaryProtocol.HANDSHAKE[0]) {
+                serveBinary(new DataInputStream(input));
+            } else if (first >= 0) {
+                serveText(input);
+            }
+        } catch (IOException e) {
+            if (!Thread.currentThread().isInterrupted()) {
+                log.warn("Error in client thread {}: {}", clientId, e.getMessage(), e);
+            }
+        } finally {
+            Server.clientFinished(clientId);
+            try {
+                socket.close();
+            } catch (IOException e) {
+                log.warn("Failed to close socket for client {}: {}", clientId, e.getMessage());
+            }
+        }
+    }
 
-        try (PrintWriter out = new PrintWriter(socket.getOutputStream(), true);
-             BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream()))) {
+    private void serveText(InputStream input) throws IOException {
+        // no auto flush: replies to pipelined commands are flushed together once the input buffer is drained
+        try (PrintWriter out = new PrintWriter(new BufferedWriter(new OutputStreamWriter(socket.getOutputStream())), false);
+             BufferedReader in = new BufferedReader(new InputStreamReader(input))) {
 
-            System.out.println("Client " + clientId + " connected.");
+            log.debug("Client {} connected.", clientId);
             String command;
 
             while ((command = in.readLine()) != null) {
-                System.out.println("Received command from client " + clientId + ": " + command);
+                if (log.isDebugEnabled()) {  // gated, so a disabled level does not even box the client id
+                    log.debug("Received command from client {}: {}", clientId, command);
+                }
                 String[] commandData = command.split(";");
 
                 // Process the command and get the appropriate response
-                Command processedCommand = processCommand(commandData, service);
+                Command processedCommand = parser.parse(commandData);
 
                 String response = processedCommand.execute();
-                System.out.println("Response: " + response);
+                log.debug("Response: {}", response);
                 out.println(response);
-                out.flush();
+                if (!in.ready()) {
+                    out.flush();  // no further command is waiting, the client needs its replies now
+                }
 
                 // If StopCommand is received, stop the server
                 if (processedCommand instanceof StopCommand) {
+                    out.flush();
                     Server.stopServer();  // Stop the server
                     break;
                 }
 
                 // Handle DisconnectCommand to stop this client thread
                 if (processedCommand instanceof DisconnectCommand) {
-                    System.out.println("Client " + clientId + " disconnected.");
+                    out.flush();
+                    log.debug("Client {} disconnected.", clientId);
                     break;  // Break the loop to stop the client thread
                 }
             }
-
-        } catch (IOException e) {
-            if (!Thread.currentThread().isInterrupted()) {
-                System.out.println("Error in client thread " + clientId + ": " + e.getMessage());
-                e.printStackTrace();
-            }
-        } finally {
-            try {
-                socket.close();
-            } catch (IOException e) {
-                System.out.println("Failed to close socket for client " + clientId + ": " + e.getMessage());
-            }
         }
     }
 
-    private Command processCommand(String[] commandData, WorldBankServiceImpl service) {
-        Command command;
-        System.out.println("Command: " + commandData[0]);
-        command = switch (commandData[0]) {
-            case "q" -> {
-                System.out.println("Query");
-                yield new QueryCommand(commandData, service);
+    // Frames are read into and answered from two buffers reused for the whole connection, nothing is logged per frame
+    private void serveBinary(DataInputStream in) throws IOException {
+        OutputStream out = new BufferedOutputStream(socket.getOutputStream());
+        byte[] handshake = new byte[BinaryProtocol.HANDSHAKE.length];
+        in.readFully(handshake);
+        if (!Arrays.equals(handshake, BinaryProtocol.HANDSHAKE)) {
+            return;
+        }
+        out.write(BinaryProtocol.HANDSHAKE);
+        out.flush();
+        log.debug("Client {} connected (binary).", clientId);
+
+        ByteBuffer request = ByteBuffer.allocate(1024);
+        ByteBuffer response = ByteBuffer.allocate(1024);
+        while (true) {
+            int length;
+            try {
+                length = in.readInt();
+            } catch (EOFException e) {
+                break;  // client closed the connection
             }
-            case "r" -> {
-                System.out.println("Report");
-                yield new ReportCommand(commandData, service);
+            if (length < 1 || length > BinaryProtocol.MAX_FRAME_BYTES - Integer.BYTES) {
+                break;  // not a frame of this protocol
             }
-            case "z" -> {
-                System.out.println("Stop");
-                yield new StopCommand(commandData);  // Stops the entire server
+            if (request.capacity() < length) {
+                request = ByteBuffer.allocate(Math.max(length, request.capacity() * 2));
             }
-            case "e" -> {
-                System.out.println("Client disconnected.");
-                yield new DisconnectCommand(commandData);  // Stops the current client thread
+            in.readFully(request.array(), 0, length);
+            int capacity = binary.replyCapacity(request, 0, length);
+            if (response.capacity() < capacity) {
+                response = ByteBuffer.allocate(Math.max(capacity, response.capacity() * 2));
             }
-            default -> {
-                System.out.println("Error");
-                yield new ErrorCommand(commandData);  // Handles any unknown commands
+            response.clear();
+
+            Command processedCommand = binary.dispatch(request, 0, length, response);
+            out.write(response.array(), 0, response.position());
+            boolean last = processedCommand instanceof StopCommand || processedCommand instanceof DisconnectCommand;
+            if (last || in.available() == 0) {
+                out.flush();
             }
-        };
-        return command;
+            if (processedCommand instanceof StopCommand) {
+                Server.stopServer();
+                break;
+            }
+            if (last) {
+                log.debug("Client {} disconnected.", clientId);
+                break;
+            }
+        }
     }
 }
@@ -9,4 +9,6 @@ public interface WorldBankService {
     String getCountryInfo(String countryCode, String indicatorCode, String year);
 
     String getCountryReport(String countryCode, String indicatorCode);
+
+    Double getCountryValue(String countryCode, String indicatorCode, int year);
 }
@@ -1,67 +1,136 @@
 package com.engineeringwithsandeep.worldbankservice.socket.service;
 
+import com.engineeringwithsandeep.worldbankservice.metrics.WorldBankMetrics;
 import com.engineeringwithsandeep.worldbankservice.socket.dao.CountryData;
 import com.engineeringwithsandeep.worldbankservice.socket.dao.WDIDao;
+import com.engineeringwithsandeep.worldbankservice.store.ColumnarStore;
+import com.engineeringwithsandeep.worldbankservice.store.DatasetHolder;
+import com.engineeringwithsandeep.worldbankservice.store.Ranking;
+import com.engineeringwithsandeep.worldbankservice.store.SeriesTable;
+import com.engineeringwithsandeep.worldbankservice.store.YearRange;
+import io.micrometer.core.instrument.Timer;
 import org.springframework.stereotype.Service;
 
-import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.OptionalDouble;
-import static com.engineeringwithsandeep.worldbankservice.socket.dao.WDIDao.database;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
 
 /**
- * This is service class used for access database and implementing business logic
+ * This is service class used for access database and implementing business logic.
+ * The database is loaded by the server at boot, requests only read it.
  * @author : EngineeringWithSandeep
  */
-@Service
+@Service("socketWorldBankService")
 public class WorldBankServiceImpl implements WorldBankService {
 
+    private static final Timer INFO_LATENCY = WorldBankMetrics.lookupTimer("socket", "info");
+    private static final Timer REPORT_LATENCY = WorldBankMetrics.lookupTimer("socket", "report");
+
     private final WDIDao wdiDao;
+    private final Map<String, WorldBankServiceImpl> otherDatasets = new ConcurrentHashMap<>();
 
     public WorldBankServiceImpl(WDIDao wdiDao) {
         this.wdiDao = wdiDao;
     }
 
+    /**
+     * The service of the named dataset, loading it on first use. Throws DatasetRegistry.UnknownDatasetException
+     * for a name that is not configured and DatasetHolder.LoadFailedException when the dataset can not be loaded.
+     */
+    public WorldBankServiceImpl forDataset(String name) {
+        if (name.equals(wdiDao.getDatasetName())) {
+            return this;
+        }
+        WorldBankServiceImpl service = otherDatasets.computeIfAbsent(name,
+                dataset -> new WorldBankServiceImpl(wdiDao.forDataset(dataset)));
+        service.wdiDao.load();  // a volatile read once loaded
+        return service;
+    }
+
+    public List<String> getDatasetNames() {
+        return wdiDao.getDatasetNames();
+    }
+
     @Override
     public String getCountryInfo(String countryCode, String indicatorCode, String year) {
-        HashMap<String, CountryData> dataHashMap = wdiDao.load();
-        CountryData countryData = dataHashMap.get(countryCode + "_" + indicatorCode);
+        long start = System.nanoTime();
+        try {
+            CountryData countryData = wdiDao.getDatabase().get(countryCode, indicatorCode);
 
-        String countryName = countryData.getCountryName();
-        String indicatorName = countryData.getIndicatorName();
-        Double data = countryData.getYearData().get(Integer.parseInt(year));
+            String countryName = countryData.getCountryName();
+            String indicatorName = countryData.getIndicatorName();
+            Double data = countryData.getYearValue(Integer.parseInt(year));
 
-        wdiDao.clear();
-
-        return String.format("country -> %s has %s had %s in year %s", countryName, indicatorName, data, year);
+            return String.format("country -> %s has %s had %s in year %s", countryName, indicatorName, data, year);
+        } finally {
+            INFO_LATENCY.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
     }
 
     @Override
     public String getCountryReport(String countryCode, String indicatorCode) {
-        HashMap<String, CountryData> dataHashMap = wdiDao.load();
-        CountryData countryData = dataHashMap.get(countryCode + "_" + indicatorCode);
+        long start = System.nanoTime();
+        try {
+            CountryData countryData = wdiDao.getDatabase().get(countryCode, indicatorCode);
 
-        String countryName = countryData.getCountryName();
-        String indicatorName = countryData.getIndicatorName();
-        OptionalDouble optionalDouble = calculateMean(countryName, indicatorCode);
+            String countryName = countryData.getCountryName();
+            String indicatorName = countryData.getIndicatorName();
+            OptionalDouble optionalDouble = calculateMean(countryData);
 
-        wdiDao.clear();
+            return String.format("country -> %s has %s with mean average of %s percentage over the year 1960-2024", countryName, indicatorName,
+                    optionalDouble.isPresent() ? optionalDouble.getAsDouble() : 0);
+        } finally {
+            REPORT_LATENCY.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+    }
 
-        return String.format("country -> %s has %s with mean average of %s percentage over the year 1960-2024", countryName, indicatorName,
-                optionalDouble.isPresent() ? optionalDouble.getAsDouble() : 0);
+    // Raw value of one year, null when the year has no value; throws for an unknown series
+    @Override
+    public Double getCountryValue(String countryCode, String indicatorCode, int year) {
+        return getCountryValue(wdiDao.getDatabase(), countryCode, indicatorCode, year);
     }
 
-    // Method to calculate mean value of a given indicator for a specific country
-    public static OptionalDouble calculateMean(String countryName, String indicatorCode) {
-        for (CountryData data : database.values()) {
-            if (data.getCountryName().equalsIgnoreCase(countryName) &&
-                    data.getIndicatorCode().equalsIgnoreCase(indicatorCode)) {
-
-                // Extract all the valid year values
-                return data.getYearData().values().stream()
-                        .mapToDouble(Double::doubleValue)
-                        .average();  // Calculate the mean
-            }
+    // Same lookup against a table the caller already holds, e.g. a leased version shared by a whole batch
+    public static Double getCountryValue(SeriesTable<CountryData> database, String countryCode, String indicatorCode, int year) {
+        CountryData countryData = database.get(countryCode, indicatorCode);
+        if (countryData == null) {
+            throw new IllegalArgumentException("Unknown series " + countryCode + ";" + indicatorCode);
         }
-        return OptionalDouble.empty(); // Return empty if country or indicator not found
+        return countryData.getYearValue(year);
+    }
+
+    // Years fromYear..toYear of one series as one array; throws for an unknown series
+    public YearRange getCountryRange(String countryCode, String indicatorCode, int fromYear, int toYear) {
+        CountryData countryData = wdiDao.getDatabase().get(countryCode, indicatorCode);
+        if (countryData == null) {
+            throw new IllegalArgumentException("Unknown series " + countryCode + ";" + indicatorCode);
+        }
+        return countryData.getYearRange(fromYear, toYear);
+    }
+
+    // Top or bottom n countries of an indicator in one year; throws for an unknown indicator
+    public Ranking getRanking(String indicatorCode, int year, int n, Ranking.Order order) {
+        ColumnarStore store = wdiDao.getStore();
+        int indicator = store == null ? -1 : store.indicatorId(indicatorCode);
+        if (indicator < 0) {
+            throw new IllegalArgumentException("Unknown indicator " + indicatorCode);
+        }
+        return Ranking.of(store, indicator, year, n, order);
+    }
+
+    public DatasetHolder<CountryData>.Lease acquire() {
+        return wdiDao.acquire();
+    }
+
+    // Id based access for the binary protocol, null until the data is loaded
+    public ColumnarStore getStore() {
+        return wdiDao.getStore();
+    }
+
+    // Mean value of a given indicator for a specific country, looked up in the store's aggregate index
+    public static OptionalDouble calculateMean(CountryData countryData) {
+        return countryData.getStats().meanValue();
     }
-}
\ No newline at end of file
+}
@@ -1,47 +1,32 @@
 package com.engineeringwithsandeep.worldbankservice.socket.util;
 
 import com.engineeringwithsandeep.worldbankservice.socket.dao.CountryData;
-import com.engineeringwithsandeep.worldbankservice.socket.dao.WDIDao;
-import com.opencsv.CSVReader;
-import com.opencsv.exceptions.CsvValidationException;
+import com.engineeringwithsandeep.worldbankservice.store.ColumnarStore;
+import com.engineeringwithsandeep.worldbankservice.store.SeriesTable;
+import com.engineeringwithsandeep.worldbankservice.store.WdiCsvLoader;
+import lombok.extern.slf4j.Slf4j;
 
-import java.io.FileReader;
 import java.io.IOException;
 
 /**
  * This is utility class for reading CSV file
  * @author : EngineeringWithSandeep
  */
+@Slf4j
 public class CsvReader {
 
-    public static void readCsv(String filePath) {
-        try (CSVReader reader = new CSVReader(new FileReader(filePath))) {
-            String[] header = reader.readNext();  // Read header (years)
-
-            String[] line;
-            while ((line = reader.readNext()) != null) {
-                String countryName = line[0];
-                String countryCode = line[1];
-                String indicatorName = line[2];
-                String indicatorCode = line[3];
-
-                CountryData countryData = new CountryData(countryName, countryCode, indicatorName, indicatorCode);
-
-                for (int i = 4; i < line.length; i++) {
-                    double value;
-                    int year = Integer.parseInt(header[i]);
-                    if (line[i].isEmpty()) {
-                        value = 0.0;
-                    } else {
-                        value = Double.parseDouble(line[i]);
-                    }
-                    countryData.getYearData().put(year, value);
-                }
-                // Here you can pass the `countryData` object to the DAO for storing
-                WDIDao.save(countryData);
-            }
-        } catch (IOException | CsvValidationException e) {
-            System.out.println(e.getMessage());
+    // Returns null when the file can not be read
+    public static ColumnarStore readCsv(String filePath) {
+        try {
+            return WdiCsvLoader.load(filePath);
+        } catch (IOException e) {
+            log.warn("Could not read {}: {}", filePath, e.getMessage());
+            return null;
         }
     }
+
+    // One CountryData view per series, addressed by indicator and country id
+    public static SeriesTable<CountryData> index(ColumnarStore store) {
+        return store == null ? SeriesTable.empty() : SeriesTable.of(store, CountryData::new);
+    }
 }
@@ -0,0 +1,345 @@
+package com.engineeringwithsandeep.worldbankservice.store;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Fork-join aggregation over the columnar store: count, sum, mean, min, max, an optional weighted mean and
+ * percentiles of one or many indicators, grouped by year (across a set of countries) or by country (across a range
+ * of years). The work is cut into (indicator, group) units that are split over the pool until a leaf covers about
+ * LEAF_CELLS cells. Leaves read the indicator blocks directly and write into flat result arrays, so nothing is
+ * allocated per cell; percentiles copy one group's values into a scratch array per leaf and sort it in place.
+ */
+public final class AggregationEngine {
+
+    private static final int LEAF_CELLS = 1 << 14;
+    private static final AggregationEngine COMMON = new AggregationEngine(ForkJoinPool.commonPool());
+
+    public enum GroupBy {
+        YEAR, COUNTRY;
+
+        // "year" or "country", any case
+        public static GroupBy parse(String groupBy) {
+            return valueOf(groupBy.trim().toUpperCase(Locale.ROOT));
+        }
+    }
+
+    /**
+     * What to aggregate. countries null means every country; the years are clamped to the stored range;
+     * weightIndicator -1 skips the weighted mean, otherwise each value is weighted by the same cell of that
+     * indicator (e.g. SP.POP.TOTL for a population weighted mean); percentiles are 0..100, empty for none.
+     */
+    public record Query(GroupBy groupBy, int[] countries, int fromYear, int toYear, int weightIndicator,
+                        double[] percentiles) {
+
+        public static Query byYear(int[] countries) {
+            return new Query(GroupBy.YEAR, countries, Integer.MIN_VALUE, Integer.MAX_VALUE, -1, new double[0]);
+        }
+
+        public static Query byCountry(int[] countries, int fromYear, int toYear) {
+            return new Query(GroupBy.COUNTRY, countries, fromYear, toYear, -1, new double[0]);
+        }
+
+        public Query weightedBy(int indicator) {
+            return new Query(groupBy, countries, fromYear, toYear, indicator, percentiles);
+        }
+
+        public Query withPercentiles(double... percentiles) {
+            return new Query(groupBy, countries, fromYear, toYear, weightIndicator, percentiles);
+        }
+    }
+
+    /**
+     * One group with at least one value: a year ("2022") or a country code. weightedMean is null without weights
+     * or when none of the group's cells has a weight; percentiles line up with the query's.
+     */
+    public record Group(String key, long count, double sum, double mean, double min, double max, Double weightedMean,
+                        double[] percentiles) {
+    }
+
+    // Aggregates of one indicator, the REST response
+    public record Report(String indicatorCode, GroupBy groupBy, String weightIndicatorCode, double[] percentiles,
+                         List<Group> groups) {
+    }
+
+    private final ForkJoinPool pool;
+
+    public AggregationEngine(ForkJoinPool pool) {
+        this.pool = pool;
+    }
+
+    // Runs on the common fork-join pool
+    public static AggregationEngine common() {
+        return COMMON;
+    }
+
+    /**
+     * Single indicator request by codes, as the REST endpoints receive it. countryCodes null or empty for every
+     * country, weightIndicatorCode null for no weighted mean. Returns null for an unknown indicator and throws
+     * IllegalArgumentException for an unknown country or weight indicator.
+     */
+    public Report report(ColumnarStore store, String indicatorCode, GroupBy groupBy, List<String> countryCodes,
+                         int fromYear, int toYear, String weightIndicatorCode, double[] percentiles) {
+        int indicator = store == null ? -1 : store.indicatorId(indicatorCode);
+        if (indicator < 0) {
+            return null;
+        }
+        int[] countries = null;
+        if (countryCodes != null && !countryCodes.isEmpty()) {
+            countries = new int[countryCodes.size()];
+            for (int i = 0; i < countries.length; i++) {
+                countries[i] = store.countryId(countryCodes.get(i));
+                if (countries[i] < 0) {
+                    throw new IllegalArgumentException("Unknown country " + countryCodes.get(i));
+                }
+            }
+        }
+        int weightIndicator = -1;
+        if (weightIndicatorCode != null) {
+            weightIndicator = store.indicatorId(weightIndicatorCode);
+            if (weightIndicator < 0) {
+                throw new IllegalArgumentException("Unknown weight indicator " + weightIndicatorCode);
+            }
+        }
+        Query query = new Query(groupBy, countries, fromYear, toYear, weightIndicator,
+                percentiles != null ? percentiles : new double[0]);
+        return aggregate(store, indicator, query).report(0);
+    }
+
+    public Result aggregate(ColumnarStore store, int indicator, Query query) {
+        return aggregate(store, new int[]{indicator}, query);
+    }
+
+    // Every indicator of the store in one run, e.g. the world average per year of the whole release
+    public Result aggregateAll(ColumnarStore store, Query query) {
+        int[] indicators = new int[store.indicatorCount()];
+        Arrays.setAll(indicators, i -> i);
+        return aggregate(store, indicators, query);
+    }
+
+    public Result aggregate(ColumnarStore store, int[] indicators, Query query) {
+        for (double p : query.percentiles()) {
+            if (!(p >= 0 && p <= 100)) {
+                throw new IllegalArgumentException("Percentile out of range: " + p);
+            }
+        }
+        Result result = new Result(store, indicators, query);
+        if (result.units > 0) {
+            pool.invoke(result.new Task(0, result.units));
+        }
+        return result;
+    }
+
+    /**
+     * Flat aggregates of every (indicator, group) unit, indexed indicatorIndex * groupCount + group where
+     * indicatorIndex is the position in the indicators passed to aggregate.
+     */
+    public static final class Result {
+        private final ColumnarStore store;
+        private final int[] indicators;
+        private final Query query;
+        private final int[] countries;
+        private final int firstOffset;
+        private final int groupCount;
+        private final int cellsPerUnit;
+        private final int units;
+        private final int unitsPerLeaf;
+
+        private final long[] counts;
+        private final double[] sums;
+        private final double[] mins;
+        private final double[] maxs;
+        private final double[] weightedSums;
+        private final double[] weights;
+        private final double[] percentileValues;  // unit * percentiles.length + k
+
+        private Result(ColumnarStore store, int[] indicators, Query query) {
+            this.store = store;
+            this.indicators = indicators;
+            this.query = query;
+            if (query.countries() != null) {
+                this.countries = query.countries();
+            } else {
+                this.countries = new int[store.countryCount()];
+                Arrays.setAll(countries, c -> c);
+            }
+            int from = Math.max(query.fromYear(), store.firstYear());
+            int to = Math.min(query.toYear(), store.lastYear());
+            int years = Math.max(to - from + 1, 0);
+            this.firstOffset = from - store.firstYear();
+            this.groupCount = query.groupBy() == GroupBy.YEAR ? years : countries.length;
+            this.cellsPerUnit = query.groupBy() == GroupBy.YEAR ? countries.length : years;
+            this.units = indicators.length * groupCount;
+            this.unitsPerLeaf = Math.max(1, LEAF_CELLS / Math.max(cellsPerUnit, 1));
+            this.counts = new long[units];
+            this.sums = new double[units];
+            this.mins = new double[units];
+            this.maxs = new double[units];
+            this.weightedSums = query.weightIndicator() >= 0 ? new double[units] : null;
+            this.weights = query.weightIndicator() >= 0 ? new double[units] : null;
+            this.percentileValues = new double[units * query.percentiles().length];
+        }
+
+        public int groupCount() {
+            return groupCount;
+        }
+
+        // Year of a YEAR group, country id of a COUNTRY group
+        public int groupKey(int group) {
+            return query.groupBy() == GroupBy.YEAR ? store.firstYear() + firstOffset + group : countries[group];
+        }
+
+        public long count(int indicatorIndex, int group) {
+            return counts[indicatorIndex * groupCount + group];
+        }
+
+        public double sum(int indicatorIndex, int group) {
+            return sums[indicatorIndex * groupCount + group];
+        }
+
+        // NaN for an empty group, as are min, max and the percentiles
+        public double mean(int indicatorIndex, int group) {
+            int unit = indicatorIndex * groupCount + group;
+            return counts[unit] == 0 ? Double.NaN : sums[unit] / counts[unit];
+        }
+
+        public double min(int indicatorIndex, int group) {
+            return mins[indicatorIndex * groupCount + group];
+        }
+
+        public double max(int indicatorIndex, int group) {
+            return maxs[indicatorIndex * groupCount + group];
+        }
+
+        // NaN without weights or without any weighted value
+        public double weightedMean(int indicatorIndex, int group) {
+            int unit = indicatorIndex * groupCount + group;
+            return weights == null || weights[unit] == 0 ? Double.NaN : weightedSums[unit] / weights[unit];
+        }
+
+        public double percentile(int indicatorIndex, int group, int k) {
+            return percentileValues[(indicatorIndex * groupCount + group) * query.percentiles().length + k];
+        }
+
+        // The non-empty groups of one indicator, in year or country order
+        public Report report(int indicatorIndex) {
+            List<Group> groups = new ArrayList<>();
+            int pCount = query.percentiles().length;
+            for (int group = 0; group < groupCount; group++) {
+                int unit = indicatorIndex * groupCount + group;
+                if (counts[unit] == 0) {
+                    continue;
+                }
+                String key = query.groupBy() == GroupBy.YEAR
+                        ? String.valueOf(groupKey(group)) : store.countryCode(countries[group]);
+                double weightedMean = weightedMean(indicatorIndex, group);
+                groups.add(new Group(key, counts[unit], sums[unit], mean(indicatorIndex, group), mins[unit], maxs[unit],
+                        Double.isNaN(weightedMean) ? null : weightedMean,
+                        Arrays.copyOfRange(percentileValues, unit * pCount, unit * pCount + pCount)));
+            }
+            int weightIndicator = query.weightIndicator();
+            return new Report(store.indicatorCode(indicators[indicatorIndex]), query.groupBy(),
+                    weightIndicator >= 0 ? store.indicatorCode(weightIndicator) : null, query.percentiles(), groups);
+        }
+
+        private final class Task extends RecursiveAction {
+            private final int from;
+            private final int to;
+
+            private Task(int from, int to) {
+                this.from = from;
+                this.to = to;
+            }
+
+            @Override
+            protected void compute() {
+                if (to - from <= unitsPerLeaf) {
+                    double[] scratch = query.percentiles().length > 0 ? new double[cellsPerUnit] : null;
+                    for (int unit = from; unit < to; unit++) {
+                        aggregateUnit(unit, scratch);
+                    }
+                    return;
+                }
+                int mid = (from + to) >>> 1;
+                invokeAll(new Task(from, mid), new Task(mid, to));
+            }
+        }
+
+        private void aggregateUnit(int unit, double[] scratch) {
+            int indicator = indicators[unit / groupCount];
+            int group = unit % groupCount;
+            ValueBlock block = store.block(indicator);
+            long[] present = store.presentBits(indicator);
+            int weightIndicator = query.weightIndicator();
+            ValueBlock weightBlock = weightIndicator >= 0 ? store.block(weightIndicator) : null;
+            long[] weightPresent = weightIndicator >= 0 ? store.presentBits(weightIndicator) : null;
+            int yearCount = store.yearCount();
+
+            long count = 0;
+            double sum = 0;
+            double min = Double.POSITIVE_INFINITY;
+            double max = Double.NEGATIVE_INFINITY;
+            double weightedSum = 0;
+            double weight = 0;
+            // by year: the same year offset of every selected country; by country: consecutive years of one series
+            boolean byYear = query.groupBy() == GroupBy.YEAR;
+            int yearOffset = firstOffset + group;
+            int seriesStart = byYear ? 0 : countries[group] * yearCount + firstOffset;
+            for (int k = 0; k < cellsPerUnit; k++) {
+                int cell = byYear ? countries[k] * yearCount + yearOffset : seriesStart + k;
+                if ((present[cell >>> 6] & (1L << cell)) == 0) {
+                    continue;
+                }
+                double value = block.get(cell);
+                if (scratch != null) {
+                    scratch[(int) count] = value;
+                }
+                count++;
+                sum += value;
+                if (value < min) {
+                    min = value;
+                }
+                if (value > max) {
+                    max = value;
+                }
+                if (weightBlock != null && (weightPresent[cell >>> 6] & (1L << cell)) != 0) {
+                    weightedSum += weightBlock.get(cell) * value;
+                    weight += weightBlock.get(cell);
+                }
+            }
+
+            counts[unit] = count;
+            sums[unit] = sum;
+            mins[unit] = count == 0 ? Double.NaN : min;
+            maxs[unit] = count == 0 ? Double.NaN : max;
+            if (weights != null) {
+                weightedSums[unit] = weightedSum;
+                weights[unit] = weight;
+            }
+            double[] percentiles = query.percentiles();
+            if (percentiles.length > 0) {
+                if (count > 0) {
+                    Arrays.sort(scratch, 0, (int) count);
+                }
+                for (int p = 0; p < percentiles.length; p++) {
+                    percentileValues[unit * percentiles.length + p] = percentile(scratch, (int) count, percentiles[p]);
+                }
+            }
+        }
+
+        // Linear interpolation between the closest ranks of the n sorted values
+        private static double percentile(double[] sorted, int n, double p) {
+            if (n == 0) {
+                return Double.NaN;
+            }
+            double rank = p / 100.0 * (n - 1);
+            int lower = (int) rank;
+            int upper = Math.min(lower + 1, n - 1);
+            return sorted[lower] + (rank - lower) * (sorted[upper] - sorted[lower]);
+        }
+    }
+}
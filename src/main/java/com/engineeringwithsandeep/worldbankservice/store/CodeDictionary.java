@@ -0,0 +1,91 @@
+package com.engineeringwithsandeep.worldbankservice.store;
+
+import java.nio.charset.StandardCharsets;
+import java.util.zip.CRC32C;
+
+/**
+ * Immutable dictionary mapping codes to dense int ids 0..size-1, with the display name of every id.
+ * Lookups probe an open-addressing int table, so they neither box nor allocate; the id also indexes
+ * the code and name arrays, so each string is held exactly once for the whole store.
+ */
+public final class CodeDictionary {
+
+    private final String[] codes;
+    private final String[] names;
+    private final int[] slots;  // id + 1 per slot, 0 marks an empty slot
+    private final int mask;
+    private final int fingerprint;
+
+    CodeDictionary(String[] codes, String[] names) {
+        this.codes = codes;
+        this.names = names;
+        int capacity = Integer.highestOneBit(Math.max(codes.length, 1) * 2 - 1) << 1;  // load factor at most 1/2
+        this.slots = new int[capacity];
+        this.mask = capacity - 1;
+        for (int id = 0; id < codes.length; id++) {
+            int slot = spread(codes[id].hashCode()) & mask;
+            while (slots[slot] != 0) {
+                if (codes[slots[slot] - 1].equals(codes[id])) {
+                    throw new IllegalArgumentException("Duplicate code " + codes[id]);
+                }
+                slot = (slot + 1) & mask;
+            }
+            slots[slot] = id + 1;
+        }
+        this.fingerprint = fingerprint(codes);
+    }
+
+    public int size() {
+        return codes.length;
+    }
+
+    // Returns -1 when the code is unknown
+    public int id(String code) {
+        if (code == null) {
+            return -1;
+        }
+        for (int slot = spread(code.hashCode()) & mask; ; slot = (slot + 1) & mask) {
+            int entry = slots[slot];
+            if (entry == 0) {
+                return -1;
+            }
+            if (codes[entry - 1].equals(code)) {
+                return entry - 1;
+            }
+        }
+    }
+
+    /**
+     * CRC32C of the codes in id order. Two dictionaries with the same fingerprint map the same codes to the same ids,
+     * so ids handed out by one stay valid against the other.
+     */
+    public int fingerprint() {
+        return fingerprint;
+    }
+
+    public String code(int id) {
+        return codes[id];
+    }
+
+    public String name(int id) {
+        return names[id];
+    }
+
+    long heapBytes() {
+        return HeapFootprint.stringsBytes(codes) + HeapFootprint.stringsBytes(names)
+                + HeapFootprint.arrayBytes(slots.length, Integer.BYTES);
+    }
+
+    private static int fingerprint(String[] codes) {
+        CRC32C crc = new CRC32C();
+        for (String code : codes) {
+            crc.update(code.getBytes(StandardCharsets.UTF_8));
+            crc.update('\n');
+        }
+        return (int) crc.getValue();
+    }
+
+    private static int spread(int hash) {
+        return hash ^ (hash >>> 16);
+    }
+}
@@ -0,0 +1,376 @@
+package com.engineeringwithsandeep.worldbankservice.store;
+
+import com.engineeringwithsandeep.worldbankservice.ingest.RowSink;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Immutable columnar in-memory store for WDI csv data.
+ * Every indicator owns one dense double[] block laid out country-major (country * yearCount + yearOffset),
+ * with a bitmap marking which cells hold a value and a second bitmap marking which (country, indicator) rows exist.
+ * The blocks are either heap arrays or views of a memory-mapped snapshot (see StoreSnapshot.map), in which case only
+ * the dictionaries, bitmaps and stats stay on the heap.
+ */
+public final class ColumnarStore {
+
+    private final CodeDictionary countries;
+    private final CodeDictionary indicators;
+    private final int firstYear;
+    private final int yearCount;
+    private final ValueBlock[] values;  // [indicator][country * yearCount + yearOffset]
+    private final long[][] present;   // [indicator] bitmap over the cells of values
+    private final long[][] series;    // [indicator] bitmap over countries, set when the csv had that row
+    private final SeriesStatsIndex stats;
+
+    ColumnarStore(String[] countryCodes, String[] countryNames, String[] indicatorCodes, String[] indicatorNames,
+                  int firstYear, int yearCount, double[][] values, long[][] present, long[][] series) {
+        this(countryCodes, countryNames, indicatorCodes, indicatorNames, firstYear, yearCount,
+                Arrays.stream(values).map(ValueBlock::of).toArray(ValueBlock[]::new), present, series);
+    }
+
+    ColumnarStore(String[] countryCodes, String[] countryNames, String[] indicatorCodes, String[] indicatorNames,
+                  int firstYear, int yearCount, ValueBlock[] values, long[][] present, long[][] series) {
+        this(new CodeDictionary(countryCodes, countryNames), new CodeDictionary(indicatorCodes, indicatorNames),
+                firstYear, yearCount, values, present, series, null, null);
+    }
+
+    private ColumnarStore(CodeDictionary countries, CodeDictionary indicators, int firstYear, int yearCount,
+                          ValueBlock[] values, long[][] present, long[][] series,
+                          SeriesStatsIndex previousStats, List<RowChange> changes) {
+        this.countries = countries;
+        this.indicators = indicators;
+        this.firstYear = firstYear;
+        this.yearCount = yearCount;
+        this.values = values;
+        this.present = present;
+        this.series = series;
+        // built last, it reads the blocks above
+        this.stats = previousStats == null ? new SeriesStatsIndex(this) : new SeriesStatsIndex(this, previousStats, changes);
+    }
+
+    /**
+     * New version of one row: {@code values[k]} is year {@code firstYear + k} with NaN for a missing value,
+     * null values remove the row.
+     */
+    record RowChange(int country, int indicator, double[] values) {
+    }
+
+    /**
+     * Copy-on-write update: returns a new store with the given rows replaced or removed. Only the blocks of the
+     * touched indicators are copied and only the stats of the changed series are recomputed, everything else is
+     * shared with this store, which stays unchanged for the readers still holding it. A touched mapped block is
+     * copied to the heap; the next snapshot written from the new store carries the change.
+     * The rows must use the ids of this store's dictionaries.
+     */
+    ColumnarStore withRows(List<RowChange> changes) {
+        ValueBlock[] newValues = values.clone();
+        long[][] newPresent = present.clone();
+        long[][] newSeries = series.clone();
+        double[][] copied = new double[values.length][];
+        for (RowChange change : changes) {
+            int indicator = change.indicator();
+            if (copied[indicator] == null) {
+                copied[indicator] = values[indicator].toArray();
+                newValues[indicator] = ValueBlock.of(copied[indicator]);
+                newPresent[indicator] = newPresent[indicator].clone();
+                newSeries[indicator] = newSeries[indicator].clone();
+            }
+            double[] block = copied[indicator];
+            long[] bits = newPresent[indicator];
+            int base = change.country() * yearCount;
+            for (int k = 0; k < yearCount; k++) {
+                int cell = base + k;
+                double value = change.values() == null || k >= change.values().length ? Double.NaN : change.values()[k];
+                if (Double.isNaN(value)) {
+                    block[cell] = 0.0;
+                    bits[cell >>> 6] &= ~(1L << cell);
+                } else {
+                    block[cell] = value;
+                    bits[cell >>> 6] |= 1L << cell;
+                }
+            }
+            long[] rows = newSeries[indicator];
+            if (change.values() == null) {
+                rows[change.country() >>> 6] &= ~(1L << change.country());
+            } else {
+                rows[change.country() >>> 6] |= 1L << change.country();
+            }
+        }
+        return new ColumnarStore(countries, indicators, firstYear, yearCount, newValues, newPresent, newSeries,
+                stats, changes);
+    }
+
+    public int countryCount() {
+        return countries.size();
+    }
+
+    public int indicatorCount() {
+        return indicators.size();
+    }
+
+    /**
+     * Identifies the id assignment of both dictionaries. It survives incremental reloads, which keep the dictionaries,
+     * and changes when a full reload reorders, adds or drops a code, so clients caching ids can tell theirs are stale.
+     */
+    public int idEpoch() {
+        return 31 * countries.fingerprint() + indicators.fingerprint();
+    }
+
+    public CodeDictionary countries() {
+        return countries;
+    }
+
+    public CodeDictionary indicators() {
+        return indicators;
+    }
+
+    public int firstYear() {
+        return firstYear;
+    }
+
+    public int lastYear() {
+        return firstYear + yearCount - 1;
+    }
+
+    public int yearCount() {
+        return yearCount;
+    }
+
+    // Returns -1 when the code is unknown
+    public int countryId(String countryCode) {
+        return countries.id(countryCode);
+    }
+
+    // Returns -1 when the code is unknown
+    public int indicatorId(String indicatorCode) {
+        return indicators.id(indicatorCode);
+    }
+
+    public String countryCode(int country) {
+        return countries.code(country);
+    }
+
+    public String countryName(int country) {
+        return countries.name(country);
+    }
+
+    public String indicatorCode(int indicator) {
+        return indicators.code(indicator);
+    }
+
+    public String indicatorName(int indicator) {
+        return indicators.name(indicator);
+    }
+
+    // Returns -1 when the year is outside of the stored range
+    public int yearOffset(int year) {
+        int offset = year - firstYear;
+        return offset >= 0 && offset < yearCount ? offset : -1;
+    }
+
+    public boolean hasSeries(int country, int indicator) {
+        return isSet(series[indicator], country);
+    }
+
+    public boolean isPresent(int country, int indicator, int yearOffset) {
+        return isSet(present[indicator], country * yearCount + yearOffset);
+    }
+
+    // Raw cell value, 0.0 for a missing cell - check isPresent first
+    public double value(int country, int indicator, int yearOffset) {
+        return values[indicator].get(country * yearCount + yearOffset);
+    }
+
+    /**
+     * Copies {@code length} years of one series, starting at yearOffset, into dest with NaN for missing cells.
+     * A series is contiguous in its indicator block, so this is one bulk copy plus a pass over the bitmap.
+     */
+    public void copyRange(int country, int indicator, int yearOffset, double[] dest, int destPos, int length) {
+        int start = country * yearCount + yearOffset;
+        values[indicator].copy(start, dest, destPos, length);
+        long[] bits = present[indicator];
+        for (int k = 0; k < length; k++) {
+            if (!isSet(bits, start + k)) {
+                dest[destPos + k] = Double.NaN;
+            }
+        }
+    }
+
+    // Precomputed mean, min, max, count, standard deviation and first/last year of the series
+    public SeriesStats stats(int country, int indicator) {
+        return stats.get(country, indicator);
+    }
+
+    public void forEachSeries(SeriesConsumer consumer) {
+        for (int indicator = 0; indicator < indicators.size(); indicator++) {
+            long[] bits = series[indicator];
+            for (int word = 0; word < bits.length; word++) {
+                long w = bits[word];
+                while (w != 0) {
+                    int country = (word << 6) + Long.numberOfTrailingZeros(w);
+                    consumer.accept(country, indicator);
+                    w &= w - 1;
+                }
+            }
+        }
+    }
+
+    /**
+     * Shallow heap size of the store: value blocks, bitmaps, dictionary strings and the aggregate index.
+     * Mapped value blocks are not on the heap and not counted, see mappedBytes.
+     */
+    public long heapBytes() {
+        long bytes = 0;
+        for (int i = 0; i < values.length; i++) {
+            bytes += values[i].heapBytes();
+            bytes += HeapFootprint.arrayBytes(present[i].length, Long.BYTES);
+            bytes += HeapFootprint.arrayBytes(series[i].length, Long.BYTES);
+        }
+        bytes += countries.heapBytes() + indicators.heapBytes();
+        bytes += stats.heapBytes();
+        return bytes;
+    }
+
+    // Bytes of value blocks served from a memory-mapped snapshot, 0 for a store that lives on the heap
+    public long mappedBytes() {
+        long bytes = 0;
+        for (ValueBlock block : values) {
+            bytes += block.mappedBytes();
+        }
+        return bytes;
+    }
+
+    // Raw blocks and bitmaps for the snapshot writer and column scans, never exposed outside of the store package
+    ValueBlock block(int indicator) {
+        return values[indicator];
+    }
+
+    long[] presentBits(int indicator) {
+        return present[indicator];
+    }
+
+    long[] seriesBits(int indicator) {
+        return series[indicator];
+    }
+
+    private static boolean isSet(long[] bits, int index) {
+        return (bits[index >>> 6] & (1L << index)) != 0;
+    }
+
+    @FunctionalInterface
+    public interface SeriesConsumer {
+        void accept(int country, int indicator);
+    }
+
+    /**
+     * Collects csv rows and freezes them into a ColumnarStore.
+     * Country and indicator ordinals are assigned in order of first appearance.
+     */
+    public static final class Builder implements RowSink {
+
+        private static final int INITIAL_COUNTRIES = 64;
+
+        private final int firstYear;
+        private final int yearCount;
+        private final Map<String, Integer> countryIds = new HashMap<>();
+        private final Map<String, Integer> indicatorIds = new HashMap<>();
+        private final List<String> countryCodes = new ArrayList<>();
+        private final List<String> countryNames = new ArrayList<>();
+        private final List<String> indicatorCodes = new ArrayList<>();
+        private final List<String> indicatorNames = new ArrayList<>();
+        private final List<double[]> values = new ArrayList<>();
+        private final List<long[]> present = new ArrayList<>();
+        private final List<long[]> series = new ArrayList<>();
+
+        public Builder(int firstYear, int yearCount) {
+            this.firstYear = firstYear;
+            this.yearCount = yearCount;
+        }
+
+        public int firstYear() {
+            return firstYear;
+        }
+
+        public int yearCount() {
+            return yearCount;
+        }
+
+        /**
+         * Adds one csv row. {@code yearValues[k]} holds the value of year {@code firstYear + k},
+         * NaN marks a missing value.
+         */
+        @Override
+        public synchronized void accept(String countryName, String countryCode, String indicatorName, String indicatorCode,
+                                     double[] yearValues) {
+            int country = countryIds.computeIfAbsent(countryCode, code -> {
+                countryCodes.add(code);
+                countryNames.add(countryName);
+                return countryCodes.size() - 1;
+            });
+            int indicator = indicatorIds.computeIfAbsent(indicatorCode, code -> {
+                indicatorCodes.add(code);
+                indicatorNames.add(indicatorName);
+                values.add(new double[INITIAL_COUNTRIES * yearCount]);
+                present.add(new long[bitmapWords(INITIAL_COUNTRIES * yearCount)]);
+                series.add(new long[bitmapWords(INITIAL_COUNTRIES)]);
+                return indicatorCodes.size() - 1;
+            });
+            ensureCountryCapacity(indicator, country);
+
+            double[] block = values.get(indicator);
+            long[] bits = present.get(indicator);
+            int base = country * yearCount;
+            int count = Math.min(yearValues.length, yearCount);
+            for (int k = 0; k < count; k++) {
+                int cell = base + k;
+                if (Double.isNaN(yearValues[k])) {
+                    block[cell] = 0.0;
+                    bits[cell >>> 6] &= ~(1L << cell);
+                } else {
+                    block[cell] = yearValues[k];
+                    bits[cell >>> 6] |= 1L << cell;
+                }
+            }
+            long[] rows = series.get(indicator);
+            rows[country >>> 6] |= 1L << country;
+        }
+
+        private void ensureCountryCapacity(int indicator, int country) {
+            double[] block = values.get(indicator);
+            int capacity = block.length / yearCount;
+            if (country < capacity) {
+                return;
+            }
+            int newCapacity = Math.max(capacity * 2, country + 1);
+            values.set(indicator, Arrays.copyOf(block, newCapacity * yearCount));
+            present.set(indicator, Arrays.copyOf(present.get(indicator), bitmapWords(newCapacity * yearCount)));
+            series.set(indicator, Arrays.copyOf(series.get(indicator), bitmapWords(newCapacity)));
+        }
+
+        public synchronized ColumnarStore build() {
+            int countries = countryCodes.size();
+            int indicators = indicatorCodes.size();
+            double[][] blocks = new double[indicators][];
+            long[][] presentBits = new long[indicators][];
+            long[][] seriesBits = new long[indicators][];
+            for (int i = 0; i < indicators; i++) {
+                // trim the growth slack so every block is exactly countries * yearCount
+                blocks[i] = Arrays.copyOf(values.get(i), countries * yearCount);
+                presentBits[i] = Arrays.copyOf(present.get(i), bitmapWords(countries * yearCount));
+                seriesBits[i] = Arrays.copyOf(series.get(i), bitmapWords(countries));
+            }
+            return new ColumnarStore(
+                    countryCodes.toArray(String[]::new), countryNames.toArray(String[]::new),
+                    indicatorCodes.toArray(String[]::new), indicatorNames.toArray(String[]::new),
+                    firstYear, yearCount, blocks, presentBits, seriesBits);
+        }
+
+        private static int bitmapWords(int bits) {
+            return (bits + 63) >>> 6;
+        }
+    }
+}
@@ -0,0 +1,95 @@
+package com.engineeringwithsandeep.worldbankservice.store;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Watches one data file through a WatchService on its directory and runs a callback once the file has settled.
+ * Copy tools write a large file in many steps and editors often replace it by a rename, so events are collected
+ * until the file has been quiet for the debounce interval ({@code -Dworldbank.data.watch.debounce-ms}, 500 ms).
+ */
+@Slf4j
+public final class DataFileWatcher implements Closeable {
+
+    private static final long DEBOUNCE_MILLIS = Long.getLong("worldbank.data.watch.debounce-ms", 500);
+
+    private final Path fileName;
+    private final WatchService service;
+    private final Runnable onChange;
+    private final Thread thread;
+
+    private DataFileWatcher(Path file, WatchService service, Runnable onChange) {
+        this.fileName = file.getFileName();
+        this.service = service;
+        this.onChange = onChange;
+        this.thread = new Thread(this::run, "data-file-watcher-" + fileName);
+        this.thread.setDaemon(true);
+    }
+
+    public static DataFileWatcher start(Path file, Runnable onChange) throws IOException {
+        Path absolute = file.toAbsolutePath().normalize();
+        WatchService service = absolute.getFileSystem().newWatchService();
+        absolute.getParent().register(service, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY);
+        DataFileWatcher watcher = new DataFileWatcher(absolute, service, onChange);
+        watcher.thread.start();
+        return watcher;
+    }
+
+    private void run() {
+        try {
+            while (true) {
+                boolean changed = touchesFile(service.take());
+                while (changed) {
+                    WatchKey more = service.poll(DEBOUNCE_MILLIS, TimeUnit.MILLISECONDS);
+                    if (more == null) {
+                        break;
+                    }
+                    touchesFile(more);
+                }
+                if (changed) {
+                    try {
+                        onChange.run();
+                    } catch (RuntimeException e) {
+                        log.warn("Reload of {} failed: {}", fileName, e.getMessage());
+                    }
+                }
+            }
+        } catch (InterruptedException | ClosedWatchServiceException e) {
+            // closed
+        }
+    }
+
+    private boolean touchesFile(WatchKey key) {
+        boolean touched = false;
+        for (WatchEvent<?> event : key.pollEvents()) {
+            if (event.kind() == StandardWatchEventKinds.OVERFLOW || fileName.equals(event.context())) {
+                touched = true;
+            }
+        }
+        key.reset();
+        return touched;
+    }
+
+    // Returns once a callback in progress has finished, so none runs after close
+    @Override
+    public void close() throws IOException {
+        service.close();
+        thread.interrupt();
+        if (Thread.currentThread() != thread) {
+            try {
+                thread.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+}
@@ -0,0 +1,325 @@
+package com.engineeringwithsandeep.worldbankservice.store;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+/**
+ * Versioned holder of the in-memory dataset. A reload builds the new SeriesTable off to the side and publishes it
+ * with a single reference swap, so readers never block and never see a half-loaded table.
+ * A request that needs a consistent view across several lookups takes a Lease; the version it leased stays alive
+ * until the lease is closed, and a replaced version is released once its last lease is closed.
+ * The first load is single-flight: one caller runs the loader and every other caller, blocking or not, waits on that
+ * same attempt. A failed attempt is remembered for a retry interval, so a herd arriving after a failure gets the
+ * failure at once instead of each parsing the file again.
+ * @param <V> view type of the DAO, e.g. CountryData
+ */
+public final class DatasetHolder<V> {
+
+    /**
+     * One published dataset. The holder keeps one reference while the version is current, every lease adds one;
+     * the version is released when the count drops to zero, after which it can not be leased again.
+     * A loaded version may hold no series, e.g. a shard that owns none; only the initial and evicted ones are unloaded.
+     */
+    public static final class Version<V> {
+        private final long number;
+        private final SeriesTable<V> table;
+        private final boolean loaded;
+        private final AtomicInteger references = new AtomicInteger(1);
+
+        private Version(long number, SeriesTable<V> table, boolean loaded) {
+            this.number = number;
+            this.table = table;
+            this.loaded = loaded;
+        }
+
+        public long number() {
+            return number;
+        }
+
+        public SeriesTable<V> table() {
+            return table;
+        }
+
+        public boolean loaded() {
+            return loaded;
+        }
+
+        // Active leases, not counting the holder's own reference while the version is current
+        public int readers() {
+            return Math.max(references.get() - 1, 0);
+        }
+
+        private boolean retain() {
+            for (int count = references.get(); count > 0; count = references.get()) {
+                if (references.compareAndSet(count, count + 1)) {
+                    return true;
+                }
+            }
+            return false;  // already released, the caller retries against the current version
+        }
+
+        private boolean release() {
+            return references.decrementAndGet() == 0;
+        }
+    }
+
+    /**
+     * A reader's hold on one version. Close it (try-with-resources) when the request is done.
+     */
+    public final class Lease implements AutoCloseable {
+        private final Version<V> version;
+        private boolean closed;
+
+        private Lease(Version<V> version) {
+            this.version = version;
+        }
+
+        public SeriesTable<V> table() {
+            return version.table;
+        }
+
+        public long version() {
+            return version.number;
+        }
+
+        public boolean loaded() {
+            return version.loaded;
+        }
+
+        @Override
+        public void close() {
+            if (!closed) {
+                closed = true;
+                release(version);
+            }
+        }
+    }
+
+    /**
+     * The dataset could not be loaded. Every caller sharing the failed attempt, and every caller within the retry
+     * interval after it, gets the same exception; the cause is what the loader threw.
+     */
+    public static final class LoadFailedException extends IllegalStateException {
+        private LoadFailedException(Throwable cause) {
+            super("Dataset load failed: " + cause.getMessage(), cause);
+        }
+    }
+
+    public enum LoadState { EMPTY, LOADING, LOADED, FAILED }
+
+    // Outcome of the first load as seen now; lastError is the failure still remembered, null after a success
+    public record LoadStatus(LoadState state, long version, int attempts, String lastError) {
+    }
+
+    private record Failure(LoadFailedException error, long atNanos) {
+    }
+
+    private static final long RETRY_MILLIS = Long.getLong("worldbank.data.retry-ms", 5_000);
+
+    private final AtomicReference<Version<V>> current = new AtomicReference<>(new Version<>(0, SeriesTable.empty(), false));
+    private final Consumer<Version<V>> onRelease;
+    private final long retryNanos;
+    private final AtomicReference<CompletableFuture<SeriesTable<V>>> pendingLoad = new AtomicReference<>();
+    private final AtomicInteger attempts = new AtomicInteger();
+    private volatile Failure lastFailure;
+
+    public DatasetHolder() {
+        this(version -> { });
+    }
+
+    // onRelease runs on the thread that drops the last reference to a replaced version
+    public DatasetHolder(Consumer<Version<V>> onRelease) {
+        this(onRelease, RETRY_MILLIS);
+    }
+
+    // retryMillis: how long a failed load answers for itself before the next caller may try again
+    public DatasetHolder(Consumer<Version<V>> onRelease, long retryMillis) {
+        this.onRelease = onRelease;
+        this.retryNanos = TimeUnit.MILLISECONDS.toNanos(retryMillis);
+    }
+
+    // Lock-free: a swap between reading the reference and retaining it just means retrying on the new version
+    public Lease acquire() {
+        while (true) {
+            Version<V> version = current.get();
+            if (version.retain()) {
+                return new Lease(version);
+            }
+        }
+    }
+
+    /**
+     * Loads the table unless one is loaded and leases a loaded version, see loadIfEmpty. An evict between the load
+     * and the lease does not hand out the evicted version, the load runs again.
+     */
+    public Lease acquireLoaded(Supplier<SeriesTable<V>> loader) {
+        while (true) {
+            loadIfEmpty(loader);
+            Lease lease = acquire();
+            if (lease.loaded()) {
+                return lease;
+            }
+            lease.close();
+        }
+    }
+
+    // Non-blocking acquireLoaded, see loadIfEmptyAsync; whoever completes the future owns the lease
+    public CompletableFuture<Lease> acquireLoadedAsync(Supplier<SeriesTable<V>> loader, Executor executor) {
+        return loadIfEmptyAsync(loader, executor).thenCompose(loaded -> {
+            Lease lease = acquire();
+            if (lease.loaded()) {
+                return CompletableFuture.completedFuture(lease);
+            }
+            lease.close();
+            return acquireLoadedAsync(loader, executor);
+        });
+    }
+
+    // The current table without a lease, for single lookups that do not care which version answers them
+    public SeriesTable<V> current() {
+        return current.get().table;
+    }
+
+    public long version() {
+        return current.get().number;
+    }
+
+    // False before the first load and after an evict; a loaded table may still hold no series
+    public boolean isLoaded() {
+        return current.get().loaded;
+    }
+
+    /**
+     * Publishes a new table and retires the previous one, which is released once its leases drain.
+     * Returns the new version number.
+     */
+    public long publish(SeriesTable<V> table) {
+        return swap(table, true);
+    }
+
+    /**
+     * Drops the served table, e.g. to free a dataset nobody queries; it is released once its leases drain and the
+     * next loadIfEmpty loads the data again. Returns the new, empty version number.
+     */
+    public long evict() {
+        return swap(SeriesTable.empty(), false);
+    }
+
+    /**
+     * Builds and publishes a table unless one is already loaded. Joins the load in flight if there is one, otherwise
+     * runs it on the calling thread; throws LoadFailedException if that load fails or a recent failure still stands.
+     */
+    public SeriesTable<V> loadIfEmpty(Supplier<SeriesTable<V>> loader) {
+        Version<V> version = current.get();
+        if (version.loaded) {
+            return version.table;  // the request path, no lock once loaded
+        }
+        try {
+            return loadIfEmptyAsync(loader, Runnable::run).join();
+        } catch (CompletionException e) {
+            throw e.getCause() instanceof LoadFailedException failed ? failed : new LoadFailedException(e.getCause());
+        }
+    }
+
+    /**
+     * Non-blocking loadIfEmpty. The first caller starts the load on the executor and everyone arriving meanwhile
+     * gets the same future, so a cold-start burst occupies one executor thread and parks none; callers chain their
+     * work onto the future instead. Completes with the current table, or with LoadFailedException when the loader
+     * throws or returns null; that failure is handed out without a new attempt until the retry interval
+     * has passed.
+     */
+    public CompletableFuture<SeriesTable<V>> loadIfEmptyAsync(Supplier<SeriesTable<V>> loader, Executor executor) {
+        while (true) {
+            Version<V> version = current.get();
+            if (version.loaded) {
+                return CompletableFuture.completedFuture(version.table);
+            }
+            CompletableFuture<SeriesTable<V>> pending = pendingLoad.get();
+            if (pending != null) {
+                return pending;
+            }
+            Failure failure = lastFailure;
+            if (failure != null && System.nanoTime() - failure.atNanos < retryNanos) {
+                return CompletableFuture.failedFuture(failure.error);
+            }
+            CompletableFuture<SeriesTable<V>> load = new CompletableFuture<>();
+            if (pendingLoad.compareAndSet(null, load)) {
+                try {
+                    executor.execute(() -> runLoad(loader, load));
+                } catch (RuntimeException e) {  // e.g. a rejected task, not a load failure, the next caller starts over
+                    pendingLoad.compareAndSet(load, null);
+                    load.completeExceptionally(new LoadFailedException(e));
+                }
+                return load;
+            }
+        }
+    }
+
+    public LoadStatus loadStatus() {
+        Version<V> version = current.get();
+        Failure failure = lastFailure;
+        LoadState state;
+        if (version.loaded) {
+            state = LoadState.LOADED;
+        } else if (pendingLoad.get() != null) {
+            state = LoadState.LOADING;
+        } else {
+            state = failure != null ? LoadState.FAILED : LoadState.EMPTY;
+        }
+        return new LoadStatus(state, version.number, attempts.get(), failure == null ? null : failure.error.getMessage());
+    }
+
+    // The one attempt behind the pending future. The outcome is recorded before the future is cleared, so a caller
+    // that finds no pending load always sees either the published table or the failure.
+    private void runLoad(Supplier<SeriesTable<V>> loader, CompletableFuture<SeriesTable<V>> load) {
+        attempts.incrementAndGet();
+        SeriesTable<V> table = null;
+        LoadFailedException error = null;
+        try {
+            table = loader.get();
+            if (table == null) {
+                throw new IllegalStateException("the loader produced no table");
+            }
+            table = publishIfUnloaded(table);
+            lastFailure = null;
+        } catch (Throwable e) {
+            error = new LoadFailedException(e);
+            lastFailure = new Failure(error, System.nanoTime());
+        } finally {
+            pendingLoad.compareAndSet(load, null);
+        }
+        if (error == null) {
+            load.complete(table);
+        } else {
+            load.completeExceptionally(error);
+        }
+    }
+
+    // A reload may have published in the meantime, the newer table wins
+    private synchronized SeriesTable<V> publishIfUnloaded(SeriesTable<V> table) {
+        if (!isLoaded()) {
+            publish(table);
+        }
+        return current();
+    }
+
+    private synchronized long swap(SeriesTable<V> table, boolean loaded) {
+        Version<V> previous = current.get();
+        Version<V> next = new Version<>(previous.number + 1, table, loaded);
+        current.set(next);
+        release(previous);
+        return next.number;
+    }
+
+    private void release(Version<V> version) {
+        if (version.release()) {
+            onRelease.accept(version);
+        }
+    }
+}
@@ -0,0 +1,232 @@
+package com.engineeringwithsandeep.worldbankservice.store;
+
+import com.engineeringwithsandeep.worldbankservice.metrics.WorldBankMetrics;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+
+/**
+ * Named datasets served side by side by one DAO, e.g. WDI, IDS and Gender Stats in one process.
+ * Every dataset has its own DatasetHolder and DatasetReloader, so it is loaded, reloaded and evicted on its own
+ * and a failed or over-budget load of one leaves the others serving. They all share the csv ingestion, the
+ * snapshots and the backend choice of WdiCsvLoader. On a node of a partitioned deployment every dataset holds only
+ * the node's Shard.
+ * <pre>
+ * -Dworldbank.datasets=wdi,ids                       names, the first one is the default (wdi when unset)
+ * -Dworldbank.dataset.ids.file=/data/IDSCSV.csv      csv of a dataset, wdi defaults to -Dworldbank.data.file
+ * -Dworldbank.dataset.ids.heap-budget-mb=512         heap a loaded table may take, unlimited when unset
+ * </pre>
+ * @param <V> view type of the DAO, e.g. CountryData
+ */
+@Slf4j
+public final class DatasetRegistry<V> {
+
+    public static final String WDI = "wdi";
+
+    /**
+     * Configuration of one dataset: file null when none is configured, heapBudget in bytes.
+     */
+    public record Config(String name, Path file, long heapBudget) {
+
+        public static List<Config> fromProperties() {
+            List<Config> configs = new ArrayList<>();
+            for (String name : System.getProperty("worldbank.datasets", WDI).split(",")) {
+                name = name.strip();
+                if (name.isEmpty()) {
+                    continue;
+                }
+                String file = System.getProperty("worldbank.dataset." + name + ".file",
+                        WDI.equals(name) ? WdiCsvLoader.dataFile() : null);
+                long budgetMb = Long.getLong("worldbank.dataset." + name + ".heap-budget-mb", -1);
+                configs.add(new Config(name, file == null ? null : Path.of(file),
+                        budgetMb < 0 ? Long.MAX_VALUE : budgetMb << 20));
+            }
+            return configs;
+        }
+    }
+
+    // What /datasets reports about one dataset; heapBudget is -1 when unlimited
+    public record Summary(String name, String file, DatasetHolder.LoadStatus status, long heapBytes, long mappedBytes,
+                          long heapBudget) {
+    }
+
+    /**
+     * The dataset name is not configured. Not an IllegalArgumentException, which the handlers answer with 400,
+     * because an unknown dataset is a missing resource.
+     */
+    public static final class UnknownDatasetException extends NoSuchElementException {
+        private UnknownDatasetException(String name) {
+            super("Unknown dataset " + name);
+        }
+    }
+
+    public final class Dataset {
+        private final Config config;
+        private final DatasetHolder<V> holder = new DatasetHolder<>();
+        private final DatasetReloader<V> reloader;
+
+        private Dataset(Config config) {
+            this.config = config;
+            this.reloader = new DatasetReloader<>(holder, views, config.heapBudget(), shard);
+        }
+
+        public String name() {
+            return config.name();
+        }
+
+        public Path file() {
+            return config.file();
+        }
+
+        public DatasetHolder<V> holder() {
+            return holder;
+        }
+
+        // Loads the configured file once, see DatasetHolder.loadIfEmpty
+        public SeriesTable<V> load() {
+            return load(config.file());
+        }
+
+        // Loads the given file once, e.g. a file chosen by the caller for the default dataset
+        public SeriesTable<V> load(Path file) {
+            return holder.loadIfEmpty(() -> read(file));
+        }
+
+        // Non-blocking load of the configured file, see DatasetHolder.loadIfEmptyAsync
+        public CompletableFuture<SeriesTable<V>> loadAsync(Executor executor) {
+            return holder.loadIfEmptyAsync(() -> read(config.file()), executor);
+        }
+
+        // Loads the configured file if needed and leases the loaded version, close the lease when done
+        public DatasetHolder<V>.Lease acquire() {
+            return holder.acquireLoaded(() -> read(config.file()));
+        }
+
+        // Non-blocking acquire, see DatasetHolder.acquireLoadedAsync
+        public CompletableFuture<DatasetHolder<V>.Lease> acquireAsync(Executor executor) {
+            return holder.acquireLoadedAsync(() -> read(config.file()), executor);
+        }
+
+        // Reloads the dataset from its configured file; returns the version served
+        public long reload() throws IOException {
+            return reload(config.file());
+        }
+
+        // Reloads the dataset from file, e.g. the file a DAO was constructed with; never a file named by a client
+        public long reload(Path file) throws IOException {
+            if (file == null) {
+                throw new IOException("No file configured for dataset " + name());
+            }
+            return reloader.reload(file).version();
+        }
+
+        /**
+         * Frees the dataset: stops watching its file and drops the served table once its leases drain.
+         * The next request loads it again. Returns the new, empty version number.
+         */
+        public long evict() throws IOException {
+            reloader.close();
+            long version = holder.evict();
+            log.info("Evicted dataset {}", name());
+            return version;
+        }
+
+        public Summary summary() {
+            SeriesTable<V> table = holder.current();
+            return new Summary(name(), String.valueOf(config.file()), holder.loadStatus(),
+                    HeapFootprint.datasetBytes(table), HeapFootprint.mappedBytes(table),
+                    config.heapBudget() == Long.MAX_VALUE ? -1 : config.heapBudget());
+        }
+
+        // Unreadable or over budget fails the load, the holder remembers why and reports it
+        private SeriesTable<V> read(Path file) {
+            if (file == null) {
+                throw new IllegalStateException("No file configured for dataset " + name()
+                        + ", set -Dworldbank.dataset." + name() + ".file");
+            }
+            log.info("Loading dataset {} from {}", name(), file);
+            try {
+                return reloader.load(file);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+    }
+
+    private final SeriesTable.ViewFactory<V> views;
+    private final Shard shard;
+    private final Map<String, Dataset> datasets = new LinkedHashMap<>();
+    private final Dataset defaultDataset;
+
+    // Datasets of -Dworldbank.datasets; implementation tags the heap gauges, e.g. serial
+    public DatasetRegistry(String implementation, SeriesTable.ViewFactory<V> views) {
+        this(implementation, views, Shard.ALL);
+    }
+
+    // Datasets of -Dworldbank.datasets, each holding only the rows of shard
+    public DatasetRegistry(String implementation, SeriesTable.ViewFactory<V> views, Shard shard) {
+        this(implementation, views, Config.fromProperties(), shard);
+    }
+
+    public DatasetRegistry(String implementation, SeriesTable.ViewFactory<V> views, List<Config> configs) {
+        this(implementation, views, configs, Shard.ALL);
+    }
+
+    public DatasetRegistry(String implementation, SeriesTable.ViewFactory<V> views, List<Config> configs, Shard shard) {
+        if (configs.isEmpty()) {
+            throw new IllegalArgumentException("No dataset configured");
+        }
+        this.views = views;
+        this.shard = shard;
+        for (Config config : configs) {
+            Dataset dataset = new Dataset(config);
+            if (datasets.putIfAbsent(config.name(), dataset) != null) {
+                throw new IllegalArgumentException("Duplicate dataset " + config.name());
+            }
+            WorldBankMetrics.datasetHeap(implementation, config.name(),
+                    () -> HeapFootprint.datasetBytes(dataset.holder.current()));
+            WorldBankMetrics.datasetMapped(implementation, config.name(),
+                    () -> HeapFootprint.mappedBytes(dataset.holder.current()));
+        }
+        this.defaultDataset = datasets.get(configs.get(0).name());
+    }
+
+    /**
+     * The named dataset, the default one for a null name.
+     * Throws UnknownDatasetException for a name that is not configured.
+     */
+    public Dataset dataset(String name) {
+        if (name == null) {
+            return defaultDataset;
+        }
+        Dataset dataset = datasets.get(name);
+        if (dataset == null) {
+            throw new UnknownDatasetException(name);
+        }
+        return dataset;
+    }
+
+    public Dataset defaultDataset() {
+        return defaultDataset;
+    }
+
+    // In configuration order, the default first
+    public Collection<Dataset> datasets() {
+        return Collections.unmodifiableCollection(datasets.values());
+    }
+
+    public List<Summary> summaries() {
+        return datasets.values().stream().map(Dataset::summary).toList();
+    }
+}
@@ -0,0 +1,220 @@
+package com.engineeringwithsandeep.worldbankservice.store;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+
+/**
+ * Keeps a DatasetHolder in sync with its csv. A reload of the same file hashes every row, re-parses only the rows
+ * whose hash changed since the last scan and applies them copy-on-write to the live store before publishing the
+ * result as a new version. The scan walks the whole csv, so it stays off the startup path: after the first load
+ * the rows are hashed on a background thread when the file is watched, and not at all otherwise, in which case
+ * the first reload is a full load that records the hashes for the next one.
+ * New countries or indicators, renamed rows and a changed year range fall back to a full load.
+ * With {@code -Dworldbank.data.watch=true} (the default) the loaded file is watched and reloaded on every change.
+ * A table whose estimated heap (HeapFootprint.datasetBytes) exceeds the heap budget is refused with an IOException,
+ * on the first load and on every reload, so the served version stays as it was.
+ * A reloader of a Shard only loads and diffs the rows of that shard.
+ * @param <V> view type of the DAO, e.g. CountryData
+ */
+@Slf4j
+public final class DatasetReloader<V> {
+
+    /**
+     * Outcome of a reload: the version now serving, whether the delta path was taken and how many rows it
+     * replaced or removed (for a full load, the number of series loaded).
+     */
+    public record Result(long version, boolean incremental, int rows) {
+    }
+
+    // Row hashes of the file the store was built from, valid only while that store is the one being served
+    private record Baseline(Path file, ColumnarStore store, long[] hashes) {
+    }
+
+    private final DatasetHolder<V> holder;
+    private final SeriesTable.ViewFactory<V> views;
+    private final long heapBudget;
+    private final Shard shard;
+    private final Object watchLock = new Object();
+    private volatile Baseline baseline;
+    private int generation;  // bumped by every full load and by close, a background scan of an older one is dropped
+    private boolean closed;  // set by close until the next load, a reload meanwhile publishes nothing
+    private DataFileWatcher watcher;
+
+    public DatasetReloader(DatasetHolder<V> holder, SeriesTable.ViewFactory<V> views) {
+        this(holder, views, Long.MAX_VALUE);
+    }
+
+    // heapBudget: bytes of heap a loaded table may take
+    public DatasetReloader(DatasetHolder<V> holder, SeriesTable.ViewFactory<V> views, long heapBudget) {
+        this(holder, views, heapBudget, Shard.ALL);
+    }
+
+    public DatasetReloader(DatasetHolder<V> holder, SeriesTable.ViewFactory<V> views, long heapBudget, Shard shard) {
+        this.holder = holder;
+        this.views = views;
+        this.heapBudget = heapBudget;
+        this.shard = shard;
+    }
+
+    public static boolean watchEnabled() {
+        return Boolean.parseBoolean(System.getProperty("worldbank.data.watch", "true"));
+    }
+
+    /**
+     * Full load of the file without publishing it, for the holder's first version. When watching is enabled it
+     * starts watching the file and hashes its rows in the background for the first incremental reload.
+     */
+    public SeriesTable<V> load(Path file) throws IOException {
+        synchronized (this) {
+            closed = false;
+        }
+        FileTime before = Files.getLastModifiedTime(file);
+        SeriesTable<V> table = read(file);
+        if (watchEnabled()) {
+            hashInBackground(file, table.store(), before);
+            watch(file);
+        }
+        return table;
+    }
+
+    /**
+     * Reloads the file into the holder, incrementally when the served version was loaded from the same file.
+     * A file without any changed row publishes nothing and returns the current version, and so does a closed reloader:
+     * its dataset was evicted and stays so until the next load.
+     */
+    public synchronized Result reload(Path file) throws IOException {
+        if (closed) {
+            return new Result(holder.version(), false, 0);
+        }
+        Baseline base = baseline;
+        ColumnarStore live = holder.current().store();
+        if (base != null && live != null && base.store() == live && base.file().equals(file)) {
+            StoreSnapshot.SourceStamp stamp = StoreSnapshot.SourceStamp.of(file);
+            RowDelta delta = RowDelta.diff(file, live, shard, base.hashes());
+            if (delta.fullReloadReason() == null) {
+                return apply(file, live, delta, stamp);
+            }
+            log.info("Full reload of {}: {}", file, delta.fullReloadReason());
+        }
+        FileTime before = Files.getLastModifiedTime(file);
+        SeriesTable<V> table = read(file);
+        recordBaseline(file, table.store(), before);
+        long version = holder.publish(table);
+        log.info("Published dataset version {} from {} (full load)", version, file);
+        return new Result(version, false, table.size());
+    }
+
+    /**
+     * Stops watching the file and drops the row hashes, e.g. before the holder's dataset is evicted. Returns once a
+     * reload in progress has finished; none is published after it. The next load starts over with a full load.
+     */
+    public void close() throws IOException {
+        synchronized (this) {
+            closed = true;
+            generation++;
+            baseline = null;
+        }
+        synchronized (watchLock) {
+            if (watcher != null) {
+                watcher.close();
+                watcher = null;
+            }
+        }
+    }
+
+    private Result apply(Path file, ColumnarStore live, RowDelta delta, StoreSnapshot.SourceStamp stamp)
+            throws IOException {
+        if (delta.changes().isEmpty()) {
+            baseline = new Baseline(file, live, delta.hashes());
+            return new Result(holder.version(), true, 0);
+        }
+        ColumnarStore next = live.withRows(delta.changes());
+        SeriesTable<V> table = checkBudget(file, SeriesTable.of(next, views));
+        baseline = new Baseline(file, next, delta.hashes());
+        long version = holder.publish(table);
+        log.info("Published dataset version {} from {} ({} changed rows)", version, file, delta.changes().size());
+        try {
+            // keeps the next restart on the snapshot path, the stamp predates the scan so a newer file is not masked
+            StoreSnapshot.write(next, stamp, shard.snapshotPath(file));
+        } catch (IOException e) {
+            log.warn("Could not write snapshot for {}: {}", file, e.getMessage());
+        }
+        return new Result(version, true, delta.changes().size());
+    }
+
+    // Full load, the row hashes of the previous store no longer apply
+    private SeriesTable<V> read(Path file) throws IOException {
+        ColumnarStore store = WdiCsvLoader.load(file.toString(), shard);
+        SeriesTable<V> table = checkBudget(file, SeriesTable.of(store, views));
+        synchronized (this) {
+            generation++;
+            baseline = null;
+        }
+        return table;
+    }
+
+    // Hashes the rows of the file store was loaded from; before is the file's modification time ahead of the load
+    private synchronized void recordBaseline(Path file, ColumnarStore store, FileTime before) throws IOException {
+        if (store == null) {
+            return;
+        }
+        long[] hashes = RowDelta.hashes(file, store, shard);
+        // a file replaced between the load and the hash scan would leave the baseline ahead of the store
+        boolean stable = hashes != null && before.equals(Files.getLastModifiedTime(file));
+        baseline = stable ? new Baseline(file, store, hashes) : null;
+    }
+
+    private void hashInBackground(Path file, ColumnarStore store, FileTime before) {
+        int loaded;
+        synchronized (this) {
+            loaded = generation;
+        }
+        Thread.ofPlatform().daemon().name("row-hashes-" + file.getFileName()).start(() -> {
+            synchronized (this) {
+                if (generation != loaded) {
+                    return;  // reloaded or closed meanwhile, the store is not the one being served anymore
+                }
+                try {
+                    recordBaseline(file, store, before);
+                } catch (IOException e) {
+                    log.warn("Could not hash the rows of {}, the next reload is a full load: {}", file, e.getMessage());
+                }
+            }
+        });
+    }
+
+    private SeriesTable<V> checkBudget(Path file, SeriesTable<V> table) throws IOException {
+        long bytes = HeapFootprint.datasetBytes(table);
+        if (bytes > heapBudget) {
+            throw new IOException(String.format("%s needs %d KB of heap, over its budget of %d KB",
+                    file, (bytes + 1023) >> 10, heapBudget >> 10));
+        }
+        return table;
+    }
+
+    // Idempotent, a change is only applied once the holder has published a first version
+    private void watch(Path file) throws IOException {
+        synchronized (watchLock) {
+            if (watcher != null) {
+                return;
+            }
+            watcher = DataFileWatcher.start(file, () -> {
+                synchronized (this) {
+                    if (closed || !holder.isLoaded()) {
+                        return;
+                    }
+                    try {
+                        reload(file);
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                }
+            });
+        }
+    }
+}
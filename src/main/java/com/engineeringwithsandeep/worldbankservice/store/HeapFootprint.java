@@ -0,0 +1,121 @@
+package com.engineeringwithsandeep.worldbankservice.store;
+
+import java.io.IOException;
+
+/**
+ * Shallow heap size estimates for a 64-bit JVM with compressed oops (12 byte object header,
+ * 16 byte array header, 4 byte references, 8 byte alignment).
+ * Running main prints a footprint report comparing the old HashMap&lt;Integer, Double&gt; per series layout
+ * with the columnar store for a given WDI csv.
+ */
+public final class HeapFootprint {
+
+    private static final int OBJECT_HEADER = 12;
+    private static final int ARRAY_HEADER = 16;
+    static final int REFERENCE = 4;
+    private static final int HASHMAP_OBJECT = 48;
+    private static final int HASHMAP_NODE = 32;
+    private static final int BOXED_NUMBER = 16;  // Integer and Double, header plus padded value
+
+    private HeapFootprint() {
+    }
+
+    static long align(long bytes) {
+        return (bytes + 7) & ~7L;
+    }
+
+    static long arrayBytes(int length, int elementBytes) {
+        return align(ARRAY_HEADER + (long) length * elementBytes);
+    }
+
+    static long stringBytes(int length) {
+        // String object plus its latin-1 byte[]
+        return align(OBJECT_HEADER + REFERENCE + 3 * Integer.BYTES) + arrayBytes(length, 1);
+    }
+
+    static long stringsBytes(String[] strings) {
+        long bytes = arrayBytes(strings.length, REFERENCE);
+        for (String s : strings) {
+            bytes += stringBytes(s.length());
+        }
+        return bytes;
+    }
+
+    static long hashMapBytes(int size) {
+        return HASHMAP_OBJECT + arrayBytes(tableSize(size), REFERENCE) + (long) size * HASHMAP_NODE;
+    }
+
+    private static int tableSize(int size) {
+        int table = 16;
+        while (size > table * 3 / 4) {
+            table <<= 1;
+        }
+        return table;
+    }
+
+    /**
+     * Heap used by the previous layout: one CountryData per row carrying its own name strings and a
+     * HashMap&lt;Integer, Double&gt; with a boxed key and value per year, indexed by a concatenated key.
+     */
+    public static long legacyLayoutBytes(ColumnarStore store) {
+        long[] bytes = {0};
+        long countryData = align(OBJECT_HEADER + 5L * REFERENCE);
+        long yearData = hashMapBytes(store.yearCount()) + 2L * store.yearCount() * BOXED_NUMBER;
+        long[] rows = {0};
+        store.forEachSeries((country, indicator) -> {
+            bytes[0] += countryData + yearData
+                    + stringBytes(store.countryName(country).length()) + stringBytes(store.countryCode(country).length())
+                    + stringBytes(store.indicatorName(indicator).length()) + stringBytes(store.indicatorCode(indicator).length())
+                    + keyBytes(store, country, indicator);
+            rows[0]++;
+        });
+        return bytes[0] + hashMapBytes((int) rows[0]);
+    }
+
+    /**
+     * Heap used by the columnar layout: the store itself plus one small CountryData view per row,
+     * reached through the two-level SeriesTable.
+     */
+    public static long columnarLayoutBytes(ColumnarStore store) {
+        return datasetBytes(SeriesTable.of(store, (s, country, indicator) -> Boolean.TRUE));
+    }
+
+    // Heap held by a loaded table: its store, the row arrays and one view per series; 0 for an empty table
+    public static long datasetBytes(SeriesTable<?> table) {
+        ColumnarStore store = table.store();
+        if (store == null) {
+            return 0;
+        }
+        long view = align(OBJECT_HEADER + REFERENCE + 2L * Integer.BYTES);
+        return store.heapBytes() + table.heapBytes() + table.size() * view;
+    }
+
+    // Value blocks the table serves from a memory-mapped snapshot, outside of the heap
+    public static long mappedBytes(SeriesTable<?> table) {
+        ColumnarStore store = table.store();
+        return store == null ? 0 : store.mappedBytes();
+    }
+
+    // Concatenated countryCode_indicatorCode map key of the previous layout
+    private static long keyBytes(ColumnarStore store, int country, int indicator) {
+        return stringBytes(store.countryCode(country).length() + 1 + store.indicatorCode(indicator).length());
+    }
+
+    public static void main(String[] args) throws IOException {
+        String filePath = args.length > 0 ? args[0] : "src/main/resources/WDICSV.csv";
+        ColumnarStore store = WdiCsvLoader.read(filePath);
+        long[] rows = {0};
+        store.forEachSeries((country, indicator) -> rows[0]++);
+        long legacy = legacyLayoutBytes(store);
+        long columnar = columnarLayoutBytes(store);
+
+        System.out.printf("Heap footprint for %s%n", filePath);
+        System.out.printf("  series: %,d  countries: %,d  indicators: %,d  years: %d-%d%n",
+                rows[0], store.countryCount(), store.indicatorCount(), store.firstYear(), store.lastYear());
+        System.out.printf("  HashMap<Integer, Double> layout: %,d bytes (%,d per series)%n",
+                legacy, rows[0] == 0 ? 0 : legacy / rows[0]);
+        System.out.printf("  columnar layout:                 %,d bytes (%,d per series)%n",
+                columnar, rows[0] == 0 ? 0 : columnar / rows[0]);
+        System.out.printf("  reduction: %.1fx%n", columnar == 0 ? 0.0 : (double) legacy / columnar);
+    }
+}
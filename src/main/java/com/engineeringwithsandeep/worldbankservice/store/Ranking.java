@@ -0,0 +1,126 @@
+package com.engineeringwithsandeep.worldbankservice.store;
+
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Top-N or bottom-N countries of one indicator in one year.
+ * Built by a column scan: the year's cell of every country is read from the indicator block (stride yearCount) and
+ * fed through a bounded heap of n primitive (country, value) pairs, so a query is O(countries * log n) and allocates
+ * only the heap and the n result entries. Countries without a value that year are skipped; ties rank by country order.
+ */
+public record Ranking(String indicatorCode, int year, Order order, List<Entry> entries) {
+
+    public enum Order {
+        TOP, BOTTOM;
+
+        // "top" or "bottom", any case
+        public static Order parse(String order) {
+            return valueOf(order.trim().toUpperCase(Locale.ROOT));
+        }
+    }
+
+    public record Entry(int rank, String countryCode, String countryName, double value) {
+    }
+
+    public static Ranking of(ColumnarStore store, int indicator, int year, int n, Order order) {
+        String indicatorCode = store.indicatorCode(indicator);
+        int offset = store.yearOffset(year);
+        int limit = Math.min(n, store.countryCount());
+        if (offset < 0 || limit <= 0) {
+            return new Ranking(indicatorCode, year, order, List.of());
+        }
+        double sign = order == Order.TOP ? 1.0 : -1.0;  // the heap keeps the largest keys, bottom-N negates
+        ValueBlock block = store.block(indicator);
+        long[] present = store.presentBits(indicator);
+        int yearCount = store.yearCount();
+
+        int[] countries = new int[limit];
+        double[] keys = new double[limit];
+        int size = 0;
+        for (int country = 0, cell = offset; country < store.countryCount(); country++, cell += yearCount) {
+            if ((present[cell >>> 6] & (1L << cell)) == 0) {
+                continue;
+            }
+            double key = sign * block.get(cell);
+            if (size < limit) {
+                countries[size] = country;
+                keys[size] = key;
+                siftUp(countries, keys, size++);
+            } else if (ranksBefore(key, country, keys[0], countries[0])) {
+                countries[0] = country;
+                keys[0] = key;
+                siftDown(countries, keys, size);
+            }
+        }
+
+        // popping the min-heap yields the kept entries worst first
+        Entry[] entries = new Entry[size];
+        for (int remaining = size; remaining > 0; remaining--) {
+            int country = countries[0];
+            entries[remaining - 1] = new Entry(remaining, store.countryCode(country), store.countryName(country),
+                    sign * keys[0]);
+            countries[0] = countries[remaining - 1];
+            keys[0] = keys[remaining - 1];
+            siftDown(countries, keys, remaining - 1);
+        }
+        return new Ranking(indicatorCode, year, order, List.of(entries));
+    }
+
+    // code,value pairs separated by ';' in rank order, the text protocol reply
+    public String toText() {
+        StringBuilder text = new StringBuilder(entries.size() * 24);
+        for (Entry entry : entries) {
+            if (!text.isEmpty()) {
+                text.append(';');
+            }
+            text.append(entry.countryCode()).append(',').append(entry.value());
+        }
+        return text.toString();
+    }
+
+    // Ranking order: higher key first, lower country id on ties
+    private static boolean ranksBefore(double key, int country, double otherKey, int otherCountry) {
+        int compared = Double.compare(key, otherKey);
+        return compared > 0 || (compared == 0 && country < otherCountry);
+    }
+
+    // Min-heap with the entry that ranks last at the root
+    private static void siftUp(int[] countries, double[] keys, int index) {
+        while (index > 0) {
+            int parent = (index - 1) >>> 1;
+            if (!ranksBefore(keys[parent], countries[parent], keys[index], countries[index])) {
+                return;
+            }
+            swap(countries, keys, parent, index);
+            index = parent;
+        }
+    }
+
+    private static void siftDown(int[] countries, double[] keys, int size) {
+        int index = 0;
+        while (true) {
+            int child = 2 * index + 1;
+            if (child >= size) {
+                return;
+            }
+            if (child + 1 < size && ranksBefore(keys[child], countries[child], keys[child + 1], countries[child + 1])) {
+                child++;
+            }
+            if (!ranksBefore(keys[index], countries[index], keys[child], countries[child])) {
+                return;
+            }
+            swap(countries, keys, index, child);
+            index = child;
+        }
+    }
+
+    private static void swap(int[] countries, double[] keys, int a, int b) {
+        int country = countries[a];
+        countries[a] = countries[b];
+        countries[b] = country;
+        double key = keys[a];
+        keys[a] = keys[b];
+        keys[b] = key;
+    }
+}
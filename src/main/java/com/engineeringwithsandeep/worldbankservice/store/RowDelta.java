@@ -0,0 +1,103 @@
+package com.engineeringwithsandeep.worldbankservice.store;
+
+import com.engineeringwithsandeep.worldbankservice.ingest.CsvHeader;
+import com.engineeringwithsandeep.worldbankservice.ingest.CsvIngestor;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Per-row diff of a WDI csv against a loaded store, keyed on country and indicator code.
+ * Every row is hashed from its raw bytes while scanning; only rows whose hash differs from the previous scan have
+ * their year values parsed. Row hashes are flat longs indexed like the stats, indicator * countryCount + country,
+ * with 0 marking a row the csv does not have. Rows outside the store's Shard are skipped as if the csv lacked them.
+ */
+final class RowDelta {
+
+    private static final CsvIngestor INGESTOR = new CsvIngestor();
+
+    private final long[] hashes;
+    private final List<ColumnarStore.RowChange> changes;
+    private final String fullReloadReason;
+
+    private RowDelta(long[] hashes, List<ColumnarStore.RowChange> changes, String fullReloadReason) {
+        this.hashes = hashes;
+        this.changes = changes;
+        this.fullReloadReason = fullReloadReason;
+    }
+
+    // Row hashes of the file after this delta, the baseline of the next diff
+    long[] hashes() {
+        return hashes;
+    }
+
+    List<ColumnarStore.RowChange> changes() {
+        return changes;
+    }
+
+    // Why the file can not be applied as a delta (new codes, renamed rows, other years), null when it can
+    String fullReloadReason() {
+        return fullReloadReason;
+    }
+
+    /**
+     * Hashes every row of the file without parsing any value.
+     * Returns null when the file has a row the store does not know, so it can not serve as the store's baseline.
+     */
+    static long[] hashes(Path file, ColumnarStore store, Shard shard) throws IOException {
+        RowDelta delta = scan(file, store, shard, null);
+        return delta.fullReloadReason == null ? delta.hashes : null;
+    }
+
+    static RowDelta diff(Path file, ColumnarStore store, Shard shard, long[] previous) throws IOException {
+        return scan(file, store, shard, previous);
+    }
+
+    private static RowDelta scan(Path file, ColumnarStore store, Shard shard, long[] previous) throws IOException {
+        CsvHeader header = CsvIngestor.readHeader(file);
+        if (header.firstYear() != store.firstYear() || header.yearCount() != store.yearCount()) {
+            return new RowDelta(null, List.of(), "year columns changed to " + header.firstYear() + "-"
+                    + (header.firstYear() + header.yearCount() - 1));
+        }
+        int countryCount = store.countryCount();
+        long[] hashes = new long[countryCount * store.indicatorCount()];
+        AtomicReference<String> reason = new AtomicReference<>();
+        List<ColumnarStore.RowChange> changes = Collections.synchronizedList(new ArrayList<>());
+
+        INGESTOR.ingest(file, (countryCode, indicatorCode, lineHash) -> {
+            if (!shard.accepts(countryCode, indicatorCode)) {
+                return false;
+            }
+            int country = store.countryId(countryCode);
+            int indicator = store.indicatorId(indicatorCode);
+            if (country < 0 || indicator < 0) {
+                reason.compareAndSet(null, "new row " + countryCode + ";" + indicatorCode);
+                return false;
+            }
+            int slot = indicator * countryCount + country;
+            hashes[slot] = lineHash == 0 ? 1 : lineHash;  // 0 is reserved for a missing row
+            return previous != null && hashes[slot] != previous[slot];
+        }, (countryName, countryCode, indicatorName, indicatorCode, yearValues) -> {
+            int country = store.countryId(countryCode);
+            int indicator = store.indicatorId(indicatorCode);
+            if (!countryName.equals(store.countryName(country)) || !indicatorName.equals(store.indicatorName(indicator))) {
+                reason.compareAndSet(null, "renamed row " + countryCode + ";" + indicatorCode);
+                return;
+            }
+            changes.add(new ColumnarStore.RowChange(country, indicator, yearValues.clone()));
+        });
+
+        if (previous != null) {
+            for (int slot = 0; slot < hashes.length; slot++) {
+                if (hashes[slot] == 0 && previous[slot] != 0) {
+                    changes.add(new ColumnarStore.RowChange(slot % countryCount, slot / countryCount, null));
+                }
+            }
+        }
+        return new RowDelta(hashes, changes, reason.get());
+    }
+}
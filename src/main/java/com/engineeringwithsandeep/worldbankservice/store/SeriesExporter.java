@@ -0,0 +1,164 @@
+package com.engineeringwithsandeep.worldbankservice.store;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.List;
+import java.util.Locale;
+import java.util.function.ToIntFunction;
+
+/**
+ * Bulk export of selected series, written row by row while walking the store, indicator by indicator.
+ * One StringBuilder is reused for every row and handed to the caller's Writer, so memory stays flat whatever the
+ * size of the export; a slow reader simply blocks the writer.
+ * CSV has the WDI layout (quoted text fields, empty cells for missing years) and loads back with WdiCsvLoader;
+ * NDJSON is one object per series with null for missing years.
+ */
+public final class SeriesExporter {
+
+    public enum Format {
+        NDJSON, CSV;
+
+        // "ndjson" or "csv", any case
+        public static Format parse(String format) {
+            return valueOf(format.trim().toUpperCase(Locale.ROOT));
+        }
+    }
+
+    /**
+     * Series to export: countries and indicators null for all of them, the years clamped to the stored range.
+     */
+    public record Selection(int[] countries, int[] indicators, int fromYear, int toYear) {
+
+        /**
+         * Resolves codes against the store, null or empty lists select everything.
+         * Throws IllegalArgumentException for an unknown code.
+         */
+        public static Selection of(ColumnarStore store, List<String> countryCodes, List<String> indicatorCodes,
+                                   int fromYear, int toYear) {
+            return new Selection(ids(countryCodes, store::countryId, "country"),
+                    ids(indicatorCodes, store::indicatorId, "indicator"), fromYear, toYear);
+        }
+
+        private static int[] ids(List<String> codes, ToIntFunction<String> lookup, String kind) {
+            if (codes == null || codes.isEmpty()) {
+                return null;
+            }
+            int[] ids = new int[codes.size()];
+            for (int i = 0; i < ids.length; i++) {
+                ids[i] = lookup.applyAsInt(codes.get(i));
+                if (ids[i] < 0) {
+                    throw new IllegalArgumentException("Unknown " + kind + " " + codes.get(i));
+                }
+            }
+            return ids;
+        }
+    }
+
+    private SeriesExporter() {
+    }
+
+    /**
+     * Writes every selected series that is present in the store and returns the number of rows written.
+     * The writer is flushed but not closed.
+     */
+    public static long write(ColumnarStore store, Selection selection, Format format, Writer out) throws IOException {
+        int from = Math.max(selection.fromYear(), store.firstYear());
+        int to = Math.min(selection.toYear(), store.lastYear());
+        int years = Math.max(to - from + 1, 0);
+        int firstOffset = from - store.firstYear();
+        StringBuilder row = new StringBuilder(256 + years * 24);
+
+        if (format == Format.CSV) {
+            row.append("Country Name,Country Code,Indicator Name,Indicator Code");
+            for (int year = from; year <= to; year++) {
+                row.append(',').append(year);
+            }
+            out.append(row.append('\n'));
+        }
+
+        long rows = 0;
+        int indicatorCount = selection.indicators() != null ? selection.indicators().length : store.indicatorCount();
+        int countryCount = selection.countries() != null ? selection.countries().length : store.countryCount();
+        for (int i = 0; i < indicatorCount; i++) {
+            int indicator = selection.indicators() != null ? selection.indicators()[i] : i;
+            for (int c = 0; c < countryCount; c++) {
+                int country = selection.countries() != null ? selection.countries()[c] : c;
+                if (!store.hasSeries(country, indicator)) {
+                    continue;
+                }
+                row.setLength(0);
+                if (format == Format.CSV) {
+                    appendCsv(store, country, indicator, firstOffset, years, row);
+                } else {
+                    appendJson(store, country, indicator, from, firstOffset, years, row);
+                }
+                out.append(row.append('\n'));
+                rows++;
+            }
+        }
+        out.flush();
+        return rows;
+    }
+
+    private static void appendCsv(ColumnarStore store, int country, int indicator, int firstOffset, int years,
+                                  StringBuilder row) {
+        appendCsvText(store.countryName(country), row).append(',');
+        appendCsvText(store.countryCode(country), row).append(',');
+        appendCsvText(store.indicatorName(indicator), row).append(',');
+        appendCsvText(store.indicatorCode(indicator), row);
+        for (int k = 0, offset = firstOffset; k < years; k++, offset++) {
+            row.append(',');
+            if (store.isPresent(country, indicator, offset)) {
+                row.append(store.value(country, indicator, offset));
+            }
+        }
+    }
+
+    // {"countryCode":"IND","countryName":"India","indicatorCode":"NY.GDP","indicatorName":"GDP","from":1960,"values":[1.5,null]}
+    private static void appendJson(ColumnarStore store, int country, int indicator, int from, int firstOffset,
+                                   int years, StringBuilder row) {
+        row.append("{\"countryCode\":");
+        appendJsonText(store.countryCode(country), row).append(",\"countryName\":");
+        appendJsonText(store.countryName(country), row).append(",\"indicatorCode\":");
+        appendJsonText(store.indicatorCode(indicator), row).append(",\"indicatorName\":");
+        appendJsonText(store.indicatorName(indicator), row).append(",\"from\":").append(from).append(",\"values\":[");
+        for (int k = 0, offset = firstOffset; k < years; k++, offset++) {
+            if (k > 0) {
+                row.append(',');
+            }
+            if (store.isPresent(country, indicator, offset)) {
+                row.append(store.value(country, indicator, offset));
+            } else {
+                row.append("null");
+            }
+        }
+        row.append("]}");
+    }
+
+    private static StringBuilder appendCsvText(String text, StringBuilder row) {
+        row.append('"');
+        for (int i = 0; i < text.length(); i++) {
+            char ch = text.charAt(i);
+            if (ch == '"') {
+                row.append('"');
+            }
+            row.append(ch);
+        }
+        return row.append('"');
+    }
+
+    private static StringBuilder appendJsonText(String text, StringBuilder row) {
+        row.append('"');
+        for (int i = 0; i < text.length(); i++) {
+            char ch = text.charAt(i);
+            if (ch == '"' || ch == '\\') {
+                row.append('\\').append(ch);
+            } else if (ch < 0x20) {
+                row.append(String.format("\\u%04x", (int) ch));
+            } else {
+                row.append(ch);
+            }
+        }
+        return row.append('"');
+    }
+}
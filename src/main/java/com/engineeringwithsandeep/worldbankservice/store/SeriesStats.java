@@ -0,0 +1,15 @@
+package com.engineeringwithsandeep.worldbankservice.store;
+
+import java.util.OptionalDouble;
+
+/**
+ * Precomputed aggregates of one (country, indicator) series over its non-missing values.
+ * For a series without any value count is 0, the statistics are NaN and the years are -1.
+ */
+public record SeriesStats(int count, double mean, double min, double max, double standardDeviation,
+                          int firstYear, int lastYear) {
+
+    public OptionalDouble meanValue() {
+        return count == 0 ? OptionalDouble.empty() : OptionalDouble.of(mean);
+    }
+}
@@ -0,0 +1,139 @@
+package com.engineeringwithsandeep.worldbankservice.store;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+/**
+ * Aggregate index over every series of a ColumnarStore. Flat arrays indexed by indicator * countryCount + country,
+ * so a report is a constant time lookup. An indicator's series are computed together on the first lookup of any of
+ * them, so creating a store does not read its value blocks; for a mapped snapshot that keeps the open from paging in
+ * the whole file.
+ * A store derived from another one through row changes copies the previous index and recomputes only those rows.
+ */
+final class SeriesStatsIndex {
+
+    private final ColumnarStore store;
+    private final AtomicIntegerArray ready;  // 1 once an indicator's slots are computed, the write publishes them
+    private final int countryCount;
+    private final int[] count;
+    private final double[] mean;
+    private final double[] min;
+    private final double[] max;
+    private final double[] standardDeviation;
+    private final int[] firstYear;
+    private final int[] lastYear;
+
+    SeriesStatsIndex(ColumnarStore store) {
+        this.store = store;
+        this.ready = new AtomicIntegerArray(store.indicatorCount());
+        this.countryCount = store.countryCount();
+        int size = countryCount * store.indicatorCount();
+        count = new int[size];
+        mean = new double[size];
+        min = new double[size];
+        max = new double[size];
+        standardDeviation = new double[size];
+        firstYear = new int[size];
+        lastYear = new int[size];
+        Arrays.fill(mean, Double.NaN);
+        Arrays.fill(min, Double.NaN);
+        Arrays.fill(max, Double.NaN);
+        Arrays.fill(standardDeviation, Double.NaN);
+        Arrays.fill(firstYear, -1);
+        Arrays.fill(lastYear, -1);
+    }
+
+    SeriesStatsIndex(ColumnarStore store, SeriesStatsIndex previous, List<ColumnarStore.RowChange> changes) {
+        this.store = store;
+        this.countryCount = previous.countryCount;
+        synchronized (previous) {  // no indicator of the previous index is half computed while it is copied
+            ready = new AtomicIntegerArray(previous.ready.length());
+            for (int indicator = 0; indicator < ready.length(); indicator++) {
+                ready.set(indicator, previous.ready.get(indicator));
+            }
+            count = previous.count.clone();
+            mean = previous.mean.clone();
+            min = previous.min.clone();
+            max = previous.max.clone();
+            standardDeviation = previous.standardDeviation.clone();
+            firstYear = previous.firstYear.clone();
+            lastYear = previous.lastYear.clone();
+        }
+        for (ColumnarStore.RowChange change : changes) {
+            if (ready.get(change.indicator()) == 1) {
+                compute(change.country(), change.indicator());  // the others are computed from this store when used
+            }
+        }
+    }
+
+    private synchronized void computeIndicator(int indicator) {
+        if (ready.get(indicator) == 1) {
+            return;
+        }
+        for (int country = 0; country < countryCount; country++) {
+            if (store.hasSeries(country, indicator)) {
+                compute(country, indicator);
+            }
+        }
+        ready.set(indicator, 1);
+    }
+
+    private void compute(int country, int indicator) {
+        int slot = indicator * countryCount + country;
+        count[slot] = 0;
+        mean[slot] = min[slot] = max[slot] = standardDeviation[slot] = Double.NaN;
+        firstYear[slot] = lastYear[slot] = -1;
+        int n = 0;
+        double sum = 0;
+        double lo = Double.POSITIVE_INFINITY;
+        double hi = Double.NEGATIVE_INFINITY;
+        int first = -1;
+        int last = -1;
+        for (int offset = 0; offset < store.yearCount(); offset++) {
+            if (store.isPresent(country, indicator, offset)) {
+                double value = store.value(country, indicator, offset);
+                n++;
+                sum += value;
+                lo = Math.min(lo, value);
+                hi = Math.max(hi, value);
+                if (first < 0) {
+                    first = offset;
+                }
+                last = offset;
+            }
+        }
+        if (n == 0) {
+            return;
+        }
+        double average = sum / n;
+        double squares = 0;
+        for (int offset = first; offset <= last; offset++) {
+            if (store.isPresent(country, indicator, offset)) {
+                double delta = store.value(country, indicator, offset) - average;
+                squares += delta * delta;
+            }
+        }
+        count[slot] = n;
+        mean[slot] = average;
+        min[slot] = lo;
+        max[slot] = hi;
+        standardDeviation[slot] = Math.sqrt(squares / n);
+        firstYear[slot] = store.firstYear() + first;
+        lastYear[slot] = store.firstYear() + last;
+    }
+
+    SeriesStats get(int country, int indicator) {
+        if (ready.get(indicator) == 0) {
+            computeIndicator(indicator);
+        }
+        int slot = indicator * countryCount + country;
+        return new SeriesStats(count[slot], mean[slot], min[slot], max[slot], standardDeviation[slot],
+                firstYear[slot], lastYear[slot]);
+    }
+
+    long heapBytes() {
+        int size = count.length;
+        return 3 * HeapFootprint.arrayBytes(size, Integer.BYTES) + 4 * HeapFootprint.arrayBytes(size, Double.BYTES);
+    }
+}
@@ -0,0 +1,88 @@
+package com.engineeringwithsandeep.worldbankservice.store;
+
+/**
+ * Two-level lookup from (indicator id, country id) to a per-series view, built once at load time.
+ * A request resolves both codes through the store dictionaries and indexes two arrays - no key is concatenated,
+ * hashed as a whole or allocated. Indicators without any series share no row array.
+ * Immutable once built, so it is safe to publish through a volatile field.
+ * @param <V> view type of the DAO, e.g. CountryData
+ */
+public final class SeriesTable<V> {
+
+    @FunctionalInterface
+    public interface ViewFactory<V> {
+        V create(ColumnarStore store, int country, int indicator);
+    }
+
+    private static final SeriesTable<?> EMPTY = new SeriesTable<>(null, new Object[0][], 0);
+
+    private final ColumnarStore store;
+    private final Object[][] rows;  // [indicator][country], null where the csv had no such row
+    private final int size;
+
+    private SeriesTable(ColumnarStore store, Object[][] rows, int size) {
+        this.store = store;
+        this.rows = rows;
+        this.size = size;
+    }
+
+    @SuppressWarnings("unchecked")
+    public static <V> SeriesTable<V> empty() {
+        return (SeriesTable<V>) EMPTY;
+    }
+
+    public static <V> SeriesTable<V> of(ColumnarStore store, ViewFactory<V> factory) {
+        Object[][] rows = new Object[store.indicatorCount()][];
+        int[] size = {0};
+        store.forEachSeries((country, indicator) -> {
+            if (rows[indicator] == null) {
+                rows[indicator] = new Object[store.countryCount()];
+            }
+            rows[indicator][country] = factory.create(store, country, indicator);
+            size[0]++;
+        });
+        return new SeriesTable<>(store, rows, size[0]);
+    }
+
+    // The store the views read from, null for the empty table
+    public ColumnarStore store() {
+        return store;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    // Returns null when either code is unknown or the series does not exist
+    public V get(String countryCode, String indicatorCode) {
+        if (store == null) {
+            return null;
+        }
+        return get(store.countryId(countryCode), store.indicatorId(indicatorCode));
+    }
+
+    // Returns null when either id is out of range or the series does not exist
+    @SuppressWarnings("unchecked")
+    public V get(int country, int indicator) {
+        if (indicator < 0 || indicator >= rows.length || rows[indicator] == null
+                || country < 0 || country >= rows[indicator].length) {
+            return null;
+        }
+        return (V) rows[indicator][country];
+    }
+
+    // Shallow size of the two lookup levels, without the views themselves
+    long heapBytes() {
+        long bytes = HeapFootprint.arrayBytes(rows.length, HeapFootprint.REFERENCE);
+        for (Object[] row : rows) {
+            if (row != null) {
+                bytes += HeapFootprint.arrayBytes(row.length, HeapFootprint.REFERENCE);
+            }
+        }
+        return bytes;
+    }
+}
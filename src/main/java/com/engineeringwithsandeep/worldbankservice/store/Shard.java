@@ -0,0 +1,37 @@
+package com.engineeringwithsandeep.worldbankservice.store;
+
+import com.engineeringwithsandeep.worldbankservice.ingest.RowFilter;
+
+import java.nio.file.Path;
+import java.util.function.BiPredicate;
+
+/**
+ * The series one node keeps in a partitioned deployment: a store loaded through a shard only holds the csv rows the
+ * shard owns, every other row is skipped before its values are parsed. The id keeps the shard's snapshot apart from
+ * the full one and from other shards, so nodes sharing a data directory never read each other's snapshots.
+ * @param owns (countryCode, indicatorCode) -> whether the row belongs to this shard
+ */
+public record Shard(String id, BiPredicate<String, String> owns) {
+
+    // Every series, the single node default
+    public static final Shard ALL = new Shard(null, null);
+
+    public boolean isAll() {
+        return owns == null;
+    }
+
+    public boolean accepts(String countryCode, String indicatorCode) {
+        return owns == null || owns.test(countryCode, indicatorCode);
+    }
+
+    // Ingestion filter of the shard, null (every row) for ALL
+    RowFilter rowFilter() {
+        return owns == null ? null : (countryCode, indicatorCode, lineHash) -> owns.test(countryCode, indicatorCode);
+    }
+
+    // <csv>.snapshot for every series, <csv>.<id>.snapshot for a shard
+    Path snapshotPath(Path source) {
+        String suffix = owns == null ? ".snapshot" : "." + id + ".snapshot";
+        return source.resolveSibling(source.getFileName() + suffix);
+    }
+}
@@ -0,0 +1,199 @@
+package com.engineeringwithsandeep.worldbankservice.store;
+
+import com.engineeringwithsandeep.worldbankservice.ingest.CsvHeader;
+import com.engineeringwithsandeep.worldbankservice.ingest.CsvIngestor;
+import com.engineeringwithsandeep.worldbankservice.ingest.RowFilter;
+import com.engineeringwithsandeep.worldbankservice.ingest.RowSink;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.LongBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Streams a WDI csv straight into a snapshot file, in the layout StoreSnapshot writes, without building the store on
+ * the heap first; this is how the mapped backend loads a csv larger than the heap.
+ * The first pass over the csv only collects the country and indicator dictionaries, which fix the offset of every
+ * cell. The second pass writes each row's values into read-write mappings of the file; the bitmaps, one bit per cell,
+ * are the only per-cell state kept on the heap and are written once the pass is done.
+ */
+final class SnapshotBuilder {
+
+    private SnapshotBuilder() {
+    }
+
+    // Builds the snapshot of csv next to it, replacing any previous one; returns the rows of the second pass
+    static long build(CsvIngestor ingestor, Path csv, StoreSnapshot.SourceStamp stamp, Path snapshot) throws IOException {
+        return build(ingestor, csv, stamp, snapshot, null);
+    }
+
+    // Only the rows the filter accepts, e.g. those of a Shard; a null filter keeps every row
+    static long build(CsvIngestor ingestor, Path csv, StoreSnapshot.SourceStamp stamp, Path snapshot, RowFilter filter)
+            throws IOException {
+        CsvHeader header = CsvIngestor.readHeader(csv);
+        Codes codes = new Codes();
+        ingestor.ingest(csv, filter, codes);
+        CodeDictionary countries = codes.countries();
+        CodeDictionary indicators = codes.indicators();
+        ByteBuffer dictionary = StoreSnapshot.dictionary(countries, indicators);
+        long blocksStart = StoreSnapshot.HEADER_BYTES + dictionary.remaining();
+
+        Path temp = snapshot.resolveSibling(snapshot.getFileName() + ".tmp");
+        try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            Blocks blocks = new Blocks(channel, blocksStart, countries, indicators, header.yearCount());
+            long rows = ingestor.ingest(csv, filter, blocks);
+            blocks.writeBitmaps();
+
+            ByteBuffer head = StoreSnapshot.header(stamp, header.firstYear(), header.yearCount(), countries.size(),
+                    indicators.size(), dictionary.remaining());
+            ByteBuffer blockCrcs = blocks.blockCrcs();
+            ByteBuffer trailer = StoreSnapshot.trailer(head, dictionary, blockCrcs);
+            writeFully(channel, head, 0);
+            writeFully(channel, dictionary, StoreSnapshot.HEADER_BYTES);
+            for (MappedByteBuffer window : blocks.windows) {
+                window.force();
+            }
+            writeFully(channel, blockCrcs, blocks.end());
+            writeFully(channel, trailer, blocks.end() + (long) indicators.size() * StoreSnapshot.BLOCK_CRC_BYTES);
+            channel.force(true);
+            Files.move(temp, snapshot, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            return rows;
+        }
+    }
+
+    private static void writeFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            position += channel.write(buffer, position);
+        }
+    }
+
+    // First pass: codes and names in order of first appearance, like ColumnarStore.Builder
+    private static final class Codes implements RowSink {
+        private final Map<String, String> countries = new LinkedHashMap<>();
+        private final Map<String, String> indicators = new LinkedHashMap<>();
+
+        @Override
+        public synchronized void accept(String countryName, String countryCode, String indicatorName,
+                                        String indicatorCode, double[] yearValues) {
+            countries.putIfAbsent(countryCode, countryName);
+            indicators.putIfAbsent(indicatorCode, indicatorName);
+        }
+
+        CodeDictionary countries() {
+            return dictionary(countries);
+        }
+
+        CodeDictionary indicators() {
+            return dictionary(indicators);
+        }
+
+        private static CodeDictionary dictionary(Map<String, String> names) {
+            return new CodeDictionary(names.keySet().toArray(String[]::new), names.values().toArray(String[]::new));
+        }
+    }
+
+    /**
+     * Second pass: values go straight into the mapped windows, each row to its own cells so rows never contend
+     * there; the bitmaps of one indicator share words across rows and are updated under that indicator's lock.
+     * Missing cells are left at 0.0, which is what a freshly extended file holds.
+     */
+    private static final class Blocks implements RowSink {
+        private final CodeDictionary countries;
+        private final CodeDictionary indicators;
+        private final int yearCount;
+        private final long blocksStart;
+        private final long stride;
+        private final int perWindow;
+        private final MappedByteBuffer[] windows;
+        private final long[][] present;
+        private final long[][] series;
+
+        Blocks(FileChannel channel, long blocksStart, CodeDictionary countries, CodeDictionary indicators,
+               int yearCount) throws IOException {
+            this.countries = countries;
+            this.indicators = indicators;
+            this.yearCount = yearCount;
+            this.blocksStart = blocksStart;
+            this.stride = StoreSnapshot.stride(countries.size(), yearCount);
+            if (stride > Integer.MAX_VALUE) {
+                throw new IOException("Indicator blocks of " + stride + " bytes do not fit one mapping");
+            }
+            this.perWindow = StoreSnapshot.indicatorsPerWindow(stride);
+            int indicatorCount = indicators.size();
+            this.windows = new MappedByteBuffer[(indicatorCount + perWindow - 1) / perWindow];
+            for (int w = 0; w < windows.length; w++) {
+                int count = Math.min(perWindow, indicatorCount - w * perWindow);
+                // mapping past the end grows the file, zero-filled
+                windows[w] = channel.map(FileChannel.MapMode.READ_WRITE, blocksStart + w * perWindow * stride,
+                        count * stride);
+            }
+            int cells = countries.size() * yearCount;
+            this.present = new long[indicatorCount][StoreSnapshot.words(cells)];
+            this.series = new long[indicatorCount][StoreSnapshot.words(countries.size())];
+        }
+
+        @Override
+        public void accept(String countryName, String countryCode, String indicatorName, String indicatorCode,
+                           double[] yearValues) {
+            int country = countries.id(countryCode);
+            int indicator = indicators.id(indicatorCode);
+            if (country < 0 || indicator < 0) {
+                return;  // the csv changed between the passes, the stamp check rebuilds on the next load
+            }
+            MappedByteBuffer window = windows[indicator / perWindow];
+            int base = country * yearCount;
+            int position = (int) ((indicator % perWindow) * stride) + base * Double.BYTES;
+            int count = Math.min(yearValues.length, yearCount);
+            for (int k = 0; k < count; k++) {
+                double value = yearValues[k];
+                window.putDouble(position + k * Double.BYTES, Double.isNaN(value) ? 0.0 : value);
+            }
+            long[] bits = present[indicator];
+            synchronized (bits) {
+                for (int k = 0; k < count; k++) {
+                    int cell = base + k;
+                    if (Double.isNaN(yearValues[k])) {
+                        bits[cell >>> 6] &= ~(1L << cell);
+                    } else {
+                        bits[cell >>> 6] |= 1L << cell;
+                    }
+                }
+                series[indicator][country >>> 6] |= 1L << country;
+            }
+        }
+
+        void writeBitmaps() {
+            int valueBytes = countries.size() * yearCount * Double.BYTES;
+            for (int indicator = 0; indicator < present.length; indicator++) {
+                int offset = (int) ((indicator % perWindow) * stride) + valueBytes;
+                LongBuffer bitmaps = windows[indicator / perWindow].slice(offset, (int) stride - valueBytes).asLongBuffer();
+                bitmaps.put(present[indicator]).put(series[indicator]);
+            }
+        }
+
+        // CRC32C of every indicator's values and bitmaps, once they are all written
+        ByteBuffer blockCrcs() {
+            int valueBytes = countries.size() * yearCount * Double.BYTES;
+            ByteBuffer crcs = ByteBuffer.allocate(present.length * StoreSnapshot.BLOCK_CRC_BYTES);
+            for (int indicator = 0; indicator < present.length; indicator++) {
+                int offset = (int) ((indicator % perWindow) * stride);
+                MappedByteBuffer window = windows[indicator / perWindow];
+                crcs.putInt(StoreSnapshot.crc(window.slice(offset, valueBytes)))
+                        .putInt(StoreSnapshot.crc(window.slice(offset + valueBytes, (int) stride - valueBytes)));
+            }
+            return crcs.flip();
+        }
+
+        long end() {
+            return blocksStart + indicators.size() * stride;
+        }
+    }
+}
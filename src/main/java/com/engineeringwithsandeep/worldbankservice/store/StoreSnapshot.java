@@ -0,0 +1,280 @@
+package com.engineeringwithsandeep.worldbankservice.store;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.CRC32C;
+
+/**
+ * Versioned, checksummed binary snapshot of a ColumnarStore.
+ * <pre>
+ * header      magic, version, source size / modified time / CRC32C, firstYear, yearCount,
+ *             countryCount, indicatorCount, dictionary length
+ * dictionary  country codes, country names, indicator codes, indicator names (int length + UTF-8 bytes)
+ * blocks      per indicator: values double[countries * years], present long[], series long[]
+ * block CRCs  per indicator: CRC32C of its values, CRC32C of its two bitmaps (int each)
+ * trailer     CRC32C of the header, the dictionary and the block CRCs
+ * </pre>
+ * Blocks sit at fixed offsets, so they are read by memory-mapping the file region of each indicator. read copies
+ * the blocks to the heap; map leaves the value cells in the mapped file and copies only the dictionaries and bitmaps.
+ * Opening checks the trailer and the bitmaps it copies; the values of a mapped block are checked against their CRC
+ * when the block is first touched (ValueBlock), so opening a mapped snapshot does not read the value cells.
+ */
+public final class StoreSnapshot {
+
+    static final int MAGIC = 0x57444953;  // "WDIS"
+    static final int VERSION = 2;
+    static final int HEADER_BYTES = 56;
+    static final int BLOCK_CRC_BYTES = 2 * Integer.BYTES;
+    private static final int HASH_WINDOW = 64 << 20;
+    static final int MAP_WINDOW = 1 << 30;  // whole indicators per mapping, well below the 2 GiB buffer limit
+
+    private StoreSnapshot() {
+    }
+
+    /**
+     * Identifies the csv a snapshot was built from. Size and modified time are a cheap first check,
+     * the content hash decides when they differ.
+     */
+    public record SourceStamp(long size, long modified, long hash) {
+
+        public static SourceStamp of(Path source) throws IOException {
+            return new SourceStamp(Files.size(source), Files.getLastModifiedTime(source).toMillis(), contentHash(source));
+        }
+
+        boolean sameFile(Path source) throws IOException {
+            return size == Files.size(source) && modified == Files.getLastModifiedTime(source).toMillis();
+        }
+    }
+
+    // CRC32C of the whole file, read through memory-mapped windows
+    static long contentHash(Path file) throws IOException {
+        CRC32C crc = new CRC32C();
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = channel.size();
+            for (long position = 0; position < size; position += HASH_WINDOW) {
+                crc.update(channel.map(FileChannel.MapMode.READ_ONLY, position, Math.min(HASH_WINDOW, size - position)));
+            }
+        }
+        return crc.getValue();
+    }
+
+    public static void write(ColumnarStore store, SourceStamp source, Path snapshot) throws IOException {
+        Path temp = snapshot.resolveSibling(snapshot.getFileName() + ".tmp");
+        try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            ByteBuffer dictionary = dictionary(store.countries(), store.indicators());
+            ByteBuffer header = header(source, store.firstYear(), store.yearCount(), store.countryCount(),
+                    store.indicatorCount(), dictionary.remaining());
+            ByteBuffer blockCrcs = ByteBuffer.allocate(store.indicatorCount() * BLOCK_CRC_BYTES);
+            writeFully(channel, header);
+            writeFully(channel, dictionary);
+            for (int indicator = 0; indicator < store.indicatorCount(); indicator++) {
+                ValueBlock block = store.block(indicator);
+                long[] present = store.presentBits(indicator);
+                long[] series = store.seriesBits(indicator);
+                int valueBytes = block.length() * Double.BYTES;
+                ByteBuffer buffer = ByteBuffer.allocate(valueBytes + (present.length + series.length) * Long.BYTES);
+                block.writeTo(buffer.asDoubleBuffer());
+                buffer.position(valueBytes);
+                buffer.asLongBuffer().put(present).put(series);
+                blockCrcs.putInt(crc(buffer.slice(0, valueBytes)))
+                        .putInt(crc(buffer.slice(valueBytes, buffer.limit() - valueBytes)));
+                writeFully(channel, buffer.position(0));
+            }
+            blockCrcs.flip();
+            ByteBuffer trailer = trailer(header.rewind(), dictionary.rewind(), blockCrcs);
+            writeFully(channel, blockCrcs);
+            writeFully(channel, trailer);
+            channel.force(true);
+        }
+        Files.move(temp, snapshot, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private static void writeFully(FileChannel channel, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+    }
+
+    static int crc(ByteBuffer bytes) {
+        CRC32C crc = new CRC32C();
+        crc.update(bytes.duplicate());
+        return (int) crc.getValue();
+    }
+
+    // The checksum of everything that is read eagerly, flipped for writing
+    static ByteBuffer trailer(ByteBuffer header, ByteBuffer dictionary, ByteBuffer blockCrcs) {
+        CRC32C crc = new CRC32C();
+        crc.update(header.duplicate());
+        crc.update(dictionary.duplicate());
+        crc.update(blockCrcs.duplicate());
+        return ByteBuffer.allocate(Long.BYTES).putLong(crc.getValue()).flip();
+    }
+
+    static ByteBuffer header(SourceStamp source, int firstYear, int yearCount, int countries, int indicators,
+                             int dictionaryBytes) {
+        return ByteBuffer.allocate(HEADER_BYTES)
+                .putInt(MAGIC).putInt(VERSION)
+                .putLong(source.size()).putLong(source.modified()).putLong(source.hash())
+                .putInt(firstYear).putInt(yearCount)
+                .putInt(countries).putInt(indicators)
+                .putInt(dictionaryBytes).putInt(0)
+                .flip();
+    }
+
+    static ByteBuffer dictionary(CodeDictionary countries, CodeDictionary indicators) {
+        byte[][] strings = new byte[2 * (countries.size() + indicators.size())][];
+        int n = 0;
+        for (int country = 0; country < countries.size(); country++) {
+            strings[n++] = countries.code(country).getBytes(StandardCharsets.UTF_8);
+        }
+        for (int country = 0; country < countries.size(); country++) {
+            strings[n++] = countries.name(country).getBytes(StandardCharsets.UTF_8);
+        }
+        for (int indicator = 0; indicator < indicators.size(); indicator++) {
+            strings[n++] = indicators.code(indicator).getBytes(StandardCharsets.UTF_8);
+        }
+        for (int indicator = 0; indicator < indicators.size(); indicator++) {
+            strings[n++] = indicators.name(indicator).getBytes(StandardCharsets.UTF_8);
+        }
+        int length = 0;
+        for (byte[] s : strings) {
+            length += Integer.BYTES + s.length;
+        }
+        ByteBuffer buffer = ByteBuffer.allocate(length);
+        for (byte[] s : strings) {
+            buffer.putInt(s.length).put(s);
+        }
+        return buffer.flip();
+    }
+
+    /**
+     * Reads the snapshot if it was built from the given source.
+     * @return the store, or null when the snapshot is missing, stale, of another version or corrupt
+     */
+    public static ColumnarStore read(Path snapshot, Path source) throws IOException {
+        return open(snapshot, source, false);
+    }
+
+    /**
+     * Like read, but the value blocks stay in the file: they are views of read-only mappings of whole indicators,
+     * paged in on demand and unmapped once the store is garbage collected. Replacing the snapshot (write, or the
+     * move at the end of a streamed build) leaves existing mappings valid, they keep the old file alive.
+     * A null source skips the staleness check, for a snapshot that was just built.
+     * @return the store, or null when the snapshot is missing, stale, of another version or corrupt
+     */
+    public static ColumnarStore map(Path snapshot, Path source) throws IOException {
+        return open(snapshot, source, true);
+    }
+
+    private static ColumnarStore open(Path snapshot, Path source, boolean mapped) throws IOException {
+        if (!Files.isRegularFile(snapshot)) {
+            return null;
+        }
+        try (FileChannel channel = FileChannel.open(snapshot, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size < HEADER_BYTES + Long.BYTES) {
+                return null;
+            }
+            MappedByteBuffer header = channel.map(FileChannel.MapMode.READ_ONLY, 0, HEADER_BYTES);
+            if (header.getInt() != MAGIC || header.getInt() != VERSION) {
+                return null;
+            }
+            SourceStamp stamp = new SourceStamp(header.getLong(), header.getLong(), header.getLong());
+            if (source != null && !stamp.sameFile(source) && stamp.hash() != contentHash(source)) {
+                return null;
+            }
+            int firstYear = header.getInt();
+            int yearCount = header.getInt();
+            int countries = header.getInt();
+            int indicators = header.getInt();
+            int dictionaryBytes = header.getInt();
+
+            int cells = countries * yearCount;
+            long stride = stride(countries, yearCount);
+            long blocksEnd = HEADER_BYTES + dictionaryBytes + indicators * stride;
+            if (stride > Integer.MAX_VALUE
+                    || size != blocksEnd + (long) indicators * BLOCK_CRC_BYTES + Long.BYTES) {
+                return null;
+            }
+            MappedByteBuffer dictionary = channel.map(FileChannel.MapMode.READ_ONLY, HEADER_BYTES, dictionaryBytes);
+            MappedByteBuffer blockCrcs = channel.map(FileChannel.MapMode.READ_ONLY, blocksEnd,
+                    (long) indicators * BLOCK_CRC_BYTES + Long.BYTES);
+            long checksum = blockCrcs.getLong(indicators * BLOCK_CRC_BYTES);
+            if (checksum != trailer(header.rewind(), dictionary, blockCrcs.slice(0, indicators * BLOCK_CRC_BYTES)).getLong()) {
+                return null;
+            }
+            String[] countryCodes = readStrings(dictionary, countries);
+            String[] countryNames = readStrings(dictionary, countries);
+            String[] indicatorCodes = readStrings(dictionary, indicators);
+            String[] indicatorNames = readStrings(dictionary, indicators);
+
+            ValueBlock[] values = new ValueBlock[indicators];
+            long[][] present = new long[indicators][];
+            long[][] series = new long[indicators][];
+            long position = HEADER_BYTES + dictionaryBytes;
+            int perWindow = mapped ? indicatorsPerWindow(stride) : 1;
+            for (int first = 0; first < indicators; first += perWindow) {
+                int count = Math.min(perWindow, indicators - first);
+                MappedByteBuffer window = channel.map(FileChannel.MapMode.READ_ONLY, position, count * stride);
+                for (int i = 0; i < count; i++) {
+                    int indicator = first + i;
+                    int offset = (int) (i * stride);
+                    int valuesCrc = blockCrcs.getInt(indicator * BLOCK_CRC_BYTES);
+                    ByteBuffer cellBytes = window.slice(offset, cells * Double.BYTES);
+                    ByteBuffer bitmaps = window.slice(offset + cells * Double.BYTES, (int) stride - cells * Double.BYTES);
+                    if (crc(bitmaps) != blockCrcs.getInt(indicator * BLOCK_CRC_BYTES + Integer.BYTES)) {
+                        return null;
+                    }
+                    if (mapped) {
+                        values[indicator] = ValueBlock.mapped(cellBytes, valuesCrc);
+                    } else {
+                        if (crc(cellBytes) != valuesCrc) {
+                            return null;  // the heap copy reads every cell anyway, so it is checked right away
+                        }
+                        double[] block = new double[cells];
+                        cellBytes.asDoubleBuffer().get(block);
+                        values[indicator] = ValueBlock.of(block);
+                    }
+                    present[indicator] = new long[words(cells)];
+                    series[indicator] = new long[words(countries)];
+                    bitmaps.asLongBuffer().get(present[indicator]).get(series[indicator]);
+                }
+                position += count * stride;
+            }
+            return new ColumnarStore(countryCodes, countryNames, indicatorCodes, indicatorNames,
+                    firstYear, yearCount, values, present, series);
+        }
+    }
+
+    private static String[] readStrings(ByteBuffer buffer, int count) {
+        String[] strings = new String[count];
+        for (int i = 0; i < count; i++) {
+            byte[] bytes = new byte[buffer.getInt()];
+            buffer.get(bytes);
+            strings[i] = new String(bytes, StandardCharsets.UTF_8);
+        }
+        return strings;
+    }
+
+    // Bytes of one indicator: values, present bitmap, series bitmap
+    static long stride(int countries, int yearCount) {
+        int cells = countries * yearCount;
+        return (long) cells * Double.BYTES + (long) (words(cells) + words(countries)) * Long.BYTES;
+    }
+
+    static int indicatorsPerWindow(long stride) {
+        return (int) Math.max(1, MAP_WINDOW / stride);
+    }
+
+    static int words(int bits) {
+        return (bits + 63) >>> 6;
+    }
+}
@@ -0,0 +1,93 @@
+package com.engineeringwithsandeep.worldbankservice.store;
+
+import java.nio.ByteBuffer;
+import java.nio.DoubleBuffer;
+
+/**
+ * The value cells of one indicator, country-major like the rest of the store: either an on-heap double[] or a
+ * big-endian view of that indicator's region in a memory-mapped snapshot. A mapped block costs the heap nothing but
+ * this object; its pages live in the OS page cache, shared with every process mapping the same snapshot.
+ * One final class rather than an interface keeps the scan loops monomorphic, and the heap/mapped branch takes the
+ * same way for every cell of a block.
+ * A mapped block checks its cells against the snapshot's CRC on first use, so a snapshot opens without reading them
+ * and a corrupt block fails the requests that touch it rather than answering them with wrong values.
+ */
+final class ValueBlock {
+
+    private final double[] array;
+    private final DoubleBuffer mapped;  // absolute gets only, so one view is safe to share between threads
+    private final ByteBuffer bytes;  // the mapped cells as bytes, for the check
+    private final int crc;
+    // Racy single check: a thread that does not see another's true verifies again, which is harmless
+    private boolean verified;
+
+    private ValueBlock(double[] array, ByteBuffer bytes, int crc) {
+        this.array = array;
+        this.mapped = bytes == null ? null : bytes.asDoubleBuffer();
+        this.bytes = bytes;
+        this.crc = crc;
+    }
+
+    static ValueBlock of(double[] values) {
+        return new ValueBlock(values, null, 0);
+    }
+
+    // The big-endian cells of a snapshot block and their CRC32C as the snapshot recorded it
+    static ValueBlock mapped(ByteBuffer cells, int crc) {
+        return new ValueBlock(null, cells, crc);
+    }
+
+    boolean isMapped() {
+        return mapped != null;
+    }
+
+    int length() {
+        return array != null ? array.length : mapped.capacity();
+    }
+
+    double get(int cell) {
+        return array != null ? array[cell] : mappedCells().get(cell);
+    }
+
+    void copy(int from, double[] dest, int destPos, int length) {
+        if (array != null) {
+            System.arraycopy(array, from, dest, destPos, length);
+        } else {
+            mappedCells().get(from, dest, destPos, length);
+        }
+    }
+
+    // A heap copy of the whole block, e.g. for a copy-on-write update of a mapped block
+    double[] toArray() {
+        double[] copy = new double[length()];
+        copy(0, copy, 0, copy.length);
+        return copy;
+    }
+
+    // Appends the block to out in snapshot layout
+    void writeTo(DoubleBuffer out) {
+        if (array != null) {
+            out.put(array);
+        } else {
+            out.put(mappedCells().duplicate().clear());
+        }
+    }
+
+    private DoubleBuffer mappedCells() {
+        if (!verified) {
+            if (StoreSnapshot.crc(bytes) != crc) {
+                throw new IllegalStateException("Corrupt snapshot block, delete the snapshot to rebuild it from the csv");
+            }
+            verified = true;
+        }
+        return mapped;
+    }
+
+    long heapBytes() {
+        return array != null ? HeapFootprint.arrayBytes(array.length, Double.BYTES) : 0;
+    }
+
+    long mappedBytes() {
+        return array != null ? 0 : (long) mapped.capacity() * Double.BYTES;
+    }
+}
@@ -0,0 +1,112 @@
+package com.engineeringwithsandeep.worldbankservice.store;
+
+import com.engineeringwithsandeep.worldbankservice.ingest.CsvHeader;
+import com.engineeringwithsandeep.worldbankservice.ingest.CsvIngestor;
+import com.engineeringwithsandeep.worldbankservice.metrics.WorldBankMetrics;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Reads a WDI csv (Country Name, Country Code, Indicator Name, Indicator Code, year columns...) into a ColumnarStore
+ */
+@Slf4j
+public final class WdiCsvLoader {
+
+    private static final CsvIngestor INGESTOR = new CsvIngestor();
+
+    private WdiCsvLoader() {
+    }
+
+    // csv read by the DAOs, -Dworldbank.data.file points every server at another file
+    public static String dataFile() {
+        return System.getProperty("worldbank.data.file", "src/main/resources/WDICSV.csv");
+    }
+
+    /**
+     * Where the value blocks of a loaded store live, -Dworldbank.data.backend=heap|mapped (heap by default).
+     * mapped keeps them in the memory-mapped snapshot, so the dataset may be larger than the heap, its pages are
+     * shared through the page cache with every process mapping the same file, and the collector never scans them.
+     */
+    public static boolean mappedBackend() {
+        return "mapped".equalsIgnoreCase(System.getProperty("worldbank.data.backend", "heap"));
+    }
+
+    /**
+     * Loads the store from the binary snapshot next to the csv ({@code <csv>.snapshot}) when it was built from the
+     * same csv content, otherwise parses the csv and writes a fresh snapshot for the next start.
+     * With the mapped backend the snapshot is mapped instead of read; a missing or stale one is rebuilt by streaming
+     * the csv into it, so the values never pass through the heap. That needs a writable data directory.
+     */
+    public static ColumnarStore load(String filePath) throws IOException {
+        return load(filePath, Shard.ALL);
+    }
+
+    // Like load(String), keeping only the rows of the shard, in a snapshot of its own
+    public static ColumnarStore load(String filePath, Shard shard) throws IOException {
+        Path source = Path.of(filePath);
+        Path snapshot = shard.snapshotPath(source);
+        if (mappedBackend()) {
+            return map(source, snapshot, shard);
+        }
+        ColumnarStore store = StoreSnapshot.read(snapshot, source);
+        if (store != null) {
+            log.info("Loaded data from snapshot {}", snapshot);
+            return store;
+        }
+        StoreSnapshot.SourceStamp stamp = StoreSnapshot.SourceStamp.of(source);
+        store = read(filePath, shard);
+        try {
+            StoreSnapshot.write(store, stamp, snapshot);
+        } catch (IOException e) {
+            // the snapshot only speeds up the next start, a read-only data directory is not an error
+            log.warn("Could not write snapshot {}: {}", snapshot, e.getMessage());
+        }
+        return store;
+    }
+
+    // Parses the csv, ignoring any snapshot; the parse is recorded in the ingest metrics
+    public static ColumnarStore read(String filePath) throws IOException {
+        return read(filePath, Shard.ALL);
+    }
+
+    // Parses only the rows of the shard, the others are skipped unparsed
+    public static ColumnarStore read(String filePath, Shard shard) throws IOException {
+        long start = System.nanoTime();
+        Path path = Path.of(filePath);
+        CsvHeader header = CsvIngestor.readHeader(path);
+        ColumnarStore.Builder builder = new ColumnarStore.Builder(header.firstYear(), header.yearCount());
+        long rows = INGESTOR.ingest(path, shard.rowFilter(), builder);
+        ColumnarStore store = builder.build();
+        long nanos = System.nanoTime() - start;
+        WorldBankMetrics.recordIngest(rows, nanos);
+        log.info("Parsed {} rows of {} in {} ms", rows, filePath, TimeUnit.NANOSECONDS.toMillis(nanos));
+        return store;
+    }
+
+    private static ColumnarStore map(Path source, Path snapshot, Shard shard) throws IOException {
+        ColumnarStore store = StoreSnapshot.map(snapshot, source);
+        if (store != null) {
+            log.info("Mapped data from snapshot {}", snapshot);
+            return store;
+        }
+        long start = System.nanoTime();
+        long rows = SnapshotBuilder.build(INGESTOR, source, StoreSnapshot.SourceStamp.of(source), snapshot,
+                shard.rowFilter());
+        long nanos = System.nanoTime() - start;
+        WorldBankMetrics.recordIngest(rows, nanos);
+        log.info("Streamed {} rows of {} into snapshot {} in {} ms", rows, source, snapshot,
+                TimeUnit.NANOSECONDS.toMillis(nanos));
+        store = StoreSnapshot.map(snapshot, null);
+        if (store == null) {
+            throw new IOException("Snapshot " + snapshot + " could not be mapped after it was built");
+        }
+        return store;
+    }
+
+    public static Path snapshotPath(Path source) {
+        return Shard.ALL.snapshotPath(source);
+    }
+}
@@ -0,0 +1,49 @@
+package com.engineeringwithsandeep.worldbankservice.store;
+
+/**
+ * Contiguous slice of one series: values[k] is year fromYear + k, NaN where the year has no value.
+ * The requested years are clamped to the stored range, so the slice may be shorter than asked for, or empty.
+ */
+public record YearRange(int fromYear, double[] values) {
+
+    public static YearRange of(ColumnarStore store, int country, int indicator, int fromYear, int toYear) {
+        int from = Math.max(fromYear, store.firstYear());
+        int to = Math.min(toYear, store.lastYear());
+        if (from > to) {
+            return new YearRange(fromYear, new double[0]);
+        }
+        double[] values = new double[to - from + 1];
+        store.copyRange(country, indicator, from - store.firstYear(), values, 0, values.length);
+        return new YearRange(from, values);
+    }
+
+    public int toYear() {
+        return fromYear + values.length - 1;
+    }
+
+    // Comma separated values, null for a missing year: the body of a JSON array and the text protocol reply
+    public StringBuilder appendValues(StringBuilder out) {
+        for (int k = 0; k < values.length; k++) {
+            if (k > 0) {
+                out.append(',');
+            }
+            if (Double.isNaN(values[k])) {
+                out.append("null");
+            } else {
+                out.append(values[k]);
+            }
+        }
+        return out;
+    }
+
+    // {"countryCode":"IND","indicatorCode":"NY.GDP","from":1960,"to":2023,"values":[1.5,null,...]}
+    public String toJson(String countryCode, String indicatorCode) {
+        StringBuilder json = new StringBuilder(64 + values.length * 12)
+                .append("{\"countryCode\":\"").append(countryCode)
+                .append("\",\"indicatorCode\":\"").append(indicatorCode)
+                .append("\",\"from\":").append(fromYear)
+                .append(",\"to\":").append(toYear())
+                .append(",\"values\":[");
+        return appendValues(json).append("]}").toString();
+    }
+}
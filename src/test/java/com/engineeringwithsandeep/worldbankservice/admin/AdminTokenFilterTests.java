@@ -0,0 +1,37 @@
+package com.engineeringwithsandeep.worldbankservice.admin;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class AdminTokenFilterTests {
+
+    private static MockHttpServletResponse post(AdminTokenFilter filter, String path, String token) throws Exception {
+        MockHttpServletRequest request = new MockHttpServletRequest("POST", path);
+        if (token != null) {
+            request.addHeader(AdminTokenFilter.TOKEN_HEADER, token);
+        }
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        filter.doFilter(request, response, new MockFilterChain());
+        return response;
+    }
+
+    @Test
+    void adminEndpointsNeedTheConfiguredToken() throws Exception {
+        AdminTokenFilter filter = new AdminTokenFilter("s3cret");
+        assertEquals(401, post(filter, "/wdi/reload", null).getStatus());
+        assertEquals(401, post(filter, "/wdi/async/evict", "guess").getStatus());
+        assertEquals(200, post(filter, "/wdi/async/reload", "s3cret").getStatus());
+        assertEquals(200, post(filter, "/wdi/info/IND/SP.POP.TOTL/2020", null).getStatus());  // not guarded
+    }
+
+    @Test
+    void adminEndpointsAreDisabledWithoutAToken() throws Exception {
+        AdminTokenFilter filter = new AdminTokenFilter("");
+        assertEquals(403, post(filter, "/wdi/evict", "").getStatus());
+        assertEquals(403, post(filter, "/wdi/reload/", "anything").getStatus());
+    }
+}
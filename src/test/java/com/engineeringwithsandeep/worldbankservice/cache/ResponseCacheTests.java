@@ -0,0 +1,148 @@
+package com.engineeringwithsandeep.worldbankservice.cache;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ResponseCacheTests {
+
+    private static final Function<Integer, String> RENDER = key -> "value " + key;
+
+    @Test
+    void lruEvictsTheLeastRecentlyUsedKey() {
+        ResponseCache<Integer, String> cache = new ResponseCache<>(3, EvictionPolicy.LRU);
+        AtomicInteger loads = new AtomicInteger();
+        Function<Integer, String> loader = key -> {
+            loads.incrementAndGet();
+            return RENDER.apply(key);
+        };
+        cache.get(1, 1, loader);
+        cache.get(2, 1, loader);
+        cache.get(3, 1, loader);
+        cache.get(1, 1, loader);  // 2 is now the least recently used
+        cache.get(4, 1, loader);
+        assertEquals(4, loads.get());
+
+        cache.get(1, 1, loader);
+        cache.get(3, 1, loader);
+        assertEquals(4, loads.get());
+        assertEquals("value 2", cache.get(2, 1, loader));
+        assertEquals(5, loads.get());
+
+        CacheStats stats = cache.stats();
+        assertEquals(3, stats.hits());
+        assertEquals(5, stats.misses());
+        assertEquals(2, stats.evictions());
+        assertEquals(3.0 / 8, stats.hitRatio());
+    }
+
+    @Test
+    void lfuKeepsTheFrequentKeys() {
+        ResponseCache<Integer, String> cache = new ResponseCache<>(2, EvictionPolicy.LFU);
+        for (int i = 0; i < 5; i++) {
+            cache.get(1, 1, RENDER);
+        }
+        cache.get(2, 1, RENDER);
+        cache.get(3, 1, RENDER);  // evicts 2, the only key used once
+        long misses = cache.stats().misses();
+        cache.get(1, 1, RENDER);
+        assertEquals(misses, cache.stats().misses());
+    }
+
+    @Test
+    void tinyLfuSurvivesAScanOfOneOffKeys() {
+        int capacity = 1_000;
+        ResponseCache<Integer, String> cache = new ResponseCache<>(capacity, EvictionPolicy.TINY_LFU, 1);
+        for (int round = 0; round < 5; round++) {
+            for (int hot = 0; hot < capacity / 2; hot++) {
+                cache.get(hot, 1, RENDER);
+            }
+        }
+        for (int cold = 1_000_000; cold < 1_000_000 + 20 * capacity; cold++) {
+            cache.get(cold, 1, RENDER);
+        }
+        long before = cache.stats().hits();
+        for (int hot = 0; hot < capacity / 2; hot++) {
+            cache.get(hot, 1, RENDER);
+        }
+        assertTrue(cache.stats().hits() - before > capacity / 2 * 9 / 10, "hot keys were flushed by the scan");
+        assertTrue(cache.size() <= capacity);
+    }
+
+    @Test
+    void newDatasetVersionInvalidatesAndStaleResultsAreNotCached() {
+        ResponseCache<Integer, String> cache = new ResponseCache<>(100, EvictionPolicy.TINY_LFU);
+        assertEquals("v1", cache.get(7, 1, key -> "v1"));
+        assertEquals("v1", cache.get(7, 1, key -> "other"));
+
+        assertEquals("v2", cache.get(7, 2, key -> "v2"));
+        assertEquals("v2", cache.get(7, 2, key -> "other"));
+
+        // a request that read version 1 before the swap finishes late: answered, but not cached
+        assertEquals("old", cache.get(8, 1, key -> "old"));
+        assertEquals("new", cache.get(8, 2, key -> "new"));
+        assertEquals(2, cache.stats().datasetVersion());
+    }
+
+    @Test
+    void zeroCapacityDisablesCaching() {
+        ResponseCache<Integer, String> cache = new ResponseCache<>(0, EvictionPolicy.LRU);
+        cache.get(1, 1, RENDER);
+        cache.get(1, 1, RENDER);
+        assertEquals(0, cache.stats().hits());
+        assertEquals(0, cache.size());
+    }
+
+    @Test
+    void getAsyncCachesOnceTheLoaderCompletes() {
+        ResponseCache<Integer, String> cache = new ResponseCache<>(16, EvictionPolicy.TINY_LFU);
+        CompletableFuture<String> pending = new CompletableFuture<>();
+
+        CompletableFuture<String> miss = cache.getAsync(1, 1, key -> pending);
+        assertFalse(miss.isDone());
+        assertEquals(0, cache.size());
+
+        pending.complete("value 1");
+        assertEquals("value 1", miss.join());
+        CompletableFuture<String> hit = cache.getAsync(1, 1, key -> CompletableFuture.failedFuture(new AssertionError()));
+        assertTrue(hit.isDone());
+        assertEquals("value 1", hit.join());
+        assertEquals(1, cache.stats().hits());
+    }
+
+    @Test
+    void unknownSeriesAndFailuresAreNotCached() {
+        ResponseCache<Integer, String> cache = new ResponseCache<>(16, EvictionPolicy.TINY_LFU);
+        AtomicInteger loads = new AtomicInteger();
+
+        // an unknown series renders as null, answered with 404 and looked up again on the next request
+        assertNull(cache.get(1, 1, key -> {
+            loads.incrementAndGet();
+            return null;
+        }));
+        assertNull(cache.getAsync(2, 1, key -> {
+            loads.incrementAndGet();
+            return CompletableFuture.completedFuture(null);
+        }).join());
+        assertEquals(0, cache.size());
+        assertEquals("value 1", cache.get(1, 1, RENDER));
+        assertEquals("value 2", cache.getAsync(2, 1, key -> CompletableFuture.completedFuture(RENDER.apply(key))).join());
+
+        // a failed lookup reaches the caller and the next request tries again
+        CompletableFuture<String> failed = cache.getAsync(3, 1,
+                key -> CompletableFuture.failedFuture(new IllegalStateException("lookup failed")));
+        assertTrue(failed.isCompletedExceptionally());
+        assertThrows(IllegalStateException.class, () -> cache.get(4, 1, key -> {
+            throw new IllegalStateException("lookup failed");
+        }));
+        assertEquals(2, cache.size());
+        assertEquals("value 3", cache.getAsync(3, 1, key -> CompletableFuture.completedFuture(RENDER.apply(key))).join());
+        assertEquals("value 4", cache.get(4, 1, RENDER));
+        assertEquals(2, loads.get());
+        assertEquals(0, cache.stats().hits());
+    }
+}
@@ -0,0 +1,43 @@
+package com.engineeringwithsandeep.worldbankservice.cluster;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class HashRingTests {
+
+    private static final int KEYS = 20_000;
+
+    @Test
+    void spreadsKeysEvenlyAndTheSameWayInEveryProcess() {
+        HashRing ring = new HashRing(List.of("n1", "n2", "n3"), 128);
+        HashRing again = new HashRing(List.of("n1", "n2", "n3"), 128);
+        Map<String, Integer> counts = new HashMap<>();
+        for (int k = 0; k < KEYS; k++) {
+            String key = "C" + k;
+            assertEquals(ring.owner(key), again.owner(key));
+            counts.merge(ring.owner(key), 1, Integer::sum);
+        }
+        assertEquals(3, counts.size());
+        counts.values().forEach(count -> assertTrue(Math.abs(count - KEYS / 3) < KEYS / 10, counts::toString));
+    }
+
+    @Test
+    void aNewNodeOnlyTakesKeysOverItself() {
+        HashRing three = new HashRing(List.of("n1", "n2", "n3"), 128);
+        HashRing four = new HashRing(List.of("n1", "n2", "n3", "n4"), 128);
+        int moved = 0;
+        for (int k = 0; k < KEYS; k++) {
+            String key = "C" + k;
+            if (!three.owner(key).equals(four.owner(key))) {
+                assertEquals("n4", four.owner(key));
+                moved++;
+            }
+        }
+        assertTrue(Math.abs(moved - KEYS / 4) < KEYS / 10, "moved " + moved);
+    }
+}
@@ -0,0 +1,114 @@
+package com.engineeringwithsandeep.worldbankservice.cluster;
+
+import com.engineeringwithsandeep.worldbankservice.store.AggregationEngine;
+import com.engineeringwithsandeep.worldbankservice.store.ColumnarStore;
+import com.engineeringwithsandeep.worldbankservice.store.Ranking;
+import com.engineeringwithsandeep.worldbankservice.store.WdiCsvLoader;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ShardMergeTests {
+
+    @TempDir
+    Path dir;
+
+    private ColumnarStore full;
+    private List<ColumnarStore> shards;
+
+    @BeforeEach
+    void shardTheDataset() throws Exception {
+        // distinct whole values, so rankings have no ties and sums are exact in any order
+        Random random = new Random(5);
+        StringBuilder csv = new StringBuilder("Country Name,Country Code,Indicator Name,Indicator Code,2000,2001,2002\n");
+        for (int c = 0; c < 60; c++) {
+            csv.append("Country ").append(c).append(",C").append(c).append(",GDP,NY.GDP");
+            for (int y = 0; y < 3; y++) {
+                csv.append(',').append(random.nextInt(8) == 0 ? "" : String.valueOf(c * 1000 + random.nextInt(1000)));
+            }
+            csv.append('\n');
+        }
+        String path = Files.writeString(dir.resolve("WDICSV.csv"), csv).toString();
+        full = WdiCsvLoader.read(path);
+        shards = new ArrayList<>();
+        List<Cluster.Node> nodes = List.of(new Cluster.Node("n1", null, null), new Cluster.Node("n2", null, null),
+                new Cluster.Node("n3", null, null));
+        int rows = 0;
+        for (Cluster.Node node : nodes) {
+            ColumnarStore shard = WdiCsvLoader.read(path, new Cluster(nodes, node.name(), Cluster.ShardKey.COUNTRY, 64).shard());
+            rows += shard.countryCount();
+            shards.add(shard);
+        }
+        assertEquals(full.countryCount(), rows);  // every country on exactly one node
+    }
+
+    @Test
+    void mergedRankingsMatchTheWholeDataset() {
+        int gdp = full.indicatorId("NY.GDP");
+        for (Ranking.Order order : Ranking.Order.values()) {
+            for (int n : new int[]{1, 7, 100}) {
+                List<Ranking> parts = shards.stream()
+                        .map(shard -> Ranking.of(shard, shard.indicatorId("NY.GDP"), 2001, n, order))
+                        .toList();
+                Ranking expected = Ranking.of(full, gdp, 2001, n, order);
+                assertEquals(expected.entries(), ShardMerge.rankings(parts, n, order).entries());
+                assertEquals(expected.toText(), ShardMerge.rankingText(
+                        parts.stream().map(Ranking::toText).toList(), n, order));
+            }
+        }
+        assertEquals("error", ShardMerge.rankingText(List.of("error", "error"), 5, Ranking.Order.TOP));
+        assertEquals("", ShardMerge.rankingText(List.of("error", ""), 5, Ranking.Order.TOP));
+    }
+
+    @Test
+    void mergedAggregatesMatchTheWholeDataset() {
+        for (AggregationEngine.GroupBy groupBy : AggregationEngine.GroupBy.values()) {
+            AggregationEngine.Report expected = AggregationEngine.common()
+                    .report(full, "NY.GDP", groupBy, null, 2000, 2002, null, null);
+            AggregationEngine.Report merged = ShardMerge.reports(shards.stream()
+                    .map(shard -> AggregationEngine.common().report(shard, "NY.GDP", groupBy, null, 2000, 2002, null, null))
+                    .toList());
+            List<AggregationEngine.Group> groups = expected.groups().stream()
+                    .sorted(Comparator.comparing(AggregationEngine.Group::key))
+                    .toList();
+            assertEquals(groups.size(), merged.groups().size());
+            for (int i = 0; i < groups.size(); i++) {
+                AggregationEngine.Group want = groups.get(i);
+                AggregationEngine.Group got = merged.groups().get(i);
+                assertEquals(want.key(), got.key());
+                assertEquals(want.count(), got.count());
+                assertEquals(want.sum(), got.sum());
+                assertEquals(want.mean(), got.mean(), 1e-9);
+                assertEquals(want.min(), got.min());
+                assertEquals(want.max(), got.max());
+            }
+        }
+    }
+
+    @Test
+    void yearGroupsNeverCarryWeightedMeansOrPercentiles() {
+        double[] percentiles = {50};
+        // 2001 and 2002 only come from the first shard, 2000 from both
+        AggregationEngine.Report merged = ShardMerge.reports(List.of(
+                AggregationEngine.common().report(shards.get(0), "NY.GDP", AggregationEngine.GroupBy.YEAR, null,
+                        2000, 2002, "NY.GDP", percentiles),
+                AggregationEngine.common().report(shards.get(1), "NY.GDP", AggregationEngine.GroupBy.YEAR, null,
+                        2000, 2000, "NY.GDP", percentiles)));
+        assertEquals(3, merged.groups().size());
+        assertNull(merged.weightIndicatorCode());
+        assertEquals(0, merged.percentiles().length);
+        for (AggregationEngine.Group group : merged.groups()) {
+            assertNull(group.weightedMean(), group.key());
+            assertEquals(0, group.percentiles().length, group.key());
+        }
+    }
+}
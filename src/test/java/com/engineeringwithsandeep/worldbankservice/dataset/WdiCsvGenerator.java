@@ -0,0 +1,134 @@
+package com.engineeringwithsandeep.worldbankservice.dataset;
+
+import com.engineeringwithsandeep.worldbankservice.store.WdiCsvLoader;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * Writes synthetic csv files in the WDI layout (Country Name, Country Code, Indicator Name, Indicator Code, one
+ * column per year) at any scale. Country codes are C000, C001, ..., indicator codes IND.000, IND.001, ...,
+ * and every (country, indicator) pair gets a row. Output is deterministic for a given shape and seed.
+ * <pre>
+ * WdiCsvGenerator out.csv [--scale=10] [--year-scale=2] [--countries=266] [--indicators=1478]
+ *                         [--first-year=1960] [--years=64] [--missing=0.5] [--seed=42]
+ * </pre>
+ * Without options the real WDI shape is written; --scale multiplies its series (indicators), --year-scale its years,
+ * explicit sizes win over both.
+ */
+public final class WdiCsvGenerator {
+
+    private WdiCsvGenerator() {
+    }
+
+    /**
+     * Size of a generated dataset. {@code missingRatio} is the share of empty cells, between 0 and 1.
+     */
+    public record Shape(int countries, int indicators, int firstYear, int years, double missingRatio, long seed) {
+
+        // The shape of the real WDI file: 266 countries, 1,478 indicators, 1960-2023, about half of the cells empty
+        public static Shape wdi() {
+            return new Shape(266, 1_478, 1960, 64, 0.5, 42);
+        }
+
+        public static Shape of(int countries, int indicators, int years) {
+            return new Shape(countries, indicators, 1960, years, 0.25, 42);
+        }
+
+        public long series() {
+            return (long) countries * indicators;
+        }
+
+        // The WDI shape scaled and overridden by the command line options described on WdiCsvGenerator
+        public static Shape fromOptions(Map<String, String> options) {
+            Shape wdi = wdi();
+            double scale = Double.parseDouble(options.getOrDefault("scale", "1"));
+            double yearScale = Double.parseDouble(options.getOrDefault("year-scale", "1"));
+            return new Shape(
+                    Integer.parseInt(options.getOrDefault("countries", String.valueOf(wdi.countries()))),
+                    Integer.parseInt(options.getOrDefault("indicators", String.valueOf(Math.round(wdi.indicators() * scale)))),
+                    Integer.parseInt(options.getOrDefault("first-year", String.valueOf(wdi.firstYear()))),
+                    Integer.parseInt(options.getOrDefault("years", String.valueOf(Math.round(wdi.years() * yearScale)))),
+                    Double.parseDouble(options.getOrDefault("missing", String.valueOf(wdi.missingRatio()))),
+                    Long.parseLong(options.getOrDefault("seed", String.valueOf(wdi.seed()))));
+        }
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length == 0 || args[0].startsWith("--")) {
+            System.out.println("Usage: WdiCsvGenerator out.csv [--scale=N] [--year-scale=N] [--countries=N] [--indicators=N]"
+                    + " [--first-year=YYYY] [--years=N] [--missing=0..1] [--seed=N]");
+            return;
+        }
+        Shape shape = Shape.fromOptions(options(args));
+        long start = System.nanoTime();
+        Path csv = write(shape, Path.of(args[0]));
+        System.out.printf("Wrote %s: %,d series (%,d countries x %,d indicators), %d years from %d, %.0f%% missing,"
+                        + " %,d MB in %,d ms%n", csv, shape.series(), shape.countries(), shape.indicators(), shape.years(),
+                shape.firstYear(), shape.missingRatio() * 100, Files.size(csv) >> 20, (System.nanoTime() - start) / 1_000_000);
+    }
+
+    // --key=value arguments; anything else is ignored
+    public static Map<String, String> options(String[] args) {
+        Map<String, String> options = new HashMap<>();
+        for (String arg : args) {
+            int equals = arg.indexOf('=');
+            if (arg.startsWith("--") && equals > 2) {
+                options.put(arg.substring(2, equals), arg.substring(equals + 1));
+            }
+        }
+        return options;
+    }
+
+    public static String countryCode(int country) {
+        return "C" + pad(country);
+    }
+
+    public static String indicatorCode(int indicator) {
+        return "IND." + pad(indicator);
+    }
+
+    private static String pad(int value) {
+        return String.format("%03d", value);
+    }
+
+    public static Path write(Shape shape, Path csv) throws IOException {
+        Random random = new Random(shape.seed());
+        try (BufferedWriter writer = Files.newBufferedWriter(csv)) {
+            writer.write("Country Name,Country Code,Indicator Name,Indicator Code");
+            for (int year = 0; year < shape.years(); year++) {
+                writer.write("," + (shape.firstYear() + year));
+            }
+            writer.newLine();
+            StringBuilder row = new StringBuilder(shape.years() * 20);
+            for (int country = 0; country < shape.countries(); country++) {
+                for (int indicator = 0; indicator < shape.indicators(); indicator++) {
+                    row.setLength(0);
+                    row.append("Country ").append(country).append(',').append(countryCode(country))
+                            .append(",Indicator ").append(indicator).append(',').append(indicatorCode(indicator));
+                    for (int year = 0; year < shape.years(); year++) {
+                        row.append(',');
+                        if (random.nextDouble() >= shape.missingRatio()) {
+                            row.append(random.nextDouble() * 1000);
+                        }
+                    }
+                    writer.append(row).append('\n');
+                }
+            }
+        }
+        return csv;
+    }
+
+    // Generates into a temp file that is removed, together with its snapshot, when the JVM exits
+    public static Path temp(Shape shape) throws IOException {
+        Path csv = Files.createTempFile("wdi-" + shape.countries() + "x" + shape.indicators() + "x" + shape.years() + "-", ".csv");
+        csv.toFile().deleteOnExit();
+        WdiCsvLoader.snapshotPath(csv).toFile().deleteOnExit();
+        return write(shape, csv);
+    }
+}
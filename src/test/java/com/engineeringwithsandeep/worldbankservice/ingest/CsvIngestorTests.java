@@ -0,0 +1,50 @@
+package com.engineeringwithsandeep.worldbankservice.ingest;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CsvIngestorTests {
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void parsesQuotedFieldsAndNumbersAcrossChunks() throws Exception {
+        StringBuilder csv = new StringBuilder("\"Country Name\",\"Country Code\",\"Indicator Name\",\"Indicator Code\",\"1960\",\"1961\",\"1962\"\r\n");
+        String[] numbers = {"17.4006", "-0.000123", "1.2E-05", "123456789012345678", "82.47342162323761", "\"3.5\"", "0"};
+        for (int row = 0; row < 200; row++) {
+            csv.append("\"Korea, Rep.\",K").append(row).append(",\"Access to fuels, rural (\"\"%\"\")\",EG.CFT,")
+                    .append(numbers[row % numbers.length]).append(",,")
+                    .append(numbers[(row + 1) % numbers.length]).append("\r\n");
+        }
+        Path file = Files.writeString(dir.resolve("wdi.csv"), csv);
+
+        CsvHeader header = CsvIngestor.readHeader(file);
+        assertEquals(1960, header.firstYear());
+        assertEquals(3, header.yearCount());
+
+        Map<String, double[]> rows = new ConcurrentHashMap<>();
+        long count = new CsvIngestor(new ForkJoinPool(4), 512).ingest(file, (countryName, countryCode, indicatorName, indicatorCode, values) -> {
+            assertEquals("Korea, Rep.", countryName);
+            assertEquals("Access to fuels, rural (\"%\")", indicatorName);
+            rows.put(countryCode, values.clone());
+        });
+
+        assertEquals(200, count);
+        assertEquals(200, rows.size());
+        for (int row = 0; row < 200; row++) {
+            double[] values = rows.get("K" + row);
+            assertEquals(Double.parseDouble(numbers[row % numbers.length].replace("\"", "")), values[0]);
+            assertTrue(Double.isNaN(values[1]));
+            assertEquals(Double.parseDouble(numbers[(row + 1) % numbers.length].replace("\"", "")), values[2]);
+        }
+    }
+}
@@ -0,0 +1,96 @@
+package com.engineeringwithsandeep.worldbankservice.loadtest;
+
+/**
+ * Log-linear latency histogram in microseconds: exact below 64 us, then 32 buckets per power of two,
+ * so every recorded value is within about 3% of its bucket. Not thread safe, merge per-thread histograms.
+ */
+public final class LatencyHistogram {
+
+    private static final int SUB_BITS = 5;
+    private static final int SUB = 1 << SUB_BITS;
+    private static final int LINEAR = 2 * SUB;
+
+    private final long[] counts = new long[LINEAR + (63 - SUB_BITS - 1) * SUB];
+    private long total;
+    private long max;
+
+    public void record(long nanos) {
+        long micros = Math.max(0, nanos / 1_000);
+        counts[index(micros)]++;
+        total++;
+        max = Math.max(max, micros);
+    }
+
+    public void merge(LatencyHistogram other) {
+        for (int i = 0; i < counts.length; i++) {
+            counts[i] += other.counts[i];
+        }
+        total += other.total;
+        max = Math.max(max, other.max);
+    }
+
+    public long count() {
+        return total;
+    }
+
+    public long max() {
+        return max;
+    }
+
+    // Upper bound of the bucket holding the given quantile (0..1), in microseconds
+    public long percentile(double quantile) {
+        if (total == 0) {
+            return 0;
+        }
+        long rank = Math.max(1, (long) Math.ceil(quantile * total));
+        long seen = 0;
+        for (int i = 0; i < counts.length; i++) {
+            seen += counts[i];
+            if (seen >= rank) {
+                return Math.min(lowerBound(i + 1) - 1, max);
+            }
+        }
+        return max;
+    }
+
+    static int index(long micros) {
+        if (micros < LINEAR) {
+            return (int) micros;
+        }
+        int major = 63 - Long.numberOfLeadingZeros(micros);
+        int sub = (int) (micros >>> (major - SUB_BITS)) & (SUB - 1);
+        return LINEAR + (major - SUB_BITS - 1) * SUB + sub;
+    }
+
+    static long lowerBound(int index) {
+        if (index < LINEAR) {
+            return index;
+        }
+        int major = (index - LINEAR) / SUB + SUB_BITS + 1;
+        int sub = (index - LINEAR) % SUB;
+        return (1L << major) | ((long) sub << (major - SUB_BITS));
+    }
+
+    // Counts per power of two range, one line each, with a bar relative to the fullest range
+    public String render() {
+        long[] ranges = new long[64];
+        int last = 0;
+        for (int i = 0; i < counts.length; i++) {
+            if (counts[i] > 0) {
+                int range = 63 - Long.numberOfLeadingZeros(Math.max(1, lowerBound(i)));
+                ranges[range] += counts[i];
+                last = Math.max(last, range);
+            }
+        }
+        long fullest = 1;
+        for (long count : ranges) {
+            fullest = Math.max(fullest, count);
+        }
+        StringBuilder out = new StringBuilder();
+        for (int range = 0; range <= last; range++) {
+            out.append(String.format("  %,10d - %,10d us %,10d  %s%n", range == 0 ? 0 : 1L << range, (2L << range) - 1,
+                    ranges[range], "#".repeat((int) (ranges[range] * 50 / fullest))));
+        }
+        return out.toString();
+    }
+}
@@ -0,0 +1,35 @@
+package com.engineeringwithsandeep.worldbankservice.loadtest;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LatencyHistogramTests {
+
+    @Test
+    void bucketsStayWithinTheirPrecision() {
+        for (long micros : new long[]{0, 63, 64, 127, 128, 1_000, 123_456, 10_000_000_000L}) {
+            int index = LatencyHistogram.index(micros);
+            assertTrue(LatencyHistogram.lowerBound(index) <= micros);
+            assertTrue(LatencyHistogram.lowerBound(index + 1) > micros);
+            assertTrue(micros - LatencyHistogram.lowerBound(index) <= micros / 32);
+        }
+    }
+
+    @Test
+    void percentilesOfMergedHistograms() {
+        LatencyHistogram fast = new LatencyHistogram();
+        LatencyHistogram slow = new LatencyHistogram();
+        for (int i = 0; i < 99; i++) {
+            fast.record(10_000);  // 10 us
+        }
+        slow.record(5_000_000);  // 5 ms
+        fast.merge(slow);
+
+        assertEquals(100, fast.count());
+        assertEquals(10, fast.percentile(0.5));
+        assertEquals(10, fast.percentile(0.99));
+        assertEquals(5_000, fast.max());
+        assertTrue(fast.percentile(1.0) >= 4_900 && fast.percentile(1.0) <= 5_000);
+    }
+}
@@ -0,0 +1,373 @@
+package com.engineeringwithsandeep.worldbankservice.loadtest;
+
+import com.engineeringwithsandeep.worldbankservice.WorldbankServiceApplication;
+import com.engineeringwithsandeep.worldbankservice.dataset.WdiCsvGenerator;
+import com.engineeringwithsandeep.worldbankservice.socket.client.Client;
+import com.engineeringwithsandeep.worldbankservice.socket.command.CommandParser;
+import com.engineeringwithsandeep.worldbankservice.socket.dao.WDIDao;
+import com.engineeringwithsandeep.worldbankservice.socket.server.NioServer;
+import com.engineeringwithsandeep.worldbankservice.socket.server.Server;
+import com.engineeringwithsandeep.worldbankservice.socket.service.WorldBankServiceImpl;
+import org.springframework.boot.SpringApplication;
+import org.springframework.boot.web.context.WebServerApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.io.PrintWriter;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Drives the REST endpoints or the TCP protocol at a fixed request rate and reports throughput,
+ * a latency histogram and heap use.
+ * <pre>
+ * LoadHarness --target=rest|rest-async|text|binary [--rate=2000] [--duration=30] [--connections=16]
+ *             [--csv=path | generator options, see WdiCsvGenerator] [--mode=nio|blocking|virtual]
+ *             [--host=127.0.0.1 --port=8080] [--hot-keys=500 --hot-share=0.9]
+ * </pre>
+ * Lookups are drawn from the generator codes, so a --csv file must come from WdiCsvGenerator with the same shape options.
+ * Lookups are uniform over all series unless --hot-keys is given: then --hot-share of the requests (default 0.9) go to
+ * that many fixed (country, indicator, year) lookups, the skew the REST response cache is built for.
+ * Without --port the target is started in this JVM on the given or a generated csv, so the heap numbers
+ * include the loaded dataset (and the client). With --port an already running server is driven and only the
+ * client heap is reported.
+ * The load is open loop: every connection sends on a fixed schedule and latency is measured from the scheduled
+ * send time, so a stalled server shows up as latency instead of silently lowering the request rate.
+ */
+public class LoadHarness {
+
+    private static final int WARMUP_REQUESTS = 2_000;
+
+    public static void main(String[] args) {
+        int status = 0;
+        try {
+            run(args);
+        } catch (Exception e) {
+            e.printStackTrace();
+            status = 1;
+        }
+        System.exit(status);  // an embedded REST server keeps non-daemon threads alive
+    }
+
+    private static void run(String[] args) throws Exception {
+        Map<String, String> options = WdiCsvGenerator.options(args);
+        String target = options.getOrDefault("target", "text");
+        int rate = Integer.parseInt(options.getOrDefault("rate", "2000"));
+        int durationSeconds = Integer.parseInt(options.getOrDefault("duration", "30"));
+        int connections = Integer.parseInt(options.getOrDefault("connections", "16"));
+        String host = options.getOrDefault("host", "127.0.0.1");
+        boolean embedded = !options.containsKey("port");
+
+        WdiCsvGenerator.Shape shape = WdiCsvGenerator.Shape.fromOptions(options);
+        Path csv;
+        if (options.containsKey("csv")) {
+            csv = Path.of(options.get("csv"));
+        } else {
+            System.out.printf("Generating %,d series x %d years...%n", shape.series(), shape.years());
+            csv = WdiCsvGenerator.temp(shape);
+        }
+
+        long heapBefore = usedHeap();
+        int port;
+        AutoCloseable server = null;
+        PrintStream console = System.out;
+        if (embedded) {
+            port = freePort();
+            server = start(target, options.getOrDefault("mode", "nio"), csv, port);
+        } else {
+            port = Integer.parseInt(options.get("port"));
+        }
+        Requests requests = new Requests(target, host, port, shape,
+                Integer.parseInt(options.getOrDefault("hot-keys", "0")),
+                Double.parseDouble(options.getOrDefault("hot-share", "0.9")));
+        requests.send(new Random(1), WARMUP_REQUESTS);  // also triggers the lazy load of the REST services
+        long heapLoaded = usedHeap();
+
+        resetPeakHeap();
+        Worker[] workers = new Worker[connections];
+        long intervalNanos = Math.max(1, 1_000_000_000L * connections / rate);
+        long start = System.nanoTime() + 10_000_000;
+        long end = start + durationSeconds * 1_000_000_000L;
+        for (int i = 0; i < connections; i++) {
+            // stagger the connections evenly across one interval
+            workers[i] = new Worker(requests, start + intervalNanos * i / connections, intervalNanos, end, i);
+            workers[i].thread.start();
+        }
+        LatencyHistogram latencies = new LatencyHistogram();
+        long errors = 0;
+        for (Worker worker : workers) {
+            worker.thread.join();
+            latencies.merge(worker.latencies);
+            errors += worker.errors;
+        }
+        double elapsedSeconds = (System.nanoTime() - start) / 1e9;
+        long heapPeak = peakHeap();
+        System.setOut(console);
+
+        System.out.printf("%n%s against %s:%d, %d connections, target %,d req/s for %d s%n",
+                target, host, port, connections, rate, durationSeconds);
+        System.out.printf("  dataset:     %s (%,d series x %d years)%n", csv, shape.series(), shape.years());
+        System.out.printf("  throughput:  %,.0f req/s (%,d requests, %,d errors)%n",
+                latencies.count() / elapsedSeconds, latencies.count(), errors);
+        System.out.printf("  latency us:  p50 %,d  p90 %,d  p99 %,d  p99.9 %,d  max %,d%n",
+                latencies.percentile(0.5), latencies.percentile(0.9), latencies.percentile(0.99),
+                latencies.percentile(0.999), latencies.max());
+        System.out.print(latencies.render());
+        System.out.printf("  heap:        %,d MB before load, %,d MB loaded, %,d MB peak during the run%s%n",
+                heapBefore >> 20, heapLoaded >> 20, heapPeak >> 20, embedded ? " (server and client share the JVM)" : " (client only)");
+
+        requests.close();
+        if (server != null) {
+            server.close();
+        }
+    }
+
+    // Starts the target in this JVM and returns how to stop it
+    private static AutoCloseable start(String target, String mode, Path csv, int port) throws Exception {
+        System.setProperty("worldbank.data.file", csv.toString());
+        if (target.startsWith("rest")) {
+            ConfigurableApplicationContext context = SpringApplication.run(WorldbankServiceApplication.class,
+                    "--server.port=" + port);
+            System.out.println("REST server started on port " + ((WebServerApplicationContext) context).getWebServer().getPort());
+            return context;
+        }
+        // the socket servers log every command, keep the harness output readable
+        System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+        if ("nio".equals(mode)) {
+            WDIDao wdiDao = new WDIDao(csv.toString());
+            wdiDao.load();
+            NioServer nioServer = new NioServer(port, new CommandParser(new WorldBankServiceImpl(wdiDao)),
+                    Runtime.getRuntime().availableProcessors());
+            nioServer.start();
+            return nioServer::stop;
+        }
+        System.setProperty("worldbank.socket.port", String.valueOf(port));
+        System.setProperty("worldbank.socket.mode", mode);
+        Thread main = new Thread(() -> Server.main(new String[0]), "server-main");
+        main.setDaemon(true);
+        main.start();
+        for (int attempt = 0; attempt < 6_000; attempt++) {
+            try (Socket ignored = new Socket("127.0.0.1", port)) {
+                return Server::stopServer;
+            } catch (IOException e) {
+                Thread.sleep(100);  // still loading
+            }
+        }
+        throw new IllegalStateException("Server did not start on port " + port);
+    }
+
+    private static int freePort() throws IOException {
+        try (ServerSocket probe = new ServerSocket(0)) {
+            return probe.getLocalPort();
+        }
+    }
+
+    private static long usedHeap() {
+        System.gc();
+        Runtime runtime = Runtime.getRuntime();
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+
+    private static void resetPeakHeap() {
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getType() == MemoryType.HEAP) {
+                pool.resetPeakUsage();
+            }
+        }
+    }
+
+    // Sum of the per-pool peaks, an upper bound since the pools do not peak at the same moment
+    private static long peakHeap() {
+        long peak = 0;
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getType() == MemoryType.HEAP) {
+                peak += pool.getPeakUsage().getUsed();
+            }
+        }
+        return peak;
+    }
+
+    /**
+     * One connection on a fixed send schedule, with its own histogram
+     */
+    private static final class Worker implements Runnable {
+        private final Requests requests;
+        private final long intervalNanos;
+        private final long end;
+        private final Random random;
+        private final LatencyHistogram latencies = new LatencyHistogram();
+        private final Thread thread;
+        private long next;
+        private long errors;
+
+        Worker(Requests requests, long start, long intervalNanos, long end, int id) {
+            this.requests = requests;
+            this.next = start;
+            this.intervalNanos = intervalNanos;
+            this.end = end;
+            this.random = new Random(id);
+            this.thread = new Thread(this, "load-" + id);
+        }
+
+        @Override
+        public void run() {
+            try (Requests.Connection connection = requests.open()) {
+                while (next < end) {
+                    long wait = next - System.nanoTime();
+                    if (wait > 0) {
+                        LockSupport.parkNanos(wait);
+                    }
+                    try {
+                        connection.send(random);
+                    } catch (IOException | RuntimeException e) {
+                        errors++;
+                    }
+                    latencies.record(System.nanoTime() - next);  // from the scheduled time, see LoadHarness
+                    next += intervalNanos;
+                }
+            } catch (IOException e) {
+                errors++;
+                System.err.println("Connection failed: " + e.getMessage());
+            }
+        }
+    }
+
+    private record Lookup(String country, String indicator, int year) {
+    }
+
+    /**
+     * Builds random lookups over the generated codes and sends them over the target protocol
+     */
+    private static final class Requests implements AutoCloseable {
+        private final String target;
+        private final String host;
+        private final int port;
+        private final WdiCsvGenerator.Shape shape;
+        private final int hotKeys;
+        private final double hotShare;
+        private final HttpClient http;
+        private final List<Connection> warmup = new ArrayList<>();
+
+        Requests(String target, String host, int port, WdiCsvGenerator.Shape shape, int hotKeys, double hotShare) {
+            this.target = target;
+            this.host = host;
+            this.port = port;
+            this.shape = shape;
+            this.hotKeys = hotKeys;
+            this.hotShare = hotShare;
+            this.http = target.startsWith("rest") ? HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).build() : null;
+        }
+
+        void send(Random random, int count) throws IOException {
+            Connection connection = open();
+            warmup.add(connection);
+            for (int i = 0; i < count; i++) {
+                connection.send(random);
+            }
+        }
+
+        Connection open() throws IOException {
+            return switch (target) {
+                case "rest" -> random -> get("/wdi/info/", random);
+                case "rest-async" -> random -> get("/wdi/async/info/", random);
+                case "binary" -> {
+                    Client.BinaryCodec codec = new Client.BinaryCodec(new Socket(host, port));
+                    yield new Connection() {
+                        @Override
+                        public void send(Random random) throws IOException {
+                            Lookup lookup = lookup(random);
+                            codec.query(lookup.country(), lookup.indicator(), lookup.year());
+                        }
+
+                        @Override
+                        public void close() throws IOException {
+                            codec.close();
+                        }
+                    };
+                }
+                case "text" -> {
+                    Socket socket = new Socket(host, port);
+                    socket.setTcpNoDelay(true);
+                    PrintWriter out = new PrintWriter(socket.getOutputStream(), true, StandardCharsets.UTF_8);
+                    BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+                    yield new Connection() {
+                        @Override
+                        public void send(Random random) throws IOException {
+                            Lookup lookup = lookup(random);
+                            out.println("q;" + lookup.country() + ";" + lookup.indicator() + ";" + lookup.year());
+                            if (in.readLine() == null) {
+                                throw new IOException("Connection closed by the server");
+                            }
+                        }
+
+                        @Override
+                        public void close() throws IOException {
+                            socket.close();
+                        }
+                    };
+                }
+                default -> throw new IllegalArgumentException("Unknown target " + target);
+            };
+        }
+
+        private void get(String path, Random random) throws IOException {
+            Lookup lookup = lookup(random);
+            HttpRequest request = HttpRequest.newBuilder(URI.create("http://" + host + ":" + port + path
+                    + lookup.country() + "/" + lookup.indicator() + "/" + lookup.year())).build();
+            try {
+                HttpResponse<String> response = http.send(request, HttpResponse.BodyHandlers.ofString());
+                if (response.statusCode() != 200) {
+                    throw new IOException("HTTP " + response.statusCode());
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException(e);
+            }
+        }
+
+        private Lookup lookup(Random random) {
+            if (hotKeys > 0 && random.nextDouble() < hotShare) {
+                int key = random.nextInt(hotKeys);
+                return new Lookup(WdiCsvGenerator.countryCode(key % shape.countries()),
+                        WdiCsvGenerator.indicatorCode(key / shape.countries() % shape.indicators()),
+                        shape.firstYear() + key * 31 % shape.years());
+            }
+            return new Lookup(WdiCsvGenerator.countryCode(random.nextInt(shape.countries())),
+                    WdiCsvGenerator.indicatorCode(random.nextInt(shape.indicators())),
+                    shape.firstYear() + random.nextInt(shape.years()));
+        }
+
+        @Override
+        public void close() throws IOException {
+            for (Connection connection : warmup) {
+                connection.close();
+            }
+        }
+
+        interface Connection extends AutoCloseable {
+            void send(Random random) throws IOException;
+
+            @Override
+            default void close() throws IOException {
+            }
+        }
+    }
+}
@@ -0,0 +1,93 @@
+package com.engineeringwithsandeep.worldbankservice.socket.server;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.PrintWriter;
+import java.lang.management.ManagementFactory;
+import java.net.Socket;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Opens N idle client connections against the socket server in the given mode and reports server threads,
+ * heap and query latency on one extra active connection.
+ * Usage: ConnectionScalingBenchmark [blocking|nio] [connections] [port]
+ * Client and server share the JVM, so the process needs about 2 * connections file descriptors.
+ */
+public class ConnectionScalingBenchmark {
+
+    public static void main(String[] args) throws Exception {
+        String mode = args.length > 0 ? args[0] : "nio";
+        int connections = args.length > 1 ? Integer.parseInt(args[1]) : 5_000;
+        int port = args.length > 2 ? Integer.parseInt(args[2]) : 18080;
+
+        Path csv = Files.createTempFile("wdi-scaling", ".csv");
+        Files.writeString(csv, "Country Name,Country Code,Indicator Name,Indicator Code,1960,1961\nIndia,IND,GDP,NY.GDP,1.5,2.5\n");
+        System.setProperty("worldbank.data.file", csv.toString());
+        System.setProperty("worldbank.socket.mode", mode);
+        System.setProperty("worldbank.socket.port", String.valueOf(port));
+        Thread server = new Thread(() -> Server.main(new String[0]), "server-main");
+        server.setDaemon(true);
+        server.start();
+        waitForPort(port);
+
+        int threadsBefore = ManagementFactory.getThreadMXBean().getThreadCount();
+        long heapBefore = usedHeap();
+        List<Socket> idle = new ArrayList<>(connections);
+        long start = System.nanoTime();
+        for (int i = 0; i < connections; i++) {
+            idle.add(new Socket("127.0.0.1", port));
+        }
+        double connectMillis = (System.nanoTime() - start) / 1_000_000.0;
+        Thread.sleep(2_000);  // let the server pick every connection up
+        int threadsAfter = ManagementFactory.getThreadMXBean().getThreadCount();
+        long heapAfter = usedHeap();
+
+        long[] latencies = new long[20_000];
+        try (Socket socket = new Socket("127.0.0.1", port);
+             PrintWriter out = new PrintWriter(socket.getOutputStream(), true);
+             BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream()))) {
+            for (int i = 0; i < latencies.length; i++) {
+                long t = System.nanoTime();
+                out.println("q;IND;NY.GDP;1960");
+                in.readLine();
+                latencies[i] = System.nanoTime() - t;
+            }
+            Arrays.sort(latencies);
+            out.println("z");
+            in.readLine();
+        }
+        for (Socket socket : idle) {
+            socket.close();
+        }
+
+        System.out.printf("mode=%s connections=%,d%n", mode, connections);
+        System.out.printf("  connect time:     %,.0f ms%n", connectMillis);
+        System.out.printf("  threads:          %,d -> %,d%n", threadsBefore, threadsAfter);
+        System.out.printf("  heap used:        +%,d KB%n", (heapAfter - heapBefore) / 1024);
+        System.out.printf("  query p50 / p99:  %,.1f / %,.1f us%n",
+                latencies[latencies.length / 2] / 1_000.0, latencies[latencies.length * 99 / 100] / 1_000.0);
+        System.exit(0);
+    }
+
+    private static long usedHeap() {
+        System.gc();
+        Runtime runtime = Runtime.getRuntime();
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+
+    private static void waitForPort(int port) throws InterruptedException {
+        for (int i = 0; i < 100; i++) {
+            try (Socket ignored = new Socket("127.0.0.1", port)) {
+                return;
+            } catch (IOException e) {
+                Thread.sleep(100);
+            }
+        }
+        throw new IllegalStateException("Server did not start on port " + port);
+    }
+}
@@ -0,0 +1,277 @@
+package com.engineeringwithsandeep.worldbankservice.socket.server;
+
+import com.engineeringwithsandeep.worldbankservice.metrics.WorldBankMetrics;
+import com.engineeringwithsandeep.worldbankservice.socket.client.Client;
+import com.engineeringwithsandeep.worldbankservice.socket.command.CommandParser;
+import com.engineeringwithsandeep.worldbankservice.socket.dao.WDIDao;
+import com.engineeringwithsandeep.worldbankservice.socket.service.WorldBankServiceImpl;
+import com.engineeringwithsandeep.worldbankservice.store.SeriesStats;
+import com.engineeringwithsandeep.worldbankservice.store.Shard;
+import com.engineeringwithsandeep.worldbankservice.store.YearRange;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Metrics;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class NioServerTests {
+
+    @TempDir
+    Path dir;
+
+    private NioServer server;
+    private int port;
+    private final List<NioServer> ownServers = new ArrayList<>();
+
+    @BeforeEach
+    void startServer() throws Exception {
+        Path csv = Files.writeString(dir.resolve("WDICSV.csv"),
+                "Country Name,Country Code,Indicator Name,Indicator Code,1960,1961\n"
+                        + "India,IND,GDP,NY.GDP,1.5,\n"
+                        + "France,FRA,GDP,NY.GDP,3.0,4.0\n");
+        WDIDao wdiDao = new WDIDao(csv.toString());
+        wdiDao.load();
+        try (ServerSocket probe = new ServerSocket(0)) {
+            port = probe.getLocalPort();
+        }
+        server = new NioServer(port, new CommandParser(new WorldBankServiceImpl(wdiDao)), 2);
+        server.start();
+    }
+
+    @AfterEach
+    void stopServer() {
+        server.stop();
+        ownServers.forEach(NioServer::stop);
+    }
+
+    @Test
+    void answersPipelinedCommandsInOrder() throws Exception {
+        try (Socket socket = new Socket("127.0.0.1", port)) {
+            OutputStream out = socket.getOutputStream();
+            BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+
+            // all commands in a single write, before reading any reply
+            out.write(("q;FRA;NY.GDP;1961\n"
+                    + "b;IND,NY.GDP,1960;IND,NY.GDP,1961;XXX,NY.GDP,1960;FRA,NY.GDP\n"
+                    + "x\n"
+                    + "e\n").getBytes(StandardCharsets.UTF_8));
+            out.flush();
+
+            assertEquals("country -> France has GDP had 4.0 in year 1961", in.readLine());
+            assertEquals("1.5;null;error;error", in.readLine());
+            assertEquals("Unknown command: x", in.readLine());
+            assertEquals("Goodbye! ", in.readLine());
+            assertNull(in.readLine());
+        }
+    }
+
+    @Test
+    void answersRangeCommands() throws Exception {
+        try (Socket socket = new Socket("127.0.0.1", port)) {
+            OutputStream out = socket.getOutputStream();
+            BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+            out.write(("g;IND;NY.GDP;1960;1961\n"
+                    + "g;FRA;NY.GDP;1961;2020\n"
+                    + "g;XXX;NY.GDP;1960;1961\n"
+                    + "g;FRA;NY.GDP;1961\n").getBytes(StandardCharsets.UTF_8));
+            out.flush();
+
+            assertEquals("1960;1961;1.5,null", in.readLine());
+            assertEquals("1961;1961;4.0", in.readLine());
+            assertEquals("error", in.readLine());
+            assertEquals("Wrong number of arguments", in.readLine());
+        }
+    }
+
+    @Test
+    void answersRankCommands() throws Exception {
+        try (Socket socket = new Socket("127.0.0.1", port)) {
+            OutputStream out = socket.getOutputStream();
+            BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+            out.write(("k;NY.GDP;1960;5\n"
+                    + "k;NY.GDP;1960;1;bottom\n"
+                    + "k;NY.GDP;1961;5\n"
+                    + "k;XX.XXX;1960;5\n"
+                    + "k;NY.GDP;1960;0\n").getBytes(StandardCharsets.UTF_8));
+            out.flush();
+
+            assertEquals("FRA,3.0;IND,1.5", in.readLine());
+            assertEquals("IND,1.5", in.readLine());
+            assertEquals("FRA,4.0", in.readLine());  // India has no value in 1961
+            assertEquals("error", in.readLine());
+            assertEquals("Error;Bad Command", in.readLine());
+        }
+    }
+
+    @Test
+    void answersCommandsAddressedToADataset() throws Exception {
+        try (Socket socket = new Socket("127.0.0.1", port)) {
+            OutputStream out = socket.getOutputStream();
+            BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+            out.write(("wdi:q;FRA;NY.GDP;1961\n"
+                    + "ids:q;FRA;NY.GDP;1961\n"
+                    + "q;FRA;NY.GDP;1960\n").getBytes(StandardCharsets.UTF_8));
+            out.flush();
+
+            assertEquals("country -> France has GDP had 4.0 in year 1961", in.readLine());
+            assertEquals("Error;Unknown dataset ids", in.readLine());
+            assertEquals("country -> France has GDP had 3.0 in year 1960", in.readLine());
+        }
+    }
+
+    @Test
+    void answersBinaryFrames() throws Exception {
+        try (Client.BinaryCodec codec = new Client.BinaryCodec(new Socket("127.0.0.1", port))) {
+            assertEquals(4.0, codec.query("FRA", "NY.GDP", 1961));
+            assertTrue(Double.isNaN(codec.query("IND", "NY.GDP", 1961)));
+            assertThrows(IllegalArgumentException.class, () -> codec.query("XXX", "NY.GDP", 1960));
+            assertEquals(-1, codec.countryId("XXX"));
+
+            double[] values = codec.batch(new String[]{"IND", "FRA", "XXX"}, new String[]{"NY.GDP", "NY.GDP", "NY.GDP"},
+                    new int[]{1960, 1961, 1960});
+            assertEquals(1.5, values[0]);
+            assertEquals(4.0, values[1]);
+            assertTrue(Double.isNaN(values[2]));
+
+            SeriesStats stats = codec.report("FRA", "NY.GDP");
+            assertEquals(2, stats.count());
+            assertEquals(3.5, stats.mean());
+            assertEquals(1961, stats.lastYear());
+
+            YearRange range = codec.range("IND", "NY.GDP", 1950, 2000);  // clamped to 1960-1961
+            assertEquals(1960, range.fromYear());
+            assertEquals(1.5, range.values()[0]);
+            assertTrue(Double.isNaN(range.values()[1]));
+            assertEquals(0, codec.range("FRA", "NY.GDP", 1970, 1980).values().length);
+            assertThrows(IllegalArgumentException.class, () -> codec.range("XXX", "NY.GDP", 1960, 1961));
+            codec.disconnect();
+        }
+        // text clients are unaffected on the same port
+        answersPipelinedCommandsInOrder();
+    }
+
+    @Test
+    void pausesAClientThatDoesNotReadItsRepliesAndResumesIt() throws Exception {
+        StringBuilder csv = new StringBuilder("Country Name,Country Code,Indicator Name,Indicator Code");
+        StringBuilder row = new StringBuilder("\nFrance,FRA,GDP,NY.GDP");
+        for (int year = 1960; year < 2020; year++) {
+            csv.append(',').append(year);
+            row.append(",12345.678");
+        }
+        int ownPort = startOwnServer(Files.writeString(dir.resolve("years.csv"), csv.append(row).append('\n')));
+        String reply = "1960;2019;" + String.join(",", Collections.nCopies(60, "12345.678"));
+        int commands = 30_000;  // about 18 MB of replies, more than the socket buffers take
+        try (Socket socket = new Socket()) {
+            socket.setReceiveBufferSize(16 * 1024);
+            socket.connect(new InetSocketAddress("127.0.0.1", ownPort));
+            OutputStream out = new BufferedOutputStream(socket.getOutputStream());
+            Thread writer = Thread.ofVirtual().start(() -> {
+                try {
+                    byte[] command = "g;FRA;NY.GDP;1960;2019\n".getBytes(StandardCharsets.UTF_8);
+                    for (int i = 0; i < commands; i++) {
+                        out.write(command);  // blocks once the server stops reading
+                    }
+                    out.flush();
+                } catch (Exception e) {
+                    throw new RuntimeException(e);
+                }
+            });
+            Thread.sleep(1_000);  // let the replies pile up before reading any
+            BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+            for (int i = 0; i < commands; i++) {
+                assertEquals(reply, in.readLine());
+            }
+            writer.join();
+        }
+    }
+
+    @Test
+    void resolvesAgainAfterAReloadChangesTheIds() throws Exception {
+        Path csv = Files.writeString(dir.resolve("reloaded.csv"),
+                "Country Name,Country Code,Indicator Name,Indicator Code,1960,1961\n"
+                        + "India,IND,GDP,NY.GDP,1.5,\n"
+                        + "France,FRA,GDP,NY.GDP,3.0,4.0\n");
+        WDIDao wdiDao = new WDIDao(csv.toString(), Shard.ALL);
+        try (Client.BinaryCodec codec = new Client.BinaryCodec(new Socket("127.0.0.1", startOwnServer(wdiDao)))) {
+            assertEquals(4.0, codec.query("FRA", "NY.GDP", 1961));
+            assertEquals(1, codec.countryId("FRA"));
+
+            // FRA becomes id 0 and id 1 now names Brazil, the cached id must not be sent as is
+            Files.writeString(csv, "Country Name,Country Code,Indicator Name,Indicator Code,1960,1961\n"
+                    + "France,FRA,GDP,NY.GDP,5.0,6.0\n"
+                    + "Brazil,BRA,GDP,NY.GDP,7.0,8.0\n");
+            wdiDao.reload();
+
+            assertEquals(6.0, codec.query("FRA", "NY.GDP", 1961));
+            assertEquals(0, codec.countryId("FRA"));
+            assertEquals(5.5, codec.report("FRA", "NY.GDP").mean());
+        }
+    }
+
+    private int startOwnServer(Path csv) throws Exception {
+        return startOwnServer(new WDIDao(csv.toString(), Shard.ALL));
+    }
+
+    // A server over a registry of its own, the default dataset shared by the other tests stays untouched
+    private int startOwnServer(WDIDao wdiDao) throws Exception {
+        wdiDao.load();
+        int ownPort;
+        try (ServerSocket probe = new ServerSocket(0)) {
+            ownPort = probe.getLocalPort();
+        }
+        NioServer own = new NioServer(ownPort, new CommandParser(new WorldBankServiceImpl(wdiDao)), 1);
+        own.start();
+        ownServers.add(own);
+        return ownPort;
+    }
+
+    @Test
+    void countsCommandsPerTypeAndProtocolAndTracksConnections() throws Exception {
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        Metrics.addRegistry(registry);
+        try (Socket socket = new Socket("127.0.0.1", port);
+             Client.BinaryCodec codec = new Client.BinaryCodec(new Socket("127.0.0.1", port))) {
+            OutputStream out = socket.getOutputStream();
+            BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+            out.write("q;FRA;NY.GDP;1961\nq;IND;NY.GDP;1960\nr;FRA;NY.GDP\nx\n".getBytes(StandardCharsets.UTF_8));
+            out.flush();
+            for (int i = 0; i < 4; i++) {
+                assertNotNull(in.readLine());
+            }
+            assertEquals(4.0, codec.query("FRA", "NY.GDP", 1961));
+
+            assertEquals(2.0, commands(registry, "query", "text"));
+            assertEquals(1.0, commands(registry, "report", "text"));
+            assertEquals(1.0, commands(registry, "error", "text"));
+            assertEquals(1.0, commands(registry, "query", "binary"));
+            assertEquals(2.0, registry.get(WorldBankMetrics.SOCKET_CONNECTIONS).tag("mode", "nio").gauge().value());
+            Timer info = registry.get(WorldBankMetrics.LOOKUP).tags("implementation", "socket", "operation", "info").timer();
+            assertEquals(2, info.count());  // the binary query reads the value without building the text reply
+        } finally {
+            Metrics.removeRegistry(registry);
+        }
+    }
+
+    private static double commands(MeterRegistry registry, String command, String protocol) {
+        return registry.get(WorldBankMetrics.SOCKET_COMMANDS).tags("command", command, "protocol", protocol).counter().count();
+    }
+}
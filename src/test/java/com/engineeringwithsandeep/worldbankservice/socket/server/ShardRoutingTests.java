@@ -0,0 +1,149 @@
+package com.engineeringwithsandeep.worldbankservice.socket.server;
+
+import com.engineeringwithsandeep.worldbankservice.cluster.Cluster;
+import com.engineeringwithsandeep.worldbankservice.socket.command.CommandParser;
+import com.engineeringwithsandeep.worldbankservice.socket.dao.WDIDao;
+import com.engineeringwithsandeep.worldbankservice.socket.service.WorldBankServiceImpl;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.BufferedReader;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// Three nodes of a cluster sharded by country in one process, each with its own NioServer and shard
+class ShardRoutingTests {
+
+    private static final int COUNTRIES = 30;
+
+    @TempDir
+    Path dir;
+
+    private final List<NioServer> servers = new ArrayList<>();
+    private List<Cluster.Node> nodes;
+
+    @BeforeEach
+    void startCluster() throws Exception {
+        StringBuilder csv = new StringBuilder("Country Name,Country Code,Indicator Name,Indicator Code,1960,1961\n");
+        for (int c = 0; c < COUNTRIES; c++) {
+            csv.append("Country ").append(c).append(",C").append(c).append(",GDP,NY.GDP,").append(c + 0.5).append(",\n");
+        }
+        String path = Files.writeString(dir.resolve("WDICSV.csv"), csv).toString();
+        nodes = new ArrayList<>();
+        for (int n = 1; n <= 3; n++) {
+            try (ServerSocket probe = new ServerSocket(0)) {
+                nodes.add(new Cluster.Node("n" + n, null, new InetSocketAddress("127.0.0.1", probe.getLocalPort())));
+            }
+        }
+        for (Cluster.Node node : nodes) {
+            Cluster cluster = new Cluster(nodes, node.name(), Cluster.ShardKey.COUNTRY, 64);
+            WDIDao wdiDao = new WDIDao(path, cluster.shard());
+            wdiDao.load();
+            NioServer server = new NioServer(node.socket().getPort(),
+                    new CommandParser(new WorldBankServiceImpl(wdiDao), cluster), 1);
+            server.start();
+            servers.add(server);
+        }
+    }
+
+    @AfterEach
+    void stopCluster() {
+        servers.forEach(NioServer::stop);
+    }
+
+    @Test
+    void anyNodeAnswersForEverySeries() throws Exception {
+        for (Cluster.Node node : nodes) {
+            try (Socket socket = new Socket("127.0.0.1", node.socket().getPort())) {
+                OutputStream out = socket.getOutputStream();
+                BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+                StringBuilder lines = new StringBuilder();
+                for (int c = 0; c < COUNTRIES; c++) {
+                    lines.append("q;C").append(c).append(";NY.GDP;1960\n");
+                }
+                lines.append("e\n");
+                out.write(lines.toString().getBytes(StandardCharsets.UTF_8));  // pipelined, local and forwarded mixed
+                out.flush();
+                for (int c = 0; c < COUNTRIES; c++) {
+                    assertEquals("country -> Country " + c + " has GDP had " + (c + 0.5) + " in year 1960", in.readLine());
+                }
+                assertEquals("Goodbye! ", in.readLine());
+                assertNull(in.readLine());
+            }
+        }
+    }
+
+    @Test
+    void scattersRankAndBatchCommands() throws Exception {
+        try (Socket socket = new Socket("127.0.0.1", nodes.get(0).socket().getPort())) {
+            OutputStream out = socket.getOutputStream();
+            BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+            out.write(("k;NY.GDP;1960;3\n"
+                    + "k;NY.GDP;1960;2;bottom\n"
+                    + "k;XX.XXX;1960;3\n"
+                    + "k;NY.GDP;1960;0\n"
+                    + "b;C1,NY.GDP,1960;C2,NY.GDP,1960;XXX,NY.GDP,1960;C3,NY.GDP,1961;C4,NY.GDP,1960;C5,NY.GDP\n")
+                    .getBytes(StandardCharsets.UTF_8));
+            out.flush();
+
+            assertEquals("C29,29.5;C28,28.5;C27,27.5", in.readLine());
+            assertEquals("C0,0.5;C1,1.5", in.readLine());
+            assertEquals("error", in.readLine());
+            assertEquals("Error;Bad Command", in.readLine());
+            assertEquals("1.5;2.5;error;null;4.5;error", in.readLine());
+        }
+    }
+
+    @Test
+    void aLocalCommandIsAnsweredFromTheNodesOwnShard() throws Exception {
+        Cluster cluster = new Cluster(nodes, "n1", Cluster.ShardKey.COUNTRY, 64);
+        String foreign = null;
+        for (int c = 0; foreign == null; c++) {
+            if (!cluster.isSelf(cluster.owner("C" + c, "NY.GDP"))) {
+                foreign = "C" + c;
+            }
+        }
+        try (Socket socket = new Socket("127.0.0.1", nodes.get(0).socket().getPort())) {
+            OutputStream out = socket.getOutputStream();
+            BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+            out.write(("@q;" + foreign + ";NY.GDP;1960\n@b;" + foreign + ",NY.GDP,1960\n").getBytes(StandardCharsets.UTF_8));
+            out.flush();
+
+            assertEquals("Error;Bad Command", in.readLine());  // not on this node, and not asked elsewhere
+            assertEquals("error", in.readLine());
+        }
+    }
+
+    @Test
+    void anUnreachableNodeIsAnErrorReply() throws Exception {
+        servers.remove(2).stop();
+        Cluster cluster = new Cluster(nodes, "n1", Cluster.ShardKey.COUNTRY, 64);
+        String gone = null;
+        for (int c = 0; gone == null; c++) {
+            if (cluster.owner("C" + c, "NY.GDP") == nodes.get(2)) {
+                gone = "C" + c;
+            }
+        }
+        try (Socket socket = new Socket("127.0.0.1", nodes.get(0).socket().getPort())) {
+            OutputStream out = socket.getOutputStream();
+            BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+            out.write(("q;" + gone + ";NY.GDP;1960\nk;NY.GDP;1960;3\n").getBytes(StandardCharsets.UTF_8));
+            out.flush();
+
+            assertTrue(in.readLine().startsWith("Error;Node n3 is unavailable"));
+            assertTrue(in.readLine().startsWith("Error;Node n3 is unavailable"));
+        }
+    }
+}
@@ -0,0 +1,54 @@
+package com.engineeringwithsandeep.worldbankservice.socket.service;
+
+import com.engineeringwithsandeep.worldbankservice.dataset.WdiCsvGenerator;
+import com.engineeringwithsandeep.worldbankservice.socket.dao.WDIDao;
+import com.engineeringwithsandeep.worldbankservice.store.ColumnarStore;
+import com.engineeringwithsandeep.worldbankservice.store.WdiCsvLoader;
+
+import java.io.IOException;
+import java.nio.file.Path;
+
+/**
+ * Compares a socket query against the old behaviour of re-parsing the csv for every request.
+ * Run main with an optional csv path, otherwise a WDI-shaped csv (266 countries, 50 indicators, 1960-2023) is generated.
+ */
+public class WorldBankServiceBenchmark {
+
+    public static void main(String[] args) throws IOException {
+        Path csv = args.length > 0 ? Path.of(args[0]) : WdiCsvGenerator.temp(WdiCsvGenerator.Shape.of(266, 50, 64));
+
+        WDIDao wdiDao = new WDIDao(csv.toString());
+        wdiDao.load();
+        WorldBankServiceImpl service = new WorldBankServiceImpl(wdiDao);
+
+        // old behaviour: every request loads the whole csv, reads one value and clears the database again
+        int reloads = 5;
+        long start = System.nanoTime();
+        for (int i = 0; i < reloads; i++) {
+            ColumnarStore store = WdiCsvLoader.read(csv.toString());
+            store.value(store.countryId("C007"), store.indicatorId("IND.003"), 10);
+        }
+        double reloadMicros = (System.nanoTime() - start) / 1_000.0 / reloads;
+
+        String[] countries = new String[266];
+        String[] indicators = new String[50];
+        for (int i = 0; i < countries.length; i++) {
+            countries[i] = WdiCsvGenerator.countryCode(i);
+        }
+        for (int i = 0; i < indicators.length; i++) {
+            indicators[i] = WdiCsvGenerator.indicatorCode(i);
+        }
+        int queries = 1_000_000;
+        for (int i = 0; i < queries; i++) {  // warm up
+            service.getCountryInfo(countries[i % 266], indicators[i % 50], "1970");
+        }
+        start = System.nanoTime();
+        for (int i = 0; i < queries; i++) {
+            service.getCountryInfo(countries[i % 266], indicators[i % 50], "1970");
+        }
+        double sharedMicros = (System.nanoTime() - start) / 1_000.0 / queries;
+
+        System.out.printf("reload per request: %,.1f us/query%n", reloadMicros);
+        System.out.printf("load once, shared:  %,.3f us/query%n", sharedMicros);
+    }
+}
@@ -0,0 +1,96 @@
+package com.engineeringwithsandeep.worldbankservice.store;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class AggregationEngineTests {
+
+    private static ColumnarStore sampleStore() {
+        ColumnarStore.Builder builder = new ColumnarStore.Builder(2020, 3);
+        builder.accept("India", "IND", "GDP", "NY.GDP", new double[]{1.0, 2.0, Double.NaN});
+        builder.accept("France", "FRA", "GDP", "NY.GDP", new double[]{3.0, Double.NaN, Double.NaN});
+        builder.accept("Japan", "JPN", "GDP", "NY.GDP", new double[]{5.0, 4.0, Double.NaN});
+        builder.accept("India", "IND", "Population", "SP.POP", new double[]{3.0, 1.0, 1.0});
+        builder.accept("Japan", "JPN", "Population", "SP.POP", new double[]{1.0, 1.0, 1.0});
+        return builder.build();
+    }
+
+    @Test
+    void aggregatesByYearWithWeightsAndPercentiles() {
+        ColumnarStore store = sampleStore();
+        AggregationEngine.Report report = AggregationEngine.common().report(store, "NY.GDP", AggregationEngine.GroupBy.YEAR,
+                null, 1900, 2100, "SP.POP", new double[]{0, 50, 100});
+
+        List<AggregationEngine.Group> groups = report.groups();
+        assertEquals(2, groups.size());  // 2022 has no value at all
+        AggregationEngine.Group first = groups.get(0);
+        assertEquals("2020", first.key());
+        assertEquals(3, first.count());
+        assertEquals(9.0, first.sum());
+        assertEquals(3.0, first.mean());
+        assertEquals(1.0, first.min());
+        assertEquals(5.0, first.max());
+        assertEquals(2.0, first.weightedMean());  // (1*3 + 5*1) / 4, France has no weight
+        assertArrayEquals(new double[]{1.0, 3.0, 5.0}, first.percentiles());
+        assertArrayEquals(new double[]{2.0, 3.0, 4.0}, groups.get(1).percentiles());
+        assertEquals("SP.POP", report.weightIndicatorCode());
+    }
+
+    @Test
+    void aggregatesByCountryOverAYearRange() {
+        ColumnarStore store = sampleStore();
+        AggregationEngine.Report report = AggregationEngine.common().report(store, "NY.GDP", AggregationEngine.GroupBy.COUNTRY,
+                List.of("JPN", "IND"), 2021, 2022, null, null);
+
+        assertEquals(List.of("JPN", "IND"), report.groups().stream().map(AggregationEngine.Group::key).toList());
+        assertEquals(4.0, report.groups().get(0).mean());
+        assertNull(report.groups().get(0).weightedMean());
+        assertNull(AggregationEngine.common().report(store, "XX.XXX", AggregationEngine.GroupBy.YEAR, null, 0, 0, null, null));
+        assertThrows(IllegalArgumentException.class, () -> AggregationEngine.common().report(store, "NY.GDP",
+                AggregationEngine.GroupBy.YEAR, List.of("XXX"), 2020, 2022, null, null));
+    }
+
+    @Test
+    void parallelRunMatchesASequentialScan() {
+        Random random = new Random(18);
+        ColumnarStore.Builder builder = new ColumnarStore.Builder(2000, 12);
+        for (int i = 0; i < 150; i++) {
+            for (int c = 0; c < 200; c++) {
+                double[] values = new double[12];
+                for (int y = 0; y < values.length; y++) {
+                    values[y] = random.nextInt(4) == 0 ? Double.NaN : random.nextGaussian();
+                }
+                builder.accept("Country " + c, "C" + c, "Indicator " + i, "I" + i, values);
+            }
+        }
+        ColumnarStore store = builder.build();
+
+        AggregationEngine.Result result;
+        try (ForkJoinPool pool = new ForkJoinPool(4)) {
+            result = new AggregationEngine(pool).aggregateAll(store, AggregationEngine.Query.byYear(null).withPercentiles(50));
+        }
+        for (int indicator = 0; indicator < store.indicatorCount(); indicator++) {
+            for (int year = 0; year < store.yearCount(); year++) {
+                long count = 0;
+                double sum = 0;
+                double max = Double.NEGATIVE_INFINITY;
+                for (int c = 0; c < store.countryCount(); c++) {
+                    if (store.isPresent(c, indicator, year)) {
+                        count++;
+                        sum += store.value(c, indicator, year);
+                        max = Math.max(max, store.value(c, indicator, year));
+                    }
+                }
+                assertEquals(count, result.count(indicator, year));
+                assertEquals(sum, result.sum(indicator, year), 1e-9);
+                assertEquals(max, result.max(indicator, year));
+            }
+        }
+        assertEquals(2000, result.groupKey(0));
+    }
+}
@@ -0,0 +1,89 @@
+package com.engineeringwithsandeep.worldbankservice.store;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ColumnarStoreTests {
+
+    private static ColumnarStore sampleStore() {
+        ColumnarStore.Builder builder = new ColumnarStore.Builder(1960, 3);
+        builder.accept("India", "IND", "GDP (current US$)", "NY.GDP.MKTP.CD", new double[]{1.5, Double.NaN, 3.5});
+        builder.accept("France", "FRA", "GDP (current US$)", "NY.GDP.MKTP.CD", new double[]{4.0, 5.0, 6.0});
+        builder.accept("India", "IND", "Population, total", "SP.POP.TOTL", new double[]{Double.NaN, Double.NaN, 7.0});
+        return builder.build();
+    }
+
+    @Test
+    void storesValuesAndMissingCells() {
+        ColumnarStore store = sampleStore();
+        int india = store.countryId("IND");
+        int gdp = store.indicatorId("NY.GDP.MKTP.CD");
+
+        assertEquals(2, store.countryCount());
+        assertEquals(2, store.indicatorCount());
+        assertEquals(1962, store.lastYear());
+        assertTrue(store.isPresent(india, gdp, 0));
+        assertEquals(1.5, store.value(india, gdp, 0));
+        assertFalse(store.isPresent(india, gdp, 1));
+        assertEquals(-1, store.yearOffset(1963));
+        assertEquals(-1, store.countryId("XXX"));
+        assertEquals("Population, total", store.indicatorName(store.indicatorId("SP.POP.TOTL")));
+    }
+
+    @Test
+    void visitsOnlyRowsPresentInTheCsv() {
+        ColumnarStore store = sampleStore();
+        int[] rows = {0};
+        store.forEachSeries((country, indicator) -> rows[0]++);
+
+        assertEquals(3, rows[0]);
+        assertFalse(store.hasSeries(store.countryId("FRA"), store.indicatorId("SP.POP.TOTL")));
+    }
+
+    @Test
+    void aggregateIndexSkipsMissingValues() {
+        ColumnarStore store = sampleStore();
+        SeriesStats stats = store.stats(store.countryId("IND"), store.indicatorId("NY.GDP.MKTP.CD"));
+
+        assertEquals(2, stats.count());
+        assertEquals(2.5, stats.mean());
+        assertEquals(1.5, stats.min());
+        assertEquals(3.5, stats.max());
+        assertEquals(1.0, stats.standardDeviation());
+        assertEquals(1960, stats.firstYear());
+        assertEquals(1962, stats.lastYear());
+        assertTrue(store.stats(store.countryId("FRA"), store.indicatorId("SP.POP.TOTL")).meanValue().isEmpty());
+    }
+
+    @Test
+    void seriesTableResolvesCodesThroughTheDictionaries() {
+        ColumnarStore store = sampleStore();
+        SeriesTable<String> table = SeriesTable.of(store,
+                (s, country, indicator) -> s.countryCode(country) + "/" + s.indicatorCode(indicator));
+
+        assertEquals(3, table.size());
+        assertEquals("FRA/NY.GDP.MKTP.CD", table.get("FRA", "NY.GDP.MKTP.CD"));
+        assertEquals("IND/SP.POP.TOTL", table.get(store.countryId("IND"), store.indicatorId("SP.POP.TOTL")));
+        assertNull(table.get("FRA", "SP.POP.TOTL"));
+        assertNull(table.get("XXX", "SP.POP.TOTL"));
+        assertNull(table.get(-1, 7));
+        assertEquals(1, store.countries().id("FRA"));
+        assertEquals("France", store.countries().name(1));
+        assertNull(SeriesTable.empty().get("FRA", "SP.POP.TOTL"));
+    }
+
+    @Test
+    void columnarLayoutIsSmallerThanBoxedLayout() {
+        ColumnarStore.Builder builder = new ColumnarStore.Builder(1960, 65);
+        double[] values = new double[65];
+        for (int country = 0; country < 50; country++) {
+            for (int indicator = 0; indicator < 20; indicator++) {
+                builder.accept("Country " + country, "C" + country, "Indicator " + indicator, "I" + indicator, values);
+            }
+        }
+        ColumnarStore store = builder.build();
+
+        assertTrue(HeapFootprint.legacyLayoutBytes(store) > 5 * HeapFootprint.columnarLayoutBytes(store));
+    }
+}
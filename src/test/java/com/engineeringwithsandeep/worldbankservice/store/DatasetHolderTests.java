@@ -0,0 +1,257 @@
+package com.engineeringwithsandeep.worldbankservice.store;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class DatasetHolderTests {
+
+    @TempDir
+    Path dir;
+
+    private SeriesTable<Double> table(String name, String gdpIndia) throws Exception {
+        Path csv = Files.writeString(dir.resolve(name),
+                "Country Name,Country Code,Indicator Name,Indicator Code,1960\n"
+                        + "India,IND,GDP,NY.GDP," + gdpIndia + "\n");
+        return SeriesTable.of(WdiCsvLoader.read(csv.toString()),
+                (store, country, indicator) -> store.value(country, indicator, 0));
+    }
+
+    @Test
+    void leaseKeepsItsVersionUntilClosed() throws Exception {
+        List<Long> released = new CopyOnWriteArrayList<>();
+        DatasetHolder<Double> holder = new DatasetHolder<>(version -> released.add(version.number()));
+        holder.publish(table("a.csv", "1.0"));
+
+        DatasetHolder<Double>.Lease lease = holder.acquire();
+        assertEquals(2L, holder.publish(table("b.csv", "2.0")));
+
+        assertEquals(1.0, lease.table().get("IND", "NY.GDP"));
+        assertEquals(2.0, holder.current().get("IND", "NY.GDP"));
+        assertEquals(List.of(0L), released);  // the empty version had no readers
+
+        lease.close();
+        lease.close();  // closing twice must not release a newer reference
+        assertEquals(List.of(0L, 1L), released);
+        try (DatasetHolder<Double>.Lease next = holder.acquire()) {
+            assertEquals(2L, next.version());
+        }
+        assertEquals(List.of(0L, 1L), released);
+    }
+
+    @Test
+    void readersNeverSeeAReleasedVersion() throws Exception {
+        SeriesTable<Double> a = table("a.csv", "1.0");
+        SeriesTable<Double> b = table("b.csv", "2.0");
+        AtomicInteger releases = new AtomicInteger();
+        DatasetHolder<Double> holder = new DatasetHolder<>(version -> releases.incrementAndGet());
+        holder.publish(a);
+
+        AtomicBoolean running = new AtomicBoolean(true);
+        AtomicInteger failures = new AtomicInteger();
+        Thread[] readers = new Thread[4];
+        for (int i = 0; i < readers.length; i++) {
+            readers[i] = new Thread(() -> {
+                while (running.get()) {
+                    try (DatasetHolder<Double>.Lease lease = holder.acquire()) {
+                        Double first = lease.table().get("IND", "NY.GDP");
+                        if (first == null || !first.equals(lease.table().get("IND", "NY.GDP"))) {
+                            failures.incrementAndGet();
+                        }
+                    }
+                }
+            });
+            readers[i].start();
+        }
+        int swaps = 2_000;
+        for (int i = 0; i < swaps; i++) {
+            holder.publish(i % 2 == 0 ? b : a);
+        }
+        running.set(false);
+        for (Thread reader : readers) {
+            reader.join();
+        }
+
+        assertEquals(0, failures.get());
+        assertEquals(swaps + 1, releases.get());  // every replaced version drained, including the initial empty one
+        assertEquals(swaps + 1, holder.version());
+    }
+
+    @Test
+    void coldStartBurstSharesOneLoadWithoutParkingCallers() throws Exception {
+        SeriesTable<Double> loaded = table("a.csv", "1.0");
+        DatasetHolder<Double> holder = new DatasetHolder<>();
+        CountDownLatch release = new CountDownLatch(1);
+        AtomicInteger loads = new AtomicInteger();
+        ExecutorService loader = Executors.newSingleThreadExecutor();
+        try {
+            List<CompletableFuture<Double>> requests = new ArrayList<>();
+            for (int i = 0; i < 500; i++) {  // far more callers than the executor has threads
+                requests.add(holder.loadIfEmptyAsync(() -> {
+                    loads.incrementAndGet();
+                    try {
+                        release.await();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                    return loaded;
+                }, loader).thenApply(table -> table.get("IND", "NY.GDP")));
+            }
+            assertTrue(requests.stream().noneMatch(CompletableFuture::isDone));  // every call returned at once
+
+            release.countDown();
+            for (CompletableFuture<Double> request : requests) {
+                assertEquals(1.0, request.get(10, TimeUnit.SECONDS));
+            }
+            assertEquals(1, loads.get());
+            assertEquals(1L, holder.version());
+            assertTrue(holder.loadIfEmptyAsync(() -> fail("loaded twice"), loader).isDone());
+        } finally {
+            loader.shutdownNow();
+        }
+    }
+
+    @Test
+    void blockingAndAsyncCallersShareOneLoad() throws Exception {
+        SeriesTable<Double> loaded = table("a.csv", "1.0");
+        DatasetHolder<Double> holder = new DatasetHolder<>();
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        AtomicInteger loads = new AtomicInteger();
+        Supplier<SeriesTable<Double>> loader = () -> {
+            loads.incrementAndGet();
+            started.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return loaded;
+        };
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        List<Thread> blocking = new ArrayList<>();
+        List<SeriesTable<Double>> seen = new CopyOnWriteArrayList<>();
+        try {
+            CompletableFuture<SeriesTable<Double>> async = holder.loadIfEmptyAsync(loader, executor);
+            assertTrue(started.await(10, TimeUnit.SECONDS));
+            assertEquals(DatasetHolder.LoadState.LOADING, holder.loadStatus().state());
+            for (int i = 0; i < 8; i++) {
+                Thread caller = new Thread(() -> seen.add(holder.loadIfEmpty(loader)));
+                caller.start();
+                blocking.add(caller);
+            }
+
+            release.countDown();
+            for (Thread caller : blocking) {
+                caller.join(10_000);
+            }
+            assertSame(loaded, async.get(10, TimeUnit.SECONDS));
+            assertEquals(8, seen.size());
+            assertTrue(seen.stream().allMatch(table -> table == loaded));
+            assertEquals(1, loads.get());
+            assertEquals(new DatasetHolder.LoadStatus(DatasetHolder.LoadState.LOADED, 1, 1, null), holder.loadStatus());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    void failedLoadIsCachedUntilTheRetryIntervalPasses() throws Exception {
+        SeriesTable<Double> loaded = table("a.csv", "1.0");
+        AtomicInteger loads = new AtomicInteger();
+        Supplier<SeriesTable<Double>> broken = () -> {
+            loads.incrementAndGet();
+            throw new UncheckedIOException(new IOException("WDICSV.csv not found"));
+        };
+
+        DatasetHolder<Double> holder = new DatasetHolder<>(version -> { }, 60_000);
+        DatasetHolder.LoadFailedException failure =
+                assertThrows(DatasetHolder.LoadFailedException.class, () -> holder.loadIfEmpty(broken));
+        assertInstanceOf(UncheckedIOException.class, failure.getCause());
+        // within the interval every caller gets the same failure and nobody runs the loader again
+        assertSame(failure, assertThrows(DatasetHolder.LoadFailedException.class, () -> holder.loadIfEmpty(broken)));
+        ExecutionException async = assertThrows(ExecutionException.class,
+                () -> holder.loadIfEmptyAsync(() -> loaded, Runnable::run).get());
+        assertSame(failure, async.getCause());
+        assertEquals(1, loads.get());
+        DatasetHolder.LoadStatus status = holder.loadStatus();
+        assertEquals(DatasetHolder.LoadState.FAILED, status.state());
+        assertEquals(1, status.attempts());
+        assertTrue(status.lastError().contains("WDICSV.csv not found"));
+
+        // once the interval is over the next caller retries
+        DatasetHolder<Double> retrying = new DatasetHolder<>(version -> { }, 0);
+        assertThrows(DatasetHolder.LoadFailedException.class, () -> retrying.loadIfEmpty(broken));
+        assertEquals(DatasetHolder.LoadState.FAILED, retrying.loadStatus().state());
+        assertSame(loaded, retrying.loadIfEmpty(() -> loaded));
+        assertEquals(new DatasetHolder.LoadStatus(DatasetHolder.LoadState.LOADED, 1, 2, null), retrying.loadStatus());
+    }
+
+    @Test
+    void acquireLoadedNeverLeasesAnEvictedVersion() throws Exception {
+        SeriesTable<Double> loaded = table("a.csv", "1.0");
+        AtomicInteger loads = new AtomicInteger();
+        Supplier<SeriesTable<Double>> loader = () -> {
+            loads.incrementAndGet();
+            return loaded;
+        };
+
+        DatasetHolder<Double> holder = new DatasetHolder<>();
+        try (DatasetHolder<Double>.Lease lease = holder.acquireLoaded(loader)) {
+            assertTrue(lease.loaded());
+            assertSame(loaded, lease.table());
+        }
+        holder.evict();
+        try (DatasetHolder<Double>.Lease lease = holder.acquireLoadedAsync(loader, Runnable::run).get()) {
+            assertTrue(lease.loaded());
+            assertEquals(3, lease.version());
+        }
+        try (DatasetHolder<Double>.Lease lease = holder.acquireLoaded(loader)) {
+            assertEquals(3, lease.version());  // already loaded, no new load
+        }
+        assertEquals(2, loads.get());
+    }
+
+    @Test
+    void emptyLoadIsPublishedLikeAnyOther() {
+        // e.g. a shard that owns none of the file's series: loaded, not failed, and not loaded again
+        AtomicInteger loads = new AtomicInteger();
+        Supplier<SeriesTable<Double>> noSeries = () -> {
+            loads.incrementAndGet();
+            return SeriesTable.empty();
+        };
+
+        DatasetHolder<Double> holder = new DatasetHolder<>(version -> { }, 0);
+        assertTrue(holder.loadIfEmpty(noSeries).isEmpty());
+        assertTrue(holder.isLoaded());
+        assertTrue(holder.loadIfEmptyAsync(noSeries, Runnable::run).join().isEmpty());
+        assertEquals(1, loads.get());
+        assertEquals(new DatasetHolder.LoadStatus(DatasetHolder.LoadState.LOADED, 1, 1, null), holder.loadStatus());
+
+        // an evict unloads it, the next caller loads again
+        holder.evict();
+        assertFalse(holder.isLoaded());
+        assertEquals(DatasetHolder.LoadState.EMPTY, holder.loadStatus().state());
+        holder.loadIfEmpty(noSeries);
+        assertEquals(2, loads.get());
+        assertEquals(new DatasetHolder.LoadStatus(DatasetHolder.LoadState.LOADED, 3, 2, null), holder.loadStatus());
+    }
+}
@@ -0,0 +1,87 @@
+package com.engineeringwithsandeep.worldbankservice.store;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class DatasetRegistryTests {
+
+    private static final String HEADER = "Country Name,Country Code,Indicator Name,Indicator Code,1960,1961\n";
+
+    @TempDir
+    Path dir;
+
+    @BeforeEach
+    void disableWatcher() {
+        System.setProperty("worldbank.data.watch", "false");
+    }
+
+    @AfterEach
+    void clearWatchProperty() {
+        System.clearProperty("worldbank.data.watch");
+    }
+
+    private Path write(String name, String rows) throws Exception {
+        return Files.writeString(dir.resolve(name), HEADER + rows);
+    }
+
+    private DatasetRegistry<Boolean> registry(DatasetRegistry.Config... configs) {
+        return new DatasetRegistry<>("test", (store, country, indicator) -> Boolean.TRUE, List.of(configs));
+    }
+
+    @Test
+    void datasetsLoadAndEvictIndependently() throws Exception {
+        Path wdi = write("WDICSV.csv", "India,IND,GDP,NY.GDP,1.0,2.0\n");
+        Path ids = write("IDSCSV.csv", "India,IND,External debt,DT.DOD.DECT.CD,3.0,4.0\n");
+        DatasetRegistry<Boolean> registry = registry(
+                new DatasetRegistry.Config("wdi", wdi, Long.MAX_VALUE),
+                new DatasetRegistry.Config("ids", ids, Long.MAX_VALUE));
+
+        assertSame(registry.defaultDataset(), registry.dataset(null));
+        assertEquals("wdi", registry.dataset(null).name());
+        ColumnarStore wdiStore = registry.dataset("wdi").load().store();
+        ColumnarStore idsStore = registry.dataset("ids").load().store();
+        assertTrue(wdiStore.indicatorId("NY.GDP") >= 0);
+        assertTrue(wdiStore.indicatorId("DT.DOD.DECT.CD") < 0);
+        assertEquals(4.0, idsStore.value(idsStore.countryId("IND"), idsStore.indicatorId("DT.DOD.DECT.CD"), 1));
+
+        registry.dataset("ids").evict();
+        assertFalse(registry.dataset("ids").holder().isLoaded());
+        assertSame(wdiStore, registry.dataset("wdi").holder().current().store());
+
+        registry.dataset("ids").load();  // the next request loads it again
+        assertTrue(registry.dataset("ids").holder().isLoaded());
+        assertEquals(List.of("wdi", "ids"), registry.summaries().stream().map(DatasetRegistry.Summary::name).toList());
+    }
+
+    @Test
+    void loadOverTheHeapBudgetFailsAndLeavesOthersServing() throws Exception {
+        Path wdi = write("WDICSV.csv", "India,IND,GDP,NY.GDP,1.0,2.0\n");
+        Path gender = write("GenderCSV.csv", "India,IND,Labor force,SL.TLF.CACT.FE.ZS,1.0,2.0\n");
+        DatasetRegistry<Boolean> registry = registry(
+                new DatasetRegistry.Config("wdi", wdi, Long.MAX_VALUE),
+                new DatasetRegistry.Config("gender", gender, 16));
+
+        DatasetHolder.LoadFailedException error = assertThrows(DatasetHolder.LoadFailedException.class,
+                () -> registry.dataset("gender").load());
+        assertTrue(error.getMessage().contains("budget"), error.getMessage());
+        assertEquals(DatasetHolder.LoadState.FAILED, registry.dataset("gender").holder().loadStatus().state());
+        assertNotNull(registry.dataset("wdi").load());
+    }
+
+    @Test
+    void unknownDatasetIsRejected() {
+        DatasetRegistry<Boolean> registry = registry(new DatasetRegistry.Config("wdi", null, Long.MAX_VALUE));
+        assertThrows(DatasetRegistry.UnknownDatasetException.class, () -> registry.dataset("ids"));
+        assertThrows(IllegalArgumentException.class, () -> registry(
+                new DatasetRegistry.Config("wdi", null, Long.MAX_VALUE),
+                new DatasetRegistry.Config("wdi", null, Long.MAX_VALUE)));
+    }
+}
@@ -0,0 +1,96 @@
+package com.engineeringwithsandeep.worldbankservice.store;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class DatasetReloaderTests {
+
+    private static final String HEADER = "Country Name,Country Code,Indicator Name,Indicator Code,1960,1961\n";
+
+    @TempDir
+    Path dir;
+
+    @AfterEach
+    void clearWatchProperty() {
+        System.clearProperty("worldbank.data.watch");
+    }
+
+    private Path write(String rows) throws Exception {
+        return Files.writeString(dir.resolve("WDICSV.csv"), HEADER + rows);
+    }
+
+    @Test
+    void reloadAppliesOnlyTheChangedRows() throws Exception {
+        System.setProperty("worldbank.data.watch", "false");
+        Path csv = write("India,IND,GDP,NY.GDP,1.0,2.0\n"
+                + "France,FRA,GDP,NY.GDP,3.0,4.0\n"
+                + "France,FRA,Population,SP.POP,5.0,6.0\n");
+        DatasetHolder<Boolean> holder = new DatasetHolder<>();
+        DatasetReloader<Boolean> reloader = new DatasetReloader<>(holder, (store, country, indicator) -> Boolean.TRUE);
+        holder.publish(reloader.load(csv));
+
+        // without the watcher the load does not hash the rows, the first reload is a full one that does
+        DatasetReloader.Result first = reloader.reload(csv);
+        assertFalse(first.incremental());
+        ColumnarStore before = holder.current().store();
+
+        DatasetReloader.Result unchanged = reloader.reload(csv);
+        assertTrue(unchanged.incremental());
+        assertEquals(0, unchanged.rows());
+        assertSame(before, holder.current().store());
+
+        write("India,IND,GDP,NY.GDP,1.0,2.5\n"
+                + "France,FRA,Population,SP.POP,5.0,6.0\n");
+        DatasetReloader.Result delta = reloader.reload(csv);
+        assertTrue(delta.incremental());
+        assertEquals(2, delta.rows());  // one changed, one removed
+
+        ColumnarStore after = holder.current().store();
+        int india = after.countryId("IND");
+        int france = after.countryId("FRA");
+        int gdp = after.indicatorId("NY.GDP");
+        assertEquals(2.5, after.value(india, gdp, 1));
+        assertEquals(1.75, after.stats(india, gdp).mean());
+        assertFalse(after.hasSeries(france, gdp));
+        assertEquals(0, after.stats(france, gdp).count());
+        assertEquals(2.0, before.value(india, gdp, 1));  // the old version is untouched for its readers
+        assertTrue(before.hasSeries(france, gdp));
+
+        write("India,IND,GDP,NY.GDP,1.0,2.5\n"
+                + "Japan,JPN,GDP,NY.GDP,7.0,8.0\n");
+        DatasetReloader.Result full = reloader.reload(csv);
+        assertFalse(full.incremental());
+        assertEquals(8.0, holder.current().store().value(holder.current().store().countryId("JPN"), gdp, 1));
+    }
+
+    @Test
+    void watcherReloadsAChangedFile() throws Exception {
+        Path csv = write("India,IND,GDP,NY.GDP,1.0,2.0\n");
+        DatasetHolder<Boolean> holder = new DatasetHolder<>();
+        DatasetReloader<Boolean> reloader = new DatasetReloader<>(holder, (store, country, indicator) -> Boolean.TRUE);
+        holder.publish(reloader.load(csv));
+        long loaded = holder.version();
+
+        write("India,IND,GDP,NY.GDP,1.0,9.0\n");
+        long deadline = System.currentTimeMillis() + 20_000;
+        while (holder.version() == loaded && System.currentTimeMillis() < deadline) {
+            Thread.sleep(50);
+        }
+        // joins the watcher thread, so the reload has written its snapshot before the temp dir is deleted
+        reloader.close();
+        ColumnarStore store = holder.current().store();
+        assertEquals(9.0, store.value(store.countryId("IND"), store.indicatorId("NY.GDP"), 1));
+
+        // closed until the next load, a late reload publishes nothing
+        long served = holder.version();
+        write("India,IND,GDP,NY.GDP,1.0,3.0\n");
+        assertEquals(served, reloader.reload(csv).version());
+        assertEquals(served, holder.version());
+    }
+}
@@ -0,0 +1,70 @@
+package com.engineeringwithsandeep.worldbankservice.store;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RankingTests {
+
+    @Test
+    void ranksTopAndBottomSkippingMissingValues() {
+        ColumnarStore.Builder builder = new ColumnarStore.Builder(2020, 2);
+        builder.accept("India", "IND", "GDP", "NY.GDP", new double[]{3.0, 1.0});
+        builder.accept("France", "FRA", "GDP", "NY.GDP", new double[]{5.0, Double.NaN});
+        builder.accept("Japan", "JPN", "GDP", "NY.GDP", new double[]{3.0, 2.0});
+        builder.accept("Chad", "TCD", "GDP", "NY.GDP", new double[]{-1.0, 4.0});
+        builder.accept("Peru", "PER", "Population", "SP.POP", new double[]{9.0, 9.0});
+        ColumnarStore store = builder.build();
+        int gdp = store.indicatorId("NY.GDP");
+
+        Ranking top = Ranking.of(store, gdp, 2020, 3, Ranking.Order.TOP);
+        assertEquals(List.of(new Ranking.Entry(1, "FRA", "France", 5.0), new Ranking.Entry(2, "IND", "India", 3.0),
+                new Ranking.Entry(3, "JPN", "Japan", 3.0)), top.entries());  // the tie keeps country order
+
+        Ranking bottom = Ranking.of(store, gdp, 2021, 10, Ranking.Order.BOTTOM);
+        assertEquals("IND,1.0;JPN,2.0;TCD,4.0", bottom.toText());  // France has no 2021 value, Peru no GDP series
+
+        assertTrue(Ranking.of(store, gdp, 1990, 3, Ranking.Order.TOP).entries().isEmpty());
+        assertEquals(Ranking.Order.BOTTOM, Ranking.Order.parse("Bottom"));
+    }
+
+    @Test
+    void matchesAFullSortOfTheColumn() {
+        Random random = new Random(17);
+        ColumnarStore.Builder builder = new ColumnarStore.Builder(2000, 1);
+        for (int c = 0; c < 300; c++) {
+            double value = random.nextInt(10) == 0 ? Double.NaN : random.nextInt(50);  // plenty of ties
+            builder.accept("Country " + c, "C" + c, "GDP", "NY.GDP", new double[]{value});
+        }
+        ColumnarStore store = builder.build();
+        int gdp = store.indicatorId("NY.GDP");
+
+        List<Integer> present = new ArrayList<>();
+        for (int c = 0; c < store.countryCount(); c++) {
+            if (store.isPresent(c, gdp, 0)) {
+                present.add(c);
+            }
+        }
+        Comparator<Integer> byValue = Comparator.comparingDouble(c -> store.value(c, gdp, 0));
+        List<Integer> descending = present.stream().sorted(byValue.reversed().thenComparing(c -> c)).toList();
+        List<Integer> ascending = present.stream().sorted(byValue.thenComparing(c -> c)).toList();
+
+        for (int n : new int[]{1, 20, 299, 1000}) {
+            assertEquals(codes(store, descending, n), codes(Ranking.of(store, gdp, 2000, n, Ranking.Order.TOP)));
+            assertEquals(codes(store, ascending, n), codes(Ranking.of(store, gdp, 2000, n, Ranking.Order.BOTTOM)));
+        }
+    }
+
+    private static List<String> codes(ColumnarStore store, List<Integer> countries, int n) {
+        return countries.stream().limit(n).map(store::countryCode).toList();
+    }
+
+    private static List<String> codes(Ranking ranking) {
+        return ranking.entries().stream().map(Ranking.Entry::countryCode).toList();
+    }
+}
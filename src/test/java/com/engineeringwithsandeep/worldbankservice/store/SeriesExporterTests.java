@@ -0,0 +1,61 @@
+package com.engineeringwithsandeep.worldbankservice.store;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.StringWriter;
+import java.io.Writer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SeriesExporterTests {
+
+    @TempDir
+    Path dir;
+
+    private static ColumnarStore sampleStore() {
+        ColumnarStore.Builder builder = new ColumnarStore.Builder(1960, 3);
+        builder.accept("Korea, Rep.", "KOR", "GDP (\"current\" US$)", "NY.GDP", new double[]{1.5, Double.NaN, 3.5});
+        builder.accept("France", "FRA", "GDP (\"current\" US$)", "NY.GDP", new double[]{4.0, 5.0, 6.0});
+        builder.accept("France", "FRA", "Population, total", "SP.POP", new double[]{Double.NaN, Double.NaN, 7.0});
+        return builder.build();
+    }
+
+    @Test
+    void csvExportLoadsBackIntoTheSameStore() throws Exception {
+        ColumnarStore store = sampleStore();
+        Path csv = dir.resolve("export.csv");
+        try (Writer out = Files.newBufferedWriter(csv)) {
+            assertEquals(3, SeriesExporter.write(store, SeriesExporter.Selection.of(store, null, null, 0, 3000),
+                    SeriesExporter.Format.CSV, out));
+        }
+
+        ColumnarStore loaded = WdiCsvLoader.load(csv.toString());
+        int korea = loaded.countryId("KOR");
+        int gdp = loaded.indicatorId("NY.GDP");
+        assertEquals("Korea, Rep.", loaded.countryName(korea));
+        assertEquals("GDP (\"current\" US$)", loaded.indicatorName(gdp));
+        assertEquals(3.5, loaded.value(korea, gdp, 2));
+        assertFalse(loaded.isPresent(korea, gdp, 1));
+        assertEquals(7.0, loaded.value(loaded.countryId("FRA"), loaded.indicatorId("SP.POP"), 2));
+    }
+
+    @Test
+    void ndjsonExportWritesOneObjectPerSelectedSeries() throws Exception {
+        ColumnarStore store = sampleStore();
+        StringWriter out = new StringWriter();
+        SeriesExporter.Selection selection = SeriesExporter.Selection.of(store, List.of("KOR", "FRA"), List.of("NY.GDP"),
+                1961, 1962);
+        assertEquals(2, SeriesExporter.write(store, selection, SeriesExporter.Format.NDJSON, out));
+
+        assertEquals("{\"countryCode\":\"KOR\",\"countryName\":\"Korea, Rep.\",\"indicatorCode\":\"NY.GDP\","
+                + "\"indicatorName\":\"GDP (\\\"current\\\" US$)\",\"from\":1961,\"values\":[null,3.5]}\n"
+                + "{\"countryCode\":\"FRA\",\"countryName\":\"France\",\"indicatorCode\":\"NY.GDP\","
+                + "\"indicatorName\":\"GDP (\\\"current\\\" US$)\",\"from\":1961,\"values\":[5.0,6.0]}\n", out.toString());
+        assertThrows(IllegalArgumentException.class,
+                () -> SeriesExporter.Selection.of(store, List.of("XXX"), null, 1960, 1962));
+    }
+}
@@ -0,0 +1,140 @@
+package com.engineeringwithsandeep.worldbankservice.store;
+
+import com.engineeringwithsandeep.worldbankservice.ingest.CsvIngestor;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class StoreSnapshotTests {
+
+    @TempDir
+    Path dir;
+
+    private Path writeCsv(String gdpIndia) throws Exception {
+        return Files.writeString(dir.resolve("WDICSV.csv"),
+                "Country Name,Country Code,Indicator Name,Indicator Code,1960,1961\n"
+                        + "India,IND,GDP,NY.GDP," + gdpIndia + ",\n"
+                        + "France,FRA,GDP,NY.GDP,3.0,4.0\n");
+    }
+
+    @Test
+    void secondLoadComesFromSnapshot() throws Exception {
+        Path csv = writeCsv("1.5");
+        ColumnarStore parsed = WdiCsvLoader.load(csv.toString());
+        Path snapshot = WdiCsvLoader.snapshotPath(csv);
+        assertTrue(Files.exists(snapshot));
+
+        ColumnarStore restored = StoreSnapshot.read(snapshot, csv);
+        assertNotNull(restored);
+        assertEquals(parsed.countryCount(), restored.countryCount());
+        int india = restored.countryId("IND");
+        int gdp = restored.indicatorId("NY.GDP");
+        assertEquals(1.5, restored.value(india, gdp, 0));
+        assertFalse(restored.isPresent(india, gdp, 1));
+        assertTrue(restored.hasSeries(restored.countryId("FRA"), gdp));
+        assertEquals("France", restored.countryName(restored.countryId("FRA")));
+    }
+
+    @Test
+    void changedCsvOrCorruptSnapshotIsIgnored() throws Exception {
+        Path csv = writeCsv("1.5");
+        WdiCsvLoader.load(csv.toString());
+        Path snapshot = WdiCsvLoader.snapshotPath(csv);
+
+        try (FileChannel channel = FileChannel.open(snapshot, StandardOpenOption.WRITE)) {
+            channel.write(ByteBuffer.wrap(new byte[]{42}), channel.size() - 20);
+        }
+        assertNull(StoreSnapshot.read(snapshot, csv));
+
+        WdiCsvLoader.load(csv.toString());
+        writeCsv("22.5");
+        assertNull(StoreSnapshot.read(snapshot, csv));
+        ColumnarStore reloaded = WdiCsvLoader.load(csv.toString());
+        assertEquals(22.5, reloaded.value(reloaded.countryId("IND"), reloaded.indicatorId("NY.GDP"), 0));
+    }
+
+    @Test
+    void streamedSnapshotIsMappedWithTheSameContent() throws Exception {
+        Path csv = Files.writeString(dir.resolve("WDICSV.csv"),
+                "Country Name,Country Code,Indicator Name,Indicator Code,1960,1961,1962\n"
+                        + "India,IND,GDP,NY.GDP,1.5,,2.5\n"
+                        + "France,FRA,GDP,NY.GDP,3.0,4.0,\n"
+                        + "France,FRA,\"Population, total\",SP.POP,10,11,12\n"
+                        + "Chad,TCD,\"Population, total\",SP.POP,,,\n");
+        ColumnarStore parsed = WdiCsvLoader.read(csv.toString());
+        Path snapshot = WdiCsvLoader.snapshotPath(csv);
+        SnapshotBuilder.build(new CsvIngestor(), csv,
+                StoreSnapshot.SourceStamp.of(csv), snapshot);
+
+        ColumnarStore mapped = StoreSnapshot.map(snapshot, csv);
+        assertNotNull(mapped);
+        assertEquals(0, parsed.mappedBytes());
+        assertEquals(mapped.countryCount() * mapped.yearCount() * mapped.indicatorCount() * Double.BYTES,
+                mapped.mappedBytes());
+        assertTrue(mapped.heapBytes() < parsed.heapBytes());
+        assertSameContent(parsed, mapped);
+        assertSameContent(parsed, StoreSnapshot.read(snapshot, csv));
+        assertEquals(Ranking.of(parsed, parsed.indicatorId("NY.GDP"), 1960, 2, Ranking.Order.TOP).entries(),
+                Ranking.of(mapped, mapped.indicatorId("NY.GDP"), 1960, 2, Ranking.Order.TOP).entries());
+
+        // a delta copies the touched block to the heap and leaves the mapped store as it was
+        int india = mapped.countryId("IND");
+        int gdp = mapped.indicatorId("NY.GDP");
+        ColumnarStore updated = mapped.withRows(List.of(new ColumnarStore.RowChange(india, gdp, new double[]{9.0, 8.0, 7.0})));
+        assertEquals(8.0, updated.value(india, gdp, 1));
+        assertFalse(mapped.isPresent(india, gdp, 1));
+        assertTrue(updated.mappedBytes() < mapped.mappedBytes());
+        StoreSnapshot.write(updated, StoreSnapshot.SourceStamp.of(csv), snapshot);
+        assertSameContent(updated, StoreSnapshot.map(snapshot, csv));
+        assertEquals(1.5, mapped.value(india, gdp, 0));  // the replaced file stays mapped
+    }
+
+    @Test
+    void mappedValuesAreCheckedOnFirstTouch() throws Exception {
+        Path csv = writeCsv("1.5");
+        WdiCsvLoader.load(csv.toString());
+        Path snapshot = WdiCsvLoader.snapshotPath(csv);
+        int dictionaryBytes;
+        try (FileChannel channel = FileChannel.open(snapshot, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            ByteBuffer header = ByteBuffer.allocate(StoreSnapshot.HEADER_BYTES);
+            channel.read(header, 0);
+            dictionaryBytes = header.getInt(48);
+            channel.write(ByteBuffer.wrap(new byte[]{42}), StoreSnapshot.HEADER_BYTES + dictionaryBytes + 3);
+        }
+
+        assertNull(StoreSnapshot.read(snapshot, csv));  // the heap copy reads every cell, so it checks them at once
+        ColumnarStore mapped = StoreSnapshot.map(snapshot, csv);  // opening does not read the cells
+        assertNotNull(mapped);
+        int gdp = mapped.indicatorId("NY.GDP");
+        assertTrue(mapped.hasSeries(mapped.countryId("IND"), gdp));
+        assertThrows(IllegalStateException.class, () -> mapped.value(mapped.countryId("IND"), gdp, 0));
+    }
+
+    private static void assertSameContent(ColumnarStore expected, ColumnarStore actual) {
+        assertEquals(expected.countryCount(), actual.countryCount());
+        assertEquals(expected.indicatorCount(), actual.indicatorCount());
+        assertEquals(expected.firstYear(), actual.firstYear());
+        for (int c = 0; c < expected.countryCount(); c++) {
+            int country = actual.countryId(expected.countryCode(c));
+            assertEquals(expected.countryName(c), actual.countryName(country));
+            for (int i = 0; i < expected.indicatorCount(); i++) {
+                int indicator = actual.indicatorId(expected.indicatorCode(i));
+                assertEquals(expected.hasSeries(c, i), actual.hasSeries(country, indicator));
+                assertEquals(expected.stats(c, i), actual.stats(country, indicator));
+                double[] want = new double[expected.yearCount()];
+                double[] got = new double[actual.yearCount()];
+                expected.copyRange(c, i, 0, want, 0, want.length);
+                actual.copyRange(country, indicator, 0, got, 0, got.length);
+                assertArrayEquals(want, got);
+            }
+        }
+    }
+}